@@ -0,0 +1,108 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Input for the benchmarks. A corpus is generated from one of the test fixtures by keeping its header and picking
+ * random data lines from it until the requested size is reached.
+ */
+final class Corpus {
+  static final int DEFAULT_SIZE = 8 * 1024 * 1024;
+  static final String RESOURCE_PATH = "com/github/jcustenborder/parsers/elf/%s.json";
+
+  final String header;
+  final String text;
+  final byte[] bytes;
+  final List<String> lines;
+
+  private Corpus(String header, List<String> lines) {
+    StringBuilder builder = new StringBuilder(DEFAULT_SIZE + header.length());
+    builder.append(header);
+    for (String line : lines) {
+      builder.append(line).append('\n');
+    }
+    this.header = header;
+    this.lines = lines;
+    this.text = builder.toString();
+    this.bytes = this.text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Method is used to generate a corpus from a test fixture.
+   * @param name name of the fixture without the .json extension. For example http, ssl or iis6.
+   * @param size approximate size of the corpus in bytes. The corpus always contains at least one line.
+   * @return corpus
+   * @throws IOException Exception thrown if the fixture cannot be read.
+   */
+  static Corpus load(String name, int size) throws IOException {
+    final String resource = String.format(RESOURCE_PATH, name);
+    final ElfParserTestCase testCase;
+    try (InputStream inputStream = Corpus.class.getClassLoader().getResourceAsStream(resource)) {
+      if (null == inputStream) {
+        throw new IOException(String.format("Could not find resource '%s'", resource));
+      }
+      testCase = new ObjectMapper().readValue(inputStream, ElfParserTestCase.class);
+    }
+
+    StringBuilder header = new StringBuilder();
+    List<String> data = new ArrayList<>();
+    for (String line : testCase.input.split("\r?\n")) {
+      if (line.startsWith("#")) {
+        if (data.isEmpty()) {
+          header.append(line).append('\n');
+        }
+      } else if (!line.isEmpty()) {
+        data.add(line);
+      }
+    }
+    if (data.isEmpty()) {
+      throw new IOException(String.format("Resource '%s' does not contain any data lines", resource));
+    }
+
+    Random random = new Random(1234);
+    List<String> lines = new ArrayList<>();
+    int length = header.length();
+    do {
+      final String line = data.get(random.nextInt(data.size()));
+      lines.add(line);
+      length += line.length() + 1;
+    } while (length < size);
+    return new Corpus(header.toString(), lines);
+  }
+
+  /**
+   * Method is used to write the corpus to a temporary file.
+   * @return file containing the corpus.
+   * @throws IOException Exception thrown if the file cannot be written.
+   */
+  File write() throws IOException {
+    File file = File.createTempFile("elf-benchmark", ".log");
+    file.deleteOnExit();
+    Files.write(file.toPath(), this.bytes);
+    return file;
+  }
+}
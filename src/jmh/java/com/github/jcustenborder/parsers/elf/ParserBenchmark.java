@@ -0,0 +1,140 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses a whole corpus. Each benchmark reports lines/s and bytes/s through {@link Throughput}. Run with
+ * -prof gc to see the allocation rate per line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+  @Param({"http", "ssl", "iis6"})
+  public String corpus;
+
+  Corpus input;
+  File file;
+
+  @Setup
+  public void setup() throws IOException {
+    this.input = Corpus.load(this.corpus, Corpus.DEFAULT_SIZE);
+    this.file = this.input.write();
+  }
+
+  @TearDown
+  public void tearDown() {
+    this.file.delete();
+  }
+
+  ElfParser byteParser() throws IOException {
+    return ElfParserBuilder.of()
+        .byteMode(true)
+        .charset(StandardCharsets.UTF_8)
+        .build(new ByteArrayInputStream(this.input.bytes));
+  }
+
+  void count(Throughput throughput, long lines) {
+    throughput.lines += lines;
+    throughput.bytes += this.input.bytes.length;
+  }
+
+  static long next(ElfParser parser, Blackhole blackhole) throws IOException {
+    long lines = 0;
+    LogEntry entry;
+    while (null != (entry = parser.next())) {
+      blackhole.consume(entry);
+      lines++;
+    }
+    return lines;
+  }
+
+  @Benchmark
+  public void readerNext(Blackhole blackhole, Throughput throughput) throws IOException {
+    try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(this.input.text))) {
+      count(throughput, next(parser, blackhole));
+    }
+  }
+
+  @Benchmark
+  public void byteModeNext(Blackhole blackhole, Throughput throughput) throws IOException {
+    try (ElfParser parser = byteParser()) {
+      count(throughput, next(parser, blackhole));
+    }
+  }
+
+  @Benchmark
+  public void byteModeNextRecord(Blackhole blackhole, Throughput throughput) throws IOException {
+    try (ElfParser parser = byteParser()) {
+      long lines = 0;
+      LogRecord record;
+      while (null != (record = parser.nextRecord())) {
+        for (int i = 0; i < record.fieldCount(); i++) {
+          blackhole.consume(record.isNull(i));
+        }
+        lines++;
+      }
+      count(throughput, lines);
+    }
+  }
+
+  @Benchmark
+  public void byteModeBatch(Blackhole blackhole, Throughput throughput) throws IOException {
+    try (ElfParser parser = byteParser()) {
+      final LogBatch batch = parser.newBatch(1024);
+      long lines = 0;
+      int rows;
+      while ((rows = parser.nextBatch(batch)) > 0) {
+        blackhole.consume(batch);
+        lines += rows;
+      }
+      count(throughput, lines);
+    }
+  }
+
+  @Benchmark
+  public void mapped(Blackhole blackhole, Throughput throughput) throws IOException {
+    try (ElfParser parser = ElfParserBuilder.of()
+        .charset(StandardCharsets.UTF_8)
+        .buildMapped(this.file)) {
+      count(throughput, next(parser, blackhole));
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tokenizes every line of a corpus. regex is the SPLITTER pattern that ElfParserImpl used before LineTokenizer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark {
+  static final Pattern SPLITTER = Pattern.compile("[^\\s\"']+|\"([^\"]*)\"|'([^']*)'");
+
+  @Param({"http", "ssl", "iis6"})
+  public String corpus;
+
+  String[] lines;
+  byte[] bytes;
+  int[] lineStarts;
+  int[] lineEnds;
+  LineTokenizer tokenizer;
+
+  @Setup
+  public void setup() throws IOException {
+    final Corpus corpus = Corpus.load(this.corpus, Corpus.DEFAULT_SIZE);
+    this.lines = corpus.lines.toArray(new String[0]);
+    this.bytes = corpus.bytes;
+    this.lineStarts = new int[this.lines.length];
+    this.lineEnds = new int[this.lines.length];
+    int start = corpus.header.length();
+    int line = 0;
+    for (int i = start; i < this.bytes.length && line < this.lines.length; i++) {
+      if (this.bytes[i] == '\n') {
+        this.lineStarts[line] = start;
+        this.lineEnds[line] = i;
+        line++;
+        start = i + 1;
+      }
+    }
+    this.tokenizer = new LineTokenizer();
+  }
+
+  @Benchmark
+  public void regex(Blackhole blackhole, Throughput throughput) {
+    for (String line : this.lines) {
+      final Matcher matcher = SPLITTER.matcher(line);
+      while (matcher.find()) {
+        final String group = matcher.group(1);
+        blackhole.consume(null != group ? group : matcher.group());
+      }
+      throughput.bytes += line.length() + 1;
+    }
+    throughput.lines += this.lines.length;
+  }
+
+  @Benchmark
+  public void tokenizeString(Blackhole blackhole, Throughput throughput) {
+    for (String line : this.lines) {
+      final int count = this.tokenizer.tokenize(line);
+      blackhole.consume(this.tokenizer.end(count - 1));
+      throughput.bytes += line.length() + 1;
+    }
+    throughput.lines += this.lines.length;
+  }
+
+  @Benchmark
+  public void tokenizeBytes(Blackhole blackhole, Throughput throughput) {
+    for (int i = 0; i < this.lineStarts.length; i++) {
+      final int count = this.tokenizer.tokenize(this.bytes, this.lineStarts[i], this.lineEnds[i]);
+      blackhole.consume(this.tokenizer.end(count - 1));
+      throughput.bytes += this.lineEnds[i] - this.lineStarts[i] + 1;
+    }
+    throughput.lines += this.lineStarts.length;
+  }
+}
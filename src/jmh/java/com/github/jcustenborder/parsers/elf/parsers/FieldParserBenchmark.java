@@ -0,0 +1,145 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf.parsers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Compares each of the {@link FieldParsers} with the JDK method it replaces. Scores are values/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FieldParserBenchmark {
+  static final int VALUES = 1024;
+
+  @Param({"DATE", "TIME", "LONG", "INT", "DOUBLE", "STRING"})
+  public String parser;
+
+  FieldParser fieldParser;
+  Function<String, Object> jdk;
+  String[] values;
+  byte[] buffer;
+  int[] offsets;
+  int[] lengths;
+
+  static String value(String parser, Random random) {
+    switch (parser) {
+      case "DATE":
+        return LocalDate.ofEpochDay(17000 + random.nextInt(1000)).toString();
+      case "TIME":
+        final String time = String.format(
+            "%02d:%02d:%02d",
+            random.nextInt(24),
+            random.nextInt(60),
+            random.nextInt(60)
+        );
+        return random.nextBoolean() ? time : time + String.format(".%03d", random.nextInt(1000));
+      case "LONG":
+        return Long.toString(random.nextInt(10_000_000));
+      case "INT":
+        return Integer.toString(100 + random.nextInt(500));
+      case "DOUBLE":
+        return String.format("%d.%03d", random.nextInt(100), random.nextInt(1000));
+      default:
+        return "host" + random.nextInt(100) + ".example.com";
+    }
+  }
+
+  static Function<String, Object> jdk(String parser) {
+    switch (parser) {
+      case "DATE":
+        return LocalDate::parse;
+      case "TIME":
+        return LocalTime::parse;
+      case "LONG":
+        return Long::parseLong;
+      case "INT":
+        return Integer::parseInt;
+      case "DOUBLE":
+        return Double::parseDouble;
+      default:
+        return String::new;
+    }
+  }
+
+  @Setup
+  public void setup() throws Exception {
+    this.fieldParser = (FieldParser) FieldParsers.class.getField(this.parser).get(null);
+    this.jdk = jdk(this.parser);
+    this.values = new String[VALUES];
+    this.offsets = new int[VALUES];
+    this.lengths = new int[VALUES];
+    Random random = new Random(1234);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    for (int i = 0; i < VALUES; i++) {
+      this.values[i] = value(this.parser, random);
+      final byte[] bytes = this.values[i].getBytes(StandardCharsets.UTF_8);
+      this.offsets[i] = outputStream.size();
+      this.lengths[i] = bytes.length;
+      outputStream.write(bytes);
+      outputStream.write(' ');
+    }
+    this.buffer = outputStream.toByteArray();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(VALUES)
+  public void jdk(Blackhole blackhole) {
+    for (String value : this.values) {
+      blackhole.consume(this.jdk.apply(value));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(VALUES)
+  public void parseString(Blackhole blackhole) {
+    for (String value : this.values) {
+      blackhole.consume(this.fieldParser.parse(value));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(VALUES)
+  public void parseBytes(Blackhole blackhole) {
+    for (int i = 0; i < VALUES; i++) {
+      blackhole.consume(this.fieldParser.parse(this.buffer, this.offsets[i], this.lengths[i], StandardCharsets.UTF_8));
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.immutables.value.Value;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Result of an {@link Aggregator} for one group in one window.
+ */
+@Value.Immutable
+public interface AggregateRow {
+  /**
+   * Start of the window. Empty if the aggregation is not windowed or the lines of the group had no date or time.
+   * @return Start of the window.
+   */
+  Optional<LocalDateTime> window();
+
+  /**
+   * Values of the group by fields. A value is null if the field was null or missing.
+   * @return Values of the group by fields.
+   */
+  @AllowNulls
+  Map<String, Object> groups();
+
+  /**
+   * The number of lines in the group.
+   * @return The number of lines in the group.
+   */
+  long count();
+
+  /**
+   * Sum of each summed field. Null values are skipped.
+   * @return Sum of each summed field.
+   */
+  Map<String, Double> sums();
+
+  /**
+   * Estimated number of distinct values of each distinct field. Null values are not counted.
+   * @return Estimated number of distinct values.
+   */
+  Map<String, Long> distinctCounts();
+
+  /**
+   * Estimated quantiles of each quantile field, keyed by the quantile. Values are NaN if the field was always null.
+   * @return Estimated quantiles of each quantile field.
+   */
+  Map<String, Map<Double, Double>> quantiles();
+}
@@ -0,0 +1,501 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collector;
+
+/**
+ * Incremental aggregation of parsed lines built by {@link AggregatorBuilder}. Each line is assigned to a group by
+ * the values of the group by fields and optionally to a tumbling window of its date and time. Group keys are
+ * encoded as longs, with strings replaced by ids from a dictionary, so adding a line does not box or copy its
+ * values once its group exists.
+ *
+ * An aggregator is not thread safe. To aggregate in parallel create a partial aggregator for each thread with
+ * {@link #newPartial()} and combine them with {@link #merge(Aggregator)}, or use {@link #collector()} with a
+ * parallel stream.
+ */
+public final class Aggregator {
+  /**
+   * Key layout: window, kinds of the group values, group values.
+   */
+  private static final int WINDOW = 0;
+  private static final int KINDS = 1;
+  private static final int VALUES = 2;
+  private static final FieldKind[] KIND_VALUES = FieldKind.values();
+  private final String[] groupBy;
+  private final long windowNanos;
+  private final String[] sumFields;
+  private final String[] distinctFields;
+  private final int distinctPrecision;
+  private final String[] quantileFields;
+  private final double[][] quantiles;
+
+  private final GroupTable groups;
+  private final StringDictionary strings = new StringDictionary();
+  private final Map<Object, Integer> objectIds = new HashMap<>();
+  private final List<Object> objects = new ArrayList<>();
+  private final Timestamps timestamps = new Timestamps();
+  private LogEntryRecord entryRecord;
+  private final long[] key;
+  private long[] counts = new long[16];
+  private final double[][] sums;
+  private final HyperLogLog[][] distinct;
+  private final QuantileSketch[][] sketches;
+
+  private Map<String, Class<?>> fieldTypes;
+  private final int[] groupIndexes;
+  private final FieldKind[] groupKinds;
+  private final int[] sumIndexes;
+  private final int[] distinctIndexes;
+  private final FieldKind[] distinctKinds;
+  private final int[] quantileIndexes;
+
+  Aggregator(AggregatorBuilder builder) {
+    this(
+        builder.groupBy.toArray(new String[0]),
+        builder.windowNanos,
+        builder.sums.toArray(new String[0]),
+        builder.distinct.toArray(new String[0]),
+        builder.distinctPrecision,
+        builder.quantileFields.toArray(new String[0]),
+        builder.quantiles.toArray(new double[0][])
+    );
+  }
+
+  private Aggregator(
+      String[] groupBy,
+      long windowNanos,
+      String[] sumFields,
+      String[] distinctFields,
+      int distinctPrecision,
+      String[] quantileFields,
+      double[][] quantiles) {
+    this.groupBy = groupBy;
+    this.windowNanos = windowNanos;
+    this.sumFields = sumFields;
+    this.distinctFields = distinctFields;
+    this.distinctPrecision = distinctPrecision;
+    this.quantileFields = quantileFields;
+    this.quantiles = quantiles;
+    this.key = new long[VALUES + groupBy.length];
+    this.groups = new GroupTable(this.key.length);
+    this.sums = new double[sumFields.length][this.counts.length];
+    this.distinct = new HyperLogLog[distinctFields.length][this.counts.length];
+    this.sketches = new QuantileSketch[quantileFields.length][this.counts.length];
+    this.groupIndexes = new int[groupBy.length];
+    this.groupKinds = new FieldKind[groupBy.length];
+    this.sumIndexes = new int[sumFields.length];
+    this.distinctIndexes = new int[distinctFields.length];
+    this.distinctKinds = new FieldKind[distinctFields.length];
+    this.quantileIndexes = new int[quantileFields.length];
+  }
+
+  /**
+   * Method is used to create an empty aggregator with the same definition. Partial aggregators can be filled on
+   * other threads and merged with {@link #merge(Aggregator)}.
+   * @return empty aggregator.
+   */
+  public Aggregator newPartial() {
+    return new Aggregator(
+        this.groupBy,
+        this.windowNanos,
+        this.sumFields,
+        this.distinctFields,
+        this.distinctPrecision,
+        this.quantileFields,
+        this.quantiles
+    );
+  }
+
+  /**
+   * Method is used to create a collector for a stream of entries, such as {@link ElfParser#stream()}. Each thread
+   * fills a partial aggregator and the partials are merged. This aggregator is not modified.
+   * @return collector that returns the merged aggregator.
+   */
+  public Collector<LogEntry, Aggregator, Aggregator> collector() {
+    return Collector.of(
+        this::newPartial,
+        Aggregator::add,
+        (left, right) -> {
+          left.merge(right);
+          return left;
+        }
+    );
+  }
+
+  /**
+   * The number of groups, counting each window of a group separately.
+   * @return The number of groups.
+   */
+  public int groupCount() {
+    return this.groups.size();
+  }
+
+  /**
+   * Method is used to add every remaining line of a parser. Windows of lines without a date field use the date of
+   * the #Date or #Start-Date directive when the parser reads the file serially, such as a parser created by
+   * {@link ElfParserBuilder#build(java.io.Reader)}.
+   * @param parser parser to read.
+   * @return number of lines added.
+   * @throws IOException Exception thrown when data cannot be parsed or there is an underlying system error.
+   */
+  public long aggregate(ElfParser parser) throws IOException {
+    final ElfParserImpl directives = parser instanceof ElfParserImpl ? (ElfParserImpl) parser : null;
+    long result = 0;
+    LogRecord record;
+    while (null != (record = parser.nextRecord())) {
+      add(record, null == directives ? ElfParserImpl.NO_DATE : directives.directiveEpochDay());
+      result++;
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to add an entry.
+   * @param entry entry to add.
+   */
+  public void add(LogEntry entry) {
+    this.entryRecord = new LogEntryRecord(entry, this.entryRecord);
+    add(this.entryRecord);
+  }
+
+  private static boolean numeric(FieldKind kind) {
+    return FieldKind.LONG == kind || FieldKind.INT == kind || FieldKind.DOUBLE == kind;
+  }
+
+  private static int bind(LogRecord record, String fieldName, FieldKind[] kinds, int index) {
+    final int result = record.fieldIndex(fieldName);
+    if (null != kinds) {
+      kinds[index] = result < 0 ? null : FieldKind.of(record.fieldTypes().get(fieldName));
+    }
+    return result;
+  }
+
+  private int bindNumeric(LogRecord record, String fieldName) {
+    final int result = record.fieldIndex(fieldName);
+    if (result >= 0) {
+      final Class<?> fieldType = record.fieldTypes().get(fieldName);
+      if (!numeric(FieldKind.of(fieldType))) {
+        throw new IllegalStateException(
+            String.format("Field '%s' is %s and cannot be aggregated as a number.", fieldName, fieldType)
+        );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to look up the fields of a record. The lookup is repeated when the fields of the records
+   * change.
+   * @param record record to bind to.
+   */
+  private void bind(LogRecord record) {
+    this.fieldTypes = record.fieldTypes();
+    for (int i = 0; i < this.groupBy.length; i++) {
+      this.groupIndexes[i] = bind(record, this.groupBy[i], this.groupKinds, i);
+    }
+    for (int i = 0; i < this.sumFields.length; i++) {
+      this.sumIndexes[i] = bindNumeric(record, this.sumFields[i]);
+    }
+    for (int i = 0; i < this.distinctFields.length; i++) {
+      this.distinctIndexes[i] = bind(record, this.distinctFields[i], this.distinctKinds, i);
+    }
+    for (int i = 0; i < this.quantileFields.length; i++) {
+      this.quantileIndexes[i] = bindNumeric(record, this.quantileFields[i]);
+    }
+  }
+
+  private long objectId(Object value) {
+    final Integer existing = this.objectIds.get(value);
+    if (null != existing) {
+      return existing;
+    }
+    final int id = this.objects.size();
+    this.objects.add(value);
+    this.objectIds.put(value, id);
+    return id;
+  }
+
+  /**
+   * Method is used to add a record.
+   * @param record record to add.
+   * @throws IllegalStateException if a summed or quantile field is not numeric.
+   */
+  public void add(LogRecord record) {
+    add(record, ElfParserImpl.NO_DATE);
+  }
+
+  /**
+   * Method is used to add a record read by a parser.
+   * @param record record to add.
+   * @param directiveEpochDay date of the #Date or #Start-Date directive of the record as days since 1970-01-01.
+   *                          {@link ElfParserImpl#NO_DATE} if there is none.
+   */
+  void add(LogRecord record, long directiveEpochDay) {
+    if (this.fieldTypes != record.fieldTypes()) {
+      bind(record);
+    }
+    if (this.windowNanos > 0) {
+      final long timestamp = this.timestamps.of(record, directiveEpochDay);
+      this.key[WINDOW] = Timestamps.NO_TIMESTAMP == timestamp ?
+          Timestamps.NO_TIMESTAMP : Math.floorDiv(timestamp, this.windowNanos) * this.windowNanos;
+    }
+    long kinds = 0;
+    for (int i = 0; i < this.groupIndexes.length; i++) {
+      final int index = this.groupIndexes[i];
+      if (index < 0 || record.isNull(index)) {
+        this.key[VALUES + i] = 0;
+        continue;
+      }
+      final FieldKind kind = this.groupKinds[i];
+      kinds |= (long) (kind.ordinal() + 1) << (i * 8);
+      final long value;
+      switch (kind) {
+        case STRING:
+          value = this.strings.add(record.getCharSequence(index));
+          break;
+        case LONG:
+        case INT:
+        case DATE:
+        case TIME:
+          value = record.getLong(index);
+          break;
+        case DOUBLE:
+          value = Double.doubleToLongBits(record.getDouble(index));
+          break;
+        default:
+          value = objectId(record.getObject(index));
+          break;
+      }
+      this.key[VALUES + i] = value;
+    }
+    this.key[KINDS] = kinds;
+    final int group = group(this.key);
+    this.counts[group]++;
+    for (int i = 0; i < this.sumIndexes.length; i++) {
+      final int index = this.sumIndexes[i];
+      if (index >= 0 && !record.isNull(index)) {
+        this.sums[i][group] += record.getDouble(index);
+      }
+    }
+    for (int i = 0; i < this.distinctIndexes.length; i++) {
+      final int index = this.distinctIndexes[i];
+      if (index >= 0 && !record.isNull(index)) {
+        distinct(i, group).add(hash(record, index, this.distinctKinds[i]));
+      }
+    }
+    for (int i = 0; i < this.quantileIndexes.length; i++) {
+      final int index = this.quantileIndexes[i];
+      if (index >= 0 && !record.isNull(index)) {
+        sketch(i, group).add(record.getDouble(index));
+      }
+    }
+  }
+
+  private static long hash(LogRecord record, int index, FieldKind kind) {
+    switch (kind) {
+      case STRING:
+        return HyperLogLog.hash(record.getCharSequence(index));
+      case LONG:
+      case INT:
+      case DATE:
+      case TIME:
+        return HyperLogLog.hash(record.getLong(index));
+      case DOUBLE:
+        return HyperLogLog.hash(Double.doubleToLongBits(record.getDouble(index)));
+      default:
+        return HyperLogLog.hash(record.getObject(index).toString());
+    }
+  }
+
+  private int group(long[] key) {
+    final int result = this.groups.add(key);
+    if (result == this.counts.length) {
+      final int capacity = this.counts.length * 2;
+      this.counts = Arrays.copyOf(this.counts, capacity);
+      for (int i = 0; i < this.sums.length; i++) {
+        this.sums[i] = Arrays.copyOf(this.sums[i], capacity);
+      }
+      for (int i = 0; i < this.distinct.length; i++) {
+        this.distinct[i] = Arrays.copyOf(this.distinct[i], capacity);
+      }
+      for (int i = 0; i < this.sketches.length; i++) {
+        this.sketches[i] = Arrays.copyOf(this.sketches[i], capacity);
+      }
+    }
+    return result;
+  }
+
+  private HyperLogLog distinct(int field, int group) {
+    HyperLogLog result = this.distinct[field][group];
+    if (null == result) {
+      result = new HyperLogLog(this.distinctPrecision);
+      this.distinct[field][group] = result;
+    }
+    return result;
+  }
+
+  private QuantileSketch sketch(int field, int group) {
+    QuantileSketch result = this.sketches[field][group];
+    if (null == result) {
+      result = new QuantileSketch();
+      this.sketches[field][group] = result;
+    }
+    return result;
+  }
+
+  private boolean sameDefinition(Aggregator other) {
+    return Arrays.equals(this.groupBy, other.groupBy) &&
+        this.windowNanos == other.windowNanos &&
+        Arrays.equals(this.sumFields, other.sumFields) &&
+        Arrays.equals(this.distinctFields, other.distinctFields) &&
+        this.distinctPrecision == other.distinctPrecision &&
+        Arrays.equals(this.quantileFields, other.quantileFields) &&
+        Arrays.deepEquals(this.quantiles, other.quantiles);
+  }
+
+  /**
+   * Method is used to add the groups of another aggregator. Counts and sums are added and sketches are merged, so
+   * the result is the same as if this aggregator had seen the lines of both. The other aggregator is not modified.
+   * @param other aggregator with the same definition, usually from {@link #newPartial()}.
+   * @throws IllegalArgumentException if the other aggregator has a different definition.
+   */
+  public void merge(Aggregator other) {
+    if (this == other) {
+      throw new IllegalArgumentException("An aggregator cannot be merged into itself.");
+    }
+    if (!sameDefinition(other)) {
+      throw new IllegalArgumentException("Only aggregators with the same definition can be merged.");
+    }
+    final long[] key = new long[this.key.length];
+    for (int id = 0; id < other.groups.size(); id++) {
+      for (int i = 0; i < key.length; i++) {
+        key[i] = other.groups.get(id, i);
+      }
+      for (int i = 0; i < this.groupBy.length; i++) {
+        final FieldKind kind = kind(key[KINDS], i);
+        if (FieldKind.STRING == kind) {
+          key[VALUES + i] = this.strings.add(other.strings.get((int) key[VALUES + i]));
+        } else if (FieldKind.INSTANT == kind || FieldKind.OBJECT == kind) {
+          key[VALUES + i] = objectId(other.objects.get((int) key[VALUES + i]));
+        }
+      }
+      final int group = group(key);
+      this.counts[group] += other.counts[id];
+      for (int i = 0; i < this.sums.length; i++) {
+        this.sums[i][group] += other.sums[i][id];
+      }
+      for (int i = 0; i < this.distinct.length; i++) {
+        if (null != other.distinct[i][id]) {
+          distinct(i, group).merge(other.distinct[i][id]);
+        }
+      }
+      for (int i = 0; i < this.sketches.length; i++) {
+        if (null != other.sketches[i][id]) {
+          sketch(i, group).merge(other.sketches[i][id]);
+        }
+      }
+    }
+  }
+
+  private static FieldKind kind(long kinds, int index) {
+    final int ordinal = (int) ((kinds >>> (index * 8)) & 0xFF);
+    return ordinal == 0 ? null : KIND_VALUES[ordinal - 1];
+  }
+
+  private Object groupValue(int group, int index) {
+    final FieldKind kind = kind(this.groups.get(group, KINDS), index);
+    if (null == kind) {
+      return null;
+    }
+    final long value = this.groups.get(group, VALUES + index);
+    switch (kind) {
+      case STRING:
+        return this.strings.get((int) value);
+      case LONG:
+        return value;
+      case INT:
+        return (int) value;
+      case DATE:
+        return LocalDate.ofEpochDay(value);
+      case TIME:
+        return LocalTime.ofNanoOfDay(value);
+      case DOUBLE:
+        return Double.longBitsToDouble(value);
+      default:
+        return this.objects.get((int) value);
+    }
+  }
+
+  /**
+   * Method is used to return the result of each group. Groups are ordered by window, with lines that have no
+   * date or time first, and then by the order they were first seen.
+   * @return result of each group.
+   */
+  public List<AggregateRow> results() {
+    final Integer[] order = new Integer[this.groups.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(this.groups.get(a, WINDOW), this.groups.get(b, WINDOW)));
+    final List<AggregateRow> result = new ArrayList<>(order.length);
+    for (int group : order) {
+      final ImmutableAggregateRow.Builder builder = ImmutableAggregateRow.builder()
+          .count(this.counts[group]);
+      final long window = this.groups.get(group, WINDOW);
+      if (this.windowNanos > 0 && Timestamps.NO_TIMESTAMP != window) {
+        builder.window(
+            LocalDateTime.ofEpochSecond(
+                Math.floorDiv(window, TimestampColumn.NANOS_PER_SECOND),
+                (int) Math.floorMod(window, TimestampColumn.NANOS_PER_SECOND),
+                ZoneOffset.UTC
+            )
+        );
+      }
+      for (int i = 0; i < this.groupBy.length; i++) {
+        builder.putGroups(this.groupBy[i], groupValue(group, i));
+      }
+      for (int i = 0; i < this.sumFields.length; i++) {
+        builder.putSums(this.sumFields[i], this.sums[i][group]);
+      }
+      for (int i = 0; i < this.distinctFields.length; i++) {
+        final HyperLogLog sketch = this.distinct[i][group];
+        builder.putDistinctCounts(this.distinctFields[i], null == sketch ? 0L : sketch.estimate());
+      }
+      for (int i = 0; i < this.quantileFields.length; i++) {
+        final QuantileSketch sketch = this.sketches[i][group];
+        final Map<Double, Double> values = new LinkedHashMap<>();
+        for (double quantile : this.quantiles[i]) {
+          values.put(quantile, null == sketch ? Double.NaN : sketch.quantile(quantile));
+        }
+        builder.putQuantiles(this.quantileFields[i], values);
+      }
+      result.add(builder.build());
+    }
+    return result;
+  }
+}
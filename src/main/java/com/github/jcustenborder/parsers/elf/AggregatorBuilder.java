@@ -0,0 +1,139 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builder for an {@link Aggregator}. Every aggregation counts the lines of each group. Sums, distinct counts and
+ * quantiles are added per field.
+ */
+public final class AggregatorBuilder {
+  static final int MAX_GROUP_FIELDS = 8;
+  final List<String> groupBy = new ArrayList<>();
+  long windowNanos;
+  final List<String> sums = new ArrayList<>();
+  final List<String> distinct = new ArrayList<>();
+  int distinctPrecision = HyperLogLog.DEFAULT_PRECISION;
+  final List<String> quantileFields = new ArrayList<>();
+  final List<double[]> quantiles = new ArrayList<>();
+
+  private AggregatorBuilder() {
+
+  }
+
+  public static AggregatorBuilder of() {
+    return new AggregatorBuilder();
+  }
+
+  /**
+   * Method is used to group the lines by the values of fields. Lines are aggregated as one group by default.
+   * @param fieldNames fields to group by, such as cs-host or s-action.
+   * @return builder
+   */
+  public AggregatorBuilder groupBy(String... fieldNames) {
+    if (this.groupBy.size() + fieldNames.length > MAX_GROUP_FIELDS) {
+      throw new IllegalArgumentException(
+          String.format("At most %s fields can be grouped by.", MAX_GROUP_FIELDS)
+      );
+    }
+    Collections.addAll(this.groupBy, fieldNames);
+    return this;
+  }
+
+  /**
+   * Method is used to aggregate the lines in tumbling windows of the date and time fields. Windows start at
+   * multiples of the duration from 1970-01-01T00:00, so a window of one minute starts at each minute. The date and
+   * time are used as they are written in the file.
+   * @param window length of each window.
+   * @return builder
+   */
+  public AggregatorBuilder window(Duration window) {
+    if (window.isNegative() || window.isZero()) {
+      throw new IllegalArgumentException("window must be greater than 0.");
+    }
+    this.windowNanos = window.toNanos();
+    return this;
+  }
+
+  /**
+   * Method is used to sum a numeric field, such as sc-bytes.
+   * @param fieldName field to sum.
+   * @return builder
+   */
+  public AggregatorBuilder sum(String fieldName) {
+    this.sums.add(fieldName);
+    return this;
+  }
+
+  /**
+   * Method is used to estimate the number of distinct values of a field, such as c-ip. The estimate uses a
+   * HyperLogLog sketch with a standard error of about 1.04 / sqrt(2 ^ precision).
+   * @param fieldName field to count.
+   * @return builder
+   */
+  public AggregatorBuilder distinct(String fieldName) {
+    this.distinct.add(fieldName);
+    return this;
+  }
+
+  /**
+   * Method is used to set the precision of distinct counts. Each sketch uses up to 2 ^ precision bytes. Defaults
+   * to 12, which has a standard error of about 1.6%.
+   * @param precision precision from 4 to 18.
+   * @return builder
+   */
+  public AggregatorBuilder distinctPrecision(int precision) {
+    if (precision < 4 || precision > 18) {
+      throw new IllegalArgumentException("precision must be between 4 and 18.");
+    }
+    this.distinctPrecision = precision;
+    return this;
+  }
+
+  /**
+   * Method is used to estimate quantiles of a numeric field, such as time-taken. Estimates are within 1% of a
+   * value of the field.
+   * @param fieldName field to estimate.
+   * @param quantiles quantiles between 0 and 1, such as 0.5 and 0.99.
+   * @return builder
+   */
+  public AggregatorBuilder quantiles(String fieldName, double... quantiles) {
+    if (quantiles.length == 0) {
+      throw new IllegalArgumentException("At least one quantile must be specified.");
+    }
+    for (double quantile : quantiles) {
+      if (!(quantile >= 0D && quantile <= 1D)) {
+        throw new IllegalArgumentException("quantiles must be between 0 and 1.");
+      }
+    }
+    this.quantileFields.add(fieldName);
+    this.quantiles.add(Arrays.copyOf(quantiles, quantiles.length));
+    return this;
+  }
+
+  /**
+   * Method is used to build the aggregator.
+   * @return aggregator
+   */
+  public Aggregator build() {
+    return new Aggregator(this);
+  }
+}
@@ -0,0 +1,680 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Parser over an archive written by {@link ElfArchiveWriter}. Blocks are read one at a time and only the segments
+ * of the columns that are projected or filtered are decompressed.
+ */
+class ArchiveElfParser implements ElfParser {
+  private static final Logger log = LoggerFactory.getLogger(ArchiveElfParser.class);
+  private final FileChannel channel;
+  private final File file;
+  private final ArchiveFormat.Footer footer;
+  private final FieldKind[] kinds;
+  private final boolean[] decode;
+  private final FieldFilter[] filters;
+  private final Record record;
+  private final Record columns;
+  private final Inflater inflater = new Inflater(true);
+  private final ArchiveFormat.Decoder decoder = new ArchiveFormat.Decoder();
+  private final long[][] longs;
+  private final double[][] doubles;
+  private final int[][] ids;
+  private final String[][] dictionaries;
+  private final long[][] nulls;
+  private final boolean[] hasNulls;
+  private ByteBuffer compressed = ByteBuffer.allocate(1024);
+  private int capacity;
+  /**
+   * Id in the dictionary of the current batch of each value in the dictionary of the current block.
+   */
+  private int[][] batchIds;
+  private int blockIndex;
+  private ArchiveFormat.Block block;
+  private int row;
+
+  private ArchiveElfParser(
+      FileChannel channel,
+      File file,
+      ArchiveFormat.Footer footer,
+      int[] projection,
+      FieldFilter[] filters) {
+    this.channel = channel;
+    this.file = file;
+    this.footer = footer;
+    this.kinds = footer.kinds;
+    this.filters = filters;
+    final int segments = footer.kinds.length + ArchiveFormat.HIDDEN_SEGMENTS;
+    this.decode = new boolean[segments];
+    for (int column : projection) {
+      this.decode[column] = true;
+    }
+    for (FieldFilter filter : filters) {
+      this.decode[filter.fieldIndex] = true;
+    }
+    this.decode[footer.kinds.length] = true;
+    this.decode[footer.kinds.length + 1] = true;
+    this.longs = new long[segments][];
+    this.doubles = new double[segments][];
+    this.ids = new int[segments][];
+    this.dictionaries = new String[segments][];
+    this.nulls = new long[segments][];
+    this.hasNulls = new boolean[segments];
+    this.record = new Record(projection);
+    final int[] all = new int[footer.kinds.length];
+    for (int i = 0; i < all.length; i++) {
+      all[i] = i;
+    }
+    this.columns = new Record(all);
+  }
+
+  /**
+   * Method is used to open an archive.
+   * @param file archive to read.
+   * @param projectedFields names of the columns to return. Null to return every column unless projectedIndexes is
+   *                        set.
+   * @param projectedIndexes indexes of the columns to return.
+   * @param filters filters to check against each row.
+   * @return parser for the archive.
+   * @throws IOException Exception thrown if the file is not an archive or there is an underlying system error.
+   */
+  static ArchiveElfParser open(
+      File file,
+      List<String> projectedFields,
+      int[] projectedIndexes,
+      List<FieldFilter> filters) throws IOException {
+    final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      final ArchiveFormat.Footer footer = footer(channel, file);
+      final List<String> fieldNames = Arrays.asList(footer.fieldNames);
+      final int[] projection;
+      if (null != projectedFields) {
+        List<String> missing = new ArrayList<>();
+        projection = projectedFields.stream()
+            .mapToInt(fieldNames::indexOf)
+            .filter(i -> i >= 0)
+            .sorted()
+            .distinct()
+            .toArray();
+        for (String fieldName : projectedFields) {
+          if (!fieldNames.contains(fieldName)) {
+            missing.add(fieldName);
+          }
+        }
+        if (!missing.isEmpty()) {
+          throw new IllegalStateException(
+              String.format("Projected field(s) %s are not defined in the archive. Fields: %s", missing, fieldNames)
+          );
+        }
+      } else if (null != projectedIndexes) {
+        for (int index : projectedIndexes) {
+          if (index < 0 || index >= fieldNames.size()) {
+            throw new IllegalStateException(
+                String.format(
+                    "Projected field index %s is out of range. The archive defines %s field(s).",
+                    index,
+                    fieldNames.size()
+                )
+            );
+          }
+        }
+        projection = Arrays.stream(projectedIndexes).sorted().distinct().toArray();
+      } else {
+        projection = new int[fieldNames.size()];
+        for (int i = 0; i < projection.length; i++) {
+          projection[i] = i;
+        }
+      }
+      final FieldFilter[] bound = new FieldFilter[filters.size()];
+      for (int i = 0; i < bound.length; i++) {
+        bound[i] = filters.get(i).bind(footer.fieldNames, footer.kinds);
+      }
+      log.trace("open() - Reading {} block(s) of {} projecting {}.", footer.blocks.size(), file, projection);
+      return new ArchiveElfParser(channel, file, footer, projection, bound);
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  private static ArchiveFormat.Footer footer(FileChannel channel, File file) throws IOException {
+    final long size = channel.size();
+    if (size < 5 + ArchiveFormat.TRAILER_SIZE) {
+      throw new IOException(String.format("%s is not an archive. It is too short.", file));
+    }
+    final ByteBuffer header = ByteBuffer.allocate(5);
+    read(channel, header, 0);
+    final ByteBuffer trailer = ByteBuffer.allocate(ArchiveFormat.TRAILER_SIZE);
+    read(channel, trailer, size - ArchiveFormat.TRAILER_SIZE);
+    if (ArchiveFormat.MAGIC != header.getInt(0) || ArchiveFormat.MAGIC != trailer.getInt(8)) {
+      throw new IOException(String.format("%s is not an archive.", file));
+    }
+    if (ArchiveFormat.VERSION != header.get(4)) {
+      throw new IOException(
+          String.format("%s is version %s. Only version %s is supported.", file, header.get(4), ArchiveFormat.VERSION)
+      );
+    }
+    final long length = trailer.getLong(0);
+    if (length < 0 || length > size - ArchiveFormat.TRAILER_SIZE - 5) {
+      throw new IOException(String.format("%s has an invalid footer length %s.", file, length));
+    }
+    final ByteBuffer footer = ByteBuffer.allocate((int) length);
+    read(channel, footer, size - ArchiveFormat.TRAILER_SIZE - length);
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(footer.array()))) {
+      return ArchiveFormat.Footer.read(input);
+    }
+  }
+
+  private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException(String.format("Unexpected end of file at offset %s.", position + buffer.position()));
+      }
+    }
+  }
+
+  @Override
+  public Map<String, Class<?>> fieldTypes() {
+    return this.record.fieldTypes;
+  }
+
+  @Override
+  public Map<String, String> directives() {
+    return Collections.unmodifiableMap(this.footer.directives);
+  }
+
+  @Override
+  public LogEntry next() throws IOException {
+    final LogRecord record = nextRecord();
+    return null == record ? null : record.toLogEntry();
+  }
+
+  @Override
+  public LogRecord nextRecord() throws IOException {
+    while (true) {
+      if (null == this.block || this.row >= this.block.rows) {
+        if (!nextBlock()) {
+          return null;
+        }
+      }
+      final int row = this.row++;
+      this.record.row = row;
+      this.columns.row = row;
+      if (accept()) {
+        return this.record;
+      }
+    }
+  }
+
+  /**
+   * Method is used to copy rows straight from the columns of the current block into the batch without going through
+   * {@link LogRecord}. The id of each string is looked up in the batch dictionary once per block and batch.
+   */
+  @Override
+  public int nextBatch(LogBatch batch) throws IOException {
+    batch.clear();
+    final Record record = this.record;
+    if (!batch.matches(record.fieldTypes)) {
+      batch.reset(record.fieldTypes);
+    }
+    final int[] columns = record.columns;
+    final FieldKind[] kinds = this.kinds;
+    final long[] offsets = batch.offsets();
+    final int hidden = kinds.length + 1;
+    if (null == this.batchIds) {
+      this.batchIds = new int[columns.length][];
+    }
+    final int[][] batchIds = this.batchIds;
+    boolean clearIds = true;
+    while (!batch.isFull()) {
+      if (null == this.block || this.row >= this.block.rows) {
+        if (!nextBlock()) {
+          break;
+        }
+        clearIds = true;
+      }
+      if (clearIds) {
+        clearIds(columns);
+        clearIds = false;
+      }
+      final int row = this.row++;
+      this.columns.row = row;
+      if (!accept()) {
+        continue;
+      }
+      final int target = batch.addRow();
+      offsets[target] = this.longs[hidden][row];
+      final int word = target >>> 6;
+      final long bit = 1L << target;
+      for (int i = 0; i < columns.length; i++) {
+        final int column = columns[i];
+        if (this.hasNulls[column] && (this.nulls[column][row >>> 6] & (1L << row)) != 0) {
+          batch.nulls(i)[word] |= bit;
+          continue;
+        }
+        switch (kinds[column]) {
+          case DOUBLE:
+            batch.doubles(i)[target] = this.doubles[column][row];
+            break;
+          case STRING:
+            final int id = this.ids[column][row];
+            int batchId = batchIds[i][id];
+            if (batchId < 0) {
+              batchId = batch.dictionary(i).add(this.dictionaries[column][id]);
+              batchIds[i][id] = batchId;
+            }
+            batch.ids(i)[target] = batchId;
+            break;
+          case INSTANT:
+            record.row = row;
+            batch.objects(i)[target] = record.getObject(i);
+            break;
+          default:
+            batch.longs(i)[target] = this.longs[column][row];
+            break;
+        }
+      }
+    }
+    record.row = this.row - 1;
+    return batch.size();
+  }
+
+  private void clearIds(int[] columns) {
+    for (int i = 0; i < columns.length; i++) {
+      final int column = columns[i];
+      if (FieldKind.STRING != this.kinds[column]) {
+        continue;
+      }
+      final int size = this.dictionaries[column].length;
+      if (null == this.batchIds[i] || this.batchIds[i].length < size) {
+        this.batchIds[i] = new int[Math.max(size, 16)];
+      }
+      Arrays.fill(this.batchIds[i], 0, size, -1);
+    }
+  }
+
+  private boolean accept() {
+    for (FieldFilter filter : this.filters) {
+      if (!filter.test(this.columns, filter.fieldIndex)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Method is used to check the statistics of a block against the filters.
+   * @return false if no row of the block can be accepted by the filters.
+   */
+  private boolean matches(ArchiveFormat.Block block) {
+    for (FieldFilter filter : this.filters) {
+      final int column = filter.fieldIndex;
+      switch (filter.type) {
+        case LONG:
+          if (!block.overlaps(column, filter.min, filter.max)) {
+            return false;
+          }
+          break;
+        case DOUBLE:
+          if (block.nullCounts[column] == block.rows) {
+            return false;
+          }
+          break;
+        default:
+          break;
+      }
+    }
+    return true;
+  }
+
+  private boolean nextBlock() throws IOException {
+    final List<ArchiveFormat.Block> blocks = this.footer.blocks;
+    while (this.blockIndex < blocks.size()) {
+      final ArchiveFormat.Block block = blocks.get(this.blockIndex++);
+      if (!matches(block)) {
+        log.trace("nextBlock() - Skipping block at offset {}. Rejected by the statistics.", block.offset);
+        continue;
+      }
+      read(block);
+      this.block = block;
+      this.row = 0;
+      return true;
+    }
+    this.block = null;
+    return false;
+  }
+
+  private void read(ArchiveFormat.Block block) throws IOException {
+    final int rows = block.rows;
+    if (rows > this.capacity) {
+      this.capacity = rows;
+      for (int segment = 0; segment < this.decode.length; segment++) {
+        if (!this.decode[segment]) {
+          continue;
+        }
+        final FieldKind kind = segment < this.kinds.length ? this.kinds[segment] : FieldKind.LONG;
+        switch (kind) {
+          case DOUBLE:
+            this.doubles[segment] = new double[rows];
+            break;
+          case STRING:
+            this.ids[segment] = new int[rows];
+            break;
+          default:
+            this.longs[segment] = new long[rows];
+            break;
+        }
+        this.nulls[segment] = new long[(rows + 63) >>> 6];
+      }
+    }
+    long position = block.offset;
+    for (int segment = 0; segment < this.decode.length; segment++) {
+      final int length = block.lengths[segment];
+      if (this.decode[segment]) {
+        inflate(block, segment, position, length);
+        decode(block, segment);
+      }
+      position += length;
+    }
+  }
+
+  private void inflate(ArchiveFormat.Block block, int segment, long position, int length) throws IOException {
+    if (this.compressed.capacity() < length) {
+      this.compressed = ByteBuffer.allocate(Math.max(length, this.compressed.capacity() * 2));
+    }
+    // Called through Buffer so the Java 8 methods are linked when compiled on a newer JDK.
+    ((Buffer) this.compressed).clear();
+    ((Buffer) this.compressed).limit(length);
+    read(this.channel, this.compressed, position);
+    final int rawLength = block.rawLengths[segment];
+    this.decoder.reset(rawLength);
+    final Inflater inflater = this.inflater;
+    inflater.reset();
+    inflater.setInput(this.compressed.array(), 0, length);
+    try {
+      int inflated = 0;
+      while (inflated < rawLength) {
+        final int count = inflater.inflate(this.decoder.bytes, inflated, rawLength - inflated);
+        if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+          break;
+        }
+        inflated += count;
+      }
+      if (inflated != rawLength) {
+        throw new DataFormatException(String.format("Expected %s byte(s) but found %s.", rawLength, inflated));
+      }
+    } catch (DataFormatException ex) {
+      throw new IOException(
+          String.format("Segment %s of the block at offset %s of %s is corrupt.", segment, block.offset, this.file),
+          ex
+      );
+    }
+  }
+
+  private void decode(ArchiveFormat.Block block, int segment) {
+    final ArchiveFormat.Decoder decoder = this.decoder;
+    final int rows = block.rows;
+    final long[] nulls = this.nulls[segment];
+    final boolean hasNulls = block.nullCounts[segment] > 0;
+    this.hasNulls[segment] = hasNulls;
+    if (hasNulls) {
+      for (int i = 0; i < (rows + 63) >>> 6; i++) {
+        nulls[i] = decoder.readLong();
+      }
+    }
+    final FieldKind kind = segment < this.kinds.length ? this.kinds[segment] : FieldKind.LONG;
+    switch (kind) {
+      case DOUBLE:
+        final double[] doubles = this.doubles[segment];
+        for (int row = 0; row < rows; row++) {
+          if (!hasNulls || (nulls[row >>> 6] & (1L << row)) == 0) {
+            doubles[row] = Double.longBitsToDouble(decoder.readLong());
+          }
+        }
+        break;
+      case STRING:
+        final String[] dictionary = new String[(int) decoder.readVarLong()];
+        for (int id = 0; id < dictionary.length; id++) {
+          final int length = (int) decoder.readVarLong();
+          dictionary[id] = new String(decoder.bytes, decoder.position, length, StandardCharsets.UTF_8);
+          decoder.position += length;
+        }
+        this.dictionaries[segment] = dictionary;
+        final int[] ids = this.ids[segment];
+        for (int row = 0; row < rows; row++) {
+          if (!hasNulls || (nulls[row >>> 6] & (1L << row)) == 0) {
+            ids[row] = (int) decoder.readVarLong();
+          }
+        }
+        break;
+      default:
+        final long[] longs = this.longs[segment];
+        long previous = 0;
+        for (int row = 0; row < rows; row++) {
+          if (!hasNulls || (nulls[row >>> 6] & (1L << row)) == 0) {
+            previous += decoder.readZigZag();
+            longs[row] = previous;
+          }
+        }
+        break;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.inflater.end();
+    this.channel.close();
+  }
+
+  /**
+   * View of the current row over a set of columns of the archive.
+   */
+  class Record implements LogRecord {
+    final int[] columns;
+    final String[] fieldNames;
+    final Map<String, Integer> fieldIndexes;
+    final Map<String, Class<?>> fieldTypes;
+    int row;
+
+    Record(int[] columns) {
+      this.columns = columns;
+      this.fieldNames = new String[columns.length];
+      this.fieldIndexes = new HashMap<>(columns.length * 2);
+      final Map<String, Class<?>> fieldTypes = new LinkedHashMap<>(columns.length * 2);
+      for (int i = 0; i < columns.length; i++) {
+        final String fieldName = ArchiveElfParser.this.footer.fieldNames[columns[i]];
+        this.fieldNames[i] = fieldName;
+        this.fieldIndexes.put(fieldName, i);
+        fieldTypes.put(fieldName, ArchiveFormat.fieldType(ArchiveElfParser.this.kinds[columns[i]]));
+      }
+      this.fieldTypes = Collections.unmodifiableMap(fieldTypes);
+    }
+
+    @Override
+    public Map<String, Class<?>> fieldTypes() {
+      return this.fieldTypes;
+    }
+
+    @Override
+    public int fieldCount() {
+      return this.columns.length;
+    }
+
+    @Override
+    public String fieldName(int index) {
+      return this.fieldNames[index];
+    }
+
+    @Override
+    public int fieldIndex(String fieldName) {
+      final Integer result = this.fieldIndexes.get(fieldName);
+      return null == result ? -1 : result;
+    }
+
+    @Override
+    public int lineNumber() {
+      return (int) ArchiveElfParser.this.longs[ArchiveElfParser.this.kinds.length][this.row];
+    }
+
+    @Override
+    public long offset() {
+      return ArchiveElfParser.this.longs[ArchiveElfParser.this.kinds.length + 1][this.row];
+    }
+
+    @Override
+    public boolean isNull(int index) {
+      if (index < 0 || index >= this.columns.length) {
+        throw new IndexOutOfBoundsException(
+            String.format("index %s is out of range for %s field(s)", index, this.columns.length)
+        );
+      }
+      final int column = this.columns[index];
+      return ArchiveElfParser.this.hasNulls[column] &&
+          (ArchiveElfParser.this.nulls[column][this.row >>> 6] & (1L << this.row)) != 0;
+    }
+
+    private IllegalStateException wrongKind(int index, String type) {
+      return new IllegalStateException(
+          String.format(
+              "Field %s(%s) is %s and cannot be read as %s",
+              this.fieldNames[index],
+              index,
+              ArchiveElfParser.this.kinds[this.columns[index]],
+              type
+          )
+      );
+    }
+
+    private void checkNotNull(int index) {
+      if (isNull(index)) {
+        throw new IllegalStateException(
+            String.format("Field %s(%s) on line %s is null", this.fieldNames[index], index, lineNumber())
+        );
+      }
+    }
+
+    @Override
+    public long getLong(int index) {
+      checkNotNull(index);
+      final int column = this.columns[index];
+      switch (ArchiveElfParser.this.kinds[column]) {
+        case DOUBLE:
+        case STRING:
+          throw wrongKind(index, "long");
+        default:
+          return ArchiveElfParser.this.longs[column][this.row];
+      }
+    }
+
+    @Override
+    public int getInt(int index) {
+      checkNotNull(index);
+      final int column = this.columns[index];
+      if (ArchiveElfParser.this.kinds[column] != FieldKind.INT) {
+        throw wrongKind(index, "int");
+      }
+      return (int) ArchiveElfParser.this.longs[column][this.row];
+    }
+
+    @Override
+    public double getDouble(int index) {
+      checkNotNull(index);
+      final int column = this.columns[index];
+      switch (ArchiveElfParser.this.kinds[column]) {
+        case DOUBLE:
+          return ArchiveElfParser.this.doubles[column][this.row];
+        case LONG:
+        case INT:
+          return ArchiveElfParser.this.longs[column][this.row];
+        default:
+          throw wrongKind(index, "double");
+      }
+    }
+
+    @Override
+    public CharSequence getCharSequence(int index) {
+      final Object value = getObject(index);
+      return null == value ? null : value.toString();
+    }
+
+    @Override
+    public Object getObject(int index) {
+      if (isNull(index)) {
+        return null;
+      }
+      final int column = this.columns[index];
+      final int row = this.row;
+      switch (ArchiveElfParser.this.kinds[column]) {
+        case LONG:
+          return ArchiveElfParser.this.longs[column][row];
+        case INT:
+          return (int) ArchiveElfParser.this.longs[column][row];
+        case DOUBLE:
+          return ArchiveElfParser.this.doubles[column][row];
+        case DATE:
+          return LocalDate.ofEpochDay(ArchiveElfParser.this.longs[column][row]);
+        case TIME:
+          return LocalTime.ofNanoOfDay(ArchiveElfParser.this.longs[column][row]);
+        case STRING:
+          return ArchiveElfParser.this.dictionaries[column][ArchiveElfParser.this.ids[column][row]];
+        default:
+          final long nanos = ArchiveElfParser.this.longs[column][row];
+          return Instant.ofEpochSecond(
+              Math.floorDiv(nanos, TimestampColumn.NANOS_PER_SECOND),
+              Math.floorMod(nanos, TimestampColumn.NANOS_PER_SECOND)
+          );
+      }
+    }
+
+    @Override
+    public LogEntry toLogEntry() {
+      final Map<String, Object> data = new LinkedHashMap<>(this.columns.length * 2);
+      for (int i = 0; i < this.columns.length; i++) {
+        data.put(this.fieldNames[i], getObject(i));
+      }
+      return ImmutableLogEntry.builder()
+          .fieldData(data)
+          .fieldTypes(this.fieldTypes)
+          .build();
+    }
+  }
+}
@@ -0,0 +1,330 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Layout of the files written by {@link ElfArchiveWriter}.
+ * <pre>
+ * magic version
+ * block*
+ * footer: columns directives blocks
+ * trailer: footer length, magic
+ * </pre>
+ * A block holds up to a fixed number of rows. Each column of a block is a separately deflated segment so that
+ * columns that are not projected are never read. Segments are laid out in column order followed by the line numbers
+ * and offsets of the rows. A segment starts with the null bitmap of the block when the column has nulls, followed
+ * by the values that are not null:
+ * <ul>
+ * <li>Long, Integer, date, time and Instant columns are zigzag varints of the difference to the previous
+ * value.</li>
+ * <li>Double columns are the 8 byte bits of each value.</li>
+ * <li>String columns are a dictionary of the distinct values of the block followed by a varint id for each
+ * value.</li>
+ * </ul>
+ * The footer holds the row count, the position and length of each segment and the number of nulls, minimum and
+ * maximum of each column of every block so the reader can skip blocks without reading them.
+ */
+final class ArchiveFormat {
+  static final int MAGIC = 0x454C4641;
+  static final byte VERSION = 1;
+  static final int TRAILER_SIZE = 12;
+  /**
+   * Number of segments in a block after the columns. Line numbers then offsets.
+   */
+  static final int HIDDEN_SEGMENTS = 2;
+  private static final FieldKind[] KINDS = {
+      FieldKind.LONG,
+      FieldKind.INT,
+      FieldKind.DOUBLE,
+      FieldKind.DATE,
+      FieldKind.TIME,
+      FieldKind.STRING,
+      FieldKind.INSTANT
+  };
+
+  private ArchiveFormat() {
+  }
+
+  /**
+   * Method is used to determine how a column is stored in an archive.
+   * @param fieldName name of the column.
+   * @param fieldType type of the column.
+   * @return kind of the column.
+   * @throws IllegalStateException if the type cannot be stored.
+   */
+  static FieldKind kind(String fieldName, Class<?> fieldType) {
+    final FieldKind kind = FieldKind.of(fieldType);
+    if (FieldKind.OBJECT != kind) {
+      return kind;
+    }
+    if (Instant.class.equals(fieldType)) {
+      return FieldKind.INSTANT;
+    }
+    throw new IllegalStateException(
+        String.format("Field '%s' is %s and cannot be archived.", fieldName, fieldType.getName())
+    );
+  }
+
+  static Class<?> fieldType(FieldKind kind) {
+    switch (kind) {
+      case LONG:
+        return Long.class;
+      case INT:
+        return Integer.class;
+      case DOUBLE:
+        return Double.class;
+      case DATE:
+        return LocalDate.class;
+      case TIME:
+        return LocalTime.class;
+      case STRING:
+        return String.class;
+      default:
+        return Instant.class;
+    }
+  }
+
+  static boolean isLong(FieldKind kind) {
+    return FieldKind.DOUBLE != kind && FieldKind.STRING != kind;
+  }
+
+  /**
+   * Position, size and statistics of a block.
+   */
+  static final class Block {
+    final long offset;
+    final int rows;
+    final int[] lengths;
+    final int[] rawLengths;
+    final int[] nullCounts;
+    /**
+     * Smallest value of each column. Doubles are stored as their bits. Long.MAX_VALUE if every value is null and 0
+     * for String columns.
+     */
+    final long[] mins;
+    /**
+     * Largest value of each column. See {@link #mins}.
+     */
+    final long[] maxes;
+
+    Block(long offset, int rows, int segments) {
+      this.offset = offset;
+      this.rows = rows;
+      this.lengths = new int[segments];
+      this.rawLengths = new int[segments];
+      this.nullCounts = new int[segments];
+      this.mins = new long[segments];
+      this.maxes = new long[segments];
+    }
+
+    /**
+     * Method is used to locate a segment of the block.
+     * @param segment index of the segment.
+     * @return position of the segment in the file.
+     */
+    long position(int segment) {
+      long result = this.offset;
+      for (int i = 0; i < segment; i++) {
+        result += this.lengths[i];
+      }
+      return result;
+    }
+
+    /**
+     * Method is used to check if the non null values of a Long, Integer, date, time or Instant column can fall in a
+     * range.
+     * @param column index of the column.
+     * @param min smallest value of the range.
+     * @param max largest value of the range.
+     * @return false if no value of the block is in the range.
+     */
+    boolean overlaps(int column, long min, long max) {
+      return this.nullCounts[column] < this.rows && this.mins[column] <= max && this.maxes[column] >= min;
+    }
+  }
+
+  /**
+   * Columns, directives and blocks of an archive.
+   */
+  static final class Footer {
+    final String[] fieldNames;
+    final FieldKind[] kinds;
+    final Map<String, String> directives;
+    final List<Block> blocks;
+
+    Footer(String[] fieldNames, FieldKind[] kinds, Map<String, String> directives, List<Block> blocks) {
+      this.fieldNames = fieldNames;
+      this.kinds = kinds;
+      this.directives = directives;
+      this.blocks = blocks;
+    }
+
+    void write(DataOutput output) throws IOException {
+      output.writeInt(this.fieldNames.length);
+      for (int i = 0; i < this.fieldNames.length; i++) {
+        output.writeUTF(this.fieldNames[i]);
+        output.writeByte(Arrays.asList(KINDS).indexOf(this.kinds[i]));
+      }
+      output.writeInt(this.directives.size());
+      for (Map.Entry<String, String> e : this.directives.entrySet()) {
+        output.writeUTF(e.getKey());
+        output.writeUTF(e.getValue());
+      }
+      output.writeInt(this.blocks.size());
+      for (Block block : this.blocks) {
+        output.writeLong(block.offset);
+        output.writeInt(block.rows);
+        for (int i = 0; i < block.lengths.length; i++) {
+          output.writeInt(block.lengths[i]);
+          output.writeInt(block.rawLengths[i]);
+          output.writeInt(block.nullCounts[i]);
+          output.writeLong(block.mins[i]);
+          output.writeLong(block.maxes[i]);
+        }
+      }
+    }
+
+    static Footer read(DataInput input) throws IOException {
+      final int columns = input.readInt();
+      final String[] fieldNames = new String[columns];
+      final FieldKind[] kinds = new FieldKind[columns];
+      for (int i = 0; i < columns; i++) {
+        fieldNames[i] = input.readUTF();
+        final int code = input.readUnsignedByte();
+        if (code >= KINDS.length) {
+          throw new IOException(String.format("Column '%s' has an unknown type %s.", fieldNames[i], code));
+        }
+        kinds[i] = KINDS[code];
+      }
+      final int directiveCount = input.readInt();
+      final Map<String, String> directives = new LinkedHashMap<>(directiveCount * 2);
+      for (int i = 0; i < directiveCount; i++) {
+        directives.put(input.readUTF(), input.readUTF());
+      }
+      final int blockCount = input.readInt();
+      final List<Block> blocks = new ArrayList<>(blockCount);
+      for (int b = 0; b < blockCount; b++) {
+        final Block block = new Block(input.readLong(), input.readInt(), columns + HIDDEN_SEGMENTS);
+        for (int i = 0; i < block.lengths.length; i++) {
+          block.lengths[i] = input.readInt();
+          block.rawLengths[i] = input.readInt();
+          block.nullCounts[i] = input.readInt();
+          block.mins[i] = input.readLong();
+          block.maxes[i] = input.readLong();
+        }
+        blocks.add(block);
+      }
+      return new Footer(fieldNames, kinds, directives, blocks);
+    }
+  }
+
+  /**
+   * Growable buffer used to encode a segment.
+   */
+  static final class Encoder {
+    byte[] bytes = new byte[1024];
+    int size;
+
+    void clear() {
+      this.size = 0;
+    }
+
+    private void ensure(int length) {
+      if (this.size + length > this.bytes.length) {
+        this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.size + length));
+      }
+    }
+
+    void writeLong(long value) {
+      ensure(8);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        this.bytes[this.size++] = (byte) (value >>> shift);
+      }
+    }
+
+    void writeVarLong(long value) {
+      ensure(10);
+      while ((value & ~0x7FL) != 0) {
+        this.bytes[this.size++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      this.bytes[this.size++] = (byte) value;
+    }
+
+    void writeZigZag(long value) {
+      writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeBytes(byte[] value) {
+      writeVarLong(value.length);
+      ensure(value.length);
+      System.arraycopy(value, 0, this.bytes, this.size, value.length);
+      this.size += value.length;
+    }
+  }
+
+  /**
+   * Reads a segment written by {@link Encoder}.
+   */
+  static final class Decoder {
+    byte[] bytes = new byte[1024];
+    int position;
+
+    void reset(int capacity) {
+      if (this.bytes.length < capacity) {
+        this.bytes = new byte[Math.max(capacity, this.bytes.length * 2)];
+      }
+      this.position = 0;
+    }
+
+    long readLong() {
+      long result = 0;
+      for (int i = 0; i < 8; i++) {
+        result = (result << 8) | (this.bytes[this.position++] & 0xFF);
+      }
+      return result;
+    }
+
+    long readVarLong() {
+      long result = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = this.bytes[this.position++];
+        result |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      return result;
+    }
+
+    long readZigZag() {
+      final long value = readVarLong();
+      return (value >>> 1) ^ -(value & 1);
+    }
+  }
+}
@@ -0,0 +1,306 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import com.github.jcustenborder.parsers.elf.parsers.DateFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.DoubleFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.FieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.IntegerFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.LongFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.TimeFieldParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * LineSource that reads lines directly from the bytes of an InputStream. Lines are never decoded as a whole. Only
+ * the fields that are requested as text are decoded using the supplied charset. The charset must be ASCII
+ * compatible, for example UTF-8, ISO-8859-1 or windows-1252.
+ */
+class ByteLineSource extends LineSource {
+  static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+  private final InputStream inputStream;
+  private final Charset charset;
+  private byte[] buffer;
+  private int position;
+  private int limit;
+  private boolean eof;
+  private long bufferOffset;
+  private int lineStart;
+  private int lineEnd;
+  private int lineNumber;
+
+  /**
+   * Creates a line source without an input. Lines are read from the buffers passed to
+   * {@link #reset(byte[], int, long, int)}.
+   * @param charset charset used to decode text fields.
+   */
+  ByteLineSource(Charset charset) {
+    this(new ByteArrayInputStream(new byte[0]), charset, 1);
+  }
+
+  ByteLineSource(InputStream inputStream, Charset charset) {
+    this(inputStream, charset, DEFAULT_BUFFER_SIZE);
+  }
+
+  ByteLineSource(InputStream inputStream, Charset charset, int bufferSize) {
+    this(inputStream, charset, bufferSize, 0L);
+  }
+
+  /**
+   * @param inputStream input to read.
+   * @param charset charset used to decode text fields.
+   * @param bufferSize initial size of the buffer.
+   * @param offset byte offset of the first byte of the input stream within the file.
+   */
+  ByteLineSource(InputStream inputStream, Charset charset, int bufferSize, long offset) {
+    this.inputStream = inputStream;
+    this.charset = charset;
+    this.buffer = new byte[bufferSize];
+    this.bufferOffset = offset;
+  }
+
+  /**
+   * Method is used to read whole lines from a buffer instead of the input. The buffer is used as is, without being
+   * copied, and the line source is at the end of its input once the buffer has been read.
+   * @param data lines to read.
+   * @param length number of bytes in data.
+   * @param offset byte offset of the first byte of data within the file.
+   * @param lineNumber number of the last line before data.
+   */
+  void reset(byte[] data, int length, long offset, int lineNumber) {
+    this.buffer = data;
+    this.position = 0;
+    this.limit = length;
+    this.eof = true;
+    this.bufferOffset = offset;
+    this.lineStart = 0;
+    this.lineEnd = 0;
+    this.lineNumber = lineNumber;
+  }
+
+  /**
+   * Method is used to read more data into the buffer. Data that has already been consumed is discarded.
+   * @return true if data was read.
+   */
+  private boolean fill() throws IOException {
+    if (this.eof) {
+      return false;
+    }
+    if (this.position > 0) {
+      final int remaining = this.limit - this.position;
+      System.arraycopy(this.buffer, this.position, this.buffer, 0, remaining);
+      this.bufferOffset += this.position;
+      this.limit = remaining;
+      this.position = 0;
+    } else if (this.limit == this.buffer.length) {
+      this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+    }
+    final int read = this.inputStream.read(this.buffer, this.limit, this.buffer.length - this.limit);
+    if (read < 0) {
+      this.eof = true;
+      return false;
+    }
+    this.limit += read;
+    return true;
+  }
+
+  @Override
+  boolean readLine() throws IOException {
+    int index = this.position;
+    while (true) {
+      while (index < this.limit) {
+        final byte b = this.buffer[index];
+        if (b == '\n' || b == '\r') {
+          break;
+        }
+        index++;
+      }
+      if (index < this.limit) {
+        if (this.buffer[index] == '\r' && index + 1 == this.limit && !this.eof) {
+          // Need to look ahead for a \n.
+          final int consumed = index - this.position;
+          fill();
+          index = this.position + consumed;
+          continue;
+        }
+        break;
+      }
+      final int consumed = index - this.position;
+      final boolean filled = fill();
+      index = this.position + consumed;
+      if (!filled) {
+        break;
+      }
+    }
+
+    if (index == this.position && index == this.limit) {
+      return false;
+    }
+
+    this.lineStart = this.position;
+    this.lineEnd = index;
+    if (index < this.limit) {
+      index += (this.buffer[index] == '\r' && index + 1 < this.limit && this.buffer[index + 1] == '\n') ? 2 : 1;
+    }
+    this.position = index;
+    this.lineNumber++;
+    return true;
+  }
+
+  /**
+   * Method is used to check if a complete line can be read without blocking. Reads more data if the input reports
+   * that it is available.
+   * @return true if a line ending is buffered.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  boolean ready() throws IOException {
+    if (lineBuffered()) {
+      return true;
+    }
+    return !this.eof && this.inputStream.available() > 0 && fill() && lineBuffered();
+  }
+
+  private boolean lineBuffered() {
+    for (int i = this.position; i < this.limit; i++) {
+      if (this.buffer[i] == '\n') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  void unread() {
+    this.position = this.lineStart;
+    this.lineNumber--;
+  }
+
+  Charset charset() {
+    return this.charset;
+  }
+
+  @Override
+  int lineNumber() {
+    return this.lineNumber;
+  }
+
+  /**
+   * Method is used to set the number of the line before the first line of the input. Used when the input starts
+   * in the middle of a file.
+   * @param lineNumber number of the last line before the input.
+   */
+  void lineNumber(int lineNumber) {
+    this.lineNumber = lineNumber;
+  }
+
+  /**
+   * Byte offset from the start of the input of the next line to be read.
+   * @return Byte offset of the next line.
+   */
+  long position() {
+    return this.bufferOffset + this.position;
+  }
+
+  @Override
+  long lineOffset() {
+    return this.bufferOffset + this.lineStart;
+  }
+
+  @Override
+  int lineLength() {
+    return this.position - this.lineStart;
+  }
+
+  @Override
+  boolean isDirective() {
+    return this.lineEnd > this.lineStart && this.buffer[this.lineStart] == '#';
+  }
+
+  @Override
+  String line() {
+    return text(this.lineStart, this.lineEnd);
+  }
+
+  @Override
+  int tokenize(LineTokenizer tokenizer) {
+    return tokenizer.tokenize(this.buffer, this.lineStart, this.lineEnd);
+  }
+
+  @Override
+  boolean isNull(int start, int end) {
+    return (end - start) == 1 && this.buffer[start] == '-';
+  }
+
+  @Override
+  String text(int start, int end) {
+    return new String(this.buffer, start, end - start, this.charset);
+  }
+
+  @Override
+  String text(StringCache cache, int start, int end) {
+    return cache.get(this.buffer, start, end, this.charset);
+  }
+
+  @Override
+  Object parse(FieldParser parser, int start, int end) {
+    return parser.parse(this.buffer, start, end - start, this.charset);
+  }
+
+  @Override
+  CharSequence chars(FieldSlice slice, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (this.buffer[i] < 0) {
+        // Not ASCII so the field has to be decoded.
+        return text(start, end);
+      }
+    }
+    return slice.set(this.buffer, start, end);
+  }
+
+  @Override
+  long parseLong(LongFieldParser parser, int start, int end) {
+    return parser.parseLong(this.buffer, start, end - start, this.charset);
+  }
+
+  @Override
+  int parseInt(IntegerFieldParser parser, int start, int end) {
+    return parser.parseInt(this.buffer, start, end - start, this.charset);
+  }
+
+  @Override
+  double parseDouble(DoubleFieldParser parser, int start, int end) {
+    return parser.parseDouble(this.buffer, start, end - start, this.charset);
+  }
+
+  @Override
+  long parseEpochDay(DateFieldParser parser, int start, int end) {
+    return parser.parseEpochDay(this.buffer, start, end - start, this.charset);
+  }
+
+  @Override
+  long parseNanoOfDay(TimeFieldParser parser, int start, int end) {
+    return parser.parseNanoOfDay(this.buffer, start, end - start, this.charset);
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.inputStream.close();
+  }
+}
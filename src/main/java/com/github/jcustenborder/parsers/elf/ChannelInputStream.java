@@ -0,0 +1,71 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * InputStream over a range of a FileChannel. Each read is a positional read into the array of the caller, such as the
+ * buffer of a ByteLineSource, so ranges of the same file can be read by several threads at once.
+ */
+class ChannelInputStream extends InputStream {
+  private final FileChannel channel;
+  private final long end;
+  private long position;
+
+  /**
+   * @param channel file to read. Not closed by this stream.
+   * @param start offset of the first byte to read.
+   * @param end offset after the last byte to read.
+   */
+  ChannelInputStream(FileChannel channel, long start, long end) {
+    this.channel = channel;
+    this.position = start;
+    this.end = end;
+  }
+
+  @Override
+  public int read() throws IOException {
+    final byte[] b = new byte[1];
+    return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    final long remaining = this.end - this.position;
+    if (remaining <= 0) {
+      return -1;
+    }
+    final int count = (int) Math.min(len, remaining);
+    final int read = this.channel.read(ByteBuffer.wrap(b, off, count), this.position);
+    if (read < 0) {
+      return -1;
+    }
+    this.position += read;
+    return read;
+  }
+
+  @Override
+  public int available() {
+    return (int) Math.min(Integer.MAX_VALUE, this.end - this.position);
+  }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.immutables.value.Value;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Position in a file along with the header that applies at that position. A checkpoint is returned by
+ * {@link ElfParser#checkpoint()} and passed to {@link ElfParserBuilder#build(java.io.File, Checkpoint)} to continue
+ * parsing where a previous parser stopped without reading the start of the file again.
+ */
+@JsonDeserialize(as = com.github.jcustenborder.parsers.elf.ImmutableCheckpoint.class)
+@JsonSerialize(as = com.github.jcustenborder.parsers.elf.ImmutableCheckpoint.class)
+@Value.Immutable
+public interface Checkpoint {
+  /**
+   * Byte offset of the next line to be read.
+   * @return Byte offset of the next line to be read.
+   */
+  long offset();
+
+  /**
+   * Number of the last line that was read.
+   * @return Number of the last line that was read.
+   */
+  int lineNumber();
+
+  /**
+   * Names of the fields defined by the last #Fields directive before the offset.
+   * @return Names of the fields.
+   */
+  List<String> fieldNames();
+
+  /**
+   * Directives read before the offset.
+   * @return The value of each directive by name.
+   */
+  Map<String, String> directives();
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over newline aligned chunks of a file. Splitting hands half of the remaining chunks to the new
+ * spliterator. When a single chunk remains it is split on the line boundary closest to its middle.
+ */
+class ChunkSpliterator implements Spliterator<LogEntry> {
+  static final int MINIMUM_SPLIT_SIZE = 64 * 1024;
+  private final FileChannel channel;
+  private final Charset charset;
+  private final boolean failOnDirective;
+  private final int characteristics;
+  private final double bytesPerLine;
+  private final ErrorHandler errors;
+  private final MetricsCollector metrics;
+  private MetricsCollector chunkMetrics;
+  private List<MappedElfParser.Chunk> chunks;
+  private int index;
+  private ElfParserImpl current;
+  private MappedElfParser.Chunk currentChunk;
+
+  ChunkSpliterator(
+      FileChannel channel,
+      Charset charset,
+      List<MappedElfParser.Chunk> chunks,
+      boolean failOnDirective,
+      int characteristics,
+      double bytesPerLine,
+      ErrorHandler errors,
+      MetricsCollector metrics) {
+    this.channel = channel;
+    this.charset = charset;
+    this.chunks = chunks;
+    this.failOnDirective = failOnDirective;
+    this.characteristics = characteristics;
+    this.bytesPerLine = bytesPerLine;
+    this.errors = errors;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Method is used to estimate the average length of a line by sampling the start of the data.
+   * @param channel file to sample.
+   * @param start start of the data.
+   * @param end end of the data.
+   * @return average number of bytes per line.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  static double bytesPerLine(FileChannel channel, long start, long end) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(MINIMUM_SPLIT_SIZE, Math.max(0, end - start)));
+    int read = 0;
+    while (buffer.hasRemaining()) {
+      final int count = channel.read(buffer, start + read);
+      if (count <= 0) {
+        break;
+      }
+      read += count;
+    }
+    int lines = 0;
+    for (int i = 0; i < read; i++) {
+      if (buffer.get(i) == '\n') {
+        lines++;
+      }
+    }
+    return lines == 0 ? Math.max(1, read) : (double) read / lines;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super LogEntry> action) {
+    try {
+      while (true) {
+        if (null == this.current) {
+          if (this.index >= this.chunks.size()) {
+            return false;
+          }
+          this.currentChunk = this.chunks.get(this.index++);
+          this.current = new ElfParserImpl(
+              MappedElfParser.lineSource(this.channel, this.charset, this.currentChunk, this.failOnDirective),
+              this.currentChunk.schema
+          );
+          this.current.errors(this.errors);
+          if (null != this.metrics) {
+            this.chunkMetrics = this.metrics.child();
+            this.current.metrics(this.chunkMetrics, false);
+          }
+        }
+        final LogEntry entry;
+        try {
+          entry = this.current.next();
+        } catch (IOException | RuntimeException ex) {
+          throw new IOException(
+              String.format("Could not parse chunk starting at offset %s", this.currentChunk.start),
+              ex
+          );
+        }
+        if (null == entry) {
+          if (null != this.chunkMetrics) {
+            this.metrics.add(this.chunkMetrics);
+            this.chunkMetrics = null;
+          }
+          this.current = null;
+          this.currentChunk = null;
+          continue;
+        }
+        action.accept(entry);
+        return true;
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public Spliterator<LogEntry> trySplit() {
+    if (null != this.current) {
+      // The rest of the current chunk must come before anything that is split off.
+      return null;
+    }
+    final int remaining = this.chunks.size() - this.index;
+    if (remaining >= 2) {
+      final int middle = this.index + remaining / 2;
+      final List<MappedElfParser.Chunk> prefix = this.chunks.subList(this.index, middle);
+      this.chunks = this.chunks.subList(middle, this.chunks.size());
+      this.index = 0;
+      return new ChunkSpliterator(
+          this.channel,
+          this.charset,
+          prefix,
+          this.failOnDirective,
+          this.characteristics,
+          this.bytesPerLine,
+          this.errors,
+          this.metrics
+      );
+    }
+    if (remaining == 1) {
+      final MappedElfParser.Chunk chunk = this.chunks.get(this.index);
+      final long length = chunk.end - chunk.start;
+      if (length < MINIMUM_SPLIT_SIZE * 2) {
+        return null;
+      }
+      final long middle;
+      try {
+        middle = MappedElfParser.alignToLine(this.channel, chunk.start + length / 2, chunk.end);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+      if (middle <= chunk.start || middle >= chunk.end) {
+        return null;
+      }
+      this.chunks = Collections.singletonList(new MappedElfParser.Chunk(middle, chunk.end, chunk.schema));
+      this.index = 0;
+      return new ChunkSpliterator(
+          this.channel,
+          this.charset,
+          Collections.singletonList(new MappedElfParser.Chunk(chunk.start, middle, chunk.schema)),
+          this.failOnDirective,
+          this.characteristics,
+          this.bytesPerLine,
+          this.errors,
+          this.metrics
+      );
+    }
+    return null;
+  }
+
+  @Override
+  public long estimateSize() {
+    long bytes = 0;
+    for (int i = this.index; i < this.chunks.size(); i++) {
+      final MappedElfParser.Chunk chunk = this.chunks.get(i);
+      bytes += chunk.end - chunk.start;
+    }
+    return (long) Math.ceil(bytes / this.bytesPerLine);
+  }
+
+  @Override
+  public int characteristics() {
+    return this.characteristics;
+  }
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decompressors from commons-compress. Kept in their own class so that commons-compress is only loaded when a file
+ * that needs it is read.
+ */
+final class CommonsCompress {
+  private CommonsCompress() {
+
+  }
+
+  static InputStream bzip2(InputStream inputStream) throws IOException {
+    return new BZip2CompressorInputStream(inputStream, true);
+  }
+
+  static InputStream zstd(InputStream inputStream) throws IOException {
+    return new ZstdCompressorInputStream(inputStream);
+  }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compression formats that are detected by the magic bytes at the start of a file.
+ */
+enum Compression {
+  NONE,
+  /**
+   * gzip, including files with more than one member.
+   */
+  GZIP,
+  /**
+   * bzip2. Requires commons-compress.
+   */
+  BZIP2,
+  /**
+   * Zstandard. Requires commons-compress and zstd-jni.
+   */
+  ZSTD;
+
+  static final int MAGIC_LENGTH = 4;
+
+  /**
+   * Method is used to determine the compression of data from its first bytes.
+   * @param magic first bytes of the data.
+   * @param length number of bytes in magic.
+   * @return compression of the data.
+   */
+  static Compression detect(byte[] magic, int length) {
+    if (length >= 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B) {
+      return GZIP;
+    }
+    if (length >= 4 && magic[0] == 'B' && magic[1] == 'Z' && magic[2] == 'h' && magic[3] >= '1' && magic[3] <= '9') {
+      return BZIP2;
+    }
+    if (length >= 4 && (magic[0] & 0xFF) == 0x28 && (magic[1] & 0xFF) == 0xB5 && (magic[2] & 0xFF) == 0x2F &&
+        (magic[3] & 0xFF) == 0xFD) {
+      return ZSTD;
+    }
+    return NONE;
+  }
+
+  /**
+   * Method is used to determine the compression of a file from its first bytes.
+   * @param file file to check.
+   * @return compression of the file.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  static Compression detect(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      final ByteBuffer buffer = ByteBuffer.allocate(MAGIC_LENGTH);
+      while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+        // Keep reading until the magic bytes have been read or the file ends.
+      }
+      return detect(buffer.array(), buffer.position());
+    }
+  }
+}
@@ -0,0 +1,291 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * InputStream that runs a decompressor on its own thread so decompression overlaps with parsing. The decompressor
+ * writes to a {@link Sink} which hands full buffers to the reading thread through a bounded queue. Buffers are
+ * returned to the decompressor once they have been read, so no buffers are allocated after the first few.
+ */
+class DecompressingInputStream extends InputStream {
+  static final int BUFFER_SIZE = 256 * 1024;
+  static final int QUEUE_DEPTH = 4;
+  private static final Logger log = LoggerFactory.getLogger(DecompressingInputStream.class);
+  private static final Block END = new Block(null, -1, null);
+  private final BlockingQueue<Block> filled = new ArrayBlockingQueue<>(QUEUE_DEPTH);
+  private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(QUEUE_DEPTH + 2);
+  private final Closeable source;
+  private final Thread thread;
+  private final byte[] single = new byte[1];
+  private Block current;
+  private int position;
+  private boolean ended;
+  private volatile boolean closed;
+
+  /**
+   * Decompressor that writes the decompressed data to a sink.
+   */
+  interface Decompressor {
+    void decompress(OutputStream sink) throws IOException;
+  }
+
+  static class Block {
+    final byte[] data;
+    final int length;
+    final Throwable error;
+
+    Block(byte[] data, int length, Throwable error) {
+      this.data = data;
+      this.length = length;
+      this.error = error;
+    }
+  }
+
+  /**
+   * OutputStream that copies the decompressed data into pooled buffers and queues them once they are full. Blocks
+   * while the queue is full.
+   */
+  class Sink extends OutputStream {
+    private byte[] buffer;
+    private int length;
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      while (len > 0) {
+        if (null == this.buffer) {
+          final byte[] recycled = free.poll();
+          this.buffer = null != recycled ? recycled : new byte[BUFFER_SIZE];
+          this.length = 0;
+        }
+        final int count = Math.min(len, this.buffer.length - this.length);
+        System.arraycopy(b, off, this.buffer, this.length, count);
+        this.length += count;
+        off += count;
+        len -= count;
+        if (this.length == this.buffer.length) {
+          flush();
+        }
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (null != this.buffer && this.length > 0) {
+        put(new Block(this.buffer, this.length, null));
+        this.buffer = null;
+      }
+    }
+  }
+
+  /**
+   * @param name name of the decompression thread.
+   * @param source resource to close when the stream is closed.
+   * @param decompressor decompressor to run.
+   */
+  DecompressingInputStream(String name, Closeable source, Decompressor decompressor) {
+    this.source = source;
+    this.thread = new Thread(() -> run(decompressor), name);
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Method is used to open a compressed file. gzip files that are large enough are inflated in parallel on the pool,
+   * see {@link ParallelGzip}.
+   * @param file file to open.
+   * @param compression compression of the file.
+   * @param pool pool used to inflate gzip members in parallel.
+   * @return stream of the decompressed data.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   * @throws IllegalStateException if the libraries needed for the compression are not on the classpath.
+   */
+  static DecompressingInputStream open(File file, Compression compression, ForkJoinPool pool) throws IOException {
+    final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      final Decompressor decompressor;
+      switch (compression) {
+        case GZIP:
+          if (channel.size() >= 2L * ParallelGzip.SEGMENT_SIZE && pool.getParallelism() > 1) {
+            log.trace("open() - Inflating {} in parallel.", file);
+            decompressor = new ParallelGzip(channel, pool);
+          } else {
+            final InputStream inputStream = new GZIPInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+            decompressor = sink -> copy(inputStream, sink);
+          }
+          break;
+        case BZIP2:
+          try {
+            final InputStream inputStream = CommonsCompress.bzip2(Channels.newInputStream(channel));
+            decompressor = sink -> copy(inputStream, sink);
+          } catch (NoClassDefFoundError ex) {
+            throw new IllegalStateException(
+                String.format("commons-compress must be on the classpath to read bzip2 file %s.", file),
+                ex
+            );
+          }
+          break;
+        case ZSTD:
+          try {
+            final InputStream inputStream = CommonsCompress.zstd(Channels.newInputStream(channel));
+            decompressor = sink -> copy(inputStream, sink);
+          } catch (NoClassDefFoundError ex) {
+            throw new IllegalStateException(
+                String.format("commons-compress and zstd-jni must be on the classpath to read zstd file %s.", file),
+                ex
+            );
+          }
+          break;
+        default:
+          throw new IllegalArgumentException(String.format("%s is not compressed.", file));
+      }
+      return new DecompressingInputStream("elf-decompress-" + file.getName(), channel, decompressor);
+    } catch (IOException | RuntimeException | Error ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  static void copy(InputStream inputStream, OutputStream sink) throws IOException {
+    final byte[] buffer = new byte[BUFFER_SIZE];
+    int read;
+    while ((read = inputStream.read(buffer)) >= 0) {
+      sink.write(buffer, 0, read);
+    }
+  }
+
+  private void run(Decompressor decompressor) {
+    try {
+      final Sink sink = new Sink();
+      decompressor.decompress(sink);
+      sink.flush();
+      put(END);
+    } catch (InterruptedIOException ex) {
+      // Closed by the reader.
+    } catch (Throwable ex) {
+      try {
+        put(new Block(null, -1, ex));
+      } catch (InterruptedIOException e) {
+        // Closed by the reader.
+      }
+    }
+  }
+
+  private void put(Block block) throws InterruptedIOException {
+    try {
+      this.filled.put(block);
+    } catch (InterruptedException ex) {
+      throw new InterruptedIOException("Interrupted while queueing decompressed data.");
+    }
+  }
+
+  /**
+   * Method is used to move to the next block of decompressed data.
+   * @return false at the end of the data.
+   */
+  private boolean nextBlock() throws IOException {
+    if (null != this.current) {
+      this.free.offer(this.current.data);
+      this.current = null;
+    }
+    if (this.ended) {
+      return false;
+    }
+    final Block block;
+    try {
+      block = this.filled.take();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for decompressed data.");
+    }
+    if (null != block.error) {
+      this.ended = true;
+      if (block.error instanceof IOException) {
+        throw new IOException(block.error.getMessage(), block.error);
+      }
+      throw new IOException("Exception thrown while decompressing", block.error);
+    }
+    if (block == END) {
+      this.ended = true;
+      return false;
+    }
+    this.current = block;
+    this.position = 0;
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    final int read = read(this.single, 0, 1);
+    return read < 0 ? -1 : this.single[0] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (this.closed) {
+      throw new IOException("Stream closed");
+    }
+    if (len == 0) {
+      return 0;
+    }
+    while (null == this.current || this.position == this.current.length) {
+      if (!nextBlock()) {
+        return -1;
+      }
+    }
+    final int count = Math.min(len, this.current.length - this.position);
+    System.arraycopy(this.current.data, this.position, b, off, count);
+    this.position += count;
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return null == this.current ? 0 : this.current.length - this.position;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    this.thread.interrupt();
+    this.filled.clear();
+    this.source.close();
+  }
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+/**
+ * Determines how directives (lines starting with #) found after the header are handled when a file is parsed in
+ * chunks.
+ */
+public enum DirectiveMode {
+  /**
+   * Parsing fails when a chunk contains a #Fields directive that changes the fields. Other directives and comments
+   * are skipped.
+   */
+  FAIL,
+  /**
+   * The file is scanned for directives before it is parsed. Each #Fields directive defines the fields of the data
+   * that follows it.
+   */
+  RESYNC
+}
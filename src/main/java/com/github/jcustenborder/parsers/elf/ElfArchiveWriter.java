@@ -0,0 +1,361 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes parsed entries to a compressed columnar archive that can be read again with
+ * {@link ElfParserBuilder#buildArchive(File)} without parsing any text. Rows are grouped into blocks and every
+ * column of a block is compressed on its own along with its minimum, maximum and number of nulls. Strings are
+ * dictionary encoded per block and Long, Integer, date, time and Instant columns are delta encoded. An archive holds
+ * a single set of fields. Columns must be Long, Integer, Double, LocalDate, LocalTime, String or Instant.
+ */
+public final class ElfArchiveWriter implements Closeable {
+  public static final int DEFAULT_BLOCK_SIZE = 16 * 1024;
+  private static final Logger log = LoggerFactory.getLogger(ElfArchiveWriter.class);
+  private final DataOutputStream output;
+  private final int blockSize;
+  private final Map<String, String> directives = new LinkedHashMap<>();
+  private final List<ArchiveFormat.Block> blocks = new ArrayList<>();
+  private final ArchiveFormat.Encoder encoder = new ArchiveFormat.Encoder();
+  private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+  private byte[] compressed = new byte[1024];
+  private long position;
+  private Map<String, Class<?>> fieldTypes;
+  private String[] fieldNames;
+  private FieldKind[] kinds;
+  private long[][] longs;
+  private double[][] doubles;
+  private int[][] ids;
+  private StringDictionary[] dictionaries;
+  private long[][] nulls;
+  private int[] nullCounts;
+  private int rows;
+  private long rowCount;
+  private boolean closed;
+
+  /**
+   * Creates a writer with blocks of {@link #DEFAULT_BLOCK_SIZE} rows.
+   * @param outputStream stream to write the archive to. Closed when the writer is closed.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  public ElfArchiveWriter(OutputStream outputStream) throws IOException {
+    this(outputStream, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * @param outputStream stream to write the archive to. Closed when the writer is closed.
+   * @param blockSize number of rows in a block. Larger blocks compress better, smaller blocks can be skipped more
+   *                  often by filters.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  public ElfArchiveWriter(OutputStream outputStream, int blockSize) throws IOException {
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("blockSize must be greater than 0.");
+    }
+    this.blockSize = blockSize;
+    this.output = new DataOutputStream(
+        outputStream instanceof BufferedOutputStream ? outputStream : new BufferedOutputStream(outputStream, 65536)
+    );
+    this.output.writeInt(ArchiveFormat.MAGIC);
+    this.output.writeByte(ArchiveFormat.VERSION);
+    this.position = 5;
+  }
+
+  /**
+   * Creates a writer for a file with blocks of {@link #DEFAULT_BLOCK_SIZE} rows.
+   * @param file file to write the archive to.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  public ElfArchiveWriter(File file) throws IOException {
+    this(new FileOutputStream(file));
+  }
+
+  /**
+   * Method is used to write every remaining record of a parser. The directives of the parser are stored in the
+   * archive and returned by {@link ElfParser#directives()} of the reader.
+   * @param parser parser to read.
+   * @return number of rows written.
+   * @throws IOException Exception thrown if the parser fails or there is an underlying system error.
+   * @throws IllegalStateException if the fields of the parser change or a field cannot be archived.
+   */
+  public long write(ElfParser parser) throws IOException {
+    long result = 0;
+    LogRecord record;
+    while (null != (record = parser.nextRecord())) {
+      write(record);
+      result++;
+    }
+    this.directives.putAll(parser.directives());
+    return result;
+  }
+
+  /**
+   * Method is used to write a single record. The record is copied so it can be reused by the parser.
+   * @param record record to write.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   * @throws IllegalStateException if the record does not have the same fields as the records before it or a field
+   *                               cannot be archived.
+   */
+  public void write(LogRecord record) throws IOException {
+    if (this.closed) {
+      throw new IllegalStateException("Writer is closed.");
+    }
+    if (null == this.fieldTypes) {
+      columns(record.fieldTypes());
+    } else if (record.fieldTypes() != this.fieldTypes) {
+      if (!this.fieldTypes.equals(record.fieldTypes()) ||
+          !new ArrayList<>(this.fieldTypes.keySet()).equals(new ArrayList<>(record.fieldTypes().keySet()))) {
+        throw new IllegalStateException(
+            String.format(
+                "Fields changed from %s to %s. An archive holds a single set of fields.",
+                this.fieldTypes.keySet(),
+                record.fieldTypes().keySet()
+            )
+        );
+      }
+      this.fieldTypes = record.fieldTypes();
+    }
+    final int row = this.rows;
+    final int word = row >>> 6;
+    final long bit = 1L << row;
+    for (int column = 0; column < this.kinds.length; column++) {
+      if (record.isNull(column)) {
+        this.nulls[column][word] |= bit;
+        this.nullCounts[column]++;
+        continue;
+      }
+      switch (this.kinds[column]) {
+        case DOUBLE:
+          this.doubles[column][row] = record.getDouble(column);
+          break;
+        case STRING:
+          this.ids[column][row] = this.dictionaries[column].add(record.getCharSequence(column));
+          break;
+        case INSTANT:
+          final Instant instant = (Instant) record.getObject(column);
+          this.longs[column][row] = instant.getEpochSecond() * TimestampColumn.NANOS_PER_SECOND + instant.getNano();
+          break;
+        default:
+          this.longs[column][row] = record.getLong(column);
+          break;
+      }
+    }
+    final int hidden = this.kinds.length;
+    this.longs[hidden][row] = record.lineNumber();
+    this.longs[hidden + 1][row] = record.offset();
+    this.rows++;
+    this.rowCount++;
+    if (this.rows == this.blockSize) {
+      flush();
+    }
+  }
+
+  private void columns(Map<String, Class<?>> fieldTypes) {
+    final int columns = fieldTypes.size();
+    final int segments = columns + ArchiveFormat.HIDDEN_SEGMENTS;
+    this.fieldTypes = fieldTypes;
+    this.fieldNames = new String[columns];
+    this.kinds = new FieldKind[columns];
+    this.longs = new long[segments][];
+    this.doubles = new double[columns][];
+    this.ids = new int[columns][];
+    this.dictionaries = new StringDictionary[columns];
+    this.nulls = new long[segments][(this.blockSize + 63) >>> 6];
+    this.nullCounts = new int[segments];
+    int column = 0;
+    for (Map.Entry<String, Class<?>> e : fieldTypes.entrySet()) {
+      final FieldKind kind = ArchiveFormat.kind(e.getKey(), e.getValue());
+      this.fieldNames[column] = e.getKey();
+      this.kinds[column] = kind;
+      switch (kind) {
+        case DOUBLE:
+          this.doubles[column] = new double[this.blockSize];
+          break;
+        case STRING:
+          this.ids[column] = new int[this.blockSize];
+          this.dictionaries[column] = new StringDictionary();
+          break;
+        default:
+          this.longs[column] = new long[this.blockSize];
+          break;
+      }
+      column++;
+    }
+    this.longs[columns] = new long[this.blockSize];
+    this.longs[columns + 1] = new long[this.blockSize];
+  }
+
+  /**
+   * Method is used to write the rows that have been buffered as a block.
+   */
+  private void flush() throws IOException {
+    final int rows = this.rows;
+    if (rows == 0) {
+      return;
+    }
+    final int segments = this.nulls.length;
+    final ArchiveFormat.Block block = new ArchiveFormat.Block(this.position, rows, segments);
+    for (int segment = 0; segment < segments; segment++) {
+      final ArchiveFormat.Encoder encoder = this.encoder;
+      encoder.clear();
+      final long[] nulls = this.nulls[segment];
+      final int nullCount = this.nullCounts[segment];
+      if (nullCount > 0) {
+        for (int i = 0; i < (rows + 63) >>> 6; i++) {
+          encoder.writeLong(nulls[i]);
+        }
+      }
+      final FieldKind kind = segment < this.kinds.length ? this.kinds[segment] : FieldKind.LONG;
+      long min = Long.MAX_VALUE;
+      long max = Long.MIN_VALUE;
+      switch (kind) {
+        case DOUBLE:
+          final double[] doubles = this.doubles[segment];
+          double minDouble = Double.POSITIVE_INFINITY;
+          double maxDouble = Double.NEGATIVE_INFINITY;
+          for (int row = 0; row < rows; row++) {
+            if (nullCount > 0 && (nulls[row >>> 6] & (1L << row)) != 0) {
+              continue;
+            }
+            final double value = doubles[row];
+            encoder.writeLong(Double.doubleToRawLongBits(value));
+            minDouble = Math.min(minDouble, value);
+            maxDouble = Math.max(maxDouble, value);
+          }
+          if (nullCount < rows) {
+            min = Double.doubleToLongBits(minDouble);
+            max = Double.doubleToLongBits(maxDouble);
+          }
+          break;
+        case STRING:
+          final StringDictionary dictionary = this.dictionaries[segment];
+          encoder.writeVarLong(dictionary.size());
+          for (int id = 0; id < dictionary.size(); id++) {
+            encoder.writeBytes(dictionary.get(id).getBytes(StandardCharsets.UTF_8));
+          }
+          final int[] ids = this.ids[segment];
+          for (int row = 0; row < rows; row++) {
+            if (nullCount > 0 && (nulls[row >>> 6] & (1L << row)) != 0) {
+              continue;
+            }
+            encoder.writeVarLong(ids[row]);
+          }
+          dictionary.clear();
+          min = 0;
+          max = 0;
+          break;
+        default:
+          final long[] longs = this.longs[segment];
+          long previous = 0;
+          for (int row = 0; row < rows; row++) {
+            if (nullCount > 0 && (nulls[row >>> 6] & (1L << row)) != 0) {
+              continue;
+            }
+            final long value = longs[row];
+            encoder.writeZigZag(value - previous);
+            previous = value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+          }
+          break;
+      }
+      block.rawLengths[segment] = encoder.size;
+      block.lengths[segment] = compress(encoder);
+      block.nullCounts[segment] = nullCount;
+      block.mins[segment] = min;
+      block.maxes[segment] = max;
+      Arrays.fill(nulls, 0L);
+      this.nullCounts[segment] = 0;
+    }
+    log.trace("flush() - Wrote block {} with {} row(s) at offset {}.", this.blocks.size(), rows, block.offset);
+    this.blocks.add(block);
+    this.rows = 0;
+  }
+
+  private int compress(ArchiveFormat.Encoder encoder) throws IOException {
+    final Deflater deflater = this.deflater;
+    deflater.reset();
+    deflater.setInput(encoder.bytes, 0, encoder.size);
+    deflater.finish();
+    int length = 0;
+    while (!deflater.finished()) {
+      if (length == this.compressed.length) {
+        this.compressed = Arrays.copyOf(this.compressed, this.compressed.length * 2);
+      }
+      length += deflater.deflate(this.compressed, length, this.compressed.length - length);
+    }
+    this.output.write(this.compressed, 0, length);
+    this.position += length;
+    return length;
+  }
+
+  /**
+   * The number of rows written so far.
+   * @return The number of rows written so far.
+   */
+  public long rowCount() {
+    return this.rowCount;
+  }
+
+  /**
+   * Method is used to write the remaining rows and the footer of the archive and close the stream.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    try {
+      if (null == this.fieldTypes) {
+        columns(new LinkedHashMap<>());
+      }
+      flush();
+      final ByteArrayOutputStream footer = new ByteArrayOutputStream();
+      try (DataOutputStream footerOutput = new DataOutputStream(footer)) {
+        new ArchiveFormat.Footer(this.fieldNames, this.kinds, this.directives, this.blocks).write(footerOutput);
+      }
+      footer.writeTo(this.output);
+      this.output.writeLong(footer.size());
+      this.output.writeInt(ArchiveFormat.MAGIC);
+      log.trace("close() - Wrote {} row(s) in {} block(s).", this.rowCount, this.blocks.size());
+    } finally {
+      this.deflater.end();
+      this.output.close();
+    }
+  }
+}
@@ -0,0 +1,408 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sparse index over a file built by {@link ElfParserBuilder#buildIndex(File, int, String...)}. The file is divided
+ * into blocks of a fixed number of lines. For each block the index holds a {@link Checkpoint} for its first line,
+ * the smallest and largest date and time of its lines and optionally a bloom filter over the values of some fields.
+ * {@link ElfParserBuilder#build(File, ElfIndex, LocalDateTime, LocalDateTime)} and
+ * {@link ElfParserBuilder#build(File, ElfIndex, String, String)} use it to only read the blocks that can contain
+ * matching lines. The index is stored next to the file, see {@link #sidecar(File)}. Data appended to the file after
+ * it was indexed is always read.
+ */
+public final class ElfIndex {
+  static final int MAGIC = 0x454C4649;
+  static final byte VERSION = 1;
+  static final int BITS_PER_LINE = 10;
+  static final int HASHES = 7;
+  private final int interval;
+  private final int bloomBits;
+  private final List<String> bloomFields;
+  /**
+   * Checkpoint of the first line of each block followed by the checkpoint after the last indexed line.
+   */
+  private final List<Checkpoint> checkpoints;
+  private final long[] minTimestamps;
+  private final long[] maxTimestamps;
+  /**
+   * Bloom filter of each block for each bloom field.
+   */
+  private final long[][][] blooms;
+
+  ElfIndex(
+      int interval,
+      int bloomBits,
+      List<String> bloomFields,
+      List<Checkpoint> checkpoints,
+      long[] minTimestamps,
+      long[] maxTimestamps,
+      long[][][] blooms) {
+    this.interval = interval;
+    this.bloomBits = bloomBits;
+    this.bloomFields = Collections.unmodifiableList(bloomFields);
+    this.checkpoints = checkpoints;
+    this.minTimestamps = minTimestamps;
+    this.maxTimestamps = maxTimestamps;
+    this.blooms = blooms;
+  }
+
+  /**
+   * Method is used to return where the index of a file is stored, which is the path of the file followed by .idx.
+   * @param file indexed file.
+   * @return sidecar file.
+   */
+  public static File sidecar(File file) {
+    return new File(file.getPath() + ".idx");
+  }
+
+  /**
+   * The number of lines in each block. The last block may have fewer lines.
+   * @return The number of lines in each block.
+   */
+  public int interval() {
+    return this.interval;
+  }
+
+  /**
+   * The number of blocks in the index.
+   * @return The number of blocks in the index.
+   */
+  public int blockCount() {
+    return this.minTimestamps.length;
+  }
+
+  /**
+   * The fields that have a bloom filter.
+   * @return The fields that have a bloom filter.
+   */
+  public List<String> bloomFields() {
+    return this.bloomFields;
+  }
+
+  /**
+   * Method is used to return the position of a block.
+   * @param block index of the block. {@link #blockCount()} returns the position after the last indexed line.
+   * @return checkpoint for the first line of the block.
+   */
+  public Checkpoint checkpoint(int block) {
+    return this.checkpoints.get(block);
+  }
+
+  /**
+   * Method is used to check if a block can contain lines with a date and time in a range. Blocks without any line
+   * that has a date never overlap.
+   * @param block index of the block.
+   * @param from earliest date and time, inclusive.
+   * @param to latest date and time, inclusive.
+   * @return false if no line of the block is in the range.
+   */
+  public boolean overlaps(int block, LocalDateTime from, LocalDateTime to) {
+    return overlaps(block, timestamp(from), timestamp(to));
+  }
+
+  boolean overlaps(int block, long from, long to) {
+    return Timestamps.NO_TIMESTAMP != this.minTimestamps[block] &&
+        this.minTimestamps[block] <= to &&
+        this.maxTimestamps[block] >= from;
+  }
+
+  /**
+   * Method is used to check the bloom filter of a block for a value. False positives are possible, false negatives
+   * are not.
+   * @param block index of the block.
+   * @param fieldName name of the field.
+   * @param value text of the value.
+   * @return false if no line of the block has the value.
+   * @throws IllegalArgumentException if the field does not have a bloom filter.
+   */
+  public boolean mightContain(int block, String fieldName, CharSequence value) {
+    final int field = this.bloomFields.indexOf(fieldName);
+    if (field < 0) {
+      throw new IllegalArgumentException(
+          String.format("Field '%s' does not have a bloom filter. Fields: %s", fieldName, this.bloomFields)
+      );
+    }
+    return mightContain(this.blooms[field][block], this.bloomBits, value);
+  }
+
+  static void add(long[] bloom, int bits, CharSequence value) {
+    final int hash1 = StringDictionary.hash(value);
+    final int hash2 = mix(hash1);
+    for (int i = 0; i < HASHES; i++) {
+      final int bit = Math.floorMod(hash1 + i * hash2, bits);
+      bloom[bit >>> 6] |= 1L << bit;
+    }
+  }
+
+  static boolean mightContain(long[] bloom, int bits, CharSequence value) {
+    final int hash1 = StringDictionary.hash(value);
+    final int hash2 = mix(hash1);
+    for (int i = 0; i < HASHES; i++) {
+      final int bit = Math.floorMod(hash1 + i * hash2, bits);
+      if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int mix(int hash) {
+    int result = hash * 0x9E3779B9;
+    result ^= result >>> 16;
+    return result | 1;
+  }
+
+  /**
+   * Method is used to convert a date and time to the value stored in the index.
+   * @param dateTime date and time.
+   * @return nanoseconds since 1970-01-01T00:00.
+   */
+  static long timestamp(LocalDateTime dateTime) {
+    return dateTime.toLocalDate().toEpochDay() * TimestampColumn.NANOS_PER_DAY + dateTime.toLocalTime().toNanoOfDay();
+  }
+
+  /**
+   * Method is used to write the index.
+   * @param file file to write to, usually {@link #sidecar(File)}.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  public void write(File file) throws IOException {
+    try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      output.writeInt(MAGIC);
+      output.writeByte(VERSION);
+      output.writeInt(this.interval);
+      output.writeInt(this.bloomBits);
+      output.writeInt(this.bloomFields.size());
+      for (String fieldName : this.bloomFields) {
+        output.writeUTF(fieldName);
+      }
+      // Most blocks share their fields and directives so each distinct header is only written once.
+      final Map<List<String>, Integer> fieldNames = new HashMap<>();
+      final Map<Map<String, String>, Integer> directives = new HashMap<>();
+      output.writeInt(this.checkpoints.size());
+      for (Checkpoint checkpoint : this.checkpoints) {
+        output.writeLong(checkpoint.offset());
+        output.writeInt(checkpoint.lineNumber());
+        final Integer fieldNamesId = fieldNames.get(checkpoint.fieldNames());
+        if (null == fieldNamesId) {
+          fieldNames.put(checkpoint.fieldNames(), fieldNames.size());
+          output.writeInt(-1);
+          output.writeInt(checkpoint.fieldNames().size());
+          for (String fieldName : checkpoint.fieldNames()) {
+            output.writeUTF(fieldName);
+          }
+        } else {
+          output.writeInt(fieldNamesId);
+        }
+        final Integer directivesId = directives.get(checkpoint.directives());
+        if (null == directivesId) {
+          directives.put(checkpoint.directives(), directives.size());
+          output.writeInt(-1);
+          output.writeInt(checkpoint.directives().size());
+          for (Map.Entry<String, String> e : checkpoint.directives().entrySet()) {
+            output.writeUTF(e.getKey());
+            output.writeUTF(e.getValue());
+          }
+        } else {
+          output.writeInt(directivesId);
+        }
+      }
+      for (int block = 0; block < blockCount(); block++) {
+        output.writeLong(this.minTimestamps[block]);
+        output.writeLong(this.maxTimestamps[block]);
+        for (long[][] bloom : this.blooms) {
+          for (long word : bloom[block]) {
+            output.writeLong(word);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Method is used to read an index written by {@link #write(File)}.
+   * @param file file to read, usually {@link #sidecar(File)}.
+   * @return index
+   * @throws IOException Exception thrown if the file is not an index or there is an underlying system error.
+   */
+  public static ElfIndex read(File file) throws IOException {
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (MAGIC != input.readInt()) {
+        throw new IOException(String.format("%s is not an index.", file));
+      }
+      final byte version = input.readByte();
+      if (VERSION != version) {
+        throw new IOException(
+            String.format("%s is version %s. Only version %s is supported.", file, version, VERSION)
+        );
+      }
+      final int interval = input.readInt();
+      final int bloomBits = input.readInt();
+      final List<String> bloomFields = new ArrayList<>();
+      final int bloomFieldCount = input.readInt();
+      for (int i = 0; i < bloomFieldCount; i++) {
+        bloomFields.add(input.readUTF());
+      }
+      final List<List<String>> fieldNames = new ArrayList<>();
+      final List<Map<String, String>> directives = new ArrayList<>();
+      final int checkpointCount = input.readInt();
+      final List<Checkpoint> checkpoints = new ArrayList<>(checkpointCount);
+      for (int i = 0; i < checkpointCount; i++) {
+        final ImmutableCheckpoint.Builder builder = ImmutableCheckpoint.builder()
+            .offset(input.readLong())
+            .lineNumber(input.readInt());
+        final int fieldNamesId = input.readInt();
+        if (fieldNamesId < 0) {
+          final String[] names = new String[input.readInt()];
+          for (int f = 0; f < names.length; f++) {
+            names[f] = input.readUTF();
+          }
+          fieldNames.add(Arrays.asList(names));
+          builder.fieldNames(fieldNames.get(fieldNames.size() - 1));
+        } else {
+          builder.fieldNames(fieldNames.get(fieldNamesId));
+        }
+        final int directivesId = input.readInt();
+        if (directivesId < 0) {
+          final int size = input.readInt();
+          final Map<String, String> values = new LinkedHashMap<>(size * 2);
+          for (int d = 0; d < size; d++) {
+            values.put(input.readUTF(), input.readUTF());
+          }
+          directives.add(values);
+          builder.directives(values);
+        } else {
+          builder.directives(directives.get(directivesId));
+        }
+        checkpoints.add(builder.build());
+      }
+      final int blocks = Math.max(0, checkpointCount - 1);
+      final long[] minTimestamps = new long[blocks];
+      final long[] maxTimestamps = new long[blocks];
+      final long[][][] blooms = new long[bloomFieldCount][blocks][bloomBits >>> 6];
+      for (int block = 0; block < blocks; block++) {
+        minTimestamps[block] = input.readLong();
+        maxTimestamps[block] = input.readLong();
+        for (long[][] bloom : blooms) {
+          for (int w = 0; w < bloom[block].length; w++) {
+            bloom[block][w] = input.readLong();
+          }
+        }
+      }
+      return new ElfIndex(interval, bloomBits, bloomFields, checkpoints, minTimestamps, maxTimestamps, blooms);
+    }
+  }
+
+  /**
+   * Method is used to index a parser. The parser must have been built from the start of a file in byte mode so it
+   * supports {@link ElfParser#checkpoint()}.
+   * @param parser parser positioned after the header.
+   * @param interval number of lines in each block.
+   * @param bloomFields fields to build bloom filters for.
+   * @return index
+   * @throws IOException Exception thrown when data cannot be parsed or there is an underlying system error.
+   */
+  static ElfIndex build(ElfParserImpl parser, int interval, List<String> bloomFields) throws IOException {
+    final int bloomBits = (int) Math.min(Integer.MAX_VALUE - 63, ((long) interval * BITS_PER_LINE + 63) & ~63L);
+    final List<Checkpoint> checkpoints = new ArrayList<>();
+    final List<long[]> timestamps = new ArrayList<>();
+    final List<List<long[]>> blooms = new ArrayList<>();
+    for (int i = 0; i < bloomFields.size(); i++) {
+      blooms.add(new ArrayList<>());
+    }
+    final Timestamps timestamp = new Timestamps();
+    final int[] bloomIndexes = new int[bloomFields.size()];
+    Map<String, Class<?>> fieldTypes = null;
+    long[] range = null;
+    int lines = 0;
+    Checkpoint checkpoint = parser.checkpoint();
+    LogRecord record;
+    while (null != (record = parser.nextRecord())) {
+      if (null != checkpoint) {
+        checkpoints.add(checkpoint);
+        checkpoint = null;
+        range = new long[]{Timestamps.NO_TIMESTAMP, Timestamps.NO_TIMESTAMP};
+        timestamps.add(range);
+        for (List<long[]> bloom : blooms) {
+          bloom.add(new long[bloomBits >>> 6]);
+        }
+      }
+      if (timestamp.range(record, parser.directiveEpochDay())) {
+        if (Timestamps.NO_TIMESTAMP == range[0] || timestamp.start < range[0]) {
+          range[0] = timestamp.start;
+        }
+        if (Timestamps.NO_TIMESTAMP == range[1] || timestamp.end > range[1]) {
+          range[1] = timestamp.end;
+        }
+      }
+      if (fieldTypes != record.fieldTypes()) {
+        fieldTypes = record.fieldTypes();
+        for (int i = 0; i < bloomIndexes.length; i++) {
+          bloomIndexes[i] = record.fieldIndex(bloomFields.get(i));
+        }
+      }
+      for (int i = 0; i < bloomIndexes.length; i++) {
+        final int index = bloomIndexes[i];
+        if (index >= 0 && !record.isNull(index)) {
+          final List<long[]> bloom = blooms.get(i);
+          add(bloom.get(bloom.size() - 1), bloomBits, record.getCharSequence(index));
+        }
+      }
+      if (++lines % interval == 0) {
+        // The position after the last line of a block is where the next block starts.
+        checkpoint = parser.checkpoint();
+      }
+    }
+    checkpoints.add(parser.checkpoint());
+    final long[] minTimestamps = new long[timestamps.size()];
+    final long[] maxTimestamps = new long[timestamps.size()];
+    for (int i = 0; i < minTimestamps.length; i++) {
+      minTimestamps[i] = timestamps.get(i)[0];
+      maxTimestamps[i] = timestamps.get(i)[1];
+    }
+    final long[][][] bloomArrays = new long[blooms.size()][][];
+    for (int i = 0; i < bloomArrays.length; i++) {
+      bloomArrays[i] = blooms.get(i).toArray(new long[0][]);
+    }
+    return new ElfIndex(
+        interval,
+        bloomBits,
+        new ArrayList<>(bloomFields),
+        checkpoints,
+        minTimestamps,
+        maxTimestamps,
+        bloomArrays
+    );
+  }
+}
@@ -0,0 +1,451 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Writes parsed records to a stream as newline delimited JSON (NDJSON) without building a {@link LogEntry} or
+ * going through Jackson. Each row is written as an object of field name to value. Long, Integer and Double fields
+ * are written as numbers, dates and times as ISO-8601 strings and all other fields as strings. Null fields are
+ * written as null.
+ *
+ * The names of the fields are encoded once for each set of fields. Strings are copied straight from the line and
+ * only escaped where JSON requires it. Unless disabled, the types of the fields are written once before the first
+ * row of each set of fields as {"#fieldTypes":{"date":"java.time.LocalDate",...}}, mirroring the #Fields
+ * directive.
+ */
+public final class ElfJsonWriter implements Closeable, Flushable {
+  public static final String FIELD_TYPES = "#fieldTypes";
+  static final int BUFFER_SIZE = 64 * 1024;
+  private static final Logger log = LoggerFactory.getLogger(ElfJsonWriter.class);
+  private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+  private static final long NEGATIVE_ZERO = Double.doubleToRawLongBits(-0D);
+  private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+  private final OutputStream output;
+  private final boolean writeFieldTypes;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int position;
+  private Map<String, Class<?>> fieldTypes;
+  private LogEntryRecord entryRecord;
+  /**
+   * Encoded name of each field including the separator before it, for example ,"cs-host":.
+   */
+  private byte[][] keys;
+  private FieldKind[] kinds;
+  /**
+   * Most lines of a file share a date so the last date is only formatted once.
+   */
+  private long epochDay = Long.MIN_VALUE;
+  private byte[] date;
+  private final byte[] digits = new byte[20];
+  private long rowCount;
+  private boolean closed;
+
+  /**
+   * Creates a writer that writes the types of the fields before the rows of each set of fields.
+   * @param outputStream stream to write to. Closed when the writer is closed.
+   */
+  public ElfJsonWriter(OutputStream outputStream) {
+    this(outputStream, true);
+  }
+
+  /**
+   * @param outputStream stream to write to. Closed when the writer is closed.
+   * @param writeFieldTypes true to write the types of the fields before the rows of each set of fields.
+   */
+  public ElfJsonWriter(OutputStream outputStream, boolean writeFieldTypes) {
+    this.output = outputStream;
+    this.writeFieldTypes = writeFieldTypes;
+  }
+
+  /**
+   * Method is used to write every remaining record of a parser.
+   * @param parser parser to read.
+   * @return number of rows written.
+   * @throws IOException Exception thrown if the parser fails or there is an underlying system error.
+   */
+  public long write(ElfParser parser) throws IOException {
+    long result = 0;
+    LogRecord record;
+    while (null != (record = parser.nextRecord())) {
+      write(record);
+      result++;
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to write an entry.
+   * @param entry entry to write.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  public void write(LogEntry entry) throws IOException {
+    this.entryRecord = new LogEntryRecord(entry, this.entryRecord);
+    write(this.entryRecord);
+  }
+
+  /**
+   * Method is used to write a record as one line.
+   * @param record record to write.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  public void write(LogRecord record) throws IOException {
+    if (this.closed) {
+      throw new IllegalStateException("Writer is closed.");
+    }
+    if (record.fieldTypes() != this.fieldTypes) {
+      fields(record.fieldTypes());
+    }
+    writeByte('{');
+    for (int index = 0; index < this.keys.length; index++) {
+      writeBytes(this.keys[index]);
+      if (record.isNull(index)) {
+        writeBytes(NULL);
+        continue;
+      }
+      switch (this.kinds[index]) {
+        case LONG:
+        case INT:
+          writeLong(record.getLong(index));
+          break;
+        case DOUBLE:
+          writeDouble(record.getDouble(index));
+          break;
+        case DATE:
+          writeDate(record.getLong(index));
+          break;
+        case TIME:
+          writeTime(record.getLong(index));
+          break;
+        case STRING:
+          writeString(record.getCharSequence(index));
+          break;
+        default:
+          writeString(record.getObject(index).toString());
+          break;
+      }
+    }
+    writeByte('}');
+    writeByte('\n');
+    this.rowCount++;
+  }
+
+  /**
+   * Method is used to encode the names of a new set of fields. Nothing is encoded if the fields are the same as
+   * before in the same order.
+   * @param fieldTypes fields of the record.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  private void fields(Map<String, Class<?>> fieldTypes) throws IOException {
+    final boolean changed = null == this.fieldTypes ||
+        !this.fieldTypes.equals(fieldTypes) ||
+        !new ArrayList<>(this.fieldTypes.keySet()).equals(new ArrayList<>(fieldTypes.keySet()));
+    this.fieldTypes = fieldTypes;
+    if (!changed) {
+      return;
+    }
+    log.trace("fields() - Encoding fields {}.", fieldTypes.keySet());
+    this.keys = new byte[fieldTypes.size()][];
+    this.kinds = new FieldKind[fieldTypes.size()];
+    final StringBuilder types = new StringBuilder();
+    types.append('{');
+    quote(FIELD_TYPES, types);
+    types.append(":{");
+    int index = 0;
+    for (Map.Entry<String, Class<?>> e : fieldTypes.entrySet()) {
+      final StringBuilder key = new StringBuilder();
+      if (index > 0) {
+        key.append(',');
+      }
+      quote(e.getKey(), key);
+      key.append(':');
+      this.keys[index] = key.toString().getBytes(StandardCharsets.UTF_8);
+      this.kinds[index] = FieldKind.of(e.getValue());
+      types.append(key);
+      quote(e.getValue().getName(), types);
+      index++;
+    }
+    types.append("}}\n");
+    if (this.writeFieldTypes) {
+      writeBytes(types.toString().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Method is used to append a value as a JSON string. Used for names, which are only encoded once.
+   * @param value value to quote.
+   * @param builder builder to append to.
+   */
+  static void quote(String value, StringBuilder builder) {
+    builder.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        builder.append('\\').append(c);
+      } else if (c < 0x20) {
+        builder.append(String.format("\\u%04x", (int) c));
+      } else {
+        builder.append(c);
+      }
+    }
+    builder.append('"');
+  }
+
+  private void flushBuffer() throws IOException {
+    if (this.position > 0) {
+      this.output.write(this.buffer, 0, this.position);
+      this.position = 0;
+    }
+  }
+
+  private void ensure(int length) throws IOException {
+    if (this.buffer.length - this.position < length) {
+      flushBuffer();
+    }
+  }
+
+  private void writeByte(int value) throws IOException {
+    if (this.position == this.buffer.length) {
+      flushBuffer();
+    }
+    this.buffer[this.position++] = (byte) value;
+  }
+
+  private void writeBytes(byte[] bytes) throws IOException {
+    writeBytes(bytes, 0, bytes.length);
+  }
+
+  private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+    if (this.buffer.length - this.position < length) {
+      flushBuffer();
+      if (length > this.buffer.length) {
+        this.output.write(bytes, offset, length);
+        return;
+      }
+    }
+    System.arraycopy(bytes, offset, this.buffer, this.position, length);
+    this.position += length;
+  }
+
+  private void writeLong(long value) throws IOException {
+    if (value == Long.MIN_VALUE) {
+      writeBytes(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+      return;
+    }
+    ensure(this.digits.length);
+    long remaining = value;
+    if (remaining < 0) {
+      this.buffer[this.position++] = '-';
+      remaining = -remaining;
+    }
+    int start = this.digits.length;
+    do {
+      this.digits[--start] = (byte) ('0' + remaining % 10);
+      remaining /= 10;
+    } while (remaining != 0);
+    final int length = this.digits.length - start;
+    System.arraycopy(this.digits, start, this.buffer, this.position, length);
+    this.position += length;
+  }
+
+  private void writeDouble(double value) throws IOException {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      // JSON has no literal for these, so they are written as strings the same way Jackson can be configured to.
+      writeString(Double.toString(value));
+    } else if (value == (long) value && Math.abs(value) < 1e7D && Double.doubleToRawLongBits(value) != NEGATIVE_ZERO) {
+      // Double.toString() writes whole numbers below 10^7 as the number followed by .0.
+      writeLong((long) value);
+      writeByte('.');
+      writeByte('0');
+    } else {
+      writeBytes(Double.toString(value).getBytes(StandardCharsets.US_ASCII));
+    }
+  }
+
+  private void writeDate(long epochDay) throws IOException {
+    if (epochDay != this.epochDay) {
+      this.date = ('"' + LocalDate.ofEpochDay(epochDay).toString() + '"').getBytes(StandardCharsets.US_ASCII);
+      this.epochDay = epochDay;
+    }
+    writeBytes(this.date);
+  }
+
+  private void twoDigits(int value) {
+    this.buffer[this.position++] = (byte) ('0' + value / 10);
+    this.buffer[this.position++] = (byte) ('0' + value % 10);
+  }
+
+  /**
+   * Method is used to write a time the same way as LocalTime.toString() except that seconds are always written.
+   * @param nanoOfDay nano of the day.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  private void writeTime(long nanoOfDay) throws IOException {
+    ensure(20);
+    final long secondOfDay = nanoOfDay / TimestampColumn.NANOS_PER_SECOND;
+    final int nano = (int) (nanoOfDay % TimestampColumn.NANOS_PER_SECOND);
+    this.buffer[this.position++] = '"';
+    twoDigits((int) (secondOfDay / 3600));
+    this.buffer[this.position++] = ':';
+    twoDigits((int) (secondOfDay / 60 % 60));
+    this.buffer[this.position++] = ':';
+    twoDigits((int) (secondOfDay % 60));
+    if (nano > 0) {
+      this.buffer[this.position++] = '.';
+      int value = nano;
+      int length = 9;
+      while (length > 3 && value % 1000 == 0) {
+        value /= 1000;
+        length -= 3;
+      }
+      for (int i = length - 1; i >= 0; i--) {
+        this.buffer[this.position + i] = (byte) ('0' + value % 10);
+        value /= 10;
+      }
+      this.position += length;
+    }
+    this.buffer[this.position++] = '"';
+  }
+
+  private void escape(int c) throws IOException {
+    ensure(6);
+    this.buffer[this.position++] = '\\';
+    switch (c) {
+      case '"':
+      case '\\':
+        this.buffer[this.position++] = (byte) c;
+        break;
+      case '\n':
+        this.buffer[this.position++] = 'n';
+        break;
+      case '\r':
+        this.buffer[this.position++] = 'r';
+        break;
+      case '\t':
+        this.buffer[this.position++] = 't';
+        break;
+      default:
+        this.buffer[this.position++] = 'u';
+        this.buffer[this.position++] = '0';
+        this.buffer[this.position++] = '0';
+        this.buffer[this.position++] = HEX[(c >>> 4) & 0xF];
+        this.buffer[this.position++] = HEX[c & 0xF];
+        break;
+    }
+  }
+
+  private static boolean needsEscape(int c) {
+    return c < 0x20 || c == '"' || c == '\\';
+  }
+
+  private void writeString(CharSequence value) throws IOException {
+    writeByte('"');
+    if (value instanceof FieldSlice && null != ((FieldSlice) value).bytes()) {
+      // ASCII fields are copied straight from the bytes of the line in runs that do not need escaping.
+      final FieldSlice slice = (FieldSlice) value;
+      final byte[] bytes = slice.bytes();
+      final int end = slice.start() + slice.length();
+      int run = slice.start();
+      for (int i = run; i < end; i++) {
+        if (needsEscape(bytes[i])) {
+          writeBytes(bytes, run, i - run);
+          escape(bytes[i]);
+          run = i + 1;
+        }
+      }
+      writeBytes(bytes, run, end - run);
+    } else {
+      final int length = value.length();
+      for (int i = 0; i < length; i++) {
+        final char c = value.charAt(i);
+        if (c < 0x80) {
+          if (needsEscape(c)) {
+            escape(c);
+          } else {
+            writeByte(c);
+          }
+        } else if (c < 0x800) {
+          ensure(2);
+          this.buffer[this.position++] = (byte) (0xC0 | (c >> 6));
+          this.buffer[this.position++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+          final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+          ensure(4);
+          this.buffer[this.position++] = (byte) (0xF0 | (codePoint >> 18));
+          this.buffer[this.position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+          this.buffer[this.position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+          this.buffer[this.position++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+          // Unpaired surrogates cannot be encoded and are replaced the same way String.getBytes() does.
+          writeByte('?');
+        } else {
+          ensure(3);
+          this.buffer[this.position++] = (byte) (0xE0 | (c >> 12));
+          this.buffer[this.position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+          this.buffer[this.position++] = (byte) (0x80 | (c & 0x3F));
+        }
+      }
+    }
+    writeByte('"');
+  }
+
+  /**
+   * The number of rows written so far.
+   * @return The number of rows written so far.
+   */
+  public long rowCount() {
+    return this.rowCount;
+  }
+
+  /**
+   * Method is used to write any buffered rows to the stream and flush it.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  @Override
+  public void flush() throws IOException {
+    flushBuffer();
+    this.output.flush();
+  }
+
+  /**
+   * Method is used to write any buffered rows and close the stream.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    try {
+      flushBuffer();
+      log.trace("close() - Wrote {} row(s).", this.rowCount);
+    } finally {
+      this.output.close();
+    }
+  }
+}
@@ -17,19 +17,127 @@ package com.github.jcustenborder.parsers.elf;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public interface ElfParser extends Closeable {
   /**
-   * The data types associated with the fields.
+   * The data types associated with the fields. Changes when a #Fields directive after the header defines new
+   * fields.
    * @return The data types associated with the fields.
    */
   Map<String, Class<?>> fieldTypes();
 
+  /**
+   * The directives read so far such as Software, Version and Date. Each directive holds the last value that was
+   * read for it.
+   * @return The value of each directive by name.
+   */
+  default Map<String, String> directives() {
+    return Collections.emptyMap();
+  }
+
+  /**
+   * The number of lines that could not be parsed by the type of error. Only lines that were read so far are
+   * counted. See {@link ElfParserBuilder#errorPolicy(ErrorPolicy)}.
+   * @return number of errors by type. Types without errors are not included.
+   */
+  default Map<ParseError.Type, Long> errorCounts() {
+    return Collections.emptyMap();
+  }
+
+  /**
+   * Method is used to snapshot the metrics of the parser. Metrics are only collected when they are enabled with
+   * {@link ElfParserBuilder#metrics(boolean)}, so a disabled parser does not pay for them.
+   * @return counters for the lines read so far. Null if metrics are not enabled.
+   */
+  default ParseMetrics metrics() {
+    return null;
+  }
+
+  /**
+   * Method is used to capture the position after the last line that was returned along with the fields and
+   * directives that apply there. Pass the checkpoint to {@link ElfParserBuilder#build(java.io.File, Checkpoint)}
+   * to continue parsing from the same position. After {@link #nextBatch(LogBatch)} the position is after the last
+   * row of the batch.
+   * @return checkpoint for the current position.
+   * @throws UnsupportedOperationException if the parser does not track byte offsets. Only parsers that read their
+   *                                       input as bytes support checkpoints.
+   */
+  default Checkpoint checkpoint() {
+    throw new UnsupportedOperationException(
+        String.format("%s does not support checkpoints.", getClass().getSimpleName())
+    );
+  }
+
   /**
    * Method used to return the next LogEntry.
    * @return LogEntry if one is available. Null if at the end of the file.
    * @throws IOException Exception thrown when data cannot be parsed or there is an underlying system error.
    */
   LogEntry next() throws IOException;
+
+  /**
+   * Method used to return the next line as a LogRecord. The returned record is reused by the parser and is only
+   * valid until the next call to nextRecord() or next(). Parsers that do not support records return a view over
+   * {@link #next()}.
+   * @return LogRecord if one is available. Null if at the end of the file.
+   * @throws IOException Exception thrown when data cannot be parsed or there is an underlying system error.
+   */
+  default LogRecord nextRecord() throws IOException {
+    final LogEntry entry = next();
+    return null == entry ? null : new LogEntryRecord(entry);
+  }
+
+  /**
+   * Method is used to create a batch for {@link #nextBatch(LogBatch)} with a column for each field.
+   * @param capacity maximum number of rows in the batch.
+   * @return empty batch.
+   */
+  default LogBatch newBatch(int capacity) {
+    return new LogBatch(fieldTypes(), capacity);
+  }
+
+  /**
+   * Method is used to read the next rows into a batch. The batch is cleared and filled with up to
+   * {@link LogBatch#capacity()} rows. A batch only holds rows with the same fields. When the fields of the input
+   * change the batch ends early and its columns are changed to the new fields by the next call. The default
+   * implementation cannot push a record back, so parsers whose fields can change must override this method.
+   * @param batch batch created by {@link #newBatch(int)}.
+   * @return number of rows read. 0 if at the end of the file.
+   * @throws IOException Exception thrown when data cannot be parsed or there is an underlying system error.
+   */
+  default int nextBatch(LogBatch batch) throws IOException {
+    batch.clear();
+    LogRecord record;
+    while (!batch.isFull() && null != (record = nextRecord())) {
+      if (batch.size() == 0 && !batch.matches(record.fieldTypes())) {
+        batch.reset(record.fieldTypes());
+      }
+      batch.add(record);
+    }
+    return batch.size();
+  }
+
+  /**
+   * Method is used to return a Spliterator over the remaining entries. Parsers built from a file in byte mode or
+   * with {@link ElfParserBuilder#buildMapped(java.io.File)} split on line boundaries. Other parsers split by reading
+   * batches of entries. After the Spliterator has been used the position of the parser is undefined.
+   * @return Spliterator over the remaining entries.
+   */
+  default Spliterator<LogEntry> spliterator() {
+    return new ElfParserSpliterator(this, Long.MAX_VALUE);
+  }
+
+  /**
+   * Method is used to return a Stream of the remaining entries. IOExceptions are thrown as UncheckedIOException.
+   * Closing the stream does not close the parser.
+   * @return Stream of the remaining entries.
+   */
+  default Stream<LogEntry> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
 }
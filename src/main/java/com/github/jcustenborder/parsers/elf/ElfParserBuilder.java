@@ -27,12 +27,32 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.DoublePredicate;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -59,7 +79,28 @@ public class ElfParserBuilder {
   }
 
   final Map<String, FieldParser> fieldParsers = new LinkedHashMap<>();
-  Matcher headerMatcher = HEADER_PATTERN.matcher("");
+  boolean byteMode;
+  int pipelineWorkers;
+  Charset charset;
+  int chunkSize = MappedElfParser.DEFAULT_CHUNK_SIZE;
+  boolean ordered = true;
+  DirectiveMode directiveMode = DirectiveMode.FAIL;
+  ForkJoinPool forkJoinPool;
+  List<String> projectedFields;
+  int[] projectedIndexes;
+  final List<FieldFilter> filters = new ArrayList<>();
+  final Map<String, Integer> cacheSizes = new HashMap<>();
+  long pollIntervalNanos = FollowingElfParser.DEFAULT_POLL_INTERVAL_NANOS;
+  ExecutorService executorService;
+  int queueCapacity = MultiFileElfParser.DEFAULT_QUEUE_CAPACITY;
+  ErrorPolicy errorPolicy = ErrorPolicy.FAIL;
+  Consumer<ParseError> errorSink;
+  boolean metrics;
+  ParseMetricsListener metricsListener;
+  long metricsReportInterval;
+  int latencySampleInterval = MetricsCollector.DEFAULT_SAMPLE_INTERVAL;
+  String jmxName;
+  TimestampColumn timestamp;
 
   private ElfParserBuilder() {
 
@@ -69,35 +110,613 @@ public class ElfParserBuilder {
     return new ElfParserBuilder();
   }
 
+  /**
+   * Method is used to enable byte oriented parsing of InputStream and File sources. Lines are tokenized directly
+   * from the bytes and numeric, date and time fields are parsed without being converted to a String. Only string
+   * fields are decoded using the configured charset. The charset must be ASCII compatible, such as UTF-8 or
+   * ISO-8859-1. Building a parser that reads bytes with a charset like UTF-16 throws an IllegalArgumentException.
+   * @param byteMode true to enable byte oriented parsing.
+   * @return builder
+   */
+  public ElfParserBuilder byteMode(boolean byteMode) {
+    this.byteMode = byteMode;
+    if (byteMode && null != this.charset) {
+      byteCharset();
+    }
+    return this;
+  }
+
+  /**
+   * Method is used to parse InputStream and File sources on several threads. One thread reads the input, one splits
+   * it into batches of whole lines and the workers parse the batches. Entries are returned in the order of the
+   * input. Use this for a single large, compressed or streamed input. Lines are parsed as bytes, see
+   * {@link #byteMode(boolean)}. Checkpoints and metrics are not available from a pipelined parser.
+   * @param workers number of threads used to parse lines.
+   * @return builder
+   */
+  public ElfParserBuilder pipelined(int workers) {
+    if (workers <= 0) {
+      throw new IllegalArgumentException("workers must be greater than 0.");
+    }
+    this.pipelineWorkers = workers;
+    return this;
+  }
+
+  /**
+   * Method is used to set the charset used to decode InputStream and File sources. Defaults to the platform
+   * charset.
+   * @param charset charset of the input.
+   * @return builder
+   * @throws IllegalArgumentException if byte mode is enabled and the charset is not ASCII compatible.
+   */
+  public ElfParserBuilder charset(Charset charset) {
+    this.charset = charset;
+    if (this.byteMode && null != charset) {
+      byteCharset();
+    }
+    return this;
+  }
+
+  /**
+   * Method is used to set the approximate size in bytes of the chunks used by {@link #buildMapped(File)} and by
+   * {@link ElfParser#spliterator()} for files parsed in byte mode.
+   * @param chunkSize size of each chunk in bytes.
+   * @return builder
+   */
+  public ElfParserBuilder chunkSize(int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be greater than 0.");
+    }
+    this.chunkSize = chunkSize;
+    return this;
+  }
+
+  /**
+   * Method is used to determine if {@link #buildMapped(File)} returns entries in file order. When false entries
+   * are returned as soon as the chunk containing them has been parsed. For {@link #buildAll(List)} true merges the
+   * entries of all files by their date and time fields and false returns entries as soon as they are parsed.
+   * Defaults to true.
+   * @param ordered true to return entries in file order.
+   * @return builder
+   */
+  public ElfParserBuilder ordered(boolean ordered) {
+    this.ordered = ordered;
+    return this;
+  }
+
+  /**
+   * Method is used to set how {@link #buildMapped(File)} handles directives found after the header. Defaults to
+   * {@link DirectiveMode#FAIL}.
+   * @param directiveMode how to handle directives.
+   * @return builder
+   */
+  public ElfParserBuilder directiveMode(DirectiveMode directiveMode) {
+    this.directiveMode = directiveMode;
+    return this;
+  }
+
+  /**
+   * Method is used to set the pool used by {@link #buildMapped(File)} and to inflate gzip files in parallel.
+   * Defaults to the common pool.
+   * @param forkJoinPool pool to parse chunks on.
+   * @return builder
+   */
+  public ElfParserBuilder forkJoinPool(ForkJoinPool forkJoinPool) {
+    this.forkJoinPool = forkJoinPool;
+    return this;
+  }
+
+  /**
+   * Method is used to limit the fields returned by the parser. Fields that are not projected are still counted
+   * but are never parsed or stored. Columns are returned in the order they appear in the header. Building the
+   * parser fails if a field is not in the header.
+   * @param fieldNames names of the fields to return.
+   * @return builder
+   */
+  public ElfParserBuilder project(String... fieldNames) {
+    this.projectedFields = Arrays.asList(fieldNames);
+    this.projectedIndexes = null;
+    return this;
+  }
+
+  /**
+   * Method is used to limit the fields returned by the parser by their position in the #Fields directive. See
+   * {@link #project(String...)}.
+   * @param fieldIndexes zero based indexes of the fields to return.
+   * @return builder
+   */
+  public ElfParserBuilder project(int... fieldIndexes) {
+    this.projectedIndexes = fieldIndexes.clone();
+    this.projectedFields = null;
+    return this;
+  }
+
+  /**
+   * Method is used to add a column that combines the date and time fields of each line into a single timestamp.
+   * The timestamp is computed from the text of the fields, so when only the timestamp is needed the date and time
+   * fields can be left out of {@link #project(String...)} and are never parsed on their own. The name of the column
+   * can be passed to {@link #project(String...)} and the column is always returned after the other fields. When
+   * the header does not have a date field the date of the #Date directive, or the #Start-Date directive, is used.
+   * Lines without a time are returned with a null timestamp. W3C extended log files are written in UTC.
+   * @param fieldName name of the timestamp column.
+   * @param type how the timestamp is returned.
+   * @param zone time zone the date and time fields are written in.
+   * @return builder
+   */
+  public ElfParserBuilder timestamp(String fieldName, TimestampType type, ZoneId zone) {
+    if (null == fieldName || null == type || null == zone) {
+      throw new NullPointerException("fieldName, type and zone cannot be null.");
+    }
+    this.timestamp = new TimestampColumn(fieldName, type, zone);
+    return this;
+  }
+
+  /**
+   * Method is used to add a timestamp column for date and time fields written in UTC. See
+   * {@link #timestamp(String, TimestampType, ZoneId)}.
+   * @param fieldName name of the timestamp column.
+   * @param type how the timestamp is returned.
+   * @return builder
+   */
+  public ElfParserBuilder timestamp(String fieldName, TimestampType type) {
+    return timestamp(fieldName, type, ZoneOffset.UTC);
+  }
+
+  /**
+   * Method is used to only return lines where the text of a field matches a predicate. Filters are checked in the
+   * order they are added, before any other field is parsed, and the line is skipped as soon as one fails. The
+   * field does not need to be projected. The CharSequence is only valid during the call and null fields are passed
+   * as null.
+   * @param fieldName name of the field.
+   * @param predicate predicate over the text of the field.
+   * @return builder
+   */
+  public ElfParserBuilder filterRaw(String fieldName, Predicate<CharSequence> predicate) {
+    this.filters.add(new FieldFilter(fieldName, FieldFilter.Type.RAW, predicate));
+    return this;
+  }
+
+  /**
+   * Method is used to only return lines where a Long, Integer, date or time field matches a predicate. Dates are
+   * passed as the number of days since 1970-01-01 and times as the nano of the day. Lines where the field is null
+   * are skipped. See {@link #filterRaw(String, Predicate)}.
+   * @param fieldName name of the field.
+   * @param predicate predicate over the value of the field.
+   * @return builder
+   */
+  public ElfParserBuilder filterLong(String fieldName, LongPredicate predicate) {
+    this.filters.add(new FieldFilter(fieldName, FieldFilter.Type.LONG, predicate));
+    return this;
+  }
+
+  /**
+   * Method is used to only return lines where a Long, Integer, date or time field is between min and max
+   * inclusive. This is the same as {@link #filterLong(String, LongPredicate)} except that
+   * {@link #buildArchive(File)} also uses the range to skip blocks whose values are all outside of it.
+   * @param fieldName name of the field.
+   * @param min smallest value to return.
+   * @param max largest value to return.
+   * @return builder
+   */
+  public ElfParserBuilder filterRange(String fieldName, long min, long max) {
+    if (min > max) {
+      throw new IllegalArgumentException("min must be less than or equal to max.");
+    }
+    this.filters.add(new FieldFilter(fieldName, min, max));
+    return this;
+  }
+
+  /**
+   * Method is used to only return lines where a Double, Long or Integer field matches a predicate. Lines where the
+   * field is null are skipped. See {@link #filterRaw(String, Predicate)}.
+   * @param fieldName name of the field.
+   * @param predicate predicate over the value of the field.
+   * @return builder
+   */
+  public ElfParserBuilder filterDouble(String fieldName, DoublePredicate predicate) {
+    this.filters.add(new FieldFilter(fieldName, FieldFilter.Type.DOUBLE, predicate));
+    return this;
+  }
+
+  /**
+   * Method is used to only return lines where the parsed value of a field matches a predicate. The value is the
+   * same type that is stored in {@link LogEntry#fieldData()} and null fields are passed as null. See
+   * {@link #filterRaw(String, Predicate)}.
+   * @param fieldName name of the field.
+   * @param predicate predicate over the value of the field.
+   * @return builder
+   */
+  public ElfParserBuilder filter(String fieldName, Predicate<Object> predicate) {
+    this.filters.add(new FieldFilter(fieldName, FieldFilter.Type.VALUE, predicate));
+    return this;
+  }
+
+  /**
+   * Method is used to cache the values of low cardinality String fields such as cs-method or s-action. Repeated
+   * values are returned as the same String instance and are looked up without allocating. The cache of a field
+   * disables itself once the field has more than 256 distinct values. Fields that are not in the header or are not
+   * Strings are ignored.
+   * @param fieldNames names of the fields to cache.
+   * @return builder
+   */
+  public ElfParserBuilder dictionary(String... fieldNames) {
+    return dictionary(StringCache.DEFAULT_MAX_SIZE, fieldNames);
+  }
+
+  /**
+   * Method is used to cache the values of low cardinality String fields. See {@link #dictionary(String...)}.
+   * @param maxSize number of distinct values after which the cache of a field disables itself.
+   * @param fieldNames names of the fields to cache.
+   * @return builder
+   */
+  public ElfParserBuilder dictionary(int maxSize, String... fieldNames) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize must be greater than 0.");
+    }
+    for (String fieldName : fieldNames) {
+      this.cacheSizes.put(fieldName, maxSize);
+    }
+    return this;
+  }
+
+  /**
+   * Method is used to set the longest time {@link #buildFollowing(File)} waits before checking the file for new
+   * data. Waiting starts at 50 microseconds and doubles up to this interval. Defaults to 5 milliseconds.
+   * @param interval longest time between checks.
+   * @param unit unit of the interval.
+   * @return builder
+   */
+  public ElfParserBuilder pollInterval(long interval, TimeUnit unit) {
+    if (interval <= 0) {
+      throw new IllegalArgumentException("interval must be greater than 0.");
+    }
+    this.pollIntervalNanos = unit.toNanos(interval);
+    return this;
+  }
+
+  /**
+   * Method is used to set what the parser does with a line that cannot be parsed, such as a line with more fields
+   * than the header or a field that is not a valid number. Errors are counted by {@link ElfParser#errorCounts()}
+   * whatever the policy is. Defaults to {@link ErrorPolicy#FAIL}.
+   * @param errorPolicy how to handle lines that cannot be parsed.
+   * @return builder
+   */
+  public ElfParserBuilder errorPolicy(ErrorPolicy errorPolicy) {
+    if (null == errorPolicy) {
+      throw new NullPointerException("errorPolicy cannot be null.");
+    }
+    this.errorPolicy = errorPolicy;
+    return this;
+  }
+
+  /**
+   * Method is used to receive the lines that are skipped or have fields nulled out when the error policy is not
+   * {@link ErrorPolicy#FAIL}, for example to write them to a dead letter file. The sink is called on the thread
+   * that parses the line, which is a pool thread for {@link #buildMapped(File)} and parallel streams.
+   * @param errorSink sink for lines that cannot be parsed.
+   * @return builder
+   */
+  public ElfParserBuilder errorSink(Consumer<ParseError> errorSink) {
+    this.errorSink = errorSink;
+    return this;
+  }
+
+  ErrorHandler errorHandler() {
+    return new ErrorHandler(this.errorPolicy, this.errorSink);
+  }
+
+  /**
+   * Method is used to collect metrics such as the number of lines and bytes read, null values and parse failures
+   * for each field and a histogram of sampled parse times for each field. See {@link ElfParser#metrics()}. When
+   * metrics are disabled the parser only checks a null field on each line. Defaults to false.
+   * @param metrics true to collect metrics.
+   * @return builder
+   */
+  public ElfParserBuilder metrics(boolean metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  /**
+   * Method is used to receive the metrics of each parser every reportInterval lines and when the parser is closed.
+   * The listener is called on the thread that reads the lines. Parsers that parse chunks on a pool only call the
+   * listener when they are closed. Enables metrics.
+   * @param listener listener to call.
+   * @param reportInterval number of lines between calls.
+   * @return builder
+   */
+  public ElfParserBuilder metricsListener(ParseMetricsListener listener, long reportInterval) {
+    if (reportInterval <= 0) {
+      throw new IllegalArgumentException("reportInterval must be greater than 0.");
+    }
+    this.metricsListener = listener;
+    this.metricsReportInterval = reportInterval;
+    this.metrics = true;
+    return this;
+  }
+
+  /**
+   * Method is used to set how often the fields of a line are timed. Timing every line costs two calls to
+   * System.nanoTime() per field. Defaults to one line in 64.
+   * @param lines number of lines per timed line.
+   * @return builder
+   */
+  public ElfParserBuilder latencySampleInterval(int lines) {
+    if (lines <= 0) {
+      throw new IllegalArgumentException("lines must be greater than 0.");
+    }
+    this.latencySampleInterval = lines;
+    return this;
+  }
+
+  /**
+   * Method is used to register the metrics of each parser with the platform MBeanServer as
+   * com.github.jcustenborder.parsers.elf:type=ElfParser,name=&lt;name&gt;,id=&lt;id&gt;. The MBean is unregistered
+   * when the parser is closed. Enables metrics.
+   * @param jmxName value of the name key.
+   * @return builder
+   */
+  public ElfParserBuilder jmxName(String jmxName) {
+    this.jmxName = jmxName;
+    this.metrics = true;
+    return this;
+  }
+
+  /**
+   * Method is used to create the metrics collector for a parser.
+   * @return collector. Null if metrics are not enabled.
+   */
+  MetricsCollector metricsCollector() {
+    if (!this.metrics) {
+      return null;
+    }
+    final MetricsCollector result = new MetricsCollector(
+        this.latencySampleInterval,
+        this.metricsListener,
+        this.metricsReportInterval
+    );
+    if (null != this.jmxName) {
+      result.register(this.jmxName);
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to set the executor {@link #buildAll(List)} parses files on. The executor is not shut down when
+   * the parser is closed. On Java 21 and newer Executors.newVirtualThreadPerTaskExecutor() parses every file on its
+   * own virtual thread. Defaults to a pool with a thread per processor that is owned by the parser.
+   * @param executorService executor to parse files on.
+   * @return builder
+   */
+  public ElfParserBuilder executor(ExecutorService executorService) {
+    this.executorService = executorService;
+    return this;
+  }
+
+  /**
+   * Method is used to set how many parsed entries {@link #buildAll(List)} holds before the threads parsing files
+   * wait for them to be consumed. Only used when entries are not merged, see {@link #ordered(boolean)}. Merging
+   * holds at most two batches of 256 entries per file. Defaults to 16384.
+   * @param queueCapacity number of entries.
+   * @return builder
+   */
+  public ElfParserBuilder queueCapacity(int queueCapacity) {
+    if (queueCapacity <= 0) {
+      throw new IllegalArgumentException("queueCapacity must be greater than 0.");
+    }
+    this.queueCapacity = queueCapacity;
+    return this;
+  }
+
+  /**
+   * Method is used to create the schema for the fields of a #Fields directive, applying the projection.
+   * @param fieldNames names of the fields in the order they appear in the file.
+   * @return schema for the fields.
+   */
+  synchronized Schema schema(List<String> fieldNames) {
+    final List<ParserEntry> parsers = parserEntries(fieldNames);
+    final BitSet projected = new BitSet(fieldNames.size());
+    if (null == this.projectedFields && null == this.projectedIndexes) {
+      projected.set(0, fieldNames.size());
+    } else if (null != this.projectedFields) {
+      List<String> missing = new ArrayList<>();
+      for (String fieldName : this.projectedFields) {
+        if (null != this.timestamp && this.timestamp.fieldName.equals(fieldName)) {
+          continue;
+        }
+        final int index = fieldNames.indexOf(fieldName);
+        if (index < 0) {
+          missing.add(fieldName);
+        } else {
+          projected.set(index);
+        }
+      }
+      if (!missing.isEmpty()) {
+        throw new IllegalStateException(
+            String.format("Projected field(s) %s are not defined in the header. Fields: %s", missing, fieldNames)
+        );
+      }
+    } else {
+      for (int index : this.projectedIndexes) {
+        if (index < 0 || index >= fieldNames.size()) {
+          throw new IllegalStateException(
+              String.format(
+                  "Projected field index %s is out of range. The header defines %s field(s).",
+                  index,
+                  fieldNames.size()
+              )
+          );
+        }
+        projected.set(index);
+      }
+    }
+    log.trace("schema() - Projecting field(s) {} of {}.", projected, fieldNames);
+    return new Schema(parsers, projected.stream().toArray(), this.filters, this.cacheSizes, this.timestamp);
+  }
+
+  /**
+   * Characters the byte oriented parser looks for in the raw bytes of a line.
+   */
+  static final String BYTE_MODE_CHARACTERS = "\t\n\r #\"'-.:0123456789";
+
+  /**
+   * Method is used to check that the characters used to tokenize lines are single ASCII bytes in a charset.
+   * @param charset charset to check.
+   * @return true if the charset is ASCII compatible.
+   */
+  static boolean asciiCompatible(Charset charset) {
+    final byte[] ascii = BYTE_MODE_CHARACTERS.getBytes(StandardCharsets.US_ASCII);
+    if (!BYTE_MODE_CHARACTERS.equals(new String(ascii, charset))) {
+      return false;
+    }
+    return !charset.canEncode() || Arrays.equals(ascii, BYTE_MODE_CHARACTERS.getBytes(charset));
+  }
+
+  /**
+   * Method is used to get the charset used by parsers that read bytes.
+   * @return the configured charset or the platform charset.
+   * @throws IllegalArgumentException if the charset is not ASCII compatible.
+   */
+  Charset byteCharset() {
+    final Charset result = null != this.charset ? this.charset : Charset.defaultCharset();
+    if (!asciiCompatible(result)) {
+      throw new IllegalArgumentException(
+          String.format("Charset %s is not ASCII compatible and cannot be parsed as bytes.", result)
+      );
+    }
+    return result;
+  }
+
   public ElfParser build(Reader reader) throws IOException {
-    LineNumberReader lineNumberReader = new LineNumberReader(reader);
+    return withMetrics(build(new ReaderLineSource(new LineNumberReader(reader))));
+  }
+
+  /**
+   * Method is used to attach a metrics collector that is closed with the parser, if metrics are enabled.
+   * @param parser parser to collect metrics for.
+   * @return the parser.
+   */
+  ElfParserImpl withMetrics(ElfParserImpl parser) {
+    final MetricsCollector metrics = metricsCollector();
+    if (null != metrics) {
+      parser.metrics(metrics, true);
+    }
+    return parser;
+  }
+
+  ElfParserImpl build(LineSource lineSource) throws IOException {
+    Map<String, String> directives = new LinkedHashMap<>();
+    List<String> fieldNames = readFieldNames(lineSource, directives);
+    final ElfParserImpl parser = new ElfParserImpl(lineSource, schema(fieldNames), this::schema, directives);
+    parser.errors(errorHandler());
+    return parser;
+  }
+
+  /**
+   * Method is used to create a parser that continues from a checkpoint. The fields and directives come from the
+   * checkpoint instead of the header.
+   * @param lineSource line source positioned at the offset of the checkpoint.
+   * @param checkpoint checkpoint to continue from.
+   * @return parser for the rest of the input.
+   */
+  ElfParserImpl resume(LineSource lineSource, Checkpoint checkpoint) {
+    if (checkpoint.fieldNames().isEmpty()) {
+      throw new IllegalStateException("Checkpoint does not define any fields.");
+    }
+    final ElfParserImpl parser =
+        new ElfParserImpl(lineSource, schema(checkpoint.fieldNames()), this::schema, checkpoint.directives());
+    parser.errors(errorHandler());
+    return parser;
+  }
+
+  /**
+   * Method is used to check that the offset of a checkpoint is still the start of a line in the file.
+   * @param channel file to check.
+   * @param checkpoint checkpoint to check.
+   * @return true if the file can be resumed at the offset of the checkpoint.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  static boolean canResume(FileChannel channel, Checkpoint checkpoint) throws IOException {
+    final long offset = checkpoint.offset();
+    final long size = channel.size();
+    return offset >= 0 && offset <= size && MappedElfParser.alignToLine(channel, offset, size) == offset;
+  }
+
+  static void checkNotCompressed(File file) throws IOException {
+    final Compression compression = Compression.detect(file);
+    if (Compression.NONE != compression) {
+      throw new IllegalStateException(
+          String.format("%s is compressed with %s and cannot be resumed from a byte offset.", file, compression)
+      );
+    }
+  }
 
+  static void checkResume(FileChannel channel, File file, Checkpoint checkpoint) throws IOException {
+    if (!canResume(channel, checkpoint)) {
+      throw new IllegalStateException(
+          String.format(
+              "Checkpoint offset %s is not the start of a line in %s (%s byte(s)). The file may have been truncated " +
+                  "or replaced.",
+              checkpoint.offset(),
+              file,
+              channel.size()
+          )
+      );
+    }
+  }
+
+  List<String> readFieldNames(LineSource lineSource) throws IOException {
+    return readFieldNames(lineSource, new LinkedHashMap<>());
+  }
+
+  /**
+   * Method is used to read the directives at the start of the input. The line source is left positioned at the
+   * first line after the directives.
+   * @param lineSource line source to read.
+   * @param directives map to store the value of each directive in.
+   * @return names of the fields defined by the #Fields directive.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  List<String> readFieldNames(LineSource lineSource, Map<String, String> directives) throws IOException {
     String line;
+    final Matcher headerMatcher = HEADER_PATTERN.matcher("");
     List<String> fieldNames = new ArrayList<>(100);
+    boolean remaining;
 
-    while (null != (line = lineNumberReader.readLine())
-        && headerMatcher.reset(line).find()
-        && (lineNumberReader.getLineNumber() < 20)) {
+    while ((remaining = lineSource.readLine())
+        && headerMatcher.reset(line = lineSource.line()).find()
+        && (lineSource.lineNumber() < 20)) {
       final String headerName = headerMatcher.group(1);
       final String headerValue = headerMatcher.group(2);
       log.trace("build() - line = '{}'", line);
       log.trace("build() - headerName = '{}'", headerName);
       log.trace("build() - headerValue = '{}'", headerValue);
+      directives.put(headerName, headerValue.trim());
 
       if (HEADER_FIELDS.equalsIgnoreCase(headerName)) {
         String[] fields = headerValue.split("\\s+");
         Collections.addAll(fieldNames, fields);
       }
-      lineNumberReader.mark(128 * 1024);
     }
 
     if (fieldNames.isEmpty()) {
       throw new IllegalStateException(
-          String.format("No Fields found after reading %s line(s)", lineNumberReader.getLineNumber())
+          String.format("No Fields found after reading %s line(s)", lineSource.lineNumber())
       );
     }
     log.trace("build() - Found {} field(s). {}", fieldNames.size(), fieldNames);
-    lineNumberReader.reset();
+    if (remaining) {
+      lineSource.unread();
+    }
+    return fieldNames;
+  }
+
+  /**
+   * Method is used to determine the parser for each field.
+   * @param fieldNames names of the fields in the order they appear in the file.
+   * @return parser entries for the fields.
+   */
+  List<ParserEntry> parserEntries(List<String> fieldNames) {
     List<ParserEntry> parsers = new ArrayList<>();
 
     for (String fieldName : fieldNames) {
@@ -123,16 +742,346 @@ public class ElfParserBuilder {
         index++;
       }
     }
-
-
-    return new ElfParserImpl(lineNumberReader, parsers);
+    return parsers;
   }
 
   public ElfParser build(InputStream inputStream) throws IOException {
-    return build(new InputStreamReader(inputStream));
+    if (this.pipelineWorkers > 0) {
+      return new PipelinedElfParser(this, Channels.newChannel(inputStream), this.pipelineWorkers);
+    }
+    if (this.byteMode) {
+      return withMetrics(build(new ByteLineSource(inputStream, byteCharset())));
+    }
+    return build(
+        null != this.charset ? new InputStreamReader(inputStream, this.charset) : new InputStreamReader(inputStream)
+    );
   }
 
+  /**
+   * Method is used to build a parser for a file. gzip, bzip2 and zstd files are detected by their first bytes and
+   * decompressed on a separate thread so decompression overlaps with parsing. gzip files with more than one member
+   * are inflated in parallel on the pool set by {@link #forkJoinPool(ForkJoinPool)}. bzip2 requires commons-compress
+   * and zstd requires commons-compress and zstd-jni.
+   * @param file file to parse.
+   * @return parser for the file.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
   public ElfParser build(File file) throws IOException {
+    final Compression compression = Compression.detect(file);
+    if (Compression.NONE != compression) {
+      log.trace("build() - {} is compressed with {}.", file, compression);
+      final InputStream inputStream = DecompressingInputStream.open(file, compression, pool());
+      try {
+        return build(inputStream);
+      } catch (IOException | RuntimeException ex) {
+        inputStream.close();
+        throw ex;
+      }
+    }
+    if (this.pipelineWorkers > 0) {
+      final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      return new PipelinedElfParser(this, channel, this.pipelineWorkers);
+    }
+    if (this.byteMode) {
+      ElfParserImpl parser = build(new ByteLineSource(new FileInputStream(file), byteCharset()));
+      parser.file(file, this.chunkSize);
+      return withMetrics(parser);
+    }
     return build(new FileInputStream(file));
   }
+
+  /**
+   * Method is used to build a parser for a file. See {@link #build(File)}.
+   * @param path file to parse.
+   * @return parser for the file.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  public ElfParser build(Path path) throws IOException {
+    return build(path.toFile());
+  }
+
+  ForkJoinPool pool() {
+    return null != this.forkJoinPool ? this.forkJoinPool : ForkJoinPool.commonPool();
+  }
+
+  /**
+   * Method is used to build a parser that continues parsing a file from a checkpoint returned by
+   * {@link ElfParser#checkpoint()}. The file is opened at the offset of the checkpoint and the header is not read,
+   * so the cost of resuming does not depend on how much of the file was already parsed. The file is always parsed
+   * as bytes, see {@link #byteMode(boolean)}.
+   * @param file file to parse.
+   * @param checkpoint checkpoint to continue from.
+   * @return parser for the rest of the file.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   * @throws IllegalStateException if the offset of the checkpoint is not the start of a line in the file or the file
+   *                               is compressed.
+   */
+  public ElfParser build(File file, Checkpoint checkpoint) throws IOException {
+    checkNotCompressed(file);
+    final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      checkResume(channel, file, checkpoint);
+      log.trace("build() - Resuming {} at offset {}.", file, checkpoint.offset());
+      channel.position(checkpoint.offset());
+      final ByteLineSource lineSource = new ByteLineSource(
+          Channels.newInputStream(channel),
+          byteCharset(),
+          ByteLineSource.DEFAULT_BUFFER_SIZE,
+          checkpoint.offset()
+      );
+      lineSource.lineNumber(checkpoint.lineNumber());
+      final ElfParserImpl parser = resume(lineSource, checkpoint);
+      parser.file(file, this.chunkSize);
+      return withMetrics(parser);
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Method is used to build a sparse index of a file and store it in {@link ElfIndex#sidecar(File)}. Every
+   * interval lines the index records a checkpoint along with the earliest and latest date and time of the lines
+   * and a bloom filter over the text of each bloom field. The file is parsed as bytes with the field parsers and
+   * charset of this builder. Projections and filters are not applied.
+   * @param file file to index. Compressed files cannot be indexed.
+   * @param interval number of lines in each block of the index.
+   * @param bloomFields fields to build bloom filters for, such as c-ip or cs-host.
+   * @return index of the file.
+   * @throws IOException Exception thrown when the file cannot be parsed or there is an underlying system error.
+   */
+  public ElfIndex buildIndex(File file, int interval, String... bloomFields) throws IOException {
+    if (interval <= 0) {
+      throw new IllegalArgumentException("interval must be greater than 0.");
+    }
+    checkNotCompressed(file);
+    final ElfParserBuilder builder = new ElfParserBuilder();
+    builder.fieldParsers.putAll(this.fieldParsers);
+    builder.charset = this.charset;
+    builder.errorPolicy = this.errorPolicy;
+    builder.errorSink = this.errorSink;
+    final ElfIndex result;
+    try (ElfParserImpl parser = builder.build(new ByteLineSource(new FileInputStream(file), byteCharset()))) {
+      result = ElfIndex.build(parser, interval, Arrays.asList(bloomFields));
+    }
+    log.trace("buildIndex() - Indexed {} in {} block(s).", file, result.blockCount());
+    result.write(ElfIndex.sidecar(file));
+    return result;
+  }
+
+  /**
+   * Method is used to build a parser that only returns the lines of a file with a date and time from one value to
+   * another, inclusive. Only the blocks of the index that can contain such lines are read, so a query for a few
+   * minutes of a large file only reads a few blocks. When the lines do not have a date field the date of the #Date
+   * or #Start-Date directive is used. A line with a date and no time covers the whole day. Lines without a date are
+   * not returned. The date and time are compared as they are written in the file. When fields are projected the
+   * date and time fields must be included.
+   * @param file indexed file.
+   * @param index index of the file from {@link #buildIndex(File, int, String...)} or {@link ElfIndex#read(File)}.
+   * @param from earliest date and time to return.
+   * @param to latest date and time to return.
+   * @return parser for the matching lines.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   * @throws IllegalStateException if the file was truncated or replaced after it was indexed.
+   */
+  public ElfParser build(File file, ElfIndex index, LocalDateTime from, LocalDateTime to) throws IOException {
+    final long start = ElfIndex.timestamp(from);
+    final long end = ElfIndex.timestamp(to);
+    final Timestamps timestamps = new Timestamps();
+    return new IndexedElfParser(
+        this,
+        file,
+        index,
+        block -> index.overlaps(block, start, end),
+        (parser, record) -> timestamps.range(record, parser.directiveEpochDay()) &&
+            timestamps.start <= end && timestamps.end >= start
+    );
+  }
+
+  /**
+   * Method is used to build a parser that only returns the lines of a file where the text of a field equals a
+   * value. Only the blocks whose bloom filter might contain the value are read.
+   * @param file indexed file.
+   * @param index index of the file with a bloom filter for the field.
+   * @param fieldName name of the field.
+   * @param value text to look for.
+   * @return parser for the matching lines.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   * @throws IllegalArgumentException if the index does not have a bloom filter for the field.
+   * @throws IllegalStateException if the file was truncated or replaced after it was indexed.
+   */
+  public ElfParser build(File file, ElfIndex index, String fieldName, String value) throws IOException {
+    if (!index.bloomFields().contains(fieldName)) {
+      throw new IllegalArgumentException(
+          String.format("Field '%s' does not have a bloom filter. Fields: %s", fieldName, index.bloomFields())
+      );
+    }
+    return new IndexedElfParser(
+        this,
+        file,
+        index,
+        block -> index.mightContain(block, fieldName, value),
+        (parser, record) -> {
+          final int fieldIndex = record.fieldIndex(fieldName);
+          return fieldIndex >= 0 && !record.isNull(fieldIndex) &&
+              value.contentEquals(record.getCharSequence(fieldIndex));
+        }
+    );
+  }
+
+  /**
+   * Method is used to build a parser that parses the file in parallel. The header is read once and the rest of the
+   * file is split into newline aligned chunks which are read with positional reads and parsed on a ForkJoinPool.
+   * Records and batches are parsed in order on the calling thread without creating a LogEntry for each row. The file
+   * is always parsed as bytes, see {@link #byteMode(boolean)}. Compressed files cannot be split and are parsed by
+   * {@link #build(File)} instead.
+   * @param file file to parse.
+   * @return parser for the file.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  public ElfParser buildMapped(File file) throws IOException {
+    return buildMapped(file, null);
+  }
+
+  /**
+   * Method is used to build a parser that parses the rest of a file after a checkpoint in parallel. See
+   * {@link #buildMapped(File)} and {@link #build(File, Checkpoint)}.
+   * @param file file to parse.
+   * @param checkpoint checkpoint to continue from. Null to parse the whole file.
+   * @return parser for the rest of the file.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   * @throws IllegalStateException if the offset of the checkpoint is not the start of a line in the file.
+   */
+  public ElfParser buildMapped(File file, Checkpoint checkpoint) throws IOException {
+    if (null == checkpoint) {
+      final Compression compression = Compression.detect(file);
+      if (Compression.NONE != compression) {
+        log.trace("buildMapped() - {} is compressed with {}. Parsing it as a stream.", file, compression);
+        return build(file);
+      }
+    } else {
+      checkNotCompressed(file);
+    }
+    final Charset charset = byteCharset();
+    final ForkJoinPool pool = pool();
+    final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      final Map<String, String> directives = new LinkedHashMap<>();
+      final Schema schema;
+      final long dataStart;
+      if (null == checkpoint) {
+        ByteLineSource header = new ByteLineSource(Channels.newInputStream(channel), charset);
+        schema = schema(readFieldNames(header, directives));
+        dataStart = header.position();
+      } else {
+        checkResume(channel, file, checkpoint);
+        if (checkpoint.fieldNames().isEmpty()) {
+          throw new IllegalStateException("Checkpoint does not define any fields.");
+        }
+        directives.putAll(checkpoint.directives());
+        schema = schema(checkpoint.fieldNames());
+        dataStart = checkpoint.offset();
+      }
+      final long dataEnd = channel.size();
+      log.trace("buildMapped() - Data for {} is from offset {} to {}.", file, dataStart, dataEnd);
+
+      List<MappedElfParser.Chunk> chunks = MappedElfParser.chunks(channel, dataStart, dataEnd, this.chunkSize, schema);
+      if (DirectiveMode.RESYNC == this.directiveMode) {
+        chunks = MappedElfParser.resync(channel, charset, pool, chunks, this::schema);
+      }
+      return new MappedElfParser(
+          channel,
+          charset,
+          schema,
+          directives,
+          chunks,
+          pool,
+          this.ordered,
+          this.directiveMode,
+          errorHandler(),
+          metricsCollector()
+      );
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Method is used to build a parser over an archive written by {@link ElfArchiveWriter}. Only the columns set by
+   * {@link #project(String...)} and the columns used by filters are read and decompressed. Filters are checked
+   * against the stored values, and blocks are skipped without being read when the statistics of the block show that
+   * a {@link #filterRange(String, long, long)}, filterLong or filterDouble cannot match any of its rows. Options
+   * that only apply to parsing text are ignored.
+   * @param file archive to read.
+   * @return parser for the archive.
+   * @throws IOException Exception thrown if the file is not an archive or there is an underlying system error.
+   */
+  public ElfParser buildArchive(File file) throws IOException {
+    return ArchiveElfParser.open(file, this.projectedFields, this.projectedIndexes, this.filters);
+  }
+
+  /**
+   * Method is used to build a parser that follows a file as it is written, like tail -F. The file is read from the
+   * start and {@link ElfParser#next()} blocks until the next complete line has been written. When the file is
+   * rotated or truncated the path is reopened and its header is read again. The file does not need to exist when
+   * the parser is built. next() returns null once the parser is closed, which may be done from another thread. The
+   * file is always parsed as bytes, see {@link #byteMode(boolean)}.
+   * @param file file to follow.
+   * @return parser for the file.
+   */
+  public ElfParser buildFollowing(File file) {
+    return buildFollowing(file, null);
+  }
+
+  /**
+   * Method is used to build a parser that follows a file starting from a checkpoint. If the file no longer has a
+   * line starting at the offset of the checkpoint, because it was truncated or replaced, the file is read from the
+   * start. See {@link #buildFollowing(File)}.
+   * @param file file to follow.
+   * @param checkpoint checkpoint to continue from. Null to read the file from the start.
+   * @return parser for the file.
+   */
+  public ElfParser buildFollowing(File file, Checkpoint checkpoint) {
+    return new FollowingElfParser(this, file.toPath(), this.pollIntervalNanos, checkpoint);
+  }
+
+  /**
+   * Method is used to build a parser over several files that parses the files concurrently on the executor set by
+   * {@link #executor(ExecutorService)}. Each file is opened with {@link #build(File)}. Entries are merged by their
+   * date and time fields or returned as soon as they are parsed, see {@link #ordered(boolean)}. Merging expects
+   * each file to be in date and time order and keeps every file open until it has been read.
+   * {@link MultiFileElfParser#ingestMetrics()} returns the totals for the run.
+   * @param files files to parse.
+   * @return parser for the files.
+   */
+  public MultiFileElfParser buildAll(List<File> files) {
+    return new MultiFileElfParser(this, files, this.executorService, this.ordered, this.queueCapacity);
+  }
+
+  /**
+   * Method is used to build a parser over the files in a directory that match a glob such as *.log or
+   * u_ex*.{log,gz}. Files are passed to {@link #buildAll(List)} sorted by name.
+   * @param directory directory to list.
+   * @param glob glob the file names must match.
+   * @return parser for the files.
+   * @throws IOException Exception thrown if the directory cannot be listed.
+   */
+  public MultiFileElfParser buildAll(Path directory, String glob) throws IOException {
+    final List<Path> paths = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+      for (Path path : stream) {
+        if (Files.isRegularFile(path)) {
+          paths.add(path);
+        }
+      }
+    }
+    Collections.sort(paths);
+    final List<File> files = new ArrayList<>(paths.size());
+    for (Path path : paths) {
+      files.add(path.toFile());
+    }
+    log.trace("buildAll() - Found {} file(s) in {} matching '{}'.", files.size(), directory, glob);
+    return buildAll(files);
+  }
 }
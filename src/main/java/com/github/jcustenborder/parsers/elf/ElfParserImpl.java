@@ -15,139 +15,675 @@
  */
 package com.github.jcustenborder.parsers.elf;
 
+import com.github.jcustenborder.parsers.elf.parsers.DateFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.DoubleFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.FieldParsers;
+import com.github.jcustenborder.parsers.elf.parsers.IntegerFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.LongFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.TimeFieldParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.LineNumberReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 class ElfParserImpl implements ElfParser {
   static final String NULL_INDICATOR = "-";
+  static final long NO_DATE = Long.MIN_VALUE;
+  static final String DATE_DIRECTIVE = "Date";
+  static final String START_DATE_DIRECTIVE = "Start-Date";
   private static final Logger log = LoggerFactory.getLogger(ElfParserImpl.class);
-  private final LineNumberReader lineReader;
-  private final List<ParserEntry> fieldParsers;
-  private final Map<String, Class<?>> fieldTypes;
+  private final LineSource lineSource;
+  private final FieldSlice filterSlice = new FieldSlice();
+  private final LineTokenizer tokenizer = new LineTokenizer();
+  private final Function<List<String>, Schema> schemas;
+  private final Map<String, State> states;
+  private final Map<String, String> directives;
+  private final Matcher headerMatcher;
+  private Schema schema;
+  private List<ParserEntry> fieldParsers;
+  private int[] columns;
+  private FieldFilter[] filters;
+  private LogRecordImpl record;
+  private File file;
+  private int chunkSize;
+  private FileChannel channel;
+  private ErrorHandler errors = ErrorHandler.fail();
+  private final boolean trace = log.isTraceEnabled();
+  private MetricsCollector metrics;
+  private boolean ownsMetrics;
+  private State state;
+  private MetricsCollector.FieldCounters[] counters;
+  private TimestampColumn.Converter converter;
+  private long directiveEpochDay = NO_DATE;
+
+  /**
+   * Schema along with the record used to return its lines. Kept so that switching back to a header that has
+   * already been seen does not build anything.
+   */
+  static class State {
+    final Schema schema;
+    final LogRecordImpl record;
+    MetricsCollector.FieldCounters[] counters;
+
+    State(Schema schema, LogRecordImpl record) {
+      this.schema = schema;
+      this.record = record;
+    }
+  }
 
   ElfParserImpl(LineNumberReader lineReader, List<ParserEntry> fieldParsers) {
-    this.lineReader = lineReader;
-    this.fieldParsers = fieldParsers;
-
-    List<String> duplicateFields = this.fieldParsers.stream()
-        .collect(Collectors.groupingBy(ParserEntry::fieldName))
-        .entrySet().stream()
-        .filter(e -> e.getValue().size() > 1)
-        .map(Map.Entry::getKey)
-        .sorted()
-        .collect(Collectors.toList());
-
-    if (!duplicateFields.isEmpty()) {
-      String fieldNames = String.join(", ", duplicateFields);
-      throw new IllegalStateException(
-          String.format("Field(s) are defined more than once: %s", fieldNames)
-      );
+    this(new ReaderLineSource(lineReader), fieldParsers);
+  }
+
+  ElfParserImpl(LineSource lineSource, List<ParserEntry> fieldParsers) {
+    this(lineSource, Schema.of(fieldParsers));
+  }
+
+  /**
+   * Creates a parser that skips any directive after the header. Used for chunks that are known to have a single
+   * schema.
+   * @param lineSource lines to parse.
+   * @param schema fields of the lines.
+   */
+  ElfParserImpl(LineSource lineSource, Schema schema) {
+    this(lineSource, schema, null, Collections.emptyMap());
+  }
+
+  /**
+   * @param lineSource lines to parse.
+   * @param schema fields defined by the header.
+   * @param schemas function used to build the schema of a #Fields directive found after the header. Null to skip
+   *                directives.
+   * @param directives directives read from the header.
+   */
+  ElfParserImpl(
+      LineSource lineSource,
+      Schema schema,
+      Function<List<String>, Schema> schemas,
+      Map<String, String> directives) {
+    this.lineSource = lineSource;
+    this.schemas = schemas;
+    this.directives = new LinkedHashMap<>(directives);
+    if (null == schemas) {
+      this.states = null;
+      this.headerMatcher = null;
+    } else {
+      this.states = new HashMap<>();
+      this.headerMatcher = ElfParserBuilder.HEADER_PATTERN.matcher("");
+    }
+    final State state = new State(schema, new LogRecordImpl(schema, this.lineSource, this.tokenizer));
+    if (null != this.states) {
+      this.states.put(schema.header, state);
     }
+    use(state);
+    directiveDate();
+  }
 
-    Map<String, Class<?>> fieldTypes = this.fieldParsers
-        .stream()
-        .collect(
-            Collectors.toMap(
-                ParserEntry::fieldName,
-                p -> p.parser().fieldType(),
-                (e1, e2) -> e1,
-                LinkedHashMap::new
-            )
-        );
-    this.fieldTypes = Collections.unmodifiableMap(fieldTypes);
+  private void use(State state) {
+    this.state = state;
+    if (null != this.metrics && null == state.counters) {
+      state.counters = this.metrics.fields(state.schema.fieldParsers);
+    }
+    this.counters = state.counters;
+    this.schema = state.schema;
+    this.fieldParsers = state.schema.fieldParsers;
+    this.columns = state.schema.columns;
+    this.filters = state.schema.filters;
+    this.record = state.record;
+    if (null != state.schema.timestamp && null == this.converter) {
+      this.converter = state.schema.timestamp.converter();
+    }
   }
 
   @Override
   public Map<String, Class<?>> fieldTypes() {
-    return this.fieldTypes;
+    return this.schema.fieldTypes;
   }
 
-  static final Pattern SPLITTER = Pattern.compile("[^\\s\"']+|\"([^\"]*)\"|'([^']*)'");
+  /**
+   * Method is used to set how lines that cannot be parsed are handled.
+   * @param errors error handler, shared with the parsers of the other chunks of the same file.
+   */
+  void errors(ErrorHandler errors) {
+    this.errors = errors;
+  }
 
+  ErrorHandler errors() {
+    return this.errors;
+  }
+
+  /**
+   * Method is used to collect metrics for the lines this parser reads.
+   * @param metrics collector to update.
+   * @param owner true if closing this parser closes the collector.
+   */
+  void metrics(MetricsCollector metrics, boolean owner) {
+    this.metrics = metrics;
+    this.ownsMetrics = owner;
+    if (owner) {
+      metrics.errors(this.errors::counts);
+    }
+    if (null != this.states) {
+      for (State state : this.states.values()) {
+        state.counters = null;
+      }
+    }
+    this.state.counters = null;
+    use(this.state);
+  }
+
+  @Override
+  public ParseMetrics metrics() {
+    return null == this.metrics ? null : this.metrics.snapshot();
+  }
+
+  @Override
+  public Map<ParseError.Type, Long> errorCounts() {
+    return this.errors.counts();
+  }
+
+  @Override
+  public Map<String, String> directives() {
+    return Collections.unmodifiableMap(this.directives);
+  }
+
+  @Override
+  public Checkpoint checkpoint() {
+    if (!(this.lineSource instanceof ByteLineSource)) {
+      throw new UnsupportedOperationException(
+          "Checkpoints are only supported when the input is parsed as bytes. See ElfParserBuilder.byteMode()."
+      );
+    }
+    final ByteLineSource byteLineSource = (ByteLineSource) this.lineSource;
+    return ImmutableCheckpoint.builder()
+        .offset(byteLineSource.position())
+        .lineNumber(byteLineSource.lineNumber())
+        .fieldNames(this.schema.fieldNames)
+        .directives(this.directives)
+        .build();
+  }
+
+  @Override
   public LogEntry next() throws IOException {
-    String line;
-    while (null != (line = this.lineReader.readLine())) {
-      final int lineNumber = this.lineReader.getLineNumber();
-      if (line.startsWith("#")) {
-        log.trace("next() - Skipping line {}. Starts with #.", lineNumber);
+    final LogRecord record = nextRecord();
+    return null == record ? null : record.toLogEntry();
+  }
+
+  @Override
+  public LogRecord nextRecord() throws IOException {
+    final MetricsCollector metrics = this.metrics;
+    lines:
+    while (this.lineSource.readLine()) {
+      final int lineNumber = this.lineSource.lineNumber();
+      if (null != metrics) {
+        metrics.line(this.lineSource.lineLength());
+        metrics.report();
+      }
+      if (this.lineSource.isDirective()) {
+        if (null != metrics) {
+          metrics.directiveLines++;
+        }
+        if (null != this.schemas) {
+          directive(lineNumber);
+        } else if (this.trace) {
+          log.trace("nextRecord() - Skipping line {}. Starts with #.", lineNumber);
+        }
         continue;
       }
-      log.trace("next() - Processing line {}: '{}'", lineNumber, line);
-      Matcher lineMatcher = SPLITTER.matcher(line);
-      int fieldIndex = 0;
+      if (this.trace) {
+        log.trace("nextRecord() - Processing line {}: '{}'", lineNumber, this.lineSource.line());
+      }
+      final int fieldCount = this.lineSource.tokenize(this.tokenizer);
 
-      Map<String, Object> data = new LinkedHashMap<>(this.fieldParsers.size());
-      while (lineMatcher.find()) {
-        final ParserEntry entry;
-        try {
-          entry = this.fieldParsers.get(fieldIndex);
-        } catch (IndexOutOfBoundsException ex) {
-          throw new IllegalStateException(
-              String.format(
-                  "Line %s has more field(s) than specified in the header. fieldIndex = %s",
-                  lineNumber,
-                  fieldIndex
-              ),
-              ex
+      if (fieldCount > this.fieldParsers.size()) {
+        error(ParseError.Type.EXTRA_FIELDS, lineNumber, -1, 0, 0, null);
+        continue;
+      }
+
+      if (this.filters.length > 0 && !accept(lineNumber, fieldCount)) {
+        if (null != metrics) {
+          metrics.filteredLines++;
+        }
+        if (this.trace) {
+          log.trace("nextRecord() - Skipping line {}. Rejected by a filter.", lineNumber);
+        }
+        continue;
+      }
+
+      final boolean sample = null != metrics && metrics.sample();
+
+      final LogRecordImpl record = this.record;
+      final int present = record.reset(lineNumber, this.lineSource.lineOffset(), fieldCount);
+      for (int column = 0; column < present; column++) {
+        final int fieldIndex = this.columns[column];
+        final int start = this.tokenizer.start(fieldIndex);
+        final int end = this.tokenizer.end(fieldIndex);
+
+        if (this.lineSource.isNull(start, end)) {
+          record.nulls[column] = true;
+          if (null != metrics) {
+            this.counters[fieldIndex].nulls++;
+          }
+          continue;
+        }
+        record.nulls[column] = false;
+        final ParserEntry entry = this.fieldParsers.get(fieldIndex);
+        if (this.trace) {
+          log.trace(
+              "nextRecord() - Processing line {} field({}) fieldIndex {}: '{}'",
+              lineNumber,
+              entry.fieldName(),
+              fieldIndex,
+              this.lineSource.text(start, end)
           );
         }
+        try {
+          if (sample && FieldKind.STRING != record.kinds[column]) {
+            final long started = System.nanoTime();
+            parseField(record, entry, column, start, end);
+            MetricsCollector.record(this.counters[fieldIndex], System.nanoTime() - started);
+          } else {
+            parseField(record, entry, column, start, end);
+          }
+        } catch (Exception ex) {
+          if (null != metrics) {
+            this.counters[fieldIndex].failures++;
+          }
+          error(ParseError.Type.INVALID_FIELD, lineNumber, fieldIndex, start, end, ex);
+          if (ErrorPolicy.NULL_FIELD != this.errors.policy) {
+            continue lines;
+          }
+          record.nulls[column] = true;
+        }
+      }
+      if (null != this.schema.timestamp && !timestamp(record, lineNumber, fieldCount)) {
+        continue;
+      }
+      return record;
+    }
 
-        String input = lineMatcher.group(0);
-        if (input.startsWith("\"") && input.endsWith("\"")) {
-          input = input.replaceAll("^\"|\"$", "");
+    return null;
+  }
+
+  /**
+   * Method is used to combine the date and time of the current line into the timestamp column. Date and time
+   * fields that were projected are reused, otherwise they are parsed from the line. When the header does not have
+   * a date field the date of the #Date or #Start-Date directive is used.
+   * @return false if the line is skipped because the date or time cannot be parsed.
+   */
+  private boolean timestamp(LogRecordImpl record, int lineNumber, int fieldCount) throws IOException {
+    final Schema schema = this.schema;
+    final int column = this.columns.length;
+    record.nulls[column] = true;
+    final long epochDay;
+    if (schema.dateIndex < 0) {
+      if (NO_DATE == this.directiveEpochDay) {
+        return true;
+      }
+      epochDay = this.directiveEpochDay;
+    } else if (schema.dateColumn >= 0) {
+      if (record.isNull(schema.dateColumn)) {
+        return true;
+      }
+      epochDay = record.longs[schema.dateColumn];
+    } else {
+      if (schema.dateIndex >= fieldCount) {
+        return true;
+      }
+      final int start = this.tokenizer.start(schema.dateIndex);
+      final int end = this.tokenizer.end(schema.dateIndex);
+      if (this.lineSource.isNull(start, end)) {
+        return true;
+      }
+      try {
+        epochDay = this.lineSource.parseEpochDay((DateFieldParser) FieldParsers.DATE, start, end);
+      } catch (Exception ex) {
+        error(ParseError.Type.INVALID_FIELD, lineNumber, schema.dateIndex, start, end, ex);
+        return ErrorPolicy.NULL_FIELD == this.errors.policy;
+      }
+    }
+    final long nanoOfDay;
+    if (schema.timeIndex < 0) {
+      return true;
+    } else if (schema.timeColumn >= 0) {
+      if (record.isNull(schema.timeColumn)) {
+        return true;
+      }
+      nanoOfDay = record.longs[schema.timeColumn];
+    } else {
+      if (schema.timeIndex >= fieldCount) {
+        return true;
+      }
+      final int start = this.tokenizer.start(schema.timeIndex);
+      final int end = this.tokenizer.end(schema.timeIndex);
+      if (this.lineSource.isNull(start, end)) {
+        return true;
+      }
+      try {
+        nanoOfDay = this.lineSource.parseNanoOfDay((TimeFieldParser) FieldParsers.TIME, start, end);
+      } catch (Exception ex) {
+        error(ParseError.Type.INVALID_FIELD, lineNumber, schema.timeIndex, start, end, ex);
+        return ErrorPolicy.NULL_FIELD == this.errors.policy;
+      }
+    }
+    record.longs[column] = this.converter.convert(epochDay, nanoOfDay);
+    record.nulls[column] = false;
+    return true;
+  }
+
+  /**
+   * The date of the #Date or #Start-Date directive in effect for the current line.
+   * @return days since 1970-01-01. {@link #NO_DATE} if there is no such directive.
+   */
+  long directiveEpochDay() {
+    return this.directiveEpochDay;
+  }
+
+  /**
+   * Method is used to read the date of the #Date directive, or the #Start-Date directive if there is no #Date
+   * directive. The date is used for the timestamp column when the lines do not have a date field.
+   */
+  private void directiveDate() {
+    String value = this.directives.get(DATE_DIRECTIVE);
+    if (null == value) {
+      value = this.directives.get(START_DATE_DIRECTIVE);
+    }
+    this.directiveEpochDay = NO_DATE;
+    if (null == value) {
+      return;
+    }
+    final int end = value.indexOf(' ');
+    try {
+      this.directiveEpochDay = ((DateFieldParser) FieldParsers.DATE).parseEpochDay(
+          value,
+          0,
+          end < 0 ? value.length() : end
+      );
+    } catch (RuntimeException ex) {
+      log.trace("directiveDate() - Could not parse date of directive '{}'.", value, ex);
+    }
+  }
+
+  /**
+   * Method is used to handle a line that cannot be parsed. The error is counted and when the policy is
+   * {@link ErrorPolicy#FAIL} an exception is thrown. Otherwise the error is passed to the sink, if there is one, and
+   * the caller skips the line or nulls the field. Nothing is formatted unless the policy is FAIL.
+   */
+  private void error(ParseError.Type type, int lineNumber, int fieldIndex, int start, int end, Exception cause)
+      throws IOException {
+    this.errors.count(type);
+    if (this.errors.failing()) {
+      if (ParseError.Type.EXTRA_FIELDS == type) {
+        throw new IllegalStateException(
+            String.format(
+                "Line %s has more field(s) than specified in the header. fieldIndex = %s",
+                lineNumber,
+                this.fieldParsers.size()
+            )
+        );
+      }
+      throw new IOException(
+          String.format(
+              "Could not parse line %s fieldIndex %s input = '%s'",
+              lineNumber,
+              fieldIndex,
+              this.lineSource.text(start, end)
+          ),
+          cause
+      );
+    }
+    if (this.trace) {
+      log.trace("error() - Could not parse line {}. type = {}", lineNumber, type);
+    }
+    final Consumer<ParseError> sink = this.errors.sink;
+    if (null != sink) {
+      final ImmutableParseError.Builder builder = ImmutableParseError.builder()
+          .type(type)
+          .lineNumber(lineNumber)
+          .offset(this.lineSource.lineOffset())
+          .line(this.lineSource.line())
+          .fieldIndex(fieldIndex);
+      if (fieldIndex >= 0) {
+        builder.fieldName(this.fieldParsers.get(fieldIndex).fieldName());
+      }
+      if (null != cause) {
+        builder.cause(cause);
+      }
+      sink.accept(builder.build());
+    }
+  }
+
+  /**
+   * Method is used to handle a directive found after the header. A #Fields directive switches to the schema of
+   * the new fields. Every directive is stored in {@link #directives()}.
+   */
+  private void directive(int lineNumber) {
+    final String line = this.lineSource.line();
+    if (!this.headerMatcher.reset(line).find()) {
+      log.trace("nextRecord() - Skipping line {}. '{}' is not a directive.", lineNumber, line);
+      return;
+    }
+    final String name = this.headerMatcher.group(1);
+    final String value = this.headerMatcher.group(2).trim();
+    this.directives.put(name, value);
+    if (DATE_DIRECTIVE.equals(name) || START_DATE_DIRECTIVE.equals(name)) {
+      directiveDate();
+    }
+    if (!ElfParserBuilder.HEADER_FIELDS.equalsIgnoreCase(name)) {
+      log.trace("nextRecord() - Found directive {} on line {}: '{}'", name, lineNumber, value);
+      return;
+    }
+    log.trace("nextRecord() - Found fields on line {}: '{}'", lineNumber, value);
+    use(state(value, Arrays.asList(value.split("\\s+"))));
+  }
+
+  /**
+   * Method is used to find the state of a set of fields. The schema is built the first time the fields are seen.
+   * @param header value of the #Fields directive.
+   * @param fieldNames names of the fields.
+   * @return state of the fields.
+   */
+  private State state(String header, List<String> fieldNames) {
+    State state = this.states.get(header);
+    if (null == state) {
+      log.trace("state() - Building schema for fields '{}'", header);
+      final Schema schema = this.schemas.apply(fieldNames);
+      state = new State(schema, new LogRecordImpl(schema, this.lineSource, this.tokenizer));
+      this.states.put(header, state);
+    } else {
+      log.trace("state() - Switching to cached schema for fields '{}'", header);
+    }
+    return state;
+  }
+
+  /**
+   * Method is used to continue from a checkpoint once the line source has been moved to its offset. The fields and
+   * directives are replaced by those of the checkpoint. Fields that have been seen before reuse their schema and
+   * string caches.
+   * @param checkpoint checkpoint the line source was moved to.
+   */
+  void reset(Checkpoint checkpoint) {
+    this.directives.clear();
+    this.directives.putAll(checkpoint.directives());
+    directiveDate();
+    use(state(String.join(" ", checkpoint.fieldNames()), checkpoint.fieldNames()));
+  }
+
+  /**
+   * Method is used to read the next rows into a batch. A batch only holds rows of a single schema, so it ends
+   * early when the fields change. The next call changes the columns of the batch to the new fields.
+   * @param batch batch created by {@link #newBatch(int)}.
+   * @return number of rows read. 0 if at the end of the file.
+   * @throws IOException Exception thrown when data cannot be parsed or there is an underlying system error.
+   */
+  @Override
+  public int nextBatch(LogBatch batch) throws IOException {
+    batch.clear();
+    LogRecord record;
+    while (!batch.isFull() && null != (record = nextRecord())) {
+      if (!add(batch, record)) {
+        break;
+      }
+    }
+    return batch.size();
+  }
+
+  /**
+   * Method is used to add the record that was just read to a batch. If the batch is empty and has different fields
+   * its columns are changed to the fields of the record. Otherwise the line is pushed back to be read again.
+   * @param batch batch to add to.
+   * @param record record that was just read.
+   * @return false if the line was pushed back.
+   */
+  boolean add(LogBatch batch, LogRecord record) {
+    if (!batch.matches(record.fieldTypes())) {
+      if (batch.size() > 0) {
+        if (null != this.metrics) {
+          this.metrics.unread(this.lineSource.lineLength());
         }
-        log.trace(
-            "next() - Processing line {} field({}) fieldIndex {}: '{}'",
-            lineNumber,
-            entry.fieldName(),
-            fieldIndex,
-            input
+        this.lineSource.unread();
+        return false;
+      }
+      batch.reset(record.fieldTypes());
+    }
+    batch.add(record);
+    return true;
+  }
+
+  /**
+   * Method is used to check the filters against the current line. Filters are checked in order and stop at the
+   * first one that fails.
+   */
+  private boolean accept(int lineNumber, int fieldCount) throws IOException {
+    for (FieldFilter filter : this.filters) {
+      final int fieldIndex = filter.fieldIndex;
+      final boolean missing = fieldIndex >= fieldCount;
+      final int start = missing ? 0 : this.tokenizer.start(fieldIndex);
+      final int end = missing ? 0 : this.tokenizer.end(fieldIndex);
+      boolean accepted;
+      try {
+        accepted = filter.test(
+            this.lineSource,
+            this.filterSlice,
+            start,
+            end,
+            missing || this.lineSource.isNull(start, end)
         );
-        final Object fieldValue;
-
-        if (NULL_INDICATOR.equals(input)) {
-          fieldValue = null;
-        } else {
-          try {
-            fieldValue = entry.parser().parse(input);
-          } catch (Exception ex) {
-            throw new IOException(
-                String.format(
-                    "Could not parse line %s fieldIndex %s input = '%s'",
-                    lineNumber,
-                    fieldIndex,
-                    input
-                ),
-                ex
-            );
-          }
+      } catch (Exception ex) {
+        error(ParseError.Type.FILTER, lineNumber, fieldIndex, start, end, ex);
+        if (ErrorPolicy.NULL_FIELD != this.errors.policy) {
+          return false;
         }
-        data.put(entry.fieldName(), fieldValue);
-        fieldIndex++;
+        accepted = filter.test(this.lineSource, this.filterSlice, start, end, true);
       }
+      if (!accepted) {
+        return false;
+      }
+    }
+    return true;
+  }
 
-      return com.github.jcustenborder.parsers.elf.ImmutableLogEntry.builder()
-          .fieldData(data)
-          .fieldTypes(this.fieldTypes)
-          .build();
+  /**
+   * Method is used to parse a field of the current line into the record. String fields are not parsed here, they
+   * are read from the line when the record is accessed.
+   */
+  private void parseField(LogRecordImpl record, ParserEntry entry, int column, int start, int end) {
+    switch (record.kinds[column]) {
+      case LONG:
+        record.longs[column] = this.lineSource.parseLong((LongFieldParser) entry.parser(), start, end);
+        break;
+      case INT:
+        record.longs[column] = this.lineSource.parseInt((IntegerFieldParser) entry.parser(), start, end);
+        break;
+      case DOUBLE:
+        record.doubles[column] = this.lineSource.parseDouble((DoubleFieldParser) entry.parser(), start, end);
+        break;
+      case DATE:
+        record.longs[column] = this.lineSource.parseEpochDay((DateFieldParser) entry.parser(), start, end);
+        break;
+      case TIME:
+        record.longs[column] = this.lineSource.parseNanoOfDay((TimeFieldParser) entry.parser(), start, end);
+        break;
+      case STRING:
+        break;
+      default:
+        record.objects[column] = this.lineSource.parse(entry.parser(), start, end);
+        break;
     }
+  }
 
-    return null;
+  /**
+   * Method is used to tell the parser that the ByteLineSource is reading from a file. This allows spliterator() to
+   * split the rest of the file on line boundaries.
+   * @param file file being read.
+   * @param chunkSize approximate size of the chunks to split the file into.
+   */
+  void file(File file, int chunkSize) {
+    this.file = file;
+    this.chunkSize = chunkSize;
   }
 
+  @Override
+  public Spliterator<LogEntry> spliterator() {
+    if (null == this.file || null != this.channel || !(this.lineSource instanceof ByteLineSource)) {
+      return ElfParser.super.spliterator();
+    }
+    final ByteLineSource byteLineSource = (ByteLineSource) this.lineSource;
+    try {
+      this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+      final long start = byteLineSource.position();
+      final long end = this.channel.size();
+      log.trace("spliterator() - Splitting {} from offset {} to {}.", this.file, start, end);
+      List<MappedElfParser.Chunk> chunks =
+          MappedElfParser.chunks(this.channel, start, end, this.chunkSize, this.schema);
+      if (null != this.schemas) {
+        chunks = MappedElfParser.resync(
+            this.channel,
+            byteLineSource.charset(),
+            ForkJoinPool.commonPool(),
+            chunks,
+            this.schemas
+        );
+      }
+      return new ChunkSpliterator(
+          this.channel,
+          byteLineSource.charset(),
+          chunks,
+          false,
+          ElfParserSpliterator.CHARACTERISTICS,
+          ChunkSpliterator.bytesPerLine(this.channel, start, end),
+          this.errors,
+          this.metrics
+      );
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
 
   @Override
   public void close() throws IOException {
-    this.lineReader.close();
+    if (this.ownsMetrics) {
+      this.metrics.close();
+    }
+    this.lineSource.close();
+    if (null != this.channel) {
+      this.channel.close();
+    }
   }
 }
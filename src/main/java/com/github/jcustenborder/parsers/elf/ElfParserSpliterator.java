@@ -0,0 +1,89 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator that pulls entries from {@link ElfParser#next()}. Sources that cannot be split by position are split
+ * by reading a batch of entries into an array, the same way as {@link Spliterators#spliteratorUnknownSize}.
+ */
+class ElfParserSpliterator implements Spliterator<LogEntry> {
+  static final int BATCH_UNIT = 1024;
+  static final int MAX_BATCH = 32 * 1024;
+  static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.NONNULL;
+  private final ElfParser parser;
+  private long estimate;
+  private int batch;
+
+  ElfParserSpliterator(ElfParser parser, long estimate) {
+    this.parser = parser;
+    this.estimate = estimate;
+  }
+
+  private LogEntry read() {
+    try {
+      return this.parser.next();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super LogEntry> action) {
+    final LogEntry entry = read();
+    if (null == entry) {
+      this.estimate = 0;
+      return false;
+    }
+    action.accept(entry);
+    return true;
+  }
+
+  @Override
+  public Spliterator<LogEntry> trySplit() {
+    final int size = Math.min(this.batch + BATCH_UNIT, MAX_BATCH);
+    final Object[] entries = new Object[size];
+    int count = 0;
+    LogEntry entry;
+    while (count < size && null != (entry = read())) {
+      entries[count++] = entry;
+    }
+    if (count == 0) {
+      this.estimate = 0;
+      return null;
+    }
+    this.batch = count;
+    if (this.estimate != Long.MAX_VALUE) {
+      this.estimate = Math.max(0, this.estimate - count);
+    }
+    return Spliterators.spliterator(entries, 0, count, CHARACTERISTICS);
+  }
+
+  @Override
+  public long estimateSize() {
+    return this.estimate;
+  }
+
+  @Override
+  public int characteristics() {
+    return CHARACTERISTICS;
+  }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.reactivestreams.Publisher;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Reactive Streams publishers over a parser. Entries are only read once the subscriber has requested them, so the
+ * number of entries held in memory is bounded by the demand of the subscriber. Cancelling the subscription closes
+ * the parser and exceptions thrown while parsing are passed to onError. Each publisher can be subscribed to once.
+ * On Java 9 and newer org.reactivestreams.FlowAdapters.toFlowPublisher() adapts the publishers to
+ * java.util.concurrent.Flow. Requires org.reactivestreams:reactive-streams.
+ */
+public final class ElfPublishers {
+  private ElfPublishers() {
+
+  }
+
+  /**
+   * Method is used to publish the entries of a parser. Entries are read and delivered on the executor, which
+   * should allow blocking because parsing waits for input.
+   * @param parser parser to read.
+   * @param executor executor to read on.
+   * @return publisher of the entries.
+   */
+  public static Publisher<LogEntry> entries(ElfParser parser, Executor executor) {
+    return new ParserPublisher<>(parser, parser::next, executor);
+  }
+
+  /**
+   * Method is used to publish the entries of a parser as batches. Each item is a new batch filled by
+   * {@link ElfParser#nextBatch(LogBatch)}, so a subscriber may keep it. See {@link #entries(ElfParser, Executor)}.
+   * @param parser parser to read.
+   * @param capacity maximum number of rows in each batch.
+   * @param executor executor to read on.
+   * @return publisher of the batches.
+   */
+  public static Publisher<LogBatch> batches(ElfParser parser, int capacity, Executor executor) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be greater than 0.");
+    }
+    return new ParserPublisher<>(parser, () -> {
+      final LogBatch batch = parser.newBatch(capacity);
+      return 0 == parser.nextBatch(batch) ? null : batch;
+    }, executor);
+  }
+}
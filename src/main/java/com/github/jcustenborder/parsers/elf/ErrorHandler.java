@@ -0,0 +1,82 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Applies the {@link ErrorPolicy} of a parser and counts the errors of each type. Shared by the chunk parsers of a
+ * file, so counting is thread safe.
+ */
+final class ErrorHandler {
+  final ErrorPolicy policy;
+  final Consumer<ParseError> sink;
+  private final LongAdder[] counts;
+
+  ErrorHandler(ErrorPolicy policy, Consumer<ParseError> sink) {
+    if (null == policy) {
+      throw new NullPointerException("policy cannot be null.");
+    }
+    this.policy = policy;
+    this.sink = sink;
+    final ParseError.Type[] types = ParseError.Type.values();
+    this.counts = new LongAdder[types.length];
+    for (int i = 0; i < types.length; i++) {
+      this.counts[i] = new LongAdder();
+    }
+  }
+
+  static ErrorHandler fail() {
+    return new ErrorHandler(ErrorPolicy.FAIL, null);
+  }
+
+  boolean failing() {
+    return ErrorPolicy.FAIL == this.policy;
+  }
+
+  void count(ParseError.Type type) {
+    this.counts[type.ordinal()].increment();
+  }
+
+  /**
+   * Method is used to add the errors counted by another parser.
+   * @param counts number of errors by type.
+   */
+  void add(Map<ParseError.Type, Long> counts) {
+    for (Map.Entry<ParseError.Type, Long> entry : counts.entrySet()) {
+      this.counts[entry.getKey().ordinal()].add(entry.getValue());
+    }
+  }
+
+  /**
+   * Method is used to snapshot the number of errors of each type.
+   * @return number of errors by type. Types without errors are not included.
+   */
+  Map<ParseError.Type, Long> counts() {
+    final Map<ParseError.Type, Long> result = new EnumMap<>(ParseError.Type.class);
+    for (ParseError.Type type : ParseError.Type.values()) {
+      final long count = this.counts[type.ordinal()].sum();
+      if (count > 0) {
+        result.put(type, count);
+      }
+    }
+    return Collections.unmodifiableMap(result);
+  }
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+/**
+ * Determines what the parser does with a line that cannot be parsed. See
+ * {@link ElfParserBuilder#errorPolicy(ErrorPolicy)}.
+ */
+public enum ErrorPolicy {
+  /**
+   * Parsing fails with an exception. The rest of the input is not read.
+   */
+  FAIL,
+  /**
+   * The line is skipped.
+   */
+  SKIP,
+  /**
+   * Fields that cannot be parsed are returned as null and the rest of the line is kept. Lines with more fields than
+   * the header are skipped because the extra fields do not belong to any column.
+   */
+  NULL_FIELD
+}
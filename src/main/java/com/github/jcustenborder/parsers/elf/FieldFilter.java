@@ -0,0 +1,246 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import com.github.jcustenborder.parsers.elf.parsers.DateFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.DoubleFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.IntegerFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.LongFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.TimeFieldParser;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoublePredicate;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Predicate over a single field that is checked before the rest of the line is parsed. A filter is defined by
+ * field name and is bound to the position of the field when the #Fields directive is read.
+ */
+class FieldFilter {
+  enum Type {
+    /**
+     * Predicate&lt;CharSequence&gt; over the text of the field. Null fields are passed as null.
+     */
+    RAW,
+    /**
+     * LongPredicate over a Long, Integer, date or time field. Null fields are rejected.
+     */
+    LONG,
+    /**
+     * DoublePredicate over a Double, Long or Integer field. Null fields are rejected.
+     */
+    DOUBLE,
+    /**
+     * Predicate&lt;Object&gt; over the parsed value of the field. Null fields are passed as null.
+     */
+    VALUE
+  }
+
+  final String fieldName;
+  final Type type;
+  final Object predicate;
+  final int fieldIndex;
+  final ParserEntry entry;
+  final FieldKind kind;
+  /**
+   * Smallest value accepted by a range filter. Used to skip archive blocks by their statistics.
+   */
+  final long min;
+  /**
+   * Largest value accepted by a range filter. See {@link #min}.
+   */
+  final long max;
+
+  private FieldFilter(
+      String fieldName,
+      Type type,
+      Object predicate,
+      int fieldIndex,
+      ParserEntry entry,
+      FieldKind kind,
+      long min,
+      long max) {
+    if (null == fieldName) {
+      throw new NullPointerException("fieldName cannot be null.");
+    }
+    if (null == predicate) {
+      throw new NullPointerException("predicate cannot be null.");
+    }
+    this.fieldName = fieldName;
+    this.type = type;
+    this.predicate = predicate;
+    this.fieldIndex = fieldIndex;
+    this.entry = entry;
+    this.kind = kind;
+    this.min = min;
+    this.max = max;
+  }
+
+  FieldFilter(String fieldName, Type type, Object predicate) {
+    this(fieldName, type, predicate, -1, null, null, Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  /**
+   * Creates a {@link Type#LONG} filter that accepts values from min to max inclusive.
+   * @param fieldName name of the field.
+   * @param min smallest value accepted.
+   * @param max largest value accepted.
+   */
+  FieldFilter(String fieldName, long min, long max) {
+    this(fieldName, Type.LONG, (LongPredicate) v -> v >= min && v <= max, -1, null, null, min, max);
+  }
+
+  /**
+   * Method is used to bind the filter to the fields of a header.
+   * @param fieldParsers fields defined by the header.
+   * @return copy of the filter bound to the position of the field.
+   */
+  FieldFilter bind(List<ParserEntry> fieldParsers) {
+    int fieldIndex = -1;
+    for (int i = 0; i < fieldParsers.size(); i++) {
+      if (this.fieldName.equals(fieldParsers.get(i).fieldName())) {
+        fieldIndex = i;
+        break;
+      }
+    }
+    if (fieldIndex < 0) {
+      throw new IllegalStateException(
+          String.format("Filtered field '%s' is not defined in the header.", this.fieldName)
+      );
+    }
+    final ParserEntry entry = fieldParsers.get(fieldIndex);
+    return bind(fieldIndex, entry, FieldKind.of(entry.parser()), entry.parser().fieldType());
+  }
+
+  /**
+   * Method is used to bind the filter to the columns of an archive.
+   * @param fieldNames names of the columns.
+   * @param kinds kinds of the columns.
+   * @return copy of the filter bound to the position of the column.
+   */
+  FieldFilter bind(String[] fieldNames, FieldKind[] kinds) {
+    final int fieldIndex = Arrays.asList(fieldNames).indexOf(this.fieldName);
+    if (fieldIndex < 0) {
+      throw new IllegalStateException(
+          String.format("Filtered field '%s' is not defined in the archive.", this.fieldName)
+      );
+    }
+    final FieldKind kind = kinds[fieldIndex];
+    return bind(fieldIndex, null, kind, ArchiveFormat.fieldType(kind));
+  }
+
+  private FieldFilter bind(int fieldIndex, ParserEntry entry, FieldKind kind, Class<?> fieldType) {
+    final FieldFilter result = new FieldFilter(
+        this.fieldName,
+        this.type,
+        this.predicate,
+        fieldIndex,
+        entry,
+        kind,
+        this.min,
+        this.max
+    );
+    final boolean supported;
+    switch (this.type) {
+      case LONG:
+        supported = result.kind == FieldKind.LONG || result.kind == FieldKind.INT ||
+            result.kind == FieldKind.DATE || result.kind == FieldKind.TIME || result.kind == FieldKind.INSTANT;
+        break;
+      case DOUBLE:
+        supported = result.kind == FieldKind.DOUBLE || result.kind == FieldKind.LONG || result.kind == FieldKind.INT;
+        break;
+      default:
+        supported = true;
+        break;
+    }
+    if (!supported) {
+      throw new IllegalStateException(
+          String.format(
+              "Field '%s' is %s and cannot be filtered as %s.",
+              this.fieldName,
+              fieldType.getSimpleName(),
+              this.type
+          )
+      );
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to test the field of the current line.
+   * @param lineSource source of the current line.
+   * @param slice reusable slice for raw filters.
+   * @param start start of the field (inclusive).
+   * @param end end of the field (exclusive).
+   * @param isNull true if the field is null or missing from the line.
+   * @return true if the line is accepted.
+   */
+  @SuppressWarnings("unchecked")
+  boolean test(LineSource lineSource, FieldSlice slice, int start, int end, boolean isNull) {
+    switch (this.type) {
+      case RAW:
+        return ((Predicate<CharSequence>) this.predicate).test(isNull ? null : lineSource.chars(slice, start, end));
+      case LONG:
+        return !isNull && ((LongPredicate) this.predicate).test(parseLong(lineSource, start, end));
+      case DOUBLE:
+        return !isNull && ((DoublePredicate) this.predicate).test(
+            this.kind == FieldKind.DOUBLE ?
+                lineSource.parseDouble((DoubleFieldParser) this.entry.parser(), start, end) :
+                parseLong(lineSource, start, end)
+        );
+      default:
+        return ((Predicate<Object>) this.predicate).test(
+            isNull ? null : lineSource.parse(this.entry.parser(), start, end)
+        );
+    }
+  }
+
+  /**
+   * Method is used to test a field of a record that has already been parsed.
+   * @param record record to test.
+   * @param index index of the field in the record.
+   * @return true if the record is accepted.
+   */
+  @SuppressWarnings("unchecked")
+  boolean test(LogRecord record, int index) {
+    final boolean isNull = record.isNull(index);
+    switch (this.type) {
+      case RAW:
+        return ((Predicate<CharSequence>) this.predicate).test(isNull ? null : record.getCharSequence(index));
+      case LONG:
+        return !isNull && ((LongPredicate) this.predicate).test(record.getLong(index));
+      case DOUBLE:
+        return !isNull && ((DoublePredicate) this.predicate).test(record.getDouble(index));
+      default:
+        return ((Predicate<Object>) this.predicate).test(record.getObject(index));
+    }
+  }
+
+  private long parseLong(LineSource lineSource, int start, int end) {
+    switch (this.kind) {
+      case INT:
+        return lineSource.parseInt((IntegerFieldParser) this.entry.parser(), start, end);
+      case DATE:
+        return lineSource.parseEpochDay((DateFieldParser) this.entry.parser(), start, end);
+      case TIME:
+        return lineSource.parseNanoOfDay((TimeFieldParser) this.entry.parser(), start, end);
+      default:
+        return lineSource.parseLong((LongFieldParser) this.entry.parser(), start, end);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import com.github.jcustenborder.parsers.elf.parsers.DateFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.DoubleFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.FieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.IntegerFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.LongFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.StringFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.TimeFieldParser;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * How the value of a field is stored in a {@link LogRecord}.
+ */
+enum FieldKind {
+  LONG,
+  INT,
+  DOUBLE,
+  DATE,
+  TIME,
+  STRING,
+  /**
+   * Timestamp column stored as nanoseconds since 1970-01-01T00:00:00Z and returned as an Instant. Only used by
+   * records. Batches store Instant columns as objects.
+   */
+  INSTANT,
+  OBJECT;
+
+  /**
+   * Method is used to determine how the output of a parser is stored. Parsers that are not one of the built in
+   * parsers are stored as an Object.
+   * @param parser parser for the field.
+   * @return kind of the field.
+   */
+  static FieldKind of(FieldParser parser) {
+    if (parser instanceof LongFieldParser) {
+      return LONG;
+    } else if (parser instanceof IntegerFieldParser) {
+      return INT;
+    } else if (parser instanceof DoubleFieldParser) {
+      return DOUBLE;
+    } else if (parser instanceof DateFieldParser) {
+      return DATE;
+    } else if (parser instanceof TimeFieldParser) {
+      return TIME;
+    } else if (parser instanceof StringFieldParser) {
+      return STRING;
+    } else {
+      return OBJECT;
+    }
+  }
+
+  /**
+   * Method is used to determine how values of a type are stored.
+   * @param fieldType type returned by {@link FieldParser#fieldType()}.
+   * @return kind of the field.
+   */
+  static FieldKind of(Class<?> fieldType) {
+    if (Long.class.equals(fieldType)) {
+      return LONG;
+    } else if (Integer.class.equals(fieldType)) {
+      return INT;
+    } else if (Double.class.equals(fieldType)) {
+      return DOUBLE;
+    } else if (LocalDate.class.equals(fieldType)) {
+      return DATE;
+    } else if (LocalTime.class.equals(fieldType)) {
+      return TIME;
+    } else if (String.class.equals(fieldType)) {
+      return STRING;
+    } else {
+      return OBJECT;
+    }
+  }
+}
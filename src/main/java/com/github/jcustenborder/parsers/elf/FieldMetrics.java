@@ -0,0 +1,83 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.immutables.value.Value;
+
+import java.util.List;
+
+/**
+ * Counters for a single field. Part of {@link ParseMetrics}.
+ */
+@Value.Immutable
+public interface FieldMetrics {
+  /**
+   * Simple name of the class of the FieldParser used for the field.
+   * @return Name of the FieldParser.
+   */
+  String parser();
+
+  /**
+   * Number of times the field was null (-).
+   * @return Number of null values.
+   */
+  long nulls();
+
+  /**
+   * Number of times the field could not be parsed.
+   * @return Number of failures.
+   */
+  long failures();
+
+  /**
+   * Number of times parsing the field was timed. String fields are read when they are accessed and are never
+   * timed.
+   * @return Number of timed parses.
+   */
+  long samples();
+
+  /**
+   * Histogram of the sampled parse times. Bucket i counts the parses that took from 2^i up to 2^(i+1)
+   * nanoseconds.
+   * @return Count of samples in each bucket.
+   */
+  List<Long> latencyHistogram();
+
+  /**
+   * Method is used to estimate a percentile of the parse time from the histogram.
+   * @param percentile percentile between 0 and 100.
+   * @return upper bound of the bucket holding the percentile in nanoseconds. 0 if there are no samples.
+   */
+  default long latencyPercentileNanos(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile must be between 0 and 100.");
+    }
+    final long samples = samples();
+    if (samples == 0) {
+      return 0;
+    }
+    final long rank = Math.max(1, (long) Math.ceil(samples * percentile / 100D));
+    final List<Long> histogram = latencyHistogram();
+    long count = 0;
+    for (int bucket = 0; bucket < histogram.size(); bucket++) {
+      count += histogram.get(bucket);
+      if (count >= rank) {
+        return 2L << bucket;
+      }
+    }
+    return 2L << (histogram.size() - 1);
+  }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable CharSequence over a range of the current line. The slice points at either the characters of a String
+ * or the bytes of an ASCII field, and is only valid until the next line is read.
+ */
+final class FieldSlice implements CharSequence {
+  private CharSequence chars;
+  private byte[] bytes;
+  private int start;
+  private int end;
+
+  FieldSlice set(CharSequence chars, int start, int end) {
+    this.chars = chars;
+    this.bytes = null;
+    this.start = start;
+    this.end = end;
+    return this;
+  }
+
+  /**
+   * Method is used to point the slice at a range of bytes. Every byte in the range must be ASCII.
+   * @param bytes buffer containing the field.
+   * @param start start of the field (inclusive).
+   * @param end end of the field (exclusive).
+   * @return this slice.
+   */
+  FieldSlice set(byte[] bytes, int start, int end) {
+    this.chars = null;
+    this.bytes = bytes;
+    this.start = start;
+    this.end = end;
+    return this;
+  }
+
+  /**
+   * The bytes the slice points at.
+   * @return The bytes of the line. Null if the slice points at characters.
+   */
+  byte[] bytes() {
+    return this.bytes;
+  }
+
+  /**
+   * Start of the slice in {@link #bytes()} or the characters.
+   * @return Start of the slice.
+   */
+  int start() {
+    return this.start;
+  }
+
+  @Override
+  public int length() {
+    return this.end - this.start;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length()) {
+      throw new IndexOutOfBoundsException(
+          String.format("index %s is out of range for length %s", index, length())
+      );
+    }
+    return null != this.bytes ? (char) this.bytes[this.start + index] : this.chars.charAt(this.start + index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return toString().substring(start, end);
+  }
+
+  @Override
+  public String toString() {
+    return null != this.bytes ?
+        new String(this.bytes, this.start, length(), StandardCharsets.ISO_8859_1) :
+        this.chars.subSequence(this.start, this.end).toString();
+  }
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * InputStream over a file that is still being written. When there is no more data the stream parks the reading
+ * thread, starting at 50 microseconds and doubling up to the poll interval, instead of returning the end of the
+ * stream. While waiting the path is checked for rotation (a different file now exists at the path) and truncation
+ * (the file is smaller than what has been read). The stream ends when either is found, after the rest of a rotated
+ * file has been read, or when the stream is closed.
+ */
+class FollowInputStream extends InputStream {
+  static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+  private final Path path;
+  private final FileChannel channel;
+  private final Object fileKey;
+  private final long maxParkNanos;
+  private final byte[] single = new byte[1];
+  private long position;
+  private boolean rotated;
+  private boolean truncated;
+  private volatile boolean closed;
+
+  /**
+   * @param path path being followed.
+   * @param channel channel opened on the path.
+   * @param fileKey key of the file that was opened. See {@link #fileKey(Path)}.
+   * @param maxParkNanos longest time to wait before checking for more data.
+   * @param position byte offset to start reading from.
+   */
+  FollowInputStream(Path path, FileChannel channel, Object fileKey, long maxParkNanos, long position) {
+    this.path = path;
+    this.channel = channel;
+    this.fileKey = fileKey;
+    this.maxParkNanos = Math.max(MIN_PARK_NANOS, maxParkNanos);
+    this.position = position;
+  }
+
+  /**
+   * Method is used to identify the file at a path. The file key is used when the file system provides one,
+   * otherwise the creation time.
+   * @param path path to check.
+   * @return key of the file. Null if there is no file at the path.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  static Object fileKey(Path path) throws IOException {
+    final BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (NoSuchFileException ex) {
+      return null;
+    }
+    return null != attributes.fileKey() ? attributes.fileKey() : attributes.creationTime();
+  }
+
+  /**
+   * Flag to determine if the stream ended because a different file was found at the path.
+   * @return true if the file was rotated.
+   */
+  boolean rotated() {
+    return this.rotated;
+  }
+
+  /**
+   * Flag to determine if the stream ended because the file became smaller than what had been read.
+   * @return true if the file was truncated.
+   */
+  boolean truncated() {
+    return this.truncated;
+  }
+
+  /**
+   * Byte offset of the next byte to be read.
+   * @return Byte offset of the next byte.
+   */
+  long position() {
+    return this.position;
+  }
+
+  @Override
+  public int read() throws IOException {
+    final int read = read(this.single, 0, 1);
+    return read < 0 ? -1 : this.single[0] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    final ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+    long parkNanos = MIN_PARK_NANOS;
+    while (true) {
+      if (this.closed || this.truncated) {
+        return -1;
+      }
+      final int read;
+      try {
+        read = this.channel.read(buffer, this.position);
+      } catch (ClosedChannelException ex) {
+        if (this.closed) {
+          return -1;
+        }
+        throw ex;
+      }
+      if (read > 0) {
+        this.position += read;
+        return read;
+      }
+      if (this.rotated) {
+        // The rest of the rotated file has been read.
+        return -1;
+      }
+      if (this.channel.size() < this.position) {
+        this.truncated = true;
+        continue;
+      }
+      final Object current = fileKey(this.path);
+      if (null != current && !Objects.equals(this.fileKey, current)) {
+        // Read once more for anything written to the old file before it was rotated.
+        this.rotated = true;
+        continue;
+      }
+      LockSupport.parkNanos(this, parkNanos);
+      if (Thread.currentThread().isInterrupted()) {
+        throw new InterruptedIOException(String.format("Interrupted while waiting for data from %s", this.path));
+      }
+      parkNanos = Math.min(parkNanos * 2, this.maxParkNanos);
+    }
+  }
+
+  @Override
+  public int available() throws IOException {
+    if (this.closed) {
+      return 0;
+    }
+    return (int) Math.max(0, Math.min(Integer.MAX_VALUE, this.channel.size() - this.position));
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.closed = true;
+    this.channel.close();
+  }
+}
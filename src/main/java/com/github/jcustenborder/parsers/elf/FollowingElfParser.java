@@ -0,0 +1,295 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ElfParser that follows a file as it is written, like tail -F. {@link #next()} blocks until a complete line is
+ * available. A partial last line is held until the rest of it has been written. When the file is rotated or
+ * truncated the path is reopened and the directives at the start of the new file are read again, so the new file
+ * may have different fields. next() returns null once the parser has been closed, which may be done from another
+ * thread.
+ */
+class FollowingElfParser implements ElfParser {
+  static final long DEFAULT_POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+  private static final Logger log = LoggerFactory.getLogger(FollowingElfParser.class);
+  private final ElfParserBuilder builder;
+  private final Path path;
+  private final long pollIntervalNanos;
+  private final ErrorHandler errors;
+  private final MetricsCollector metrics;
+  private Checkpoint checkpoint;
+  private volatile boolean closed;
+  private volatile FollowInputStream stream;
+  private ByteLineSource lineSource;
+  private ElfParserImpl parser;
+
+  /**
+   * @param builder builder used to create the schemas.
+   * @param path path to follow.
+   * @param pollIntervalNanos longest time to wait before checking for more data.
+   * @param checkpoint checkpoint to start the first file from. Null to start at the beginning.
+   */
+  FollowingElfParser(ElfParserBuilder builder, Path path, long pollIntervalNanos, Checkpoint checkpoint) {
+    this.builder = builder;
+    this.errors = builder.errorHandler();
+    this.metrics = builder.metricsCollector();
+    if (null != this.metrics) {
+      this.metrics.errors(this.errors::counts);
+    }
+    this.path = path;
+    this.pollIntervalNanos = pollIntervalNanos;
+    this.checkpoint = checkpoint;
+  }
+
+  /**
+   * The data types of the fields of the file currently being followed. Empty until the header of the file has been
+   * read by the first call to next().
+   * @return The data types associated with the fields.
+   */
+  @Override
+  public Map<String, Class<?>> fieldTypes() {
+    final ElfParserImpl parser = this.parser;
+    return null == parser ? Collections.emptyMap() : parser.fieldTypes();
+  }
+
+  @Override
+  public ParseMetrics metrics() {
+    return null == this.metrics ? null : this.metrics.snapshot();
+  }
+
+  @Override
+  public Map<ParseError.Type, Long> errorCounts() {
+    return this.errors.counts();
+  }
+
+  @Override
+  public Map<String, String> directives() {
+    final ElfParserImpl parser = this.parser;
+    return null == parser ? Collections.emptyMap() : parser.directives();
+  }
+
+  /**
+   * Method is used to capture the position in the file currently being followed. Before the first file has been
+   * opened the checkpoint the parser was built with is returned.
+   * @return checkpoint for the current position.
+   * @throws IllegalStateException if nothing has been read and the parser was not built with a checkpoint.
+   */
+  @Override
+  public Checkpoint checkpoint() {
+    final ElfParserImpl parser = this.parser;
+    if (null != parser) {
+      return parser.checkpoint();
+    }
+    if (null != this.checkpoint) {
+      return this.checkpoint;
+    }
+    throw new IllegalStateException(String.format("The header of %s has not been read.", this.path));
+  }
+
+  @Override
+  public LogEntry next() throws IOException {
+    final LogRecord record = nextRecord();
+    return null == record ? null : record.toLogEntry();
+  }
+
+  @Override
+  public LogRecord nextRecord() throws IOException {
+    while (!this.closed) {
+      if (null == this.parser && !open()) {
+        return null;
+      }
+      final LogRecord record;
+      try {
+        record = this.parser.nextRecord();
+      } catch (IOException | RuntimeException ex) {
+        if (this.closed) {
+          return null;
+        }
+        throw ex;
+      }
+      if (null != record) {
+        return record;
+      }
+      // The stream only ends when the file was rotated or truncated, or the parser was closed.
+      log.trace(
+          "nextRecord() - Reopening {}. rotated = {} truncated = {}",
+          this.path,
+          this.stream.rotated(),
+          this.stream.truncated()
+      );
+      closeCurrent();
+    }
+    return null;
+  }
+
+  /**
+   * Method is used to read rows that are already available into a batch. Blocks until at least one row is
+   * available, then stops at the first line that has not been completely written or when the fields change.
+   * @param batch batch created by {@link #newBatch(int)}.
+   * @return number of rows read. 0 if the parser was closed.
+   * @throws IOException Exception thrown when data cannot be parsed or there is an underlying system error.
+   */
+  @Override
+  public int nextBatch(LogBatch batch) throws IOException {
+    batch.clear();
+    LogRecord record = nextRecord();
+    if (null == record) {
+      return 0;
+    }
+    final ElfParserImpl parser = this.parser;
+    parser.add(batch, record);
+    while (!batch.isFull() && this.lineSource.ready() && null != (record = parser.nextRecord())) {
+      if (!parser.add(batch, record)) {
+        break;
+      }
+    }
+    return batch.size();
+  }
+
+  /**
+   * Method is used to open the path and read the header. Waits for the file to be created.
+   * @return false if the parser was closed.
+   */
+  private boolean open() throws IOException {
+    while (!this.closed) {
+      // The key is read before and after opening so a file replaced in between is not followed under the key of
+      // another file.
+      final Object fileKey = FollowInputStream.fileKey(this.path);
+      final FileChannel channel;
+      try {
+        channel = FileChannel.open(this.path, StandardOpenOption.READ);
+      } catch (NoSuchFileException ex) {
+        log.trace("open() - {} does not exist. Waiting.", this.path);
+        LockSupport.parkNanos(this, this.pollIntervalNanos);
+        if (Thread.currentThread().isInterrupted()) {
+          throw new InterruptedIOException(String.format("Interrupted while waiting for %s", this.path));
+        }
+        continue;
+      }
+      final Object openedKey;
+      try {
+        openedKey = FollowInputStream.fileKey(this.path);
+      } catch (IOException ex) {
+        channel.close();
+        throw ex;
+      }
+      if (null == fileKey || !fileKey.equals(openedKey)) {
+        log.trace("open() - {} was replaced while it was being opened. Opening it again.", this.path);
+        channel.close();
+        continue;
+      }
+      final Checkpoint checkpoint = this.checkpoint;
+      this.checkpoint = null;
+      final boolean resume;
+      try {
+        resume = null != checkpoint && ElfParserBuilder.canResume(channel, checkpoint);
+      } catch (IOException ex) {
+        channel.close();
+        throw ex;
+      }
+      if (null != checkpoint && !resume) {
+        log.trace(
+            "open() - Checkpoint offset {} is not the start of a line. Reading {} from the start.",
+            checkpoint.offset(),
+            this.path
+        );
+      }
+      final long start = resume ? checkpoint.offset() : 0L;
+      final FollowInputStream stream = new FollowInputStream(
+          this.path,
+          channel,
+          fileKey,
+          this.pollIntervalNanos,
+          start
+      );
+      this.stream = stream;
+      if (this.closed) {
+        stream.close();
+        return false;
+      }
+      this.lineSource = new ByteLineSource(
+          stream,
+          this.builder.byteCharset(),
+          ByteLineSource.DEFAULT_BUFFER_SIZE,
+          start
+      );
+      try {
+        if (resume) {
+          this.lineSource.lineNumber(checkpoint.lineNumber());
+          this.parser = this.builder.resume(this.lineSource, checkpoint);
+        } else {
+          this.parser = this.builder.build(this.lineSource);
+        }
+        // Errors are counted across every file that is followed.
+        this.parser.errors(this.errors);
+        if (null != this.metrics) {
+          this.parser.metrics(this.metrics, false);
+        }
+        log.trace("open() - Following {}. fields = {}", this.path, this.parser.fieldTypes().keySet());
+        return true;
+      } catch (IOException | RuntimeException ex) {
+        if (this.closed) {
+          return false;
+        }
+        if (stream.rotated() || stream.truncated()) {
+          // Replaced before the header was written.
+          log.trace("open() - {} was replaced while reading the header.", this.path);
+          closeCurrent();
+          continue;
+        }
+        closeCurrent();
+        throw ex;
+      }
+    }
+    return false;
+  }
+
+  private void closeCurrent() throws IOException {
+    this.parser = null;
+    this.lineSource = null;
+    final FollowInputStream stream = this.stream;
+    this.stream = null;
+    if (null != stream) {
+      stream.close();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.closed = true;
+    if (null != this.metrics) {
+      this.metrics.close();
+    }
+    final FollowInputStream stream = this.stream;
+    if (null != stream) {
+      stream.close();
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.util.Arrays;
+
+/**
+ * Hash table that assigns an id to each distinct key of a fixed number of longs. Ids are assigned in the order the
+ * keys were first added. Keys are stored in one flat array so a lookup does not allocate.
+ */
+class GroupTable {
+  private static final int INITIAL_CAPACITY = 16;
+  private final int width;
+  private long[] keys;
+  private int[] hashes;
+  /**
+   * Open addressing table of id + 1. 0 is an empty slot.
+   */
+  private int[] table;
+  private int size;
+
+  GroupTable(int width) {
+    this.width = width;
+    this.keys = new long[INITIAL_CAPACITY * width];
+    this.hashes = new int[INITIAL_CAPACITY];
+    this.table = new int[INITIAL_CAPACITY * 2];
+  }
+
+  /**
+   * The number of distinct keys.
+   * @return The number of distinct keys.
+   */
+  int size() {
+    return this.size;
+  }
+
+  /**
+   * Method is used to read part of a key.
+   * @param id id of the key.
+   * @param index index of the long in the key.
+   * @return value of the long.
+   */
+  long get(int id, int index) {
+    return this.keys[id * this.width + index];
+  }
+
+  private static int hash(long[] key) {
+    long result = 0;
+    for (long value : key) {
+      result = (result + value) * 0x9E3779B97F4A7C15L;
+      result ^= result >>> 32;
+    }
+    return (int) result;
+  }
+
+  private boolean matches(int id, long[] key) {
+    final int start = id * this.width;
+    for (int i = 0; i < this.width; i++) {
+      if (this.keys[start + i] != key[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Method is used to return the id of a key, adding it if needed.
+   * @param key key to lookup. The array is copied when the key is added.
+   * @return id of the key.
+   */
+  int add(long[] key) {
+    final int hash = hash(key);
+    final int mask = this.table.length - 1;
+    int slot = hash & mask;
+    int existing;
+    while ((existing = this.table[slot]) != 0) {
+      final int id = existing - 1;
+      if (this.hashes[id] == hash && matches(id, key)) {
+        return id;
+      }
+      slot = (slot + 1) & mask;
+    }
+    if (this.size == this.hashes.length) {
+      grow();
+      return add(key);
+    }
+    final int id = this.size++;
+    System.arraycopy(key, 0, this.keys, id * this.width, this.width);
+    this.hashes[id] = hash;
+    this.table[slot] = id + 1;
+    return id;
+  }
+
+  private void grow() {
+    final int capacity = this.hashes.length * 2;
+    this.keys = Arrays.copyOf(this.keys, capacity * this.width);
+    this.hashes = Arrays.copyOf(this.hashes, capacity);
+    this.table = new int[capacity * 2];
+    final int mask = this.table.length - 1;
+    for (int id = 0; id < this.size; id++) {
+      int slot = this.hashes[id] & mask;
+      while (this.table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      this.table[slot] = id + 1;
+    }
+  }
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+/**
+ * HyperLogLog sketch that estimates the number of distinct values. Registers are kept in a small hash table while
+ * only a few of them are set, so the many small groups of an aggregation stay small, and are expanded to an array
+ * once the table would use more memory than the array. Two sketches with the same precision can be merged.
+ */
+final class HyperLogLog {
+  static final int DEFAULT_PRECISION = 12;
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private final int precision;
+  private final int registerCount;
+  /**
+   * Registers once the sketch is dense. Null while the sketch is sparse.
+   */
+  private byte[] registers;
+  /**
+   * Open addressing table of register index &lt;&lt; 8 | register value. 0 is an empty slot.
+   */
+  private int[] sparse = new int[8];
+  private int sparseSize;
+
+  HyperLogLog(int precision) {
+    if (precision < 4 || precision > 18) {
+      throw new IllegalArgumentException("precision must be between 4 and 18.");
+    }
+    this.precision = precision;
+    this.registerCount = 1 << precision;
+  }
+
+  /**
+   * Method is used to hash text.
+   * @param value text to hash.
+   * @return 64 bit hash of the text.
+   */
+  static long hash(CharSequence value) {
+    long result = FNV_OFFSET;
+    final int length = value.length();
+    for (int i = 0; i < length; i++) {
+      result ^= value.charAt(i);
+      result *= FNV_PRIME;
+    }
+    return hash(result);
+  }
+
+  /**
+   * Method is used to hash a number. This is the finalizer of MurmurHash3.
+   * @param value number to hash.
+   * @return 64 bit hash of the number.
+   */
+  static long hash(long value) {
+    long result = value;
+    result ^= result >>> 33;
+    result *= 0xff51afd7ed558ccdL;
+    result ^= result >>> 33;
+    result *= 0xc4ceb9fe1a85ec53L;
+    result ^= result >>> 33;
+    return result;
+  }
+
+  int precision() {
+    return this.precision;
+  }
+
+  /**
+   * Method is used to add a value.
+   * @param hash 64 bit hash of the value from {@link #hash(CharSequence)} or {@link #hash(long)}.
+   */
+  void add(long hash) {
+    final int index = (int) (hash >>> (64 - this.precision));
+    // The marker bit bounds the number of leading zeros to the bits that are not used by the index.
+    final long remaining = (hash << this.precision) | (1L << (this.precision - 1));
+    set(index, Long.numberOfLeadingZeros(remaining) + 1);
+  }
+
+  private void set(int index, int value) {
+    if (null != this.registers) {
+      if (this.registers[index] < value) {
+        this.registers[index] = (byte) value;
+      }
+      return;
+    }
+    final int mask = this.sparse.length - 1;
+    int slot = mix(index) & mask;
+    int entry;
+    while ((entry = this.sparse[slot]) != 0) {
+      if ((entry >>> 8) == index) {
+        if ((entry & 0xFF) < value) {
+          this.sparse[slot] = (index << 8) | value;
+        }
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    this.sparse[slot] = (index << 8) | value;
+    this.sparseSize++;
+    if (this.sparseSize * 2 > this.sparse.length) {
+      if (this.sparse.length * 4 >= this.registerCount) {
+        densify();
+      } else {
+        growSparse();
+      }
+    }
+  }
+
+  private static int mix(int value) {
+    final int h = value * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private void growSparse() {
+    final int[] entries = this.sparse;
+    this.sparse = new int[entries.length * 2];
+    final int mask = this.sparse.length - 1;
+    for (int entry : entries) {
+      if (entry != 0) {
+        int slot = mix(entry >>> 8) & mask;
+        while (this.sparse[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        this.sparse[slot] = entry;
+      }
+    }
+  }
+
+  private void densify() {
+    this.registers = new byte[this.registerCount];
+    for (int entry : this.sparse) {
+      if (entry != 0) {
+        this.registers[entry >>> 8] = (byte) (entry & 0xFF);
+      }
+    }
+    this.sparse = null;
+    this.sparseSize = 0;
+  }
+
+  /**
+   * Method is used to add the values of another sketch.
+   * @param other sketch to add.
+   */
+  void merge(HyperLogLog other) {
+    if (this.precision != other.precision) {
+      throw new IllegalArgumentException(
+          String.format("Cannot merge precision %s into precision %s.", other.precision, this.precision)
+      );
+    }
+    if (null != other.registers) {
+      if (null == this.registers) {
+        densify();
+      }
+      for (int i = 0; i < this.registerCount; i++) {
+        if (this.registers[i] < other.registers[i]) {
+          this.registers[i] = other.registers[i];
+        }
+      }
+    } else {
+      for (int entry : other.sparse) {
+        if (entry != 0) {
+          set(entry >>> 8, entry & 0xFF);
+        }
+      }
+    }
+  }
+
+  /**
+   * Method is used to estimate the number of distinct values. Small cardinalities use linear counting.
+   * @return estimated number of distinct values.
+   */
+  long estimate() {
+    double sum = 0;
+    int zeros = 0;
+    if (null != this.registers) {
+      for (byte register : this.registers) {
+        sum += 1D / (1L << register);
+        if (register == 0) {
+          zeros++;
+        }
+      }
+    } else {
+      for (int entry : this.sparse) {
+        if (entry != 0) {
+          sum += 1D / (1L << (entry & 0xFF));
+        }
+      }
+      zeros = this.registerCount - this.sparseSize;
+      sum += zeros;
+    }
+    final double m = this.registerCount;
+    final double alpha = 0.7213D / (1D + 1.079D / m);
+    final double estimate = alpha * m * m / sum;
+    if (estimate <= 2.5D * m && zeros > 0) {
+      return Math.round(m * Math.log(m / zeros));
+    }
+    return Math.round(estimate);
+  }
+}
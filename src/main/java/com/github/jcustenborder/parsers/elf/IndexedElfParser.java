@@ -0,0 +1,212 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.IntPredicate;
+
+/**
+ * Parser that only reads the blocks of a file selected from an {@link ElfIndex}. Adjacent blocks are read as one
+ * range. Each range is read with positional reads and parsed starting from the checkpoint of its first block, so the
+ * header of the file is never read. Data appended to the file after it was indexed is always read.
+ */
+class IndexedElfParser implements ElfParser {
+  private static final Logger log = LoggerFactory.getLogger(IndexedElfParser.class);
+  private final ElfParserBuilder builder;
+  private final File file;
+  private final FileChannel channel;
+  private final Charset charset;
+  private final BiPredicate<ElfParserImpl, LogRecord> filter;
+  private final ErrorHandler errors;
+  /**
+   * Checkpoint and end offset of each range to read.
+   */
+  private final List<Checkpoint> starts = new ArrayList<>();
+  private final List<Long> ends = new ArrayList<>();
+  private int range;
+  private ElfParserImpl current;
+  private Map<String, Class<?>> fieldTypes;
+  private Map<String, String> directives;
+
+  /**
+   * @param builder builder used to create the parser of each range.
+   * @param file indexed file.
+   * @param index index of the file.
+   * @param blocks selects the blocks to read.
+   * @param filter checked against every line of the blocks that are read along with the parser of the line.
+   * @throws IOException Exception thrown if the file cannot be opened.
+   * @throws IllegalStateException if the file no longer matches the index.
+   */
+  IndexedElfParser(
+      ElfParserBuilder builder,
+      File file,
+      ElfIndex index,
+      IntPredicate blocks,
+      BiPredicate<ElfParserImpl, LogRecord> filter) throws IOException {
+    this.builder = builder;
+    this.file = file;
+    this.filter = filter;
+    this.charset = builder.byteCharset();
+    this.errors = builder.errorHandler();
+    ElfParserBuilder.checkNotCompressed(file);
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      final Checkpoint end = index.checkpoint(index.blockCount());
+      ElfParserBuilder.checkResume(this.channel, file, end);
+      int selected = 0;
+      for (int block = 0; block < index.blockCount(); block++) {
+        if (!blocks.test(block)) {
+          continue;
+        }
+        selected++;
+        final long blockEnd = index.checkpoint(block + 1).offset();
+        final int last = this.ends.size() - 1;
+        if (last >= 0 && this.ends.get(last) == index.checkpoint(block).offset()) {
+          this.ends.set(last, blockEnd);
+        } else {
+          this.starts.add(index.checkpoint(block));
+          this.ends.add(blockEnd);
+        }
+      }
+      final long size = this.channel.size();
+      if (size > end.offset()) {
+        this.starts.add(end);
+        this.ends.add(size);
+      }
+      log.trace(
+          "IndexedElfParser() - Reading {} of {} block(s) of {} in {} range(s).",
+          selected,
+          index.blockCount(),
+          file,
+          this.starts.size()
+      );
+      this.fieldTypes = builder.schema(index.checkpoint(0).fieldNames()).fieldTypes;
+      this.directives = index.checkpoint(0).directives();
+    } catch (IOException | RuntimeException ex) {
+      this.channel.close();
+      throw ex;
+    }
+  }
+
+  @Override
+  public Map<String, Class<?>> fieldTypes() {
+    return this.fieldTypes;
+  }
+
+  @Override
+  public Map<String, String> directives() {
+    return null == this.current ? Collections.unmodifiableMap(this.directives) : this.current.directives();
+  }
+
+  @Override
+  public Map<ParseError.Type, Long> errorCounts() {
+    return this.errors.counts();
+  }
+
+  @Override
+  public Checkpoint checkpoint() {
+    if (null == this.current) {
+      throw new UnsupportedOperationException("A checkpoint can only be taken while a block is being read.");
+    }
+    return this.current.checkpoint();
+  }
+
+  private boolean nextRange() throws IOException {
+    if (null != this.current) {
+      this.directives = this.current.directives();
+      this.current.close();
+      this.current = null;
+    }
+    if (this.range >= this.starts.size()) {
+      return false;
+    }
+    final Checkpoint checkpoint = this.starts.get(this.range);
+    final long end = this.ends.get(this.range);
+    this.range++;
+    log.trace("nextRange() - Reading {} from offset {} to {}.", this.file, checkpoint.offset(), end);
+    final ByteLineSource lineSource = MappedElfParser.lineSource(
+        this.channel,
+        this.charset,
+        new MappedElfParser.Chunk(checkpoint.offset(), end, null),
+        false
+    );
+    lineSource.lineNumber(checkpoint.lineNumber());
+    this.current = this.builder.resume(lineSource, checkpoint);
+    this.current.errors(this.errors);
+    return true;
+  }
+
+  @Override
+  public LogEntry next() throws IOException {
+    final LogRecord record = nextRecord();
+    return null == record ? null : record.toLogEntry();
+  }
+
+  @Override
+  public LogRecord nextRecord() throws IOException {
+    while (null != this.current || nextRange()) {
+      final LogRecord record = this.current.nextRecord();
+      if (null == record) {
+        nextRange();
+        continue;
+      }
+      this.fieldTypes = record.fieldTypes();
+      if (this.filter.test(this.current, record)) {
+        return record;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Method is used to read the next rows into a batch. The batch ends early when the fields change and the next
+   * call changes the columns of the batch to the new fields.
+   * @param batch batch created by {@link #newBatch(int)}.
+   * @return number of rows read. 0 if at the end of the file.
+   * @throws IOException Exception thrown when data cannot be parsed or there is an underlying system error.
+   */
+  @Override
+  public int nextBatch(LogBatch batch) throws IOException {
+    batch.clear();
+    LogRecord record;
+    while (!batch.isFull() && null != (record = nextRecord())) {
+      if (!this.current.add(batch, record)) {
+        break;
+      }
+    }
+    return batch.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (null != this.current) {
+      this.current.close();
+    }
+    this.channel.close();
+  }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.immutables.value.Value;
+
+/**
+ * Totals for a run of {@link MultiFileElfParser} across all of its files.
+ */
+@JsonDeserialize(as = com.github.jcustenborder.parsers.elf.ImmutableIngestMetrics.class)
+@JsonSerialize(as = com.github.jcustenborder.parsers.elf.ImmutableIngestMetrics.class)
+@Value.Immutable
+public interface IngestMetrics {
+  /**
+   * Number of files in the run.
+   * @return Number of files in the run.
+   */
+  int files();
+
+  /**
+   * Number of files that have been parsed to the end.
+   * @return Number of files that have been parsed to the end.
+   */
+  int filesCompleted();
+
+  /**
+   * Number of entries returned so far.
+   * @return Number of entries returned so far.
+   */
+  long entries();
+
+  /**
+   * Size on disk of the files that have been parsed to the end. Compressed files count their compressed size, not
+   * the size of the text that was parsed.
+   * @return Number of bytes.
+   */
+  long bytes();
+
+  /**
+   * Time since the first entry was requested. Stops when the last file has been parsed.
+   * @return Elapsed time in nanoseconds.
+   */
+  long elapsedNanos();
+
+  /**
+   * Method is used to calculate the number of entries returned per second.
+   * @return entries per second. 0 if no time has elapsed.
+   */
+  default double entriesPerSecond() {
+    return elapsedNanos() <= 0 ? 0D : entries() * 1e9D / elapsedNanos();
+  }
+
+  /**
+   * Method is used to calculate the number of bytes on disk of completed files per second.
+   * @return bytes per second. 0 if no time has elapsed.
+   */
+  default double bytesPerSecond() {
+    return elapsedNanos() <= 0 ? 0D : bytes() * 1e9D / elapsedNanos();
+  }
+}
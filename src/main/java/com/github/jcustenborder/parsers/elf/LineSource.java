@@ -0,0 +1,172 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import com.github.jcustenborder.parsers.elf.parsers.DateFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.DoubleFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.FieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.IntegerFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.LongFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.TimeFieldParser;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Source of lines for the parser. A LineSource holds the current line and exposes it by ranges so the parser does
+ * not need to know if the line is stored as characters or bytes.
+ */
+abstract class LineSource implements Closeable {
+  /**
+   * Method is used to advance to the next line.
+   * @return true if a line was read. False if at the end of the input.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  abstract boolean readLine() throws IOException;
+
+  /**
+   * Method is used to push the current line back so it is returned by the next call to readLine().
+   * Only the most recent line can be pushed back.
+   */
+  abstract void unread();
+
+  /**
+   * The number of the current line.
+   * @return The number of the current line.
+   */
+  abstract int lineNumber();
+
+  /**
+   * Byte offset from the start of the input of the current line.
+   * @return Byte offset of the current line. -1 if the source does not track offsets.
+   */
+  long lineOffset() {
+    return -1L;
+  }
+
+  /**
+   * Length of the current line including its line ending. Bytes for byte sources and characters otherwise.
+   * @return Length of the current line.
+   */
+  abstract int lineLength();
+
+  /**
+   * Flag to determine if the current line is a directive or comment.
+   * @return true if the current line starts with #.
+   */
+  abstract boolean isDirective();
+
+  /**
+   * The current line as a String.
+   * @return The current line as a String.
+   */
+  abstract String line();
+
+  /**
+   * Method is used to tokenize the current line.
+   * @param tokenizer tokenizer to store the field boundaries in.
+   * @return number of fields found.
+   */
+  abstract int tokenize(LineTokenizer tokenizer);
+
+  /**
+   * Method is used to check if a field of the current line is the null indicator.
+   * @param start start of the field (inclusive).
+   * @param end end of the field (exclusive).
+   * @return true if the field is null.
+   */
+  abstract boolean isNull(int start, int end);
+
+  /**
+   * Method is used to return a field of the current line as a String.
+   * @param start start of the field (inclusive).
+   * @param end end of the field (exclusive).
+   * @return the field as a String.
+   */
+  abstract String text(int start, int end);
+
+  /**
+   * Method is used to return a field of the current line as a String using a cache of the values of the field.
+   * @param cache cache for the field.
+   * @param start start of the field (inclusive).
+   * @param end end of the field (exclusive).
+   * @return the field as a String.
+   */
+  abstract String text(StringCache cache, int start, int end);
+
+  /**
+   * Method is used to parse a field of the current line.
+   * @param parser parser for the field.
+   * @param start start of the field (inclusive).
+   * @param end end of the field (exclusive).
+   * @return the parsed value.
+   */
+  abstract Object parse(FieldParser parser, int start, int end);
+
+  /**
+   * Method is used to return a field of the current line as a CharSequence without copying it when possible.
+   * @param slice reusable slice to point at the field.
+   * @param start start of the field (inclusive).
+   * @param end end of the field (exclusive).
+   * @return the slice or a String if the field cannot be viewed in place.
+   */
+  abstract CharSequence chars(FieldSlice slice, int start, int end);
+
+  /**
+   * Method is used to parse a long field of the current line without boxing.
+   * @param parser parser for the field.
+   * @param start start of the field (inclusive).
+   * @param end end of the field (exclusive).
+   * @return the parsed value.
+   */
+  abstract long parseLong(LongFieldParser parser, int start, int end);
+
+  /**
+   * Method is used to parse an int field of the current line without boxing.
+   * @param parser parser for the field.
+   * @param start start of the field (inclusive).
+   * @param end end of the field (exclusive).
+   * @return the parsed value.
+   */
+  abstract int parseInt(IntegerFieldParser parser, int start, int end);
+
+  /**
+   * Method is used to parse a double field of the current line without boxing.
+   * @param parser parser for the field.
+   * @param start start of the field (inclusive).
+   * @param end end of the field (exclusive).
+   * @return the parsed value.
+   */
+  abstract double parseDouble(DoubleFieldParser parser, int start, int end);
+
+  /**
+   * Method is used to parse a date field of the current line to the number of days since 1970-01-01.
+   * @param parser parser for the field.
+   * @param start start of the field (inclusive).
+   * @param end end of the field (exclusive).
+   * @return the parsed value.
+   */
+  abstract long parseEpochDay(DateFieldParser parser, int start, int end);
+
+  /**
+   * Method is used to parse a time field of the current line to the nano of the day.
+   * @param parser parser for the field.
+   * @param start start of the field (inclusive).
+   * @param end end of the field (exclusive).
+   * @return the parsed value.
+   */
+  abstract long parseNanoOfDay(TimeFieldParser parser, int start, int end);
+}
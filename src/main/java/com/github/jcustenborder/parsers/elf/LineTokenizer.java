@@ -0,0 +1,176 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.util.Arrays;
+
+/**
+ * Single pass tokenizer for the data lines of an extended log file. The tokenizer does not create any strings. It
+ * records the start and end of each field within the line. Surrounding double quotes are excluded from the recorded
+ * range.
+ *
+ * The tokens produced are identical to what the regular expression {@code [^\s"']+|"([^"]*)"|'([^']*)'} produced
+ * followed by stripping the double quotes. This means that single quoted values keep their quotes and a quote
+ * character that is never closed is dropped.
+ */
+class LineTokenizer {
+  private int[] starts;
+  private int[] ends;
+  private int count;
+
+  LineTokenizer() {
+    this(64);
+  }
+
+  LineTokenizer(int initialCapacity) {
+    this.starts = new int[initialCapacity];
+    this.ends = new int[initialCapacity];
+  }
+
+  /**
+   * Number of fields found by the last call to tokenize.
+   * @return Number of fields found by the last call to tokenize.
+   */
+  int count() {
+    return this.count;
+  }
+
+  /**
+   * Start index (inclusive) of the field.
+   * @param index index of the field.
+   * @return Start index (inclusive) of the field.
+   */
+  int start(int index) {
+    return this.starts[index];
+  }
+
+  /**
+   * End index (exclusive) of the field.
+   * @param index index of the field.
+   * @return End index (exclusive) of the field.
+   */
+  int end(int index) {
+    return this.ends[index];
+  }
+
+  private void add(int start, int end) {
+    if (this.count == this.starts.length) {
+      final int capacity = this.starts.length * 2;
+      this.starts = Arrays.copyOf(this.starts, capacity);
+      this.ends = Arrays.copyOf(this.ends, capacity);
+    }
+    this.starts[this.count] = start;
+    this.ends[this.count] = end;
+    this.count++;
+  }
+
+  static boolean isWhitespace(int c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+  }
+
+  /**
+   * Method is used to tokenize a line.
+   * @param line line to tokenize.
+   * @return number of fields found.
+   */
+  int tokenize(CharSequence line) {
+    this.count = 0;
+    final int length = line.length();
+    int index = 0;
+
+    while (index < length) {
+      final char c = line.charAt(index);
+      if (isWhitespace(c)) {
+        index++;
+      } else if (c == '"' || c == '\'') {
+        int close = index + 1;
+        while (close < length && line.charAt(close) != c) {
+          close++;
+        }
+        if (close == length) {
+          // Quote is never closed. Skip it and continue with the next character.
+          index++;
+        } else if (c == '"') {
+          add(index + 1, close);
+          index = close + 1;
+        } else {
+          add(index, close + 1);
+          index = close + 1;
+        }
+      } else {
+        final int start = index;
+        index++;
+        while (index < length) {
+          final char n = line.charAt(index);
+          if (isWhitespace(n) || n == '"' || n == '\'') {
+            break;
+          }
+          index++;
+        }
+        add(start, index);
+      }
+    }
+
+    return this.count;
+  }
+
+  /**
+   * Method is used to tokenize a line stored in a byte array. The field boundaries are offsets within the array.
+   * @param buffer buffer containing the line.
+   * @param offset start of the line (inclusive).
+   * @param limit end of the line (exclusive).
+   * @return number of fields found.
+   */
+  int tokenize(byte[] buffer, int offset, int limit) {
+    this.count = 0;
+    int index = offset;
+
+    while (index < limit) {
+      final byte c = buffer[index];
+      if (isWhitespace(c)) {
+        index++;
+      } else if (c == '"' || c == '\'') {
+        int close = index + 1;
+        while (close < limit && buffer[close] != c) {
+          close++;
+        }
+        if (close == limit) {
+          // Quote is never closed. Skip it and continue with the next character.
+          index++;
+        } else if (c == '"') {
+          add(index + 1, close);
+          index = close + 1;
+        } else {
+          add(index, close + 1);
+          index = close + 1;
+        }
+      } else {
+        final int start = index;
+        index++;
+        while (index < limit) {
+          final byte n = buffer[index];
+          if (isWhitespace(n) || n == '"' || n == '\'') {
+            break;
+          }
+          index++;
+        }
+        add(start, index);
+      }
+    }
+
+    return this.count;
+  }
+}
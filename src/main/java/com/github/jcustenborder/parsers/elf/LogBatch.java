@@ -0,0 +1,398 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reusable batch of rows stored as one array per column. The type of each column comes from the
+ * {@link com.github.jcustenborder.parsers.elf.parsers.FieldParser#fieldType()} of the field.
+ * <ul>
+ * <li>Long and Integer columns are stored in {@link #longs(int)}.</li>
+ * <li>Double columns are stored in {@link #doubles(int)}.</li>
+ * <li>Date columns are stored in {@link #longs(int)} as the number of days since 1970-01-01.</li>
+ * <li>Time columns are stored in {@link #longs(int)} as the nano of the day.</li>
+ * <li>String columns are dictionary encoded. {@link #ids(int)} holds the id of each value in
+ * {@link #dictionary(int)}.</li>
+ * <li>Everything else is stored in {@link #objects(int)}.</li>
+ * </ul>
+ * Every column has a null bitmap. The arrays are reused by the next call to
+ * {@link ElfParser#nextBatch(LogBatch)} and are only valid up to {@link #size()}. Dictionaries are cleared for
+ * every batch. When a #Fields directive changes the fields of the input the columns of the batch are replaced, so
+ * check {@link #fieldTypes()} after each call.
+ */
+public final class LogBatch {
+  private final int capacity;
+  private final long[] offsets;
+  private Map<String, Class<?>> fieldTypes;
+  private String[] fieldNames;
+  private Map<String, Integer> fieldIndexes;
+  private FieldKind[] kinds;
+  private long[][] longs;
+  private double[][] doubles;
+  private int[][] ids;
+  private Object[][] objects;
+  private StringDictionary[] dictionaries;
+  private long[][] nulls;
+  private Map<String, Class<?>> lastFieldTypes;
+  private int size;
+
+  LogBatch(Map<String, Class<?>> fieldTypes, int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be greater than 0.");
+    }
+    this.capacity = capacity;
+    this.offsets = new long[capacity];
+    reset(fieldTypes);
+  }
+
+  /**
+   * Method is used to change the columns of the batch. Called when the fields of the input change.
+   * @param fieldTypes types of the new columns.
+   */
+  void reset(Map<String, Class<?>> fieldTypes) {
+    final int columns = fieldTypes.size();
+    final int capacity = this.capacity;
+    this.size = 0;
+    this.fieldTypes = fieldTypes;
+    this.lastFieldTypes = fieldTypes;
+    this.fieldNames = new String[columns];
+    this.fieldIndexes = new HashMap<>(columns * 2);
+    this.kinds = new FieldKind[columns];
+    this.longs = new long[columns][];
+    this.doubles = new double[columns][];
+    this.ids = new int[columns][];
+    this.objects = new Object[columns][];
+    this.dictionaries = new StringDictionary[columns];
+    this.nulls = new long[columns][];
+
+    int column = 0;
+    for (Map.Entry<String, Class<?>> e : fieldTypes.entrySet()) {
+      this.fieldNames[column] = e.getKey();
+      this.fieldIndexes.put(e.getKey(), column);
+      final FieldKind kind = FieldKind.of(e.getValue());
+      this.kinds[column] = kind;
+      switch (kind) {
+        case LONG:
+        case INT:
+        case DATE:
+        case TIME:
+          this.longs[column] = new long[capacity];
+          break;
+        case DOUBLE:
+          this.doubles[column] = new double[capacity];
+          break;
+        case STRING:
+          this.ids[column] = new int[capacity];
+          this.dictionaries[column] = new StringDictionary();
+          break;
+        default:
+          this.objects[column] = new Object[capacity];
+          break;
+      }
+      this.nulls[column] = new long[(capacity + 63) >>> 6];
+      column++;
+    }
+  }
+
+  /**
+   * The data types associated with the columns.
+   * @return The data types associated with the columns.
+   */
+  public Map<String, Class<?>> fieldTypes() {
+    return this.fieldTypes;
+  }
+
+  /**
+   * The number of rows in the batch.
+   * @return The number of rows in the batch.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * The maximum number of rows in the batch.
+   * @return The maximum number of rows in the batch.
+   */
+  public int capacity() {
+    return this.capacity;
+  }
+
+  /**
+   * The number of columns in the batch.
+   * @return The number of columns in the batch.
+   */
+  public int columnCount() {
+    return this.kinds.length;
+  }
+
+  /**
+   * Method is used to return the name of a column.
+   * @param column index of the column.
+   * @return name of the column.
+   */
+  public String fieldName(int column) {
+    return this.fieldNames[column];
+  }
+
+  /**
+   * Method is used to lookup the index of a column.
+   * @param fieldName name of the field.
+   * @return index of the column. -1 if the column does not exist.
+   */
+  public int fieldIndex(String fieldName) {
+    final Integer result = this.fieldIndexes.get(fieldName);
+    return null == result ? -1 : result;
+  }
+
+  /**
+   * The byte offset of the line each row was read from. -1 for rows from parsers that do not track offsets.
+   * @return offset of each row.
+   */
+  public long[] offsets() {
+    return this.offsets;
+  }
+
+  private IllegalStateException wrongKind(int column, String type) {
+    return new IllegalStateException(
+        String.format("Column %s(%s) is %s and is not stored as %s", this.fieldNames[column], column,
+            this.kinds[column], type)
+    );
+  }
+
+  /**
+   * Method is used to return the values of a Long, Integer, date or time column.
+   * @param column index of the column.
+   * @return values of the column.
+   */
+  public long[] longs(int column) {
+    final long[] result = this.longs[column];
+    if (null == result) {
+      throw wrongKind(column, "long[]");
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to return the values of a Double column.
+   * @param column index of the column.
+   * @return values of the column.
+   */
+  public double[] doubles(int column) {
+    final double[] result = this.doubles[column];
+    if (null == result) {
+      throw wrongKind(column, "double[]");
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to return the dictionary ids of a String column.
+   * @param column index of the column.
+   * @return dictionary ids of the column.
+   */
+  public int[] ids(int column) {
+    final int[] result = this.ids[column];
+    if (null == result) {
+      throw wrongKind(column, "int[]");
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to return the dictionary of a String column.
+   * @param column index of the column.
+   * @return dictionary of the column.
+   */
+  public StringDictionary dictionary(int column) {
+    final StringDictionary result = this.dictionaries[column];
+    if (null == result) {
+      throw wrongKind(column, "a dictionary");
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to return the values of a column that is not one of the built in types.
+   * @param column index of the column.
+   * @return values of the column.
+   */
+  public Object[] objects(int column) {
+    final Object[] result = this.objects[column];
+    if (null == result) {
+      throw wrongKind(column, "Object[]");
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to return the null bitmap of a column. Row n is null if bit (n % 64) of word (n / 64) is set.
+   * @param column index of the column.
+   * @return null bitmap of the column.
+   */
+  public long[] nulls(int column) {
+    return this.nulls[column];
+  }
+
+  /**
+   * Method is used to check if a value is null.
+   * @param column index of the column.
+   * @param row index of the row.
+   * @return true if the value is null.
+   */
+  public boolean isNull(int column, int row) {
+    checkRow(row);
+    return (this.nulls[column][row >>> 6] & (1L << row)) != 0;
+  }
+
+  /**
+   * Method is used to return a value as the same type that is stored in {@link LogEntry#fieldData()}. This boxes
+   * the value and is intended for testing and debugging.
+   * @param column index of the column.
+   * @param row index of the row.
+   * @return value. Null if the value is null.
+   */
+  public Object getObject(int column, int row) {
+    if (isNull(column, row)) {
+      return null;
+    }
+    switch (this.kinds[column]) {
+      case LONG:
+        return this.longs[column][row];
+      case INT:
+        return (int) this.longs[column][row];
+      case DOUBLE:
+        return this.doubles[column][row];
+      case DATE:
+        return LocalDate.ofEpochDay(this.longs[column][row]);
+      case TIME:
+        return LocalTime.ofNanoOfDay(this.longs[column][row]);
+      case STRING:
+        return this.dictionaries[column].get(this.ids[column][row]);
+      default:
+        return this.objects[column][row];
+    }
+  }
+
+  private void checkRow(int row) {
+    if (row < 0 || row >= this.size) {
+      throw new IndexOutOfBoundsException(
+          String.format("row %s is out of range for %s row(s)", row, this.size)
+      );
+    }
+  }
+
+  boolean isFull() {
+    return this.size == this.capacity;
+  }
+
+  /**
+   * Method is used to append an empty row that the caller fills in through the column arrays. Used by parsers
+   * that already hold their values in columns.
+   * @return index of the row.
+   */
+  int addRow() {
+    return this.size++;
+  }
+
+  /**
+   * Method is used to remove all rows from the batch.
+   */
+  void clear() {
+    for (int column = 0; column < this.kinds.length; column++) {
+      Arrays.fill(this.nulls[column], 0L);
+      if (null != this.dictionaries[column]) {
+        this.dictionaries[column].clear();
+      }
+      if (null != this.objects[column]) {
+        Arrays.fill(this.objects[column], 0, this.size, null);
+      }
+    }
+    this.size = 0;
+  }
+
+  /**
+   * Method is used to append a record to the batch.
+   * @param record record to append.
+   */
+  void add(LogRecord record) {
+    checkFields(record.fieldTypes());
+    final int row = this.size++;
+    this.offsets[row] = record.offset();
+    final int word = row >>> 6;
+    final long bit = 1L << row;
+    for (int column = 0; column < this.kinds.length; column++) {
+      if (record.isNull(column)) {
+        this.nulls[column][word] |= bit;
+        continue;
+      }
+      switch (this.kinds[column]) {
+        case LONG:
+        case DATE:
+        case TIME:
+          this.longs[column][row] = record.getLong(column);
+          break;
+        case INT:
+          this.longs[column][row] = record.getInt(column);
+          break;
+        case DOUBLE:
+          this.doubles[column][row] = record.getDouble(column);
+          break;
+        case STRING:
+          this.ids[column][row] = this.dictionaries[column].add(record.getCharSequence(column));
+          break;
+        default:
+          this.objects[column][row] = record.getObject(column);
+          break;
+      }
+    }
+  }
+
+  /**
+   * Method is used to check if records with the supplied fields can be added to the batch.
+   * @param fieldTypes fields of the record.
+   * @return true if the fields are the same as the columns of the batch, in the same order.
+   */
+  boolean matches(Map<String, Class<?>> fieldTypes) {
+    if (fieldTypes == this.lastFieldTypes) {
+      return true;
+    }
+    if (!this.fieldTypes.equals(fieldTypes) ||
+        !new ArrayList<>(this.fieldTypes.keySet()).equals(new ArrayList<>(fieldTypes.keySet()))) {
+      return false;
+    }
+    this.lastFieldTypes = fieldTypes;
+    return true;
+  }
+
+  private void checkFields(Map<String, Class<?>> fieldTypes) {
+    if (!matches(fieldTypes)) {
+      throw new IllegalStateException(
+          String.format(
+              "Fields of the record %s do not match the fields of the batch %s.",
+              fieldTypes.keySet(),
+              this.fieldTypes.keySet()
+          )
+      );
+    }
+  }
+}
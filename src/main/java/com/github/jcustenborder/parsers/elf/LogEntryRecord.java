@@ -0,0 +1,174 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LogRecord over an existing LogEntry. Used by parsers that only produce LogEntry objects.
+ */
+class LogEntryRecord implements LogRecord {
+  private final LogEntry entry;
+  private final Map<String, Class<?>> fieldTypes;
+  private final List<String> fieldNames;
+
+  LogEntryRecord(LogEntry entry) {
+    this(entry, null);
+  }
+
+  /**
+   * Every entry carries its own copy of its field types. When the entry has the same fields as the previous record
+   * the field types and names of that record are shared, so callers that compare {@link #fieldTypes()} by identity
+   * only bind once for a run of entries.
+   * @param entry entry to read.
+   * @param previous record of the previous entry. Null if there is none.
+   */
+  LogEntryRecord(LogEntry entry, LogEntryRecord previous) {
+    this.entry = entry;
+    if (null != previous && sameFields(previous.fieldTypes, entry.fieldTypes())) {
+      this.fieldTypes = previous.fieldTypes;
+      this.fieldNames = previous.fieldNames;
+    } else {
+      this.fieldTypes = entry.fieldTypes();
+      this.fieldNames = new ArrayList<>(this.fieldTypes.keySet());
+    }
+  }
+
+  /**
+   * Method is used to check if two sets of fields have the same names and types in the same order.
+   */
+  private static boolean sameFields(Map<String, Class<?>> left, Map<String, Class<?>> right) {
+    if (left == right) {
+      return true;
+    }
+    if (left.size() != right.size()) {
+      return false;
+    }
+    final Iterator<Map.Entry<String, Class<?>>> l = left.entrySet().iterator();
+    final Iterator<Map.Entry<String, Class<?>>> r = right.entrySet().iterator();
+    while (l.hasNext()) {
+      final Map.Entry<String, Class<?>> a = l.next();
+      final Map.Entry<String, Class<?>> b = r.next();
+      if (!a.getKey().equals(b.getKey()) || a.getValue() != b.getValue()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public Map<String, Class<?>> fieldTypes() {
+    return this.fieldTypes;
+  }
+
+  @Override
+  public int fieldCount() {
+    return this.fieldNames.size();
+  }
+
+  @Override
+  public String fieldName(int index) {
+    return this.fieldNames.get(index);
+  }
+
+  @Override
+  public int fieldIndex(String fieldName) {
+    return this.fieldNames.indexOf(fieldName);
+  }
+
+  @Override
+  public int lineNumber() {
+    return -1;
+  }
+
+  @Override
+  public long offset() {
+    return -1L;
+  }
+
+  @Override
+  public boolean isNull(int index) {
+    return null == getObject(index);
+  }
+
+  private Object value(int index) {
+    final Object value = getObject(index);
+    if (null == value) {
+      throw new IllegalStateException(
+          String.format("Field %s(%s) is null", fieldName(index), index)
+      );
+    }
+    return value;
+  }
+
+  @Override
+  public long getLong(int index) {
+    final Object value = value(index);
+    if (value instanceof LocalDate) {
+      return ((LocalDate) value).toEpochDay();
+    } else if (value instanceof LocalTime) {
+      return ((LocalTime) value).toNanoOfDay();
+    } else if (value instanceof Long || value instanceof Integer) {
+      return ((Number) value).longValue();
+    }
+    throw new IllegalStateException(
+        String.format("Field %s(%s) is %s and cannot be read as long", fieldName(index), index, value.getClass())
+    );
+  }
+
+  @Override
+  public int getInt(int index) {
+    final Object value = value(index);
+    if (value instanceof Integer) {
+      return (Integer) value;
+    }
+    throw new IllegalStateException(
+        String.format("Field %s(%s) is %s and cannot be read as int", fieldName(index), index, value.getClass())
+    );
+  }
+
+  @Override
+  public double getDouble(int index) {
+    final Object value = value(index);
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    throw new IllegalStateException(
+        String.format("Field %s(%s) is %s and cannot be read as double", fieldName(index), index, value.getClass())
+    );
+  }
+
+  @Override
+  public CharSequence getCharSequence(int index) {
+    final Object value = getObject(index);
+    return null == value ? null : value.toString();
+  }
+
+  @Override
+  public Object getObject(int index) {
+    return this.entry.fieldData().get(fieldName(index));
+  }
+
+  @Override
+  public LogEntry toLogEntry() {
+    return this.entry;
+  }
+}
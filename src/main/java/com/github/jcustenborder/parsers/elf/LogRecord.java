@@ -0,0 +1,118 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.util.Map;
+
+/**
+ * View of the current line of a parser. Fields are accessed by index without boxing. The same instance is reused
+ * for every line, so a LogRecord and any CharSequence returned by it are only valid until the next call to
+ * {@link ElfParser#nextRecord()}. Use {@link #toLogEntry()} to keep a copy.
+ *
+ * Dates are exposed by {@link #getLong(int)} as the number of days since 1970-01-01 and times as the nano of the
+ * day.
+ */
+public interface LogRecord {
+  /**
+   * The data types associated with the fields.
+   * @return The data types associated with the fields.
+   */
+  Map<String, Class<?>> fieldTypes();
+
+  /**
+   * The number of fields defined in the header.
+   * @return The number of fields defined in the header.
+   */
+  int fieldCount();
+
+  /**
+   * Method is used to return the name of a field.
+   * @param index index of the field.
+   * @return name of the field.
+   */
+  String fieldName(int index);
+
+  /**
+   * Method is used to lookup the index of a field.
+   * @param fieldName name of the field.
+   * @return index of the field. -1 if the field does not exist.
+   */
+  int fieldIndex(String fieldName);
+
+  /**
+   * The line number the record was read from.
+   * @return The line number the record was read from. -1 if the parser does not track line numbers.
+   */
+  int lineNumber();
+
+  /**
+   * Byte offset of the start of the line the record was read from.
+   * @return Byte offset of the line. -1 if the parser does not track offsets.
+   */
+  long offset();
+
+  /**
+   * Method is used to check if a field is null. Fields that are missing from the end of the line are null.
+   * @param index index of the field.
+   * @return true if the field is null.
+   */
+  boolean isNull(int index);
+
+  /**
+   * Method is used to read a Long, Integer, date or time field.
+   * @param index index of the field.
+   * @return value of the field. Dates are returned as the number of days since 1970-01-01 and times as the nano
+   * of the day.
+   * @throws IllegalStateException if the field is null or cannot be read as a long.
+   */
+  long getLong(int index);
+
+  /**
+   * Method is used to read an Integer field.
+   * @param index index of the field.
+   * @return value of the field.
+   * @throws IllegalStateException if the field is null or cannot be read as an int.
+   */
+  int getInt(int index);
+
+  /**
+   * Method is used to read a Double, Long or Integer field.
+   * @param index index of the field.
+   * @return value of the field.
+   * @throws IllegalStateException if the field is null or cannot be read as a double.
+   */
+  double getDouble(int index);
+
+  /**
+   * Method is used to read the text of a field. The text is not copied when possible.
+   * @param index index of the field.
+   * @return text of the field. Null if the field is null.
+   */
+  CharSequence getCharSequence(int index);
+
+  /**
+   * Method is used to read the value of a field as the same type that is stored in {@link LogEntry#fieldData()}.
+   * @param index index of the field.
+   * @return value of the field. Null if the field is null.
+   */
+  Object getObject(int index);
+
+  /**
+   * Method is used to copy the record to a LogEntry.
+   * @return LogEntry containing the fields of the line.
+   */
+  LogEntry toLogEntry();
+}
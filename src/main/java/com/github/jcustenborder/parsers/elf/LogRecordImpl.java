@@ -0,0 +1,264 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LogRecord backed by primitive arrays. {@link ElfParserImpl} fills the arrays for each line. String fields are
+ * not parsed and are read from the line when requested.
+ */
+class LogRecordImpl implements LogRecord {
+  final FieldKind[] kinds;
+  final long[] longs;
+  final double[] doubles;
+  final Object[] objects;
+  final boolean[] nulls;
+  private final String[] fieldNames;
+  private final int[] columns;
+  private final Map<String, Integer> fieldIndexes;
+  private final Map<String, Class<?>> fieldTypes;
+  private final FieldSlice[] slices;
+  private final StringCache[] caches;
+  private final LineSource lineSource;
+  private final LineTokenizer tokenizer;
+  private int lineNumber;
+  private long offset;
+  private int present;
+
+  LogRecordImpl(Schema schema, LineSource lineSource, LineTokenizer tokenizer) {
+    final int size = schema.size();
+    this.fieldTypes = schema.fieldTypes;
+    this.columns = schema.columns;
+    this.lineSource = lineSource;
+    this.tokenizer = tokenizer;
+    this.kinds = new FieldKind[size];
+    this.fieldNames = new String[size];
+    this.fieldIndexes = new HashMap<>(size * 2);
+    for (int i = 0; i < schema.columns.length; i++) {
+      final ParserEntry entry = schema.entry(i);
+      this.kinds[i] = FieldKind.of(entry.parser());
+      this.fieldNames[i] = entry.fieldName();
+      this.fieldIndexes.put(entry.fieldName(), i);
+    }
+    if (null != schema.timestamp) {
+      final int column = schema.columns.length;
+      this.kinds[column] = schema.timestamp.kind();
+      this.fieldNames[column] = schema.timestamp.fieldName;
+      this.fieldIndexes.put(schema.timestamp.fieldName, column);
+    }
+    this.longs = new long[size];
+    this.doubles = new double[size];
+    this.objects = new Object[size];
+    this.nulls = new boolean[size];
+    this.slices = new FieldSlice[size];
+    this.caches = new StringCache[size];
+    for (int i = 0; i < schema.columns.length; i++) {
+      if (schema.cacheSizes[i] > 0) {
+        this.caches[i] = new StringCache(schema.cacheSizes[i]);
+      }
+    }
+  }
+
+  /**
+   * Method is used to start a new line.
+   * @param lineNumber line number of the line.
+   * @param offset byte offset of the line.
+   * @param fieldCount number of fields found on the line.
+   * @return number of columns that are present on the line. Columns after these are missing from the line. The
+   * timestamp column is never missing, it is null when the line has no date or time.
+   */
+  int reset(int lineNumber, long offset, int fieldCount) {
+    int present = 0;
+    while (present < this.columns.length && this.columns[present] < fieldCount) {
+      present++;
+    }
+    this.lineNumber = lineNumber;
+    this.offset = offset;
+    this.present = present;
+    return present;
+  }
+
+  @Override
+  public Map<String, Class<?>> fieldTypes() {
+    return this.fieldTypes;
+  }
+
+  @Override
+  public int fieldCount() {
+    return this.kinds.length;
+  }
+
+  @Override
+  public String fieldName(int index) {
+    return this.fieldNames[index];
+  }
+
+  @Override
+  public int fieldIndex(String fieldName) {
+    final Integer result = this.fieldIndexes.get(fieldName);
+    return null == result ? -1 : result;
+  }
+
+  @Override
+  public int lineNumber() {
+    return this.lineNumber;
+  }
+
+  @Override
+  public long offset() {
+    return this.offset;
+  }
+
+  @Override
+  public boolean isNull(int index) {
+    if (index < 0 || index >= this.kinds.length) {
+      throw new IndexOutOfBoundsException(
+          String.format("index %s is out of range for %s field(s)", index, this.kinds.length)
+      );
+    }
+    return (index >= this.present && index < this.columns.length) || this.nulls[index];
+  }
+
+  private IllegalStateException wrongKind(int index, String type) {
+    return new IllegalStateException(
+        String.format(
+            "Field %s(%s) is %s and cannot be read as %s",
+            this.fieldNames[index],
+            index,
+            this.kinds[index],
+            type
+        )
+    );
+  }
+
+  private void checkNotNull(int index) {
+    if (isNull(index)) {
+      throw new IllegalStateException(
+          String.format("Field %s(%s) on line %s is null", this.fieldNames[index], index, this.lineNumber)
+      );
+    }
+  }
+
+  @Override
+  public long getLong(int index) {
+    checkNotNull(index);
+    switch (this.kinds[index]) {
+      case LONG:
+      case INT:
+      case DATE:
+      case TIME:
+      case INSTANT:
+        return this.longs[index];
+      default:
+        throw wrongKind(index, "long");
+    }
+  }
+
+  @Override
+  public int getInt(int index) {
+    checkNotNull(index);
+    if (this.kinds[index] != FieldKind.INT) {
+      throw wrongKind(index, "int");
+    }
+    return (int) this.longs[index];
+  }
+
+  @Override
+  public double getDouble(int index) {
+    checkNotNull(index);
+    switch (this.kinds[index]) {
+      case DOUBLE:
+        return this.doubles[index];
+      case LONG:
+      case INT:
+        return this.longs[index];
+      default:
+        throw wrongKind(index, "double");
+    }
+  }
+
+  @Override
+  public CharSequence getCharSequence(int index) {
+    if (isNull(index)) {
+      return null;
+    }
+    if (index >= this.columns.length) {
+      // The timestamp column is not part of the line.
+      return getObject(index).toString();
+    }
+    FieldSlice slice = this.slices[index];
+    if (null == slice) {
+      slice = new FieldSlice();
+      this.slices[index] = slice;
+    }
+    final int fieldIndex = this.columns[index];
+    return this.lineSource.chars(slice, this.tokenizer.start(fieldIndex), this.tokenizer.end(fieldIndex));
+  }
+
+  @Override
+  public Object getObject(int index) {
+    if (isNull(index)) {
+      return null;
+    }
+    switch (this.kinds[index]) {
+      case LONG:
+        return this.longs[index];
+      case INT:
+        return (int) this.longs[index];
+      case DOUBLE:
+        return this.doubles[index];
+      case DATE:
+        return LocalDate.ofEpochDay(this.longs[index]);
+      case TIME:
+        return LocalTime.ofNanoOfDay(this.longs[index]);
+      case INSTANT:
+        final long nanos = this.longs[index];
+        return Instant.ofEpochSecond(
+            Math.floorDiv(nanos, TimestampColumn.NANOS_PER_SECOND),
+            Math.floorMod(nanos, TimestampColumn.NANOS_PER_SECOND)
+        );
+      case STRING:
+        final int fieldIndex = this.columns[index];
+        final StringCache cache = this.caches[index];
+        return null == cache ?
+            this.lineSource.text(this.tokenizer.start(fieldIndex), this.tokenizer.end(fieldIndex)) :
+            this.lineSource.text(cache, this.tokenizer.start(fieldIndex), this.tokenizer.end(fieldIndex));
+      default:
+        return this.objects[index];
+    }
+  }
+
+  @Override
+  public LogEntry toLogEntry() {
+    final Map<String, Object> data = new LinkedHashMap<>(this.kinds.length * 2);
+    for (int i = 0; i < this.present; i++) {
+      data.put(this.fieldNames[i], getObject(i));
+    }
+    for (int i = this.columns.length; i < this.kinds.length; i++) {
+      data.put(this.fieldNames[i], getObject(i));
+    }
+    return com.github.jcustenborder.parsers.elf.ImmutableLogEntry.builder()
+        .fieldData(data)
+        .fieldTypes(this.fieldTypes)
+        .build();
+  }
+}
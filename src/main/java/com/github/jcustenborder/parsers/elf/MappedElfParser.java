@@ -0,0 +1,602 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+
+/**
+ * ElfParser that splits a file into newline aligned chunks and parses them in parallel on a ForkJoinPool. The
+ * header is read once before the chunks are created. Chunks are read with positional reads on the FileChannel so they
+ * can be read by several threads at once. {@link #next()} and {@link #spliterator()} parse chunks in parallel.
+ * {@link #nextRecord()} and {@link #nextBatch(LogBatch)} parse the chunks in order on the calling thread and reuse
+ * the record of the chunk so no LogEntry is created for each row. Which one is used is decided by the first call.
+ */
+class MappedElfParser implements ElfParser {
+  static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+  private static final Logger log = LoggerFactory.getLogger(MappedElfParser.class);
+  private final FileChannel channel;
+  private final Charset charset;
+  private final Map<String, Class<?>> fieldTypes;
+  private final Map<String, String> directives;
+  private final ForkJoinPool pool;
+  private final DirectiveMode directiveMode;
+  private final int maxInFlight;
+  private final Deque<Chunk> pending;
+  private final Deque<Future<List<LogEntry>>> running = new ArrayDeque<>();
+  private final CompletionService<List<LogEntry>> completionService;
+  private final boolean ordered;
+  private final ErrorHandler errors;
+  private final MetricsCollector metrics;
+  private int inFlight;
+  private boolean started;
+  private ListIterator<LogEntry> current = Collections.emptyListIterator();
+  private boolean serial;
+  private Chunk serialChunk;
+  private ElfParserImpl serialParser;
+  private MetricsCollector serialMetrics;
+
+  /**
+   * Byte range of the file along with the fields that are defined for it.
+   */
+  static class Chunk {
+    final long start;
+    final long end;
+    final Schema schema;
+
+    Chunk(long start, long end, Schema schema) {
+      this.start = start;
+      this.end = end;
+      this.schema = schema;
+    }
+  }
+
+  /**
+   * Directive line found while scanning a chunk.
+   */
+  static class Directive {
+    final long start;
+    final long end;
+    final String line;
+
+    Directive(long start, long end, String line) {
+      this.start = start;
+      this.end = end;
+      this.line = line;
+    }
+  }
+
+  MappedElfParser(
+      FileChannel channel,
+      Charset charset,
+      Schema schema,
+      Map<String, String> directives,
+      List<Chunk> chunks,
+      ForkJoinPool pool,
+      boolean ordered,
+      DirectiveMode directiveMode,
+      ErrorHandler errors,
+      MetricsCollector metrics) {
+    this.channel = channel;
+    this.charset = charset;
+    this.pool = pool;
+    this.directiveMode = directiveMode;
+    this.maxInFlight = Math.max(2, pool.getParallelism() * 2);
+    this.pending = new ArrayDeque<>(chunks);
+    this.completionService = ordered ? null : new ExecutorCompletionService<>(pool);
+    this.ordered = ordered;
+    this.errors = errors;
+    this.metrics = metrics;
+    if (null != metrics) {
+      metrics.errors(errors::counts);
+    }
+    this.fieldTypes = schema.fieldTypes;
+    this.directives = Collections.unmodifiableMap(directives);
+  }
+
+  /**
+   * Method is used to find the start of the first line at or after position.
+   * @param channel file to read.
+   * @param position position to start looking from.
+   * @param end end of the data.
+   * @return offset of the start of the line. end if there are no more lines.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  static long alignToLine(FileChannel channel, long position, long end) throws IOException {
+    if (position <= 0) {
+      return 0;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
+    long offset = position - 1;
+    boolean carriageReturn = false;
+    while (offset < end) {
+      ((Buffer) buffer).clear();
+      final int read = channel.read(buffer, offset);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        final byte b = buffer.get(i);
+        if (carriageReturn) {
+          return b == '\n' ? offset + i + 1 : offset + i;
+        }
+        if (b == '\n') {
+          return offset + i + 1;
+        }
+        carriageReturn = b == '\r';
+      }
+      offset += read;
+    }
+    return end;
+  }
+
+  /**
+   * Method is used to split the data region of a file into newline aligned chunks.
+   * @param channel file to split.
+   * @param start start of the data region.
+   * @param end end of the data region.
+   * @param chunkSize approximate size of each chunk.
+   * @param schema fields defined by the header.
+   * @return chunks in file order.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  static List<Chunk> chunks(
+      FileChannel channel,
+      long start,
+      long end,
+      int chunkSize,
+      Schema schema) throws IOException {
+    List<Chunk> result = new ArrayList<>();
+    long chunkStart = start;
+    while (chunkStart < end) {
+      final long chunkEnd = alignToLine(channel, Math.min(end, chunkStart + chunkSize), end);
+      result.add(new Chunk(chunkStart, chunkEnd, schema));
+      chunkStart = chunkEnd;
+    }
+    log.trace("chunks() - Split {} byte(s) into {} chunk(s).", end - start, result.size());
+    return result;
+  }
+
+  /**
+   * Method is used to split chunks around any directives they contain. Every #Fields directive changes the fields
+   * of the chunks after it. Schemas are cached by the names of their fields so a file that switches back and forth
+   * between the same headers only builds each schema once.
+   * @param channel file to scan.
+   * @param charset charset of the file.
+   * @param pool pool used to scan the chunks in parallel.
+   * @param chunks chunks to scan.
+   * @param schemas function used to build the schema for a #Fields directive.
+   * @return chunks that do not contain any directives.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  static List<Chunk> resync(
+      FileChannel channel,
+      Charset charset,
+      ForkJoinPool pool,
+      List<Chunk> chunks,
+      Function<List<String>, Schema> schemas) throws IOException {
+    List<Future<List<Directive>>> scans = new ArrayList<>(chunks.size());
+    for (Chunk chunk : chunks) {
+      scans.add(submit(pool, () -> scan(channel, charset, chunk)));
+    }
+
+    List<Chunk> result = new ArrayList<>(chunks.size());
+    Matcher headerMatcher = ElfParserBuilder.HEADER_PATTERN.matcher("");
+    Schema schema = chunks.isEmpty() ? null : chunks.get(0).schema;
+    List<String> fieldNames = new ArrayList<>();
+    Map<List<String>, Schema> cache = new HashMap<>();
+    Function<List<String>, Schema> cached = f -> cache.computeIfAbsent(f, schemas);
+
+    for (int i = 0; i < chunks.size(); i++) {
+      final Chunk chunk = chunks.get(i);
+      long cursor = chunk.start;
+      for (Directive directive : get(scans.get(i))) {
+        if (directive.start > cursor) {
+          if (!fieldNames.isEmpty()) {
+            schema = cached.apply(fieldNames);
+            fieldNames = new ArrayList<>();
+          }
+          result.add(new Chunk(cursor, directive.start, schema));
+        }
+        if (headerMatcher.reset(directive.line).find() &&
+            ElfParserBuilder.HEADER_FIELDS.equalsIgnoreCase(headerMatcher.group(1))) {
+          log.trace("resync() - Found fields at offset {}: '{}'", directive.start, directive.line);
+          Collections.addAll(fieldNames, headerMatcher.group(2).split("\\s+"));
+        }
+        cursor = directive.end;
+      }
+      if (cursor < chunk.end) {
+        if (!fieldNames.isEmpty()) {
+          schema = cached.apply(fieldNames);
+          fieldNames = new ArrayList<>();
+        }
+        result.add(new Chunk(cursor, chunk.end, schema));
+      }
+    }
+    return result;
+  }
+
+  static List<Directive> scan(FileChannel channel, Charset charset, Chunk chunk) throws IOException {
+    List<Directive> result = new ArrayList<>();
+    ByteLineSource lineSource = lineSource(channel, charset, chunk, false);
+    while (lineSource.readLine()) {
+      if (lineSource.isDirective()) {
+        result.add(new Directive(lineSource.lineOffset(), lineSource.position(), lineSource.line()));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to create a line source for a chunk.
+   * @param channel file containing the chunk.
+   * @param charset charset of the file.
+   * @param chunk chunk to read.
+   * @param failOnDirective true to fail if the chunk contains a #Fields directive that does not match the fields of
+   *                        the chunk. Directives are skipped either way.
+   * @return line source for the chunk.
+   */
+  static ByteLineSource lineSource(FileChannel channel, Charset charset, Chunk chunk, boolean failOnDirective) {
+    final ChannelInputStream inputStream = new ChannelInputStream(channel, chunk.start, chunk.end);
+    if (failOnDirective) {
+      return new FailOnDirectiveLineSource(inputStream, charset, chunk.start, chunk.schema.fieldNames);
+    }
+    return new ByteLineSource(
+        inputStream,
+        charset,
+        ByteLineSource.DEFAULT_BUFFER_SIZE,
+        chunk.start
+    );
+  }
+
+  private ElfParserImpl parser(Chunk chunk, MetricsCollector chunkMetrics) {
+    final ByteLineSource lineSource = lineSource(
+        this.channel,
+        this.charset,
+        chunk,
+        DirectiveMode.FAIL == this.directiveMode
+    );
+    ElfParserImpl parser = new ElfParserImpl(lineSource, chunk.schema);
+    parser.errors(this.errors);
+    if (null != chunkMetrics) {
+      parser.metrics(chunkMetrics, false);
+    }
+    return parser;
+  }
+
+  static IOException chunkError(Chunk chunk, Exception ex) {
+    return new IOException(
+        String.format("Could not parse chunk starting at offset %s", chunk.start),
+        ex
+    );
+  }
+
+  List<LogEntry> parse(Chunk chunk) throws IOException {
+    List<LogEntry> result = new ArrayList<>();
+    try {
+      final MetricsCollector chunkMetrics = null == this.metrics ? null : this.metrics.child();
+      ElfParserImpl parser = parser(chunk, chunkMetrics);
+      LogEntry entry;
+      while (null != (entry = parser.next())) {
+        result.add(entry);
+      }
+      if (null != chunkMetrics) {
+        this.metrics.add(chunkMetrics);
+      }
+    } catch (IOException | RuntimeException ex) {
+      throw chunkError(chunk, ex);
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to get the parser of the chunk that is being read in order on the calling thread. The parser of
+   * the previous chunk is closed and its metrics are added once it has been read to the end.
+   * @param advance true if the current chunk has been read to the end.
+   * @return parser of the current chunk. null if there are no more chunks.
+   */
+  private ElfParserImpl serialParser(boolean advance) throws IOException {
+    if (advance && null != this.serialParser) {
+      this.serialParser.close();
+      this.serialParser = null;
+      if (null != this.serialMetrics) {
+        this.metrics.add(this.serialMetrics);
+        this.serialMetrics = null;
+      }
+    }
+    if (null == this.serialParser) {
+      this.serialChunk = this.pending.poll();
+      if (null == this.serialChunk) {
+        return null;
+      }
+      this.serialMetrics = null == this.metrics ? null : this.metrics.child();
+      this.serialParser = parser(this.serialChunk, this.serialMetrics);
+    }
+    return this.serialParser;
+  }
+
+  private LogRecord serialRecord() throws IOException {
+    ElfParserImpl parser = serialParser(false);
+    while (null != parser) {
+      final LogRecord record;
+      try {
+        record = parser.nextRecord();
+      } catch (IOException | RuntimeException ex) {
+        throw chunkError(this.serialChunk, ex);
+      }
+      if (null != record) {
+        return record;
+      }
+      parser = serialParser(true);
+    }
+    return null;
+  }
+
+  /**
+   * Method is used to submit a task so that checked exceptions are reported as the cause of the ExecutionException.
+   */
+  static <T> Future<T> submit(ForkJoinPool pool, Callable<T> callable) {
+    FutureTask<T> task = new FutureTask<>(callable);
+    pool.execute(task);
+    return task;
+  }
+
+  static <T> T get(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a chunk");
+    } catch (ExecutionException ex) {
+      final Throwable cause = ex.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  private Callable<List<LogEntry>> task(Chunk chunk) {
+    return () -> parse(chunk);
+  }
+
+  private List<LogEntry> nextChunk() throws IOException {
+    if (null == this.completionService) {
+      while (this.running.size() < this.maxInFlight && !this.pending.isEmpty()) {
+        this.running.add(submit(this.pool, task(this.pending.poll())));
+      }
+      final Future<List<LogEntry>> future = this.running.poll();
+      return null == future ? null : get(future);
+    }
+
+    while (this.inFlight < this.maxInFlight && !this.pending.isEmpty()) {
+      this.running.add(this.completionService.submit(task(this.pending.poll())));
+      this.inFlight++;
+    }
+    if (0 == this.inFlight) {
+      return null;
+    }
+    try {
+      final Future<List<LogEntry>> future = this.completionService.take();
+      this.running.remove(future);
+      this.inFlight--;
+      return get(future);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a chunk");
+    }
+  }
+
+  @Override
+  public Map<String, Class<?>> fieldTypes() {
+    return this.fieldTypes;
+  }
+
+  @Override
+  public Map<String, String> directives() {
+    return this.directives;
+  }
+
+  @Override
+  public LogEntry next() throws IOException {
+    if (this.serial) {
+      final LogRecord record = serialRecord();
+      return null == record ? null : record.toLogEntry();
+    }
+    this.started = true;
+    while (!this.current.hasNext()) {
+      final List<LogEntry> entries = nextChunk();
+      if (null == entries) {
+        return null;
+      }
+      this.current = entries.listIterator();
+    }
+    return this.current.next();
+  }
+
+  /**
+   * Method is used to read the next record. If this is the first call the chunks are parsed in order on the calling
+   * thread and the record is reused, see {@link ElfParser#nextRecord()}.
+   * @return the next record. null if at the end of the file.
+   * @throws IOException Exception thrown when data cannot be parsed or there is an underlying system error.
+   */
+  @Override
+  public LogRecord nextRecord() throws IOException {
+    if (!this.started) {
+      this.started = true;
+      this.serial = true;
+    }
+    if (this.serial) {
+      return serialRecord();
+    }
+    return ElfParser.super.nextRecord();
+  }
+
+  /**
+   * Method is used to read the next rows into a batch. The batch ends early when the fields change and the next
+   * call changes the columns of the batch to the new fields. If this is the first call the chunks are parsed in order
+   * on the calling thread, see {@link #nextRecord()}.
+   * @param batch batch created by {@link #newBatch(int)}.
+   * @return number of rows read. 0 if at the end of the file.
+   * @throws IOException Exception thrown when data cannot be parsed or there is an underlying system error.
+   */
+  @Override
+  public int nextBatch(LogBatch batch) throws IOException {
+    if (!this.started) {
+      this.started = true;
+      this.serial = true;
+    }
+    batch.clear();
+    if (this.serial) {
+      LogRecord record;
+      while (!batch.isFull() && null != (record = serialRecord())) {
+        if (!this.serialParser.add(batch, record)) {
+          break;
+        }
+      }
+      return batch.size();
+    }
+    LogEntry entry;
+    while (!batch.isFull() && null != (entry = next())) {
+      if (!batch.matches(entry.fieldTypes())) {
+        if (batch.size() > 0) {
+          this.current.previous();
+          break;
+        }
+        batch.reset(entry.fieldTypes());
+      }
+      batch.add(new LogEntryRecord(entry));
+    }
+    return batch.size();
+  }
+
+  @Override
+  public Map<ParseError.Type, Long> errorCounts() {
+    return this.errors.counts();
+  }
+
+  @Override
+  public ParseMetrics metrics() {
+    return null == this.metrics ? null : this.metrics.snapshot();
+  }
+
+  @Override
+  public Spliterator<LogEntry> spliterator() {
+    if (this.started) {
+      return ElfParser.super.spliterator();
+    }
+    this.started = true;
+    List<Chunk> chunks = new ArrayList<>(this.pending);
+    this.pending.clear();
+    final double bytesPerLine;
+    try {
+      bytesPerLine = chunks.isEmpty() ? 1 : ChunkSpliterator.bytesPerLine(
+          this.channel,
+          chunks.get(0).start,
+          chunks.get(chunks.size() - 1).end
+      );
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return new ChunkSpliterator(
+        this.channel,
+        this.charset,
+        chunks,
+        DirectiveMode.FAIL == this.directiveMode,
+        this.ordered ? ElfParserSpliterator.CHARACTERISTICS : Spliterator.NONNULL,
+        bytesPerLine,
+        this.errors,
+        this.metrics
+    );
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.pending.clear();
+    for (Future<List<LogEntry>> future : this.running) {
+      future.cancel(true);
+    }
+    this.running.clear();
+    if (null != this.serialParser) {
+      this.serialParser.close();
+      this.serialParser = null;
+    }
+    if (null != this.metrics) {
+      this.metrics.close();
+    }
+    this.channel.close();
+  }
+
+  /**
+   * LineSource used with DirectiveMode.FAIL to stop parsing when a #Fields directive in a chunk changes the fields.
+   * Other directives, comments and a #Fields directive that repeats the fields are skipped.
+   */
+  static class FailOnDirectiveLineSource extends ByteLineSource {
+    private final List<String> fieldNames;
+    private final Matcher headerMatcher = ElfParserBuilder.HEADER_PATTERN.matcher("");
+
+    FailOnDirectiveLineSource(InputStream inputStream, Charset charset, long offset, List<String> fieldNames) {
+      super(inputStream, charset, DEFAULT_BUFFER_SIZE, offset);
+      this.fieldNames = fieldNames;
+    }
+
+    @Override
+    boolean isDirective() {
+      if (!super.isDirective()) {
+        return false;
+      }
+      final String line = line();
+      if (this.headerMatcher.reset(line).find() &&
+          ElfParserBuilder.HEADER_FIELDS.equalsIgnoreCase(this.headerMatcher.group(1)) &&
+          !this.fieldNames.equals(Arrays.asList(this.headerMatcher.group(2).trim().split("\\s+")))) {
+        throw new IllegalStateException(
+            String.format("Fields changed at offset %s: '%s'", lineOffset(), line)
+        );
+      }
+      return true;
+    }
+  }
+}
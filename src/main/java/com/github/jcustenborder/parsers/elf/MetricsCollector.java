@@ -0,0 +1,323 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Collects the counters behind {@link ParseMetrics}. A collector is updated without synchronization by the thread
+ * that parses, so snapshots taken from other threads while parsing may be slightly behind. Chunks parsed on a pool
+ * each use a child collector that is added to the collector of the file once the chunk is done.
+ */
+final class MetricsCollector {
+  static final int BUCKETS = 40;
+  static final int DEFAULT_SAMPLE_INTERVAL = 64;
+  static final String JMX_DOMAIN = "com.github.jcustenborder.parsers.elf";
+  private static final Logger log = LoggerFactory.getLogger(MetricsCollector.class);
+  private static final AtomicLong JMX_IDS = new AtomicLong();
+
+  /**
+   * Counters for a field.
+   */
+  static final class FieldCounters {
+    final String parser;
+    long nulls;
+    long failures;
+    long samples;
+    final long[] histogram = new long[BUCKETS];
+
+    FieldCounters(String parser) {
+      this.parser = parser;
+    }
+
+    void add(FieldCounters other) {
+      this.nulls += other.nulls;
+      this.failures += other.failures;
+      this.samples += other.samples;
+      for (int i = 0; i < BUCKETS; i++) {
+        this.histogram[i] += other.histogram[i];
+      }
+    }
+  }
+
+  long lines;
+  long directiveLines;
+  long filteredLines;
+  long bytes;
+  private final Map<String, FieldCounters> fields = new LinkedHashMap<>();
+  private final int sampleInterval;
+  private final ParseMetricsListener listener;
+  private final long reportInterval;
+  private long untilReport;
+  private int untilSample;
+  private Supplier<Map<ParseError.Type, Long>> errors = Collections::emptyMap;
+  private ObjectName objectName;
+  private boolean closed;
+
+  MetricsCollector(int sampleInterval, ParseMetricsListener listener, long reportInterval) {
+    this.sampleInterval = sampleInterval;
+    this.untilSample = sampleInterval;
+    this.listener = listener;
+    this.reportInterval = reportInterval;
+    this.untilReport = reportInterval;
+  }
+
+  /**
+   * Method is used to create a collector for a chunk that is added to this collector with
+   * {@link #add(MetricsCollector)}.
+   * @return collector without a listener.
+   */
+  MetricsCollector child() {
+    return new MetricsCollector(this.sampleInterval, null, 0);
+  }
+
+  /**
+   * Method is used to set where the error counts included in snapshots come from.
+   * @param errors supplier of the error counts.
+   */
+  void errors(Supplier<Map<ParseError.Type, Long>> errors) {
+    this.errors = errors;
+  }
+
+  /**
+   * Method is used to look up the counters of the fields of a schema.
+   * @param fieldParsers parsers of the fields in the order they appear in the line.
+   * @return counters for each field.
+   */
+  synchronized FieldCounters[] fields(List<ParserEntry> fieldParsers) {
+    final FieldCounters[] result = new FieldCounters[fieldParsers.size()];
+    for (int i = 0; i < result.length; i++) {
+      final ParserEntry entry = fieldParsers.get(i);
+      result[i] = this.fields.computeIfAbsent(
+          entry.fieldName(),
+          n -> new FieldCounters(entry.parser().getClass().getSimpleName())
+      );
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to count a line that was read.
+   * @param length length of the line including the line ending.
+   */
+  void line(int length) {
+    this.lines++;
+    this.bytes += length;
+  }
+
+  /**
+   * Method is used to take back the count of a line that was pushed back to be read again.
+   * @param length length of the line including the line ending.
+   */
+  void unread(int length) {
+    this.lines--;
+    this.bytes -= length;
+  }
+
+  /**
+   * Method is used to decide if the fields of the current line are timed.
+   * @return true for one line in every sample interval.
+   */
+  boolean sample() {
+    if (--this.untilSample > 0) {
+      return false;
+    }
+    this.untilSample = this.sampleInterval;
+    return true;
+  }
+
+  static void record(FieldCounters field, long nanos) {
+    field.samples++;
+    field.histogram[nanos <= 1 ? 0 : Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(nanos))]++;
+  }
+
+  /**
+   * Method is used to call the listener once every report interval lines. Called by the thread that parses.
+   */
+  void report() {
+    if (null != this.listener && --this.untilReport <= 0) {
+      this.untilReport = this.reportInterval;
+      this.listener.metrics(snapshot(), false);
+    }
+  }
+
+  synchronized void add(MetricsCollector other) {
+    this.lines += other.lines;
+    this.directiveLines += other.directiveLines;
+    this.filteredLines += other.filteredLines;
+    this.bytes += other.bytes;
+    synchronized (other) {
+      for (Map.Entry<String, FieldCounters> entry : other.fields.entrySet()) {
+        this.fields.computeIfAbsent(entry.getKey(), n -> new FieldCounters(entry.getValue().parser))
+            .add(entry.getValue());
+      }
+    }
+  }
+
+  synchronized ParseMetrics snapshot() {
+    final ImmutableParseMetrics.Builder builder = ImmutableParseMetrics.builder()
+        .lines(this.lines)
+        .directiveLines(this.directiveLines)
+        .filteredLines(this.filteredLines)
+        .bytes(this.bytes)
+        .errors(this.errors.get());
+    for (Map.Entry<String, FieldCounters> entry : this.fields.entrySet()) {
+      final FieldCounters field = entry.getValue();
+      final List<Long> histogram = new ArrayList<>(BUCKETS);
+      for (long count : field.histogram) {
+        histogram.add(count);
+      }
+      builder.putFields(
+          entry.getKey(),
+          ImmutableFieldMetrics.builder()
+              .parser(field.parser)
+              .nulls(field.nulls)
+              .failures(field.failures)
+              .samples(field.samples)
+              .latencyHistogram(histogram)
+              .build()
+      );
+    }
+    return builder.build();
+  }
+
+  /**
+   * Method is used to register an MBean for this collector.
+   * @param name value of the name key of the ObjectName.
+   */
+  void register(String name) {
+    try {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      final ObjectName objectName = new ObjectName(
+          String.format(
+              "%s:type=ElfParser,name=%s,id=%s",
+              JMX_DOMAIN,
+              ObjectName.quote(name),
+              JMX_IDS.incrementAndGet()
+          )
+      );
+      server.registerMBean(new MBean(this), objectName);
+      this.objectName = objectName;
+      log.trace("register() - Registered {}.", objectName);
+    } catch (JMException ex) {
+      throw new IllegalStateException(String.format("Could not register metrics for %s with JMX.", name), ex);
+    }
+  }
+
+  ObjectName objectName() {
+    return this.objectName;
+  }
+
+  /**
+   * Method is used to make the final call to the listener and unregister the MBean. Only the first call has any
+   * effect.
+   */
+  void close() {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    if (null != this.objectName) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+      } catch (JMException ex) {
+        log.trace("close() - Could not unregister {}.", this.objectName, ex);
+      }
+    }
+    if (null != this.listener) {
+      this.listener.metrics(snapshot(), true);
+    }
+  }
+
+  static class MBean implements ParseMetricsMXBean {
+    private final MetricsCollector collector;
+
+    MBean(MetricsCollector collector) {
+      this.collector = collector;
+    }
+
+    @Override
+    public long getLines() {
+      return this.collector.lines;
+    }
+
+    @Override
+    public long getDirectiveLines() {
+      return this.collector.directiveLines;
+    }
+
+    @Override
+    public long getFilteredLines() {
+      return this.collector.filteredLines;
+    }
+
+    @Override
+    public long getBytes() {
+      return this.collector.bytes;
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+      final Map<String, Long> result = new LinkedHashMap<>();
+      for (Map.Entry<ParseError.Type, Long> entry : this.collector.snapshot().errors().entrySet()) {
+        result.put(entry.getKey().name(), entry.getValue());
+      }
+      return result;
+    }
+
+    private Map<String, Long> fields(Function<FieldMetrics, Long> value) {
+      final Map<String, Long> result = new LinkedHashMap<>();
+      for (Map.Entry<String, FieldMetrics> entry : this.collector.snapshot().fields().entrySet()) {
+        result.put(entry.getKey(), value.apply(entry.getValue()));
+      }
+      return result;
+    }
+
+    @Override
+    public Map<String, Long> getFieldNulls() {
+      return fields(FieldMetrics::nulls);
+    }
+
+    @Override
+    public Map<String, Long> getFieldFailures() {
+      return fields(FieldMetrics::failures);
+    }
+
+    @Override
+    public Map<String, Long> getFieldLatencyMedianNanos() {
+      return fields(f -> f.latencyPercentileNanos(50));
+    }
+
+    @Override
+    public Map<String, Long> getFieldLatency99thNanos() {
+      return fields(f -> f.latencyPercentileNanos(99));
+    }
+  }
+}
@@ -0,0 +1,519 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parser over several files. Each file is parsed by its own parser on an executor and the entries are either
+ * returned in the order they are parsed or merged into order by their date and time fields. See
+ * {@link ElfParserBuilder#buildAll(List)}.
+ */
+public final class MultiFileElfParser implements ElfParser {
+  static final int BATCH_SIZE = 256;
+  static final int DEFAULT_QUEUE_CAPACITY = 64 * BATCH_SIZE;
+  static final long NO_TIMESTAMP = Long.MIN_VALUE;
+  private static final long NANOS_PER_DAY = TimeUnit.DAYS.toNanos(1);
+  private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final Logger log = LoggerFactory.getLogger(MultiFileElfParser.class);
+  private static final Comparator<Source> SOURCE_ORDER = Comparator.<Source>comparingLong(s -> s.timestamp)
+      .thenComparingInt(s -> s.index);
+
+  private final ElfParserBuilder builder;
+  private final List<File> files;
+  private final ExecutorService executor;
+  private final boolean ownsExecutor;
+  private final boolean merged;
+  private final BlockingQueue<Batch> queue;
+  private final List<Future<?>> futures = new ArrayList<>();
+  private final AtomicInteger filesCompleted = new AtomicInteger();
+  private final AtomicLong bytes = new AtomicLong();
+  private final ErrorHandler errors;
+  private volatile boolean closed;
+  private volatile long entries;
+  private volatile long startNanos;
+  private volatile long endNanos;
+  private boolean started;
+  private Map<String, Class<?>> fieldTypes = Collections.emptyMap();
+
+  private Iterator<LogEntry> current = Collections.emptyIterator();
+  /**
+   * Entry that did not fit in the last batch because its fields changed. Returned by the next call to next().
+   */
+  private LogEntry pending;
+  private int filesEnded;
+
+  private volatile List<Source> sources;
+  private PriorityQueue<Source> heap;
+
+  MultiFileElfParser(
+      ElfParserBuilder builder,
+      List<File> files,
+      ExecutorService executor,
+      boolean merged,
+      int queueCapacity) {
+    this.builder = builder;
+    this.files = Collections.unmodifiableList(new ArrayList<>(files));
+    this.merged = merged;
+    this.errors = builder.errorHandler();
+    this.queue = merged ? null : new ArrayBlockingQueue<>(Math.max(1, queueCapacity / BATCH_SIZE));
+    if (null == executor) {
+      final int threads = Math.max(1, Math.min(this.files.size(), Runtime.getRuntime().availableProcessors()));
+      final AtomicInteger count = new AtomicInteger();
+      this.executor = Executors.newFixedThreadPool(threads, r -> {
+        final Thread thread = new Thread(r, String.format("elf-ingest-%s", count.incrementAndGet()));
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.ownsExecutor = true;
+    } else {
+      this.executor = executor;
+      this.ownsExecutor = false;
+    }
+  }
+
+  static final class Batch {
+    final File file;
+    final List<LogEntry> entries;
+    final Throwable error;
+
+    Batch(File file, List<LogEntry> entries, Throwable error) {
+      this.file = file;
+      this.entries = entries;
+      this.error = error;
+    }
+  }
+
+  /**
+   * File read in merged order. The parser is only used while holding the lock of the source, so a batch that is
+   * being read on the executor is never closed underneath it.
+   */
+  static final class Source {
+    final int index;
+    final File file;
+    ElfParser parser;
+    volatile Future<List<LogEntry>> pending;
+    List<LogEntry> entries;
+    int position;
+    long timestamp;
+
+    Source(int index, File file) {
+      this.index = index;
+      this.file = file;
+    }
+  }
+
+  /**
+   * Method is used to read the sort key of an entry from its date and time fields. Entries without either field
+   * sort before all other entries.
+   * @param entry entry to read.
+   * @return nanoseconds since 1970-01-01T00:00 or {@link #NO_TIMESTAMP}.
+   */
+  static long timestamp(LogEntry entry) {
+    final Object date = entry.fieldData().get("date");
+    final Object time = entry.fieldData().get("time");
+    if (!(date instanceof LocalDate) && !(time instanceof LocalTime)) {
+      return NO_TIMESTAMP;
+    }
+    long result = 0;
+    if (date instanceof LocalDate) {
+      result = ((LocalDate) date).toEpochDay() * NANOS_PER_DAY;
+    }
+    if (time instanceof LocalTime) {
+      result += ((LocalTime) time).toNanoOfDay();
+    }
+    return result;
+  }
+
+  /**
+   * The files parsed by this parser in the order they were passed to the builder.
+   * @return The files parsed by this parser.
+   */
+  public List<File> files() {
+    return this.files;
+  }
+
+  /**
+   * Method is used to capture the totals for the run so far. May be called from any thread.
+   * @return totals for the run.
+   */
+  public IngestMetrics ingestMetrics() {
+    final long start = this.startNanos;
+    final long end = this.endNanos;
+    final long elapsed = 0 == start ? 0 : (0 == end ? System.nanoTime() : end) - start;
+    return ImmutableIngestMetrics.builder()
+        .files(this.files.size())
+        .filesCompleted(this.filesCompleted.get())
+        .entries(this.entries)
+        .bytes(this.bytes.get())
+        .elapsedNanos(elapsed)
+        .build();
+  }
+
+  /**
+   * The data types of the fields of the last entry that was returned. Files may define different fields.
+   * @return The data types associated with the fields.
+   */
+  @Override
+  public Map<String, Class<?>> fieldTypes() {
+    return this.fieldTypes;
+  }
+
+  /**
+   * The number of lines that could not be parsed by the type of error, summed over the files that have been parsed
+   * to the end.
+   * @return number of errors by type.
+   */
+  @Override
+  public Map<ParseError.Type, Long> errorCounts() {
+    return this.errors.counts();
+  }
+
+  @Override
+  public LogEntry next() throws IOException {
+    if (this.closed) {
+      return null;
+    }
+    if (null != this.pending) {
+      final LogEntry entry = this.pending;
+      this.pending = null;
+      return entry;
+    }
+    if (!this.started) {
+      start();
+    }
+    final LogEntry entry = this.merged ? nextMerged() : nextUnordered();
+    if (null == entry) {
+      if (0 == this.endNanos) {
+        this.endNanos = System.nanoTime();
+        log.trace("next() - Finished {}", ingestMetrics());
+      }
+      return null;
+    }
+    this.entries++;
+    this.fieldTypes = entry.fieldTypes();
+    return entry;
+  }
+
+  private void start() throws IOException {
+    this.started = true;
+    this.startNanos = System.nanoTime();
+    log.trace("start() - Parsing {} file(s). merged = {}", this.files.size(), this.merged);
+    if (!this.merged) {
+      for (File file : this.files) {
+        this.futures.add(this.executor.submit(() -> parseFile(file)));
+      }
+      return;
+    }
+    final List<Source> sources = new ArrayList<>(this.files.size());
+    for (int i = 0; i < this.files.size(); i++) {
+      sources.add(new Source(i, this.files.get(i)));
+    }
+    this.sources = sources;
+    this.heap = new PriorityQueue<>(Math.max(1, this.files.size()), SOURCE_ORDER);
+    for (Source source : sources) {
+      source.pending = this.executor.submit(() -> fetch(source));
+    }
+    for (Source source : sources) {
+      if (advance(source)) {
+        this.heap.add(source);
+      }
+    }
+  }
+
+  private void completed(File file) {
+    this.filesCompleted.incrementAndGet();
+    // Size on disk, so a gzip file counts its compressed size.
+    this.bytes.addAndGet(file.length());
+    log.trace("completed() - Finished parsing {}.", file);
+  }
+
+  /**
+   * Method is used to parse a whole file on the executor, handing its entries to the consumer in batches. The
+   * end of every file is marked with a batch without entries.
+   * @param file file to parse.
+   */
+  private void parseFile(File file) {
+    Throwable error = null;
+    try (ElfParser parser = this.builder.build(file)) {
+      try {
+        List<LogEntry> batch = new ArrayList<>(BATCH_SIZE);
+        LogEntry entry;
+        while (!this.closed && null != (entry = parser.next())) {
+          batch.add(entry);
+          if (batch.size() == BATCH_SIZE) {
+            put(new Batch(file, batch, null));
+            batch = new ArrayList<>(BATCH_SIZE);
+          }
+        }
+        if (!batch.isEmpty()) {
+          put(new Batch(file, batch, null));
+        }
+      } finally {
+        // Lines skipped before a failure are still counted.
+        this.errors.add(parser.errorCounts());
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return;
+    } catch (Exception ex) {
+      error = ex;
+    } catch (Error ex) {
+      // The consumer fails instead of waiting for the end of the file, and the error still reaches the executor.
+      end(file, ex);
+      throw ex;
+    }
+    if (null == error && !this.closed) {
+      completed(file);
+    }
+    end(file, error);
+  }
+
+  /**
+   * Method is used to hand the end of a file to the consumer.
+   * @param file file that was parsed.
+   * @param error exception that stopped the file. Null if it was parsed to the end.
+   */
+  private void end(File file, Throwable error) {
+    try {
+      put(new Batch(file, null, error));
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void put(Batch batch) throws InterruptedException {
+    while (!this.closed && !this.queue.offer(batch, POLL_NANOS, TimeUnit.NANOSECONDS)) {
+      log.trace("put() - Output queue is full.");
+    }
+  }
+
+  private LogEntry nextUnordered() throws IOException {
+    while (true) {
+      if (this.current.hasNext()) {
+        return this.current.next();
+      }
+      if (this.filesEnded == this.files.size()) {
+        return null;
+      }
+      final Batch batch;
+      try {
+        batch = this.queue.poll(POLL_NANOS, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for entries");
+      }
+      if (null == batch) {
+        if (this.closed) {
+          return null;
+        }
+        continue;
+      }
+      if (null != batch.entries) {
+        this.current = batch.entries.iterator();
+        continue;
+      }
+      this.filesEnded++;
+      if (null != batch.error) {
+        throw new IOException(String.format("Could not parse %s", batch.file), batch.error);
+      }
+    }
+  }
+
+  /**
+   * Method is used to read the next batch of a file on the executor. Only one batch of a file is read at a time,
+   * so the parser of the file is never used by two threads at once. The batch is read while holding the lock of
+   * the source, which {@link #close()} takes before closing the parser.
+   * @param source file to read.
+   * @return up to {@link #BATCH_SIZE} entries. Empty at the end of the file.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  private List<LogEntry> fetch(Source source) throws IOException {
+    synchronized (source) {
+      if (this.closed) {
+        return Collections.emptyList();
+      }
+      ElfParser parser = source.parser;
+      if (null == parser) {
+        source.parser = parser = this.builder.build(source.file);
+      }
+      final List<LogEntry> batch = new ArrayList<>(BATCH_SIZE);
+      boolean ended = true;
+      try {
+        LogEntry entry;
+        while (batch.size() < BATCH_SIZE && null != (entry = parser.next())) {
+          batch.add(entry);
+        }
+        ended = batch.isEmpty();
+      } finally {
+        // The file ends at its last line or at the first failure. Either way its errors are counted.
+        if (ended) {
+          source.parser = null;
+          this.errors.add(parser.errorCounts());
+          parser.close();
+        }
+      }
+      return batch;
+    }
+  }
+
+  /**
+   * Method is used to move a file to its next batch and to start reading the batch after it.
+   * @param source file to advance.
+   * @return false at the end of the file.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  private boolean advance(Source source) throws IOException {
+    final List<LogEntry> batch;
+    try {
+      batch = MappedElfParser.get(source.pending);
+    } catch (InterruptedIOException ex) {
+      throw ex;
+    } catch (IOException | RuntimeException ex) {
+      source.pending = null;
+      if (this.closed) {
+        return false;
+      }
+      throw new IOException(String.format("Could not parse %s", source.file), ex);
+    }
+    if (batch.isEmpty()) {
+      source.pending = null;
+      source.entries = null;
+      if (!this.closed) {
+        completed(source.file);
+      }
+      return false;
+    }
+    source.entries = batch;
+    source.position = 0;
+    source.timestamp = timestamp(batch.get(0));
+    source.pending = this.executor.submit(() -> fetch(source));
+    return true;
+  }
+
+  private LogEntry nextMerged() throws IOException {
+    final Source source = this.heap.poll();
+    if (null == source) {
+      return null;
+    }
+    final LogEntry entry = source.entries.get(source.position++);
+    if (source.position < source.entries.size()) {
+      source.timestamp = timestamp(source.entries.get(source.position));
+      this.heap.add(source);
+    } else if (advance(source)) {
+      this.heap.add(source);
+    }
+    return entry;
+  }
+
+  /**
+   * Method is used to read the next rows into a batch. The batch ends early when the fields change and the next
+   * call changes the columns of the batch to the new fields.
+   * @param batch batch created by {@link #newBatch(int)}.
+   * @return number of rows read. 0 if every file has been read.
+   * @throws IOException Exception thrown when data cannot be parsed or there is an underlying system error.
+   */
+  @Override
+  public int nextBatch(LogBatch batch) throws IOException {
+    batch.clear();
+    LogEntry entry;
+    while (!batch.isFull() && null != (entry = next())) {
+      if (!batch.matches(entry.fieldTypes())) {
+        if (batch.size() > 0) {
+          this.pending = entry;
+          break;
+        }
+        batch.reset(entry.fieldTypes());
+      }
+      batch.add(new LogEntryRecord(entry));
+    }
+    return batch.size();
+  }
+
+  /**
+   * Method is used to stop parsing. Files that are being parsed are closed and next() returns null. May be called
+   * from another thread. A batch that is being read is finished before its file is closed.
+   * @throws IOException Exception thrown if there is an underlying system error.
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    if (0 == this.endNanos && 0 != this.startNanos) {
+      this.endNanos = System.nanoTime();
+    }
+    for (Future<?> future : this.futures) {
+      future.cancel(false);
+    }
+    if (null != this.queue) {
+      this.queue.clear();
+    }
+    IOException error = null;
+    final List<Source> sources = this.sources;
+    if (null != sources) {
+      for (Source source : sources) {
+        final Future<?> pending = source.pending;
+        if (null != pending) {
+          pending.cancel(false);
+        }
+        synchronized (source) {
+          final ElfParser parser = source.parser;
+          if (null == parser) {
+            continue;
+          }
+          source.parser = null;
+          try {
+            parser.close();
+          } catch (IOException ex) {
+            if (null == error) {
+              error = ex;
+            }
+          }
+        }
+      }
+    }
+    if (this.ownsExecutor) {
+      this.executor.shutdown();
+    }
+    if (null != error) {
+      throw error;
+    }
+  }
+}
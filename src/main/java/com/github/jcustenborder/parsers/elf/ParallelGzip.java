@@ -0,0 +1,392 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompressor for gzip files with more than one member, such as files written by bgzip or logs that were
+ * compressed and appended in pieces. Members are independent so they can be inflated in parallel, but their
+ * boundaries are only known once the previous member has been inflated.
+ * <p>
+ * The file is split into segments. A task for each segment looks for the first gzip header in the segment and
+ * inflates the members from there until it passes the end of the segment. The calling thread inflates members in
+ * order and, whenever it reaches the offset where a task started, uses the output of the task instead. A header
+ * that was found by mistake in compressed data never matches the end of a real member, so its output is never
+ * used. A file with a single member is inflated by the calling thread, the same as GZIPInputStream.
+ * </p>
+ */
+class ParallelGzip implements DecompressingInputStream.Decompressor {
+  static final int SEGMENT_SIZE = 1024 * 1024;
+  static final long MAX_SEGMENT_OUTPUT = 32L * 1024 * 1024;
+  static final int INPUT_BUFFER_SIZE = 64 * 1024;
+  private static final Logger log = LoggerFactory.getLogger(ParallelGzip.class);
+  private static final int FLAG_HCRC = 2;
+  private static final int FLAG_EXTRA = 4;
+  private static final int FLAG_NAME = 8;
+  private static final int FLAG_COMMENT = 16;
+  private final FileChannel channel;
+  private final ForkJoinPool pool;
+  private final int segmentSize;
+  private final long maxSegmentOutput;
+
+  /**
+   * Members inflated by a task. start is -1 if no member starts in the segment.
+   */
+  static class Segment {
+    final long start;
+    final long end;
+    final Output output;
+
+    Segment(long start, long end, Output output) {
+      this.start = start;
+      this.end = end;
+      this.output = output;
+    }
+  }
+
+  static class Pending {
+    final long segmentStart;
+    final Future<Segment> future;
+
+    Pending(long segmentStart, Future<Segment> future) {
+      this.segmentStart = segmentStart;
+      this.future = future;
+    }
+  }
+
+  /**
+   * Output of a task stored as a list of buffers. Output of a member that fails is rolled back to the end of the
+   * last member that was inflated.
+   */
+  static class Output extends OutputStream {
+    static final int CHUNK_SIZE = 256 * 1024;
+    private final List<byte[]> chunks = new ArrayList<>();
+    private final long maxSize;
+    private long size;
+    private long committed;
+
+    Output(long maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (this.size + len > this.maxSize) {
+        throw new OutputLimitException();
+      }
+      while (len > 0) {
+        final int index = (int) (this.size / CHUNK_SIZE);
+        final int position = (int) (this.size % CHUNK_SIZE);
+        if (index == this.chunks.size()) {
+          this.chunks.add(new byte[CHUNK_SIZE]);
+        }
+        final int count = Math.min(len, CHUNK_SIZE - position);
+        System.arraycopy(b, off, this.chunks.get(index), position, count);
+        this.size += count;
+        off += count;
+        len -= count;
+      }
+    }
+
+    void commit() {
+      this.committed = this.size;
+    }
+
+    void rollback() {
+      this.size = this.committed;
+    }
+
+    void writeTo(OutputStream sink) throws IOException {
+      long remaining = this.committed;
+      for (byte[] chunk : this.chunks) {
+        if (remaining <= 0) {
+          break;
+        }
+        final int count = (int) Math.min(remaining, chunk.length);
+        sink.write(chunk, 0, count);
+        remaining -= count;
+      }
+    }
+  }
+
+  static class OutputLimitException extends IOException {
+    OutputLimitException() {
+      super("Segment output is larger than the limit.");
+    }
+  }
+
+  /**
+   * Buffers used to inflate a member. Each thread has its own.
+   */
+  static class Inflation {
+    final Inflater inflater = new Inflater(true);
+    final CRC32 crc = new CRC32();
+    final byte[] input = new byte[INPUT_BUFFER_SIZE];
+    final byte[] output = new byte[INPUT_BUFFER_SIZE * 4];
+  }
+
+  ParallelGzip(FileChannel channel, ForkJoinPool pool) {
+    this(channel, pool, SEGMENT_SIZE, MAX_SEGMENT_OUTPUT);
+  }
+
+  ParallelGzip(FileChannel channel, ForkJoinPool pool, int segmentSize, long maxSegmentOutput) {
+    this.channel = channel;
+    this.pool = pool;
+    this.segmentSize = segmentSize;
+    this.maxSegmentOutput = maxSegmentOutput;
+  }
+
+  private static int read(FileChannel channel, byte[] buffer, int length, long position) throws IOException {
+    final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, length);
+    while (byteBuffer.hasRemaining()) {
+      if (channel.read(byteBuffer, position + byteBuffer.position()) <= 0) {
+        break;
+      }
+    }
+    return byteBuffer.position();
+  }
+
+  /**
+   * Method is used to check if the bytes at an offset look like the start of a gzip member.
+   */
+  static boolean isHeader(byte[] buffer, int offset, int length) {
+    return length - offset >= 4 &&
+        (buffer[offset] & 0xFF) == 0x1F &&
+        (buffer[offset + 1] & 0xFF) == 0x8B &&
+        buffer[offset + 2] == 8 &&
+        (buffer[offset + 3] & 0xE0) == 0;
+  }
+
+  /**
+   * Method is used to inflate the member that starts at an offset.
+   * @param channel file containing the member.
+   * @param offset offset of the gzip header.
+   * @param inflation buffers to use.
+   * @param sink output of the member.
+   * @return offset of the first byte after the member.
+   * @throws IOException if the member is not valid or there is an underlying system error.
+   */
+  static long inflate(FileChannel channel, long offset, Inflation inflation, OutputStream sink) throws IOException {
+    final byte[] input = inflation.input;
+    int read = read(channel, input, input.length, offset);
+    if (!isHeader(input, 0, read)) {
+      throw new ZipException(String.format("Not in gzip format at offset %s", offset));
+    }
+    final int flags = input[3];
+    int position = 10;
+    if ((flags & FLAG_EXTRA) != 0) {
+      position += 2 + ((input[position] & 0xFF) | (input[position + 1] & 0xFF) << 8);
+    }
+    if ((flags & FLAG_NAME) != 0) {
+      while (position < read && input[position] != 0) {
+        position++;
+      }
+      position++;
+    }
+    if ((flags & FLAG_COMMENT) != 0) {
+      while (position < read && input[position] != 0) {
+        position++;
+      }
+      position++;
+    }
+    if ((flags & FLAG_HCRC) != 0) {
+      position += 2;
+    }
+    if (position >= read) {
+      throw new ZipException(String.format("gzip header at offset %s is too long", offset));
+    }
+
+    final Inflater inflater = inflation.inflater;
+    final CRC32 crc = inflation.crc;
+    final byte[] output = inflation.output;
+    inflater.reset();
+    crc.reset();
+    inflater.setInput(input, position, read - position);
+    long inputOffset = offset + read;
+    long total = 0;
+    try {
+      while (!inflater.finished()) {
+        final int count = inflater.inflate(output);
+        if (count > 0) {
+          crc.update(output, 0, count);
+          total += count;
+          sink.write(output, 0, count);
+        } else if (inflater.needsInput()) {
+          read = read(channel, input, input.length, inputOffset);
+          if (read <= 0) {
+            throw new EOFException(String.format("Unexpected end of gzip member starting at offset %s", offset));
+          }
+          inputOffset += read;
+          inflater.setInput(input, 0, read);
+        } else if (inflater.needsDictionary()) {
+          throw new ZipException(String.format("gzip member at offset %s requires a dictionary", offset));
+        }
+      }
+    } catch (DataFormatException ex) {
+      throw new ZipException(String.format("Invalid gzip member at offset %s: %s", offset, ex.getMessage()));
+    }
+    final long trailer = inputOffset - inflater.getRemaining();
+    final byte[] bytes = new byte[8];
+    if (read(channel, bytes, 8, trailer) < 8) {
+      throw new EOFException(String.format("Unexpected end of gzip member starting at offset %s", offset));
+    }
+    final long expectedCrc = (bytes[0] & 0xFFL) | (bytes[1] & 0xFFL) << 8 | (bytes[2] & 0xFFL) << 16 |
+        (bytes[3] & 0xFFL) << 24;
+    final long expectedSize = (bytes[4] & 0xFFL) | (bytes[5] & 0xFFL) << 8 | (bytes[6] & 0xFFL) << 16 |
+        (bytes[7] & 0xFFL) << 24;
+    if (expectedCrc != crc.getValue() || expectedSize != (total & 0xFFFFFFFFL)) {
+      throw new ZipException(String.format("Corrupt gzip trailer for member at offset %s", offset));
+    }
+    return trailer + 8;
+  }
+
+  /**
+   * Method is used to check if a member starts at an offset.
+   */
+  static boolean isMember(FileChannel channel, long offset) throws IOException {
+    final byte[] bytes = new byte[4];
+    return isHeader(bytes, 0, read(channel, bytes, 4, offset));
+  }
+
+  /**
+   * Method is used to inflate the members of a segment. Runs on the pool.
+   */
+  Segment segment(long segmentStart, long segmentEnd) throws IOException {
+    final Inflation inflation = new Inflation();
+    try {
+      return segment(segmentStart, segmentEnd, inflation);
+    } finally {
+      inflation.inflater.end();
+    }
+  }
+
+  private Segment segment(long segmentStart, long segmentEnd, Inflation inflation) throws IOException {
+    final byte[] scan = new byte[INPUT_BUFFER_SIZE + 3];
+    final long size = this.channel.size();
+    long position = segmentStart;
+    while (position < segmentEnd) {
+      final int read = read(this.channel, scan, scan.length, position);
+      if (read < 4) {
+        break;
+      }
+      for (int i = 0; i < read - 3 && position + i < segmentEnd; i++) {
+        if (!isHeader(scan, i, read)) {
+          continue;
+        }
+        final long start = position + i;
+        final Output output = new Output(this.maxSegmentOutput);
+        long end = start;
+        try {
+          while (end < segmentEnd) {
+            end = inflate(this.channel, end, inflation, output);
+            output.commit();
+            if (end >= size || !isMember(this.channel, end)) {
+              break;
+            }
+          }
+        } catch (OutputLimitException ex) {
+          // The calling thread will inflate the rest of the segment.
+          output.rollback();
+          return end == start ? new Segment(-1, -1, null) : new Segment(start, end, output);
+        } catch (IOException ex) {
+          output.rollback();
+          if (end == start) {
+            // Not a real member. Keep looking.
+            continue;
+          }
+        }
+        return new Segment(start, end, output);
+      }
+      position += read - 3;
+    }
+    return new Segment(-1, -1, null);
+  }
+
+  @Override
+  public void decompress(OutputStream sink) throws IOException {
+    final long size = this.channel.size();
+    final int window = Math.max(1, this.pool.getParallelism());
+    final Deque<Pending> pending = new ArrayDeque<>();
+    final Inflation inflation = new Inflation();
+    long nextSegment = this.segmentSize;
+    long position = 0;
+    try {
+      while (position < size) {
+        while (pending.size() < window && nextSegment < size) {
+          final long segmentStart = nextSegment;
+          final long segmentEnd = Math.min(size, segmentStart + this.segmentSize);
+          final Future<Segment> future = MappedElfParser.submit(this.pool, () -> segment(segmentStart, segmentEnd));
+          pending.add(new Pending(segmentStart, future));
+          nextSegment = segmentEnd;
+        }
+        Segment segment = null;
+        while (!pending.isEmpty() && pending.peek().segmentStart <= position) {
+          final Segment result = MappedElfParser.get(pending.peek().future);
+          if (result.start == position) {
+            segment = result;
+            pending.poll();
+            break;
+          }
+          if (result.start > position) {
+            // The member being inflated continues into this segment.
+            break;
+          }
+          pending.poll();
+        }
+        if (null != segment) {
+          log.trace("decompress() - Using segment from offset {} to {}.", segment.start, segment.end);
+          segment.output.writeTo(sink);
+          position = segment.end;
+          continue;
+        }
+        if (!isMember(this.channel, position)) {
+          log.trace("decompress() - Ignoring {} byte(s) after the last gzip member.", size - position);
+          break;
+        }
+        position = inflate(this.channel, position, inflation, sink);
+      }
+    } finally {
+      for (Pending p : pending) {
+        // Interrupting a task would close the channel.
+        p.future.cancel(false);
+      }
+      inflation.inflater.end();
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.immutables.value.Value;
+
+import java.util.Optional;
+
+/**
+ * A line that could not be parsed. Passed to the sink set by
+ * {@link ElfParserBuilder#errorSink(java.util.function.Consumer)}.
+ */
+@Value.Immutable
+public interface ParseError {
+  enum Type {
+    /**
+     * The line has more fields than the #Fields directive.
+     */
+    EXTRA_FIELDS,
+    /**
+     * A field could not be parsed as its type.
+     */
+    INVALID_FIELD,
+    /**
+     * A field could not be parsed while checking a filter.
+     */
+    FILTER
+  }
+
+  /**
+   * The kind of error.
+   * @return The kind of error.
+   */
+  Type type();
+
+  /**
+   * Number of the line.
+   * @return Number of the line.
+   */
+  int lineNumber();
+
+  /**
+   * Byte offset of the start of the line. -1 if the input is not read as bytes.
+   * @return Byte offset of the start of the line.
+   */
+  long offset();
+
+  /**
+   * The text of the line.
+   * @return The text of the line.
+   */
+  String line();
+
+  /**
+   * Zero based index of the field that could not be parsed. -1 for {@link Type#EXTRA_FIELDS}.
+   * @return Index of the field.
+   */
+  int fieldIndex();
+
+  /**
+   * Name of the field that could not be parsed.
+   * @return Name of the field.
+   */
+  Optional<String> fieldName();
+
+  /**
+   * Exception thrown while parsing the field.
+   * @return Exception thrown while parsing the field.
+   */
+  Optional<Throwable> cause();
+
+  /**
+   * Method is used to describe the error. The message is only built when it is requested.
+   * @return description of the error.
+   */
+  default String message() {
+    if (Type.EXTRA_FIELDS == type()) {
+      return String.format("Line %s has more field(s) than specified in the header.", lineNumber());
+    }
+    return String.format(
+        "Could not parse line %s fieldIndex %s (%s). %s",
+        lineNumber(),
+        fieldIndex(),
+        fieldName().orElse(""),
+        cause().map(Throwable::toString).orElse("")
+    );
+  }
+}
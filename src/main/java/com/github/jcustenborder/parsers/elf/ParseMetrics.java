@@ -0,0 +1,78 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.immutables.value.Value;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counters for a parser. Returned by {@link ElfParser#metrics()} when metrics are enabled with
+ * {@link ElfParserBuilder#metrics(boolean)}. Lines of the header are not counted.
+ */
+@Value.Immutable
+public interface ParseMetrics {
+  /**
+   * Number of lines read, including directives and lines that were filtered or could not be parsed.
+   * @return Number of lines read.
+   */
+  long lines();
+
+  /**
+   * Number of lines starting with # that were skipped or read as directives.
+   * @return Number of directive lines.
+   */
+  long directiveLines();
+
+  /**
+   * Number of lines rejected by a filter.
+   * @return Number of filtered lines.
+   */
+  long filteredLines();
+
+  /**
+   * Number of bytes read including line endings. Characters when the input is not parsed as bytes.
+   * @return Number of bytes read.
+   */
+  long bytes();
+
+  /**
+   * Number of lines that could not be parsed by type of error. See {@link ElfParser#errorCounts()}.
+   * @return Number of errors by type.
+   */
+  Map<ParseError.Type, Long> errors();
+
+  /**
+   * Counters for each field by name.
+   * @return Counters for each field.
+   */
+  Map<String, FieldMetrics> fields();
+
+  /**
+   * Method is used to sum the parse failures of the fields by FieldParser.
+   * @return Number of failures by the name of the FieldParser.
+   */
+  default Map<String, Long> failuresByParser() {
+    final Map<String, Long> result = new LinkedHashMap<>();
+    for (FieldMetrics field : fields().values()) {
+      if (field.failures() > 0) {
+        result.merge(field.parser(), field.failures(), Long::sum);
+      }
+    }
+    return result;
+  }
+}
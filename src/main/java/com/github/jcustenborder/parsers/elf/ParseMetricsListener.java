@@ -0,0 +1,29 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+/**
+ * Receives the metrics of a parser. See {@link ElfParserBuilder#metricsListener(ParseMetricsListener, long)}.
+ */
+@FunctionalInterface
+public interface ParseMetricsListener {
+  /**
+   * Method is called with the metrics of a parser.
+   * @param metrics counters for the parser so far.
+   * @param closed true for the last call, made when the parser is closed.
+   */
+  void metrics(ParseMetrics metrics, boolean closed);
+}
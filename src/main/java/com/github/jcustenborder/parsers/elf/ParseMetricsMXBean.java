@@ -0,0 +1,42 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link ParseMetrics}. Registered for each parser built with {@link ElfParserBuilder#jmxName(String)}
+ * and unregistered when the parser is closed.
+ */
+public interface ParseMetricsMXBean {
+  long getLines();
+
+  long getDirectiveLines();
+
+  long getFilteredLines();
+
+  long getBytes();
+
+  Map<String, Long> getErrors();
+
+  Map<String, Long> getFieldNulls();
+
+  Map<String, Long> getFieldFailures();
+
+  Map<String, Long> getFieldLatencyMedianNanos();
+
+  Map<String, Long> getFieldLatency99thNanos();
+}
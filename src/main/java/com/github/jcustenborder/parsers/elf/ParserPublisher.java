@@ -0,0 +1,221 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publisher over a parser that reads one item for each item the subscriber has requested. Items are read and
+ * delivered on the executor, one run at a time, so the parser is never used by two threads at once. The parser is
+ * closed when the subscriber cancels, when the input ends and when reading fails. A cancel only sets a flag and the
+ * parser is closed by the next run, so a cancel from the subscriber never closes the parser while it is reading.
+ * @param <T> type of the items.
+ */
+final class ParserPublisher<T> implements Publisher<T> {
+  private static final Logger log = LoggerFactory.getLogger(ParserPublisher.class);
+  private static final Subscription EMPTY = new Subscription() {
+    @Override
+    public void request(long n) {
+    }
+
+    @Override
+    public void cancel() {
+    }
+  };
+
+  interface Reader<T> {
+    /**
+     * Method is used to read the next item.
+     * @return next item. Null at the end of the input.
+     * @throws IOException Exception thrown when data cannot be parsed or there is an underlying system error.
+     */
+    T read() throws IOException;
+  }
+
+  private final ElfParser parser;
+  private final Reader<T> reader;
+  private final Executor executor;
+  private final AtomicBoolean subscribed = new AtomicBoolean();
+
+  ParserPublisher(ElfParser parser, Reader<T> reader, Executor executor) {
+    if (null == parser) {
+      throw new NullPointerException("parser cannot be null.");
+    }
+    if (null == executor) {
+      throw new NullPointerException("executor cannot be null.");
+    }
+    this.parser = parser;
+    this.reader = reader;
+    this.executor = executor;
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super T> subscriber) {
+    if (null == subscriber) {
+      throw new NullPointerException("subscriber cannot be null.");
+    }
+    if (!this.subscribed.compareAndSet(false, true)) {
+      subscriber.onSubscribe(EMPTY);
+      subscriber.onError(new IllegalStateException("The entries of a parser can only be subscribed to once."));
+      return;
+    }
+    subscriber.onSubscribe(new ParserSubscription(subscriber));
+  }
+
+  private void closeParser() {
+    try {
+      this.parser.close();
+    } catch (IOException ex) {
+      log.trace("closeParser() - Exception thrown while closing parser.", ex);
+    }
+  }
+
+  final class ParserSubscription implements Subscription, Runnable {
+    private final Subscriber<? super T> subscriber;
+    private final AtomicLong requested = new AtomicLong();
+    private volatile boolean cancelled;
+    private volatile IllegalArgumentException invalidRequest;
+
+    ParserSubscription(Subscriber<? super T> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    /**
+     * Method is used to add to the demand without overflowing.
+     * @param n number of items requested.
+     * @return demand before the request.
+     */
+    private long add(long n) {
+      while (true) {
+        final long current = this.requested.get();
+        if (Long.MAX_VALUE == current) {
+          return current;
+        }
+        long next = current + n;
+        if (next < 0) {
+          next = Long.MAX_VALUE;
+        }
+        if (this.requested.compareAndSet(current, next)) {
+          return current;
+        }
+      }
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        // The error is delivered by run() so it is not signalled at the same time as onNext.
+        this.invalidRequest = new IllegalArgumentException(
+            String.format("Subscriber requested %s item(s). Requests must be greater than 0.", n)
+        );
+        n = 1;
+      }
+      if (0 == add(n)) {
+        try {
+          executor.execute(this);
+        } catch (RejectedExecutionException ex) {
+          this.cancelled = true;
+          closeParser();
+          this.subscriber.onError(ex);
+        }
+      }
+    }
+
+    @Override
+    public void cancel() {
+      if (this.cancelled) {
+        return;
+      }
+      this.cancelled = true;
+      if (0 == add(1)) {
+        // No run is active, so one is scheduled to close the parser.
+        log.trace("cancel() - Scheduling close of parser.");
+        try {
+          executor.execute(this);
+        } catch (RejectedExecutionException ex) {
+          closeParser();
+        }
+      }
+    }
+
+    private void terminate() {
+      this.cancelled = true;
+      closeParser();
+    }
+
+    @Override
+    public void run() {
+      long emitted = 0;
+      while (true) {
+        final long requested = this.requested.get();
+        while (emitted != requested) {
+          if (this.cancelled) {
+            closeParser();
+            return;
+          }
+          if (null != this.invalidRequest) {
+            terminate();
+            this.subscriber.onError(this.invalidRequest);
+            return;
+          }
+          final T item;
+          try {
+            item = reader.read();
+          } catch (IOException | RuntimeException ex) {
+            if (this.cancelled) {
+              closeParser();
+            } else {
+              terminate();
+              this.subscriber.onError(ex);
+            }
+            return;
+          }
+          if (this.cancelled) {
+            closeParser();
+            return;
+          }
+          if (null == item) {
+            terminate();
+            this.subscriber.onComplete();
+            return;
+          }
+          try {
+            this.subscriber.onNext(item);
+          } catch (RuntimeException ex) {
+            log.trace("run() - Subscriber threw an exception from onNext(). Cancelling.", ex);
+            terminate();
+            return;
+          }
+          emitted++;
+        }
+        if (0 == this.requested.addAndGet(-emitted)) {
+          return;
+        }
+        emitted = 0;
+      }
+    }
+  }
+}
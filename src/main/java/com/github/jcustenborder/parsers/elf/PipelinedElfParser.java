@@ -0,0 +1,678 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Matcher;
+
+/**
+ * Parser that spreads the work for a single input over several threads. See
+ * {@link ElfParserBuilder#pipelined(int)}.
+ *
+ * <ol>
+ * <li>The reader thread reads large blocks from the channel.</li>
+ * <li>The splitter thread finds the line boundaries, copies whole lines into batches and applies directives. Each
+ * batch is given a sequence number and a {@link Checkpoint} with the fields and directives in effect at its first
+ * line. A directive always ends a batch, so a batch only holds lines of one set of fields.</li>
+ * <li>Worker threads tokenize and parse batches into entries.</li>
+ * <li>Parsed batches are stored in a reorder window by sequence number and returned in the order of the input.</li>
+ * </ol>
+ *
+ * Stages hand batches to each other through lock free {@link RingBuffer}s. The splitter does not start a batch
+ * until the window has room for it, which bounds the number of batches in memory. Buffers are handed back to the
+ * stage that fills them so they are reused.
+ */
+class PipelinedElfParser implements ElfParser {
+  static final int BLOCK_SIZE = 1024 * 1024;
+  static final int BLOCKS = 4;
+  static final int BATCH_SIZE = 256 * 1024;
+  private static final Logger log = LoggerFactory.getLogger(PipelinedElfParser.class);
+  private final ElfParserBuilder builder;
+  private final ReadableByteChannel channel;
+  private final Charset charset;
+  private final ErrorHandler errors;
+  private final int blockSize;
+  private final int batchSize;
+  private final RingBuffer<Block> blocks = new RingBuffer<>(BLOCKS);
+  private final RingBuffer<byte[]> freeBlocks = new RingBuffer<>(BLOCKS * 2);
+  private final RingBuffer<Batch> batches;
+  private final RingBuffer<byte[]> freeBatches;
+  /**
+   * Reorder window. Batch n is stored at n % length until it is consumed.
+   */
+  private final AtomicReferenceArray<Batch> results;
+  /**
+   * Sequence number of the next batch to return. Every batch before it has left the window.
+   */
+  private final AtomicLong consumed = new AtomicLong();
+  private final Map<List<String>, Schema> schemas = new ConcurrentHashMap<>();
+  private final CompletableFuture<Checkpoint> header = new CompletableFuture<>();
+  private volatile boolean closed;
+  private volatile boolean split;
+  private Batch current;
+  private int position;
+  private boolean finished;
+  private Map<String, Class<?>> fieldTypes;
+  private Map<String, String> directives;
+
+  /**
+   * Starts the threads and waits for the header to be read.
+   * @param builder builder used to create the parser of each batch.
+   * @param channel input to read. Closed when the parser is closed.
+   * @param workers number of threads that parse batches.
+   * @throws IOException Exception thrown if the header cannot be read.
+   * @throws IllegalStateException if the input does not have a #Fields directive before the first line.
+   */
+  PipelinedElfParser(ElfParserBuilder builder, ReadableByteChannel channel, int workers) throws IOException {
+    this(builder, channel, workers, BLOCK_SIZE, BATCH_SIZE);
+  }
+
+  /**
+   * Starts the threads and waits for the header to be read.
+   * @param builder builder used to create the parser of each batch.
+   * @param channel input to read. Closed when the parser is closed.
+   * @param workers number of threads that parse batches.
+   * @param blockSize largest number of bytes read from the channel at a time.
+   * @param batchSize number of bytes after which a batch ends at the next line.
+   * @throws IOException Exception thrown if the header cannot be read.
+   * @throws IllegalStateException if the input does not have a #Fields directive before the first line.
+   */
+  PipelinedElfParser(
+      ElfParserBuilder builder,
+      ReadableByteChannel channel,
+      int workers,
+      int blockSize,
+      int batchSize) throws IOException {
+    this.builder = builder;
+    this.channel = channel;
+    this.blockSize = blockSize;
+    this.batchSize = batchSize;
+    this.charset = builder.byteCharset();
+    this.errors = builder.errorHandler();
+    this.batches = new RingBuffer<>(workers * 2);
+    this.freeBatches = new RingBuffer<>(workers * 4);
+    this.results = new AtomicReferenceArray<>(workers * 4);
+    start("reader", this::read);
+    start("splitter", this::split);
+    for (int i = 1; i <= workers; i++) {
+      start(String.format("worker-%s", i), new Worker());
+    }
+    final Checkpoint checkpoint;
+    try {
+      checkpoint = this.header.get();
+    } catch (InterruptedException ex) {
+      close();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading the header");
+    } catch (ExecutionException ex) {
+      close();
+      final Throwable cause = ex.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException("Could not read the header", cause);
+    }
+    this.fieldTypes = schema(checkpoint.fieldNames()).fieldTypes;
+    this.directives = checkpoint.directives();
+    log.trace("PipelinedElfParser() - Started {} worker(s) for fields {}.", workers, checkpoint.fieldNames());
+  }
+
+  private void start(String name, Runnable runnable) {
+    final Thread thread = new Thread(runnable, String.format("elf-pipeline-%s", name));
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Block of bytes read from the input. The last block of the input has a length of -1 or an error.
+   */
+  static final class Block {
+    final byte[] data;
+    final int length;
+    final Throwable error;
+
+    Block(byte[] data, int length, Throwable error) {
+      this.data = data;
+      this.length = length;
+      this.error = error;
+    }
+  }
+
+  /**
+   * Whole lines of the input along with the position of the first line. Filled with entries by a worker.
+   */
+  static final class Batch {
+    final long sequence;
+    final Checkpoint checkpoint;
+    final int lines;
+    byte[] data;
+    final int length;
+    List<LogEntry> entries;
+    Throwable error;
+    final boolean end;
+
+    Batch(long sequence, Checkpoint checkpoint, int lines, byte[] data, int length, Throwable error, boolean end) {
+      this.sequence = sequence;
+      this.checkpoint = checkpoint;
+      this.lines = lines;
+      this.data = data;
+      this.length = length;
+      this.error = error;
+      this.end = end;
+    }
+  }
+
+  private <T> void put(RingBuffer<T> ring, T item) {
+    int attempts = 0;
+    while (!this.closed && !ring.offer(item)) {
+      attempts = RingBuffer.idle(attempts);
+    }
+  }
+
+  private <T> T take(RingBuffer<T> ring) {
+    int attempts = 0;
+    T result = null;
+    while (!this.closed && null == (result = ring.poll())) {
+      attempts = RingBuffer.idle(attempts);
+    }
+    return this.closed ? null : result;
+  }
+
+  /**
+   * Reader stage. Each read returns whatever the channel has available up to the block size.
+   */
+  private void read() {
+    try {
+      while (!this.closed) {
+        byte[] data = this.freeBlocks.poll();
+        if (null == data) {
+          data = new byte[this.blockSize];
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        int read;
+        int attempts = 0;
+        // A channel that is not ready, such as a pipe, returns 0 until more data is written.
+        while ((read = this.channel.read(buffer)) == 0) {
+          if (this.closed) {
+            return;
+          }
+          attempts = RingBuffer.idle(attempts);
+        }
+        put(this.blocks, new Block(data, read, null));
+        if (read < 0) {
+          return;
+        }
+      }
+    } catch (Throwable ex) {
+      if (!this.closed) {
+        put(this.blocks, new Block(null, -1, ex));
+      }
+    }
+  }
+
+  /**
+   * Splitter stage. Line boundaries are found the same way as {@link ByteLineSource}, so \n, \r\n and \r all end
+   * a line.
+   */
+  private void split() {
+    final Splitter splitter = new Splitter();
+    try {
+      while (!this.closed) {
+        final Block block = take(this.blocks);
+        if (null == block) {
+          return;
+        }
+        if (null != block.error) {
+          throw block.error;
+        }
+        if (block.length < 0) {
+          splitter.finish();
+          break;
+        }
+        splitter.append(block.data, block.length);
+        this.freeBlocks.offer(block.data);
+      }
+    } catch (Throwable ex) {
+      this.header.completeExceptionally(ex);
+      splitter.fail(ex);
+    } finally {
+      this.split = true;
+    }
+  }
+
+  private class Splitter {
+    final Matcher headerMatcher = ElfParserBuilder.HEADER_PATTERN.matcher("");
+    final Map<String, String> directives = new LinkedHashMap<>();
+    List<String> fieldNames = Collections.emptyList();
+    Checkpoint checkpoint;
+    byte[] data = new byte[batchSize * 2];
+    /**
+     * Number of bytes in data. The bytes after lineStart are not a whole line yet.
+     */
+    int length;
+    int lineStart;
+    int scan;
+    int lines;
+    /**
+     * Offset and line number of the first byte of data.
+     */
+    long offset;
+    int lineNumber;
+    long sequence;
+
+    /**
+     * Method is used to add a block to the current batch. The block is copied in pieces so a batch is emitted as
+     * soon as it is full and only the partial line after it is copied to the next batch.
+     * @param block bytes to add.
+     * @param count number of bytes in block.
+     */
+    void append(byte[] block, int count) {
+      int copied = 0;
+      while (copied < count) {
+        if (this.length == this.data.length) {
+          // A single line is longer than the buffer.
+          this.data = Arrays.copyOf(this.data, this.data.length * 2);
+        }
+        final int length = Math.min(count - copied, this.data.length - this.length);
+        System.arraycopy(block, copied, this.data, this.length, length);
+        this.length += length;
+        copied += length;
+        scan(false);
+      }
+    }
+
+    void finish() {
+      scan(true);
+      if (this.lineStart < this.length) {
+        // The last line of the input does not end with a line break.
+        line(this.length, this.length);
+      }
+      emit();
+      if (this.fieldNames.isEmpty()) {
+        throw new IllegalStateException(
+            String.format("No Fields found after reading %s line(s)", this.lineNumber)
+        );
+      }
+      if (!header.isDone()) {
+        header();
+      }
+      publish(new Batch(this.sequence, null, 0, null, 0, null, true));
+      log.trace("split() - Split {} line(s) into {} batch(es).", this.lineNumber, this.sequence);
+    }
+
+    void fail(Throwable error) {
+      publish(new Batch(this.sequence, null, 0, null, 0, error, true));
+    }
+
+    void scan(boolean eof) {
+      int index = this.scan;
+      while (index < this.length) {
+        final byte b = this.data[index];
+        if (b != '\n' && b != '\r') {
+          index++;
+          continue;
+        }
+        final int next;
+        if (b == '\r') {
+          if (index + 1 == this.length && !eof) {
+            // Wait for the next block to see if a \n follows.
+            break;
+          }
+          next = index + 1 < this.length && this.data[index + 1] == '\n' ? index + 2 : index + 1;
+        } else {
+          next = index + 1;
+        }
+        index = line(index, next);
+      }
+      this.scan = index;
+    }
+
+    /**
+     * Method is used to handle a whole line.
+     * @param end end of the text of the line.
+     * @param next start of the next line.
+     * @return position to continue scanning from.
+     */
+    int line(int end, int next) {
+      if (this.lineStart < end && this.data[this.lineStart] == '#') {
+        final int start = this.lineStart;
+        emit();
+        // The directive is now at the start of data. It is applied and removed from the batch.
+        directive(new String(this.data, 0, end - start, charset));
+        final int skip = next - start;
+        System.arraycopy(this.data, skip, this.data, 0, this.length - skip);
+        this.length -= skip;
+        this.offset += skip;
+        this.lineNumber++;
+        this.checkpoint = null;
+        return 0;
+      }
+      if (fieldNames.isEmpty()) {
+        throw new IllegalStateException(
+            String.format("No Fields found after reading %s line(s)", this.lineNumber + 1)
+        );
+      }
+      if (!header.isDone()) {
+        header();
+      }
+      this.lines++;
+      this.lineStart = next;
+      if (this.lineStart >= batchSize) {
+        emit();
+        return 0;
+      }
+      return next;
+    }
+
+    void directive(String line) {
+      if (!this.headerMatcher.reset(line).find()) {
+        return;
+      }
+      final String name = this.headerMatcher.group(1);
+      final String value = this.headerMatcher.group(2).trim();
+      this.directives.put(name, value);
+      if (ElfParserBuilder.HEADER_FIELDS.equalsIgnoreCase(name)) {
+        this.fieldNames = Arrays.asList(value.split("\\s+"));
+      }
+    }
+
+    Checkpoint checkpoint() {
+      if (null == this.checkpoint) {
+        this.checkpoint = ImmutableCheckpoint.builder()
+            .offset(this.offset)
+            .lineNumber(this.lineNumber)
+            .fieldNames(this.fieldNames)
+            .directives(this.directives)
+            .build();
+      }
+      return this.checkpoint;
+    }
+
+    void header() {
+      header.complete(checkpoint());
+    }
+
+    /**
+     * Method is used to hand the whole lines of data to the workers. The rest of data is moved to a new buffer.
+     */
+    void emit() {
+      if (this.lines == 0) {
+        return;
+      }
+      final Batch batch = new Batch(
+          this.sequence,
+          checkpoint(),
+          this.lines,
+          this.data,
+          this.lineStart,
+          null,
+          false
+      );
+      byte[] data = freeBatches.poll();
+      final int remaining = this.length - this.lineStart;
+      if (null == data || data.length < remaining) {
+        data = new byte[Math.max(batchSize * 2, remaining)];
+      }
+      System.arraycopy(this.data, this.lineStart, data, 0, remaining);
+      this.data = data;
+      this.length = remaining;
+      this.scan -= this.lineStart;
+      this.offset += this.lineStart;
+      this.lineNumber += this.lines;
+      this.lineStart = 0;
+      this.lines = 0;
+      this.checkpoint = null;
+      publish(batch);
+      put(batches, batch);
+    }
+
+    /**
+     * Method is used to wait for room in the reorder window. Batches that do not need a worker are stored in the
+     * window directly.
+     * @param batch batch to publish.
+     */
+    void publish(Batch batch) {
+      int attempts = 0;
+      while (!closed && batch.sequence - consumed.get() >= results.length()) {
+        attempts = RingBuffer.idle(attempts);
+      }
+      this.sequence++;
+      if (batch.end) {
+        results.set(slot(batch.sequence), batch);
+      }
+    }
+  }
+
+  private int slot(long sequence) {
+    return (int) (sequence % this.results.length());
+  }
+
+  /**
+   * Method is used to find the schema of a set of fields. Schemas are built once and shared by the workers.
+   * @param fieldNames names of the fields.
+   * @return schema of the fields.
+   */
+  private Schema schema(List<String> fieldNames) {
+    return this.schemas.computeIfAbsent(fieldNames, this.builder::schema);
+  }
+
+  /**
+   * Worker stage. A worker keeps one parser for every batch it parses, so the string caches of the fields are
+   * kept from batch to batch.
+   */
+  private class Worker implements Runnable {
+    private final ByteLineSource lineSource = new ByteLineSource(charset);
+    private ElfParserImpl parser;
+
+    @Override
+    public void run() {
+      int attempts = 0;
+      while (!closed) {
+        Batch batch = batches.poll();
+        if (null == batch) {
+          if (split && null == (batch = batches.poll())) {
+            return;
+          }
+          if (null == batch) {
+            attempts = RingBuffer.idle(attempts);
+            continue;
+          }
+        }
+        attempts = 0;
+        parse(batch);
+        results.set(slot(batch.sequence), batch);
+      }
+    }
+
+    /**
+     * Method is used to parse the lines of a batch. When a line fails the entries before it are kept along with
+     * the error.
+     * @param batch batch to parse.
+     */
+    private void parse(Batch batch) {
+      final Checkpoint checkpoint = batch.checkpoint;
+      final List<LogEntry> entries = new ArrayList<>(batch.lines);
+      try {
+        this.lineSource.reset(batch.data, batch.length, checkpoint.offset(), checkpoint.lineNumber());
+        if (null == this.parser) {
+          this.parser = new ElfParserImpl(
+              this.lineSource,
+              schema(checkpoint.fieldNames()),
+              PipelinedElfParser.this::schema,
+              checkpoint.directives()
+          );
+          this.parser.errors(errors);
+        } else {
+          this.parser.reset(checkpoint);
+        }
+        LogEntry entry;
+        while (null != (entry = this.parser.next())) {
+          entries.add(entry);
+        }
+      } catch (Throwable ex) {
+        batch.error = ex;
+      }
+      batch.entries = entries;
+      freeBatches.offer(batch.data);
+      batch.data = null;
+    }
+  }
+
+  @Override
+  public Map<String, Class<?>> fieldTypes() {
+    return this.fieldTypes;
+  }
+
+  @Override
+  public Map<String, String> directives() {
+    return this.directives;
+  }
+
+  @Override
+  public Map<ParseError.Type, Long> errorCounts() {
+    return this.errors.counts();
+  }
+
+  private Batch nextBatch() throws IOException {
+    final long sequence = this.consumed.get();
+    final int slot = slot(sequence);
+    int attempts = 0;
+    Batch result;
+    while (null == (result = this.results.get(slot))) {
+      if (this.closed) {
+        return null;
+      }
+      if (Thread.interrupted()) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for entries");
+      }
+      attempts = RingBuffer.idle(attempts);
+    }
+    this.results.set(slot, null);
+    this.consumed.set(sequence + 1);
+    return result;
+  }
+
+  /**
+   * Method is used to rethrow the error of a worker as it was thrown by the parser of the batch.
+   * @param error error of the worker.
+   * @return exception to throw.
+   */
+  private static IOException failure(Throwable error) {
+    if (error instanceof IOException) {
+      return (IOException) error;
+    } else if (error instanceof RuntimeException) {
+      throw (RuntimeException) error;
+    } else if (error instanceof Error) {
+      throw (Error) error;
+    }
+    return new IOException(error);
+  }
+
+  @Override
+  public LogEntry next() throws IOException {
+    while (!this.finished && !this.closed) {
+      if (null != this.current) {
+        if (this.position < this.current.entries.size()) {
+          final LogEntry entry = this.current.entries.get(this.position++);
+          this.fieldTypes = entry.fieldTypes();
+          return entry;
+        }
+        if (null != this.current.error) {
+          // Same as the serial parser, the entries before the line that failed are returned first.
+          this.finished = true;
+          throw failure(this.current.error);
+        }
+      }
+      this.current = null;
+      final Batch batch = nextBatch();
+      if (null == batch) {
+        this.finished = true;
+        break;
+      }
+      if (batch.end) {
+        this.finished = true;
+        if (null != batch.error) {
+          throw new IOException("Could not read input", batch.error);
+        }
+        break;
+      }
+      this.current = batch;
+      this.position = 0;
+      this.directives = batch.checkpoint.directives();
+    }
+    return null;
+  }
+
+  /**
+   * Method is used to read the next rows into a batch. The batch ends early when the fields change and the next
+   * call changes the columns of the batch to the new fields.
+   * @param batch batch created by {@link #newBatch(int)}.
+   * @return number of rows read. 0 if at the end of the input.
+   * @throws IOException Exception thrown when data cannot be parsed or there is an underlying system error.
+   */
+  @Override
+  public int nextBatch(LogBatch batch) throws IOException {
+    batch.clear();
+    LogEntry entry;
+    while (!batch.isFull() && null != (entry = next())) {
+      if (!batch.matches(entry.fieldTypes())) {
+        if (batch.size() > 0) {
+          // The entry came from the current batch, so it is read again by the next call.
+          this.position--;
+          break;
+        }
+        batch.reset(entry.fieldTypes());
+      }
+      batch.add(new LogEntryRecord(entry));
+    }
+    return batch.size();
+  }
+
+  /**
+   * Method is used to stop parsing. The threads stop and next() returns null.
+   * @throws IOException Exception thrown if the input cannot be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    this.header.completeExceptionally(new IOException("Parser was closed"));
+    this.channel.close();
+  }
+}
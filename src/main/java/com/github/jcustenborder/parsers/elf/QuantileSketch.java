@@ -0,0 +1,165 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.util.Arrays;
+
+/**
+ * Quantile sketch with logarithmic buckets in the style of HdrHistogram and DDSketch. Each bucket covers values
+ * within {@link #RELATIVE_ACCURACY} of its center, so any quantile is returned within 1% of a value that was added.
+ * Merging adds the bucket counts, so a merged sketch is the same as one that saw every value.
+ */
+final class QuantileSketch {
+  static final double RELATIVE_ACCURACY = 0.01D;
+  /**
+   * Values closer to 0 than this are counted as 0.
+   */
+  static final double MIN_VALUE = 1e-9D;
+  private static final double GAMMA = (1D + RELATIVE_ACCURACY) / (1D - RELATIVE_ACCURACY);
+  private static final double LOG_GAMMA = Math.log(GAMMA);
+  private final Buckets positive = new Buckets();
+  private final Buckets negative = new Buckets();
+  private long zeros;
+  private long count;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+
+  /**
+   * Counts of a contiguous range of bucket indexes. The array grows in either direction as values are added.
+   */
+  static final class Buckets {
+    private long[] counts = new long[0];
+    private int offset;
+
+    void add(int index, long count) {
+      if (this.counts.length == 0) {
+        this.counts = new long[16];
+        this.offset = index - 8;
+      } else if (index < this.offset) {
+        final int shift = Math.max(this.offset - index, this.counts.length / 2);
+        final long[] counts = new long[this.counts.length + shift];
+        System.arraycopy(this.counts, 0, counts, shift, this.counts.length);
+        this.counts = counts;
+        this.offset -= shift;
+      } else if (index - this.offset >= this.counts.length) {
+        this.counts = Arrays.copyOf(
+            this.counts,
+            Math.max(index - this.offset + 1, this.counts.length + this.counts.length / 2)
+        );
+      }
+      this.counts[index - this.offset] += count;
+    }
+
+    void merge(Buckets other) {
+      for (int i = 0; i < other.counts.length; i++) {
+        if (other.counts[i] != 0) {
+          add(other.offset + i, other.counts[i]);
+        }
+      }
+    }
+  }
+
+  private static int index(double value) {
+    return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+  }
+
+  private static double value(int index) {
+    return 2D * Math.pow(GAMMA, index) / (GAMMA + 1D);
+  }
+
+  /**
+   * Method is used to add a value. NaN is ignored.
+   * @param value value to add.
+   */
+  void add(double value) {
+    if (Double.isNaN(value)) {
+      return;
+    }
+    if (value > MIN_VALUE) {
+      this.positive.add(index(value), 1);
+    } else if (value < -MIN_VALUE) {
+      this.negative.add(index(-value), 1);
+    } else {
+      this.zeros++;
+    }
+    this.count++;
+    this.min = Math.min(this.min, value);
+    this.max = Math.max(this.max, value);
+  }
+
+  /**
+   * Method is used to add the values of another sketch.
+   * @param other sketch to add.
+   */
+  void merge(QuantileSketch other) {
+    this.positive.merge(other.positive);
+    this.negative.merge(other.negative);
+    this.zeros += other.zeros;
+    this.count += other.count;
+    this.min = Math.min(this.min, other.min);
+    this.max = Math.max(this.max, other.max);
+  }
+
+  /**
+   * The number of values added.
+   * @return The number of values added.
+   */
+  long count() {
+    return this.count;
+  }
+
+  /**
+   * Method is used to estimate a quantile. 0 returns the smallest value and 1 the largest.
+   * @param quantile quantile between 0 and 1.
+   * @return estimated value of the quantile. NaN if no values were added.
+   */
+  double quantile(double quantile) {
+    if (this.count == 0) {
+      return Double.NaN;
+    }
+    if (quantile <= 0D) {
+      return this.min;
+    }
+    if (quantile >= 1D) {
+      return this.max;
+    }
+    final double rank = quantile * (this.count - 1);
+    long seen = 0;
+    final long[] negativeCounts = this.negative.counts;
+    for (int i = negativeCounts.length - 1; i >= 0; i--) {
+      seen += negativeCounts[i];
+      if (seen > rank) {
+        return clamp(-value(this.negative.offset + i));
+      }
+    }
+    seen += this.zeros;
+    if (seen > rank) {
+      return clamp(0D);
+    }
+    final long[] positiveCounts = this.positive.counts;
+    for (int i = 0; i < positiveCounts.length; i++) {
+      seen += positiveCounts[i];
+      if (seen > rank) {
+        return clamp(value(this.positive.offset + i));
+      }
+    }
+    return this.max;
+  }
+
+  private double clamp(double value) {
+    return Math.max(this.min, Math.min(this.max, value));
+  }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import com.github.jcustenborder.parsers.elf.parsers.DateFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.DoubleFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.FieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.IntegerFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.LongFieldParser;
+import com.github.jcustenborder.parsers.elf.parsers.TimeFieldParser;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+
+/**
+ * LineSource that reads lines as Strings from a LineNumberReader.
+ */
+class ReaderLineSource extends LineSource {
+  private final LineNumberReader lineReader;
+  private String line;
+  private String pushedBack;
+  private int lineNumber;
+
+  ReaderLineSource(LineNumberReader lineReader) {
+    this.lineReader = lineReader;
+    this.lineNumber = lineReader.getLineNumber();
+  }
+
+  @Override
+  boolean readLine() throws IOException {
+    if (null != this.pushedBack) {
+      this.line = this.pushedBack;
+      this.pushedBack = null;
+    } else {
+      this.line = this.lineReader.readLine();
+      if (null == this.line) {
+        return false;
+      }
+    }
+    this.lineNumber++;
+    return true;
+  }
+
+  @Override
+  void unread() {
+    this.pushedBack = this.line;
+    this.lineNumber--;
+  }
+
+  @Override
+  int lineNumber() {
+    return this.lineNumber;
+  }
+
+  @Override
+  int lineLength() {
+    return this.line.length() + 1;
+  }
+
+  @Override
+  boolean isDirective() {
+    return this.line.startsWith("#");
+  }
+
+  @Override
+  String line() {
+    return this.line;
+  }
+
+  @Override
+  int tokenize(LineTokenizer tokenizer) {
+    return tokenizer.tokenize(this.line);
+  }
+
+  @Override
+  boolean isNull(int start, int end) {
+    return (end - start) == ElfParserImpl.NULL_INDICATOR.length() &&
+        this.line.startsWith(ElfParserImpl.NULL_INDICATOR, start);
+  }
+
+  @Override
+  String text(int start, int end) {
+    return this.line.substring(start, end);
+  }
+
+  @Override
+  String text(StringCache cache, int start, int end) {
+    return cache.get(this.line, start, end);
+  }
+
+  @Override
+  Object parse(FieldParser parser, int start, int end) {
+    return parser.parse(this.line, start, end - start);
+  }
+
+  @Override
+  CharSequence chars(FieldSlice slice, int start, int end) {
+    return slice.set(this.line, start, end);
+  }
+
+  @Override
+  long parseLong(LongFieldParser parser, int start, int end) {
+    return parser.parseLong(this.line, start, end - start);
+  }
+
+  @Override
+  int parseInt(IntegerFieldParser parser, int start, int end) {
+    return parser.parseInt(this.line, start, end - start);
+  }
+
+  @Override
+  double parseDouble(DoubleFieldParser parser, int start, int end) {
+    return parser.parseDouble(this.line, start, end - start);
+  }
+
+  @Override
+  long parseEpochDay(DateFieldParser parser, int start, int end) {
+    return parser.parseEpochDay(this.line, start, end - start);
+  }
+
+  @Override
+  long parseNanoOfDay(TimeFieldParser parser, int start, int end) {
+    return parser.parseNanoOfDay(this.line, start, end - start);
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.lineReader.close();
+  }
+}
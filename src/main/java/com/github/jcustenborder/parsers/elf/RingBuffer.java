@@ -0,0 +1,131 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock free bounded queue for any number of producers and consumers, after the bounded MPMC queue by Dmitry Vyukov.
+ * Every slot has a sequence number that tells producers and consumers whose turn it is, so a slot is claimed with a
+ * single compare and set and never needs a lock. {@link #offer(Object)} and {@link #poll()} never block. Callers
+ * that need to wait back off with {@link #idle(int)}.
+ * @param <T> type of the items.
+ */
+final class RingBuffer<T> {
+  static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+  private static final int SPINS = 64;
+  private static final int YIELDS = 128;
+  private final int mask;
+  private final AtomicReferenceArray<T> items;
+  private final AtomicLongArray sequences;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+
+  /**
+   * @param capacity minimum number of items. Rounded up to a power of 2.
+   */
+  RingBuffer(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be greater than 0.");
+    }
+    final int size = Integer.highestOneBit(Math.max(2, capacity * 2 - 1));
+    this.mask = size - 1;
+    this.items = new AtomicReferenceArray<>(size);
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      this.sequences.set(i, i);
+    }
+  }
+
+  /**
+   * The number of items the buffer can hold.
+   * @return The number of items the buffer can hold.
+   */
+  int capacity() {
+    return this.mask + 1;
+  }
+
+  /**
+   * Method is used to add an item if there is room.
+   * @param item item to add.
+   * @return false if the buffer is full.
+   */
+  boolean offer(T item) {
+    long position = this.tail.get();
+    while (true) {
+      final int index = (int) position & this.mask;
+      final long difference = this.sequences.get(index) - position;
+      if (difference == 0) {
+        if (this.tail.compareAndSet(position, position + 1)) {
+          this.items.lazySet(index, item);
+          // Publishing the sequence releases the item to the consumer of the slot.
+          this.sequences.lazySet(index, position + 1);
+          return true;
+        }
+        position = this.tail.get();
+      } else if (difference < 0) {
+        return false;
+      } else {
+        position = this.tail.get();
+      }
+    }
+  }
+
+  /**
+   * Method is used to remove the oldest item.
+   * @return oldest item. Null if the buffer is empty.
+   */
+  T poll() {
+    long position = this.head.get();
+    while (true) {
+      final int index = (int) position & this.mask;
+      final long difference = this.sequences.get(index) - (position + 1);
+      if (difference == 0) {
+        if (this.head.compareAndSet(position, position + 1)) {
+          final T result = this.items.get(index);
+          this.items.lazySet(index, null);
+          // The slot is free again once the producers have gone around the buffer.
+          this.sequences.lazySet(index, position + this.mask + 1);
+          return result;
+        }
+        position = this.head.get();
+      } else if (difference < 0) {
+        return null;
+      } else {
+        position = this.head.get();
+      }
+    }
+  }
+
+  /**
+   * Method is used to back off while waiting for another thread. Spins first, then yields and then parks for
+   * {@link #PARK_NANOS} so an idle stage does not burn a core.
+   * @param attempts number of times the caller has waited so far.
+   * @return attempts + 1
+   */
+  static int idle(int attempts) {
+    if (attempts >= YIELDS) {
+      LockSupport.parkNanos(PARK_NANOS);
+    } else if (attempts >= SPINS) {
+      Thread.yield();
+    }
+    return attempts + 1;
+  }
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Fields defined by a #Fields directive along with the columns that are returned to the caller. Fields that are
+ * not projected are counted but never parsed.
+ */
+class Schema {
+  /**
+   * Every field in the header.
+   */
+  final List<ParserEntry> fieldParsers;
+  /**
+   * Names of every field in the header.
+   */
+  final List<String> fieldNames;
+  /**
+   * Names of the fields separated by a single space, the same as the value of the #Fields directive.
+   */
+  final String header;
+  /**
+   * Header index of each column in ascending order.
+   */
+  final int[] columns;
+  /**
+   * Types of the columns.
+   */
+  final Map<String, Class<?>> fieldTypes;
+  /**
+   * Filters checked before the columns are parsed, bound to the fields of the header.
+   */
+  final FieldFilter[] filters;
+  /**
+   * Maximum size of the value cache of each column. 0 if the column is not cached.
+   */
+  final int[] cacheSizes;
+  /**
+   * Timestamp column added after the other columns. Null if there is no timestamp column.
+   */
+  final TimestampColumn timestamp;
+  /**
+   * Header index of the date field. -1 if the header does not have one.
+   */
+  final int dateIndex;
+  /**
+   * Header index of the time field. -1 if the header does not have one.
+   */
+  final int timeIndex;
+  /**
+   * Column holding the parsed date field, used by the timestamp instead of parsing the field again. -1 if the date
+   * field is not projected or does not use the date parser.
+   */
+  final int dateColumn;
+  /**
+   * Column holding the parsed time field. See {@link #dateColumn}.
+   */
+  final int timeColumn;
+
+  Schema(
+      List<ParserEntry> fieldParsers,
+      int[] columns,
+      List<FieldFilter> filters,
+      Map<String, Integer> cacheSizes) {
+    this(fieldParsers, columns, filters, cacheSizes, null);
+  }
+
+  Schema(
+      List<ParserEntry> fieldParsers,
+      int[] columns,
+      List<FieldFilter> filters,
+      Map<String, Integer> cacheSizes,
+      TimestampColumn timestamp) {
+    List<String> duplicateFields = fieldParsers.stream()
+        .collect(Collectors.groupingBy(ParserEntry::fieldName))
+        .entrySet().stream()
+        .filter(e -> e.getValue().size() > 1)
+        .map(Map.Entry::getKey)
+        .sorted()
+        .collect(Collectors.toList());
+
+    if (!duplicateFields.isEmpty()) {
+      String fieldNames = String.join(", ", duplicateFields);
+      throw new IllegalStateException(
+          String.format("Field(s) are defined more than once: %s", fieldNames)
+      );
+    }
+
+    this.fieldParsers = fieldParsers;
+    this.fieldNames = Collections.unmodifiableList(
+        fieldParsers.stream()
+            .map(ParserEntry::fieldName)
+            .collect(Collectors.toList())
+    );
+    this.header = String.join(" ", this.fieldNames);
+    this.columns = columns;
+    Map<String, Class<?>> fieldTypes = new LinkedHashMap<>(columns.length * 2);
+    for (int column : columns) {
+      final ParserEntry entry = fieldParsers.get(column);
+      fieldTypes.put(entry.fieldName(), entry.parser().fieldType());
+    }
+    this.timestamp = timestamp;
+    this.dateIndex = this.fieldNames.indexOf(TimestampColumn.DATE_FIELD);
+    this.timeIndex = this.fieldNames.indexOf(TimestampColumn.TIME_FIELD);
+    int dateColumn = -1;
+    int timeColumn = -1;
+    if (null != timestamp) {
+      if (this.fieldNames.contains(timestamp.fieldName)) {
+        throw new IllegalStateException(
+            String.format("Timestamp field %s is already defined in the header.", timestamp.fieldName)
+        );
+      }
+      fieldTypes.put(timestamp.fieldName, timestamp.fieldType());
+      for (int i = 0; i < columns.length; i++) {
+        final FieldKind kind = FieldKind.of(fieldParsers.get(columns[i]).parser());
+        if (columns[i] == this.dateIndex && FieldKind.DATE == kind) {
+          dateColumn = i;
+        } else if (columns[i] == this.timeIndex && FieldKind.TIME == kind) {
+          timeColumn = i;
+        }
+      }
+    }
+    this.dateColumn = dateColumn;
+    this.timeColumn = timeColumn;
+    this.fieldTypes = Collections.unmodifiableMap(fieldTypes);
+    this.cacheSizes = new int[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      final ParserEntry entry = fieldParsers.get(columns[i]);
+      final Integer cacheSize = cacheSizes.get(entry.fieldName());
+      if (null != cacheSize && FieldKind.STRING == FieldKind.of(entry.parser())) {
+        this.cacheSizes[i] = cacheSize;
+      }
+    }
+    this.filters = new FieldFilter[filters.size()];
+    for (int i = 0; i < this.filters.length; i++) {
+      this.filters[i] = filters.get(i).bind(fieldParsers);
+    }
+  }
+
+  /**
+   * Method is used to create a schema that returns every field.
+   * @param fieldParsers fields defined by the header.
+   * @return schema
+   */
+  static Schema of(List<ParserEntry> fieldParsers) {
+    final int[] columns = new int[fieldParsers.size()];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = i;
+    }
+    return new Schema(fieldParsers, columns, Collections.emptyList(), Collections.emptyMap());
+  }
+
+  /**
+   * Number of columns including the timestamp column.
+   * @return number of columns.
+   */
+  int size() {
+    return null == this.timestamp ? this.columns.length : this.columns.length + 1;
+  }
+
+  /**
+   * The parser entry of a column.
+   * @param column index of the column.
+   * @return parser entry of the column.
+   */
+  ParserEntry entry(int column) {
+    return this.fieldParsers.get(this.columns[column]);
+  }
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Bounded cache of the distinct values of a low cardinality String field. Lookups hash the characters or the
+ * ASCII bytes of the field in place, so a value that is already cached is returned without allocating. Once more
+ * than maxSize distinct values have been seen the cache disables itself, releases its table and every call
+ * returns a new String.
+ *
+ * A StringCache is not thread safe. Each parser has its own.
+ */
+final class StringCache {
+  static final int DEFAULT_MAX_SIZE = 256;
+  private final int maxSize;
+  private String[] values;
+  private int[] hashes;
+  /**
+   * Open addressing table of index + 1. 0 is an empty slot.
+   */
+  private int[] table;
+  private int size;
+  private boolean disabled;
+
+  StringCache(int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize must be greater than 0.");
+    }
+    this.maxSize = maxSize;
+    final int capacity = Math.min(maxSize, 16);
+    this.values = new String[capacity];
+    this.hashes = new int[capacity];
+    this.table = new int[tableSize(capacity)];
+  }
+
+  private static int tableSize(int capacity) {
+    return Integer.highestOneBit(capacity * 2 - 1) << 1;
+  }
+
+  private static int mix(int hash) {
+    final int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Flag to determine if the cache has disabled itself because the field has too many distinct values.
+   * @return true if the cache is disabled.
+   */
+  boolean isDisabled() {
+    return this.disabled;
+  }
+
+  /**
+   * The number of values in the cache.
+   * @return The number of values in the cache.
+   */
+  int size() {
+    return this.size;
+  }
+
+  /**
+   * Method is used to return the String for a range of characters.
+   * @param input characters containing the value.
+   * @param start start of the value (inclusive).
+   * @param end end of the value (exclusive).
+   * @return cached String if the value has been seen before.
+   */
+  String get(CharSequence input, int start, int end) {
+    if (this.disabled) {
+      return input.subSequence(start, end).toString();
+    }
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + input.charAt(i);
+    }
+    final int length = end - start;
+    final int mask = this.table.length - 1;
+    int slot = mix(hash) & mask;
+    int existing;
+    while ((existing = this.table[slot]) != 0) {
+      final String value = this.values[existing - 1];
+      if (this.hashes[existing - 1] == hash && value.length() == length && matches(value, input, start)) {
+        return value;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return add(input.subSequence(start, end).toString(), hash, slot);
+  }
+
+  /**
+   * Method is used to return the String for a range of bytes. ASCII values are looked up without decoding them.
+   * @param buffer buffer containing the value.
+   * @param start start of the value (inclusive).
+   * @param end end of the value (exclusive).
+   * @param charset charset used to decode the value.
+   * @return cached String if the value has been seen before.
+   */
+  String get(byte[] buffer, int start, int end, Charset charset) {
+    if (this.disabled) {
+      return new String(buffer, start, end - start, charset);
+    }
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      final byte b = buffer[i];
+      if (b < 0) {
+        final String value = new String(buffer, start, end - start, charset);
+        return get(value, 0, value.length());
+      }
+      hash = 31 * hash + b;
+    }
+    final int length = end - start;
+    final int mask = this.table.length - 1;
+    int slot = mix(hash) & mask;
+    int existing;
+    while ((existing = this.table[slot]) != 0) {
+      final String value = this.values[existing - 1];
+      if (this.hashes[existing - 1] == hash && value.length() == length && matches(value, buffer, start)) {
+        return value;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return add(new String(buffer, start, length, charset), hash, slot);
+  }
+
+  private static boolean matches(String value, CharSequence input, int start) {
+    for (int i = 0; i < value.length(); i++) {
+      if (value.charAt(i) != input.charAt(start + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean matches(String value, byte[] buffer, int start) {
+    for (int i = 0; i < value.length(); i++) {
+      if (value.charAt(i) != buffer[start + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String add(String value, int hash, int slot) {
+    if (this.size == this.maxSize) {
+      // Too many distinct values for caching to help.
+      this.disabled = true;
+      this.values = null;
+      this.hashes = null;
+      this.table = null;
+      return value;
+    }
+    if (this.size == this.values.length) {
+      grow();
+      slot = mix(hash) & (this.table.length - 1);
+      while (this.table[slot] != 0) {
+        slot = (slot + 1) & (this.table.length - 1);
+      }
+    }
+    this.values[this.size] = value;
+    this.hashes[this.size] = hash;
+    this.table[slot] = ++this.size;
+    return value;
+  }
+
+  private void grow() {
+    final int capacity = Math.min(this.maxSize, this.values.length * 2);
+    this.values = Arrays.copyOf(this.values, capacity);
+    this.hashes = Arrays.copyOf(this.hashes, capacity);
+    this.table = new int[tableSize(capacity)];
+    final int mask = this.table.length - 1;
+    for (int i = 0; i < this.size; i++) {
+      int slot = mix(this.hashes[i]) & mask;
+      while (this.table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      this.table[slot] = i + 1;
+    }
+  }
+}
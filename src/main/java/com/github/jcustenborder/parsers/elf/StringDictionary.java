@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary of the distinct strings in a column of a {@link LogBatch}. Each distinct value is assigned an id in
+ * the order it was first seen. Lookups hash the CharSequence directly so a value is only copied to a String the
+ * first time it is seen.
+ */
+public final class StringDictionary {
+  private static final int INITIAL_CAPACITY = 64;
+  private String[] values = new String[INITIAL_CAPACITY];
+  private int[] hashes = new int[INITIAL_CAPACITY];
+  /**
+   * Open addressing table of id + 1. 0 is an empty slot.
+   */
+  private int[] table = new int[INITIAL_CAPACITY * 2];
+  private int size;
+
+  StringDictionary() {
+  }
+
+  /**
+   * The number of distinct values in the dictionary.
+   * @return The number of distinct values in the dictionary.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Method is used to return the value for an id.
+   * @param id id of the value.
+   * @return value for the id.
+   */
+  public String get(int id) {
+    if (id < 0 || id >= this.size) {
+      throw new IndexOutOfBoundsException(
+          String.format("id %s is out of range for %s value(s)", id, this.size)
+      );
+    }
+    return this.values[id];
+  }
+
+  static int hash(CharSequence value) {
+    int result = 0;
+    final int length = value.length();
+    for (int i = 0; i < length; i++) {
+      result = 31 * result + value.charAt(i);
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to return the id of a value, adding it if needed.
+   * @param value value to lookup.
+   * @return id of the value.
+   */
+  int add(CharSequence value) {
+    final int hash = hash(value);
+    final int mask = this.table.length - 1;
+    int slot = mix(hash) & mask;
+    int existing;
+    while ((existing = this.table[slot]) != 0) {
+      final int id = existing - 1;
+      if (this.hashes[id] == hash && this.values[id].contentEquals(value)) {
+        return id;
+      }
+      slot = (slot + 1) & mask;
+    }
+    if (this.size == this.values.length) {
+      grow();
+      return add(value);
+    }
+    final int id = this.size++;
+    this.values[id] = value.toString();
+    this.hashes[id] = hash;
+    this.table[slot] = id + 1;
+    return id;
+  }
+
+  private static int mix(int hash) {
+    final int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private void grow() {
+    final int capacity = this.values.length * 2;
+    this.values = Arrays.copyOf(this.values, capacity);
+    this.hashes = Arrays.copyOf(this.hashes, capacity);
+    this.table = new int[capacity * 2];
+    final int mask = this.table.length - 1;
+    for (int id = 0; id < this.size; id++) {
+      int slot = mix(this.hashes[id]) & mask;
+      while (this.table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      this.table[slot] = id + 1;
+    }
+  }
+
+  /**
+   * Method is used to remove all values from the dictionary.
+   */
+  void clear() {
+    Arrays.fill(this.values, 0, this.size, null);
+    Arrays.fill(this.table, 0);
+    this.size = 0;
+  }
+}
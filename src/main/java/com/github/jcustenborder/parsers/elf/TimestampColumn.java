@@ -0,0 +1,120 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+
+/**
+ * Column that combines the date and time fields of a line into a single timestamp. The value is computed from the
+ * tokens of the line, so the date and time fields do not have to be projected.
+ */
+final class TimestampColumn {
+  static final String DATE_FIELD = "date";
+  static final String TIME_FIELD = "time";
+  static final long NANOS_PER_SECOND = 1_000_000_000L;
+  static final long NANOS_PER_MILLI = 1_000_000L;
+  static final long NANOS_PER_DAY = 86_400L * NANOS_PER_SECOND;
+  /**
+   * Offsets of a zone with daylight saving time are looked up once per quarter of an hour of local time. Zone
+   * transitions in the tz database since 1970 happen on a quarter hour.
+   */
+  static final long NANOS_PER_WINDOW = 15L * 60L * NANOS_PER_SECOND;
+  final String fieldName;
+  final TimestampType type;
+  final ZoneId zone;
+
+  TimestampColumn(String fieldName, TimestampType type, ZoneId zone) {
+    this.fieldName = fieldName;
+    this.type = type;
+    this.zone = zone;
+  }
+
+  /**
+   * Type of the column in {@link LogEntry#fieldTypes()}.
+   * @return Instant or Long.
+   */
+  Class<?> fieldType() {
+    return TimestampType.INSTANT == this.type ? Instant.class : Long.class;
+  }
+
+  /**
+   * How the column is stored in a record.
+   * @return kind of the column.
+   */
+  FieldKind kind() {
+    return TimestampType.INSTANT == this.type ? FieldKind.INSTANT : FieldKind.LONG;
+  }
+
+  /**
+   * Method is used to create the converter used by a single parser. Converters cache the offset of the zone and
+   * are not thread safe.
+   * @return converter
+   */
+  Converter converter() {
+    return new Converter(this.type, this.zone.getRules());
+  }
+
+  /**
+   * Converts a local date and time to the value of the column.
+   */
+  static final class Converter {
+    private final boolean millis;
+    private final ZoneRules rules;
+    private long window = Long.MIN_VALUE;
+    private long offsetNanos;
+
+    Converter(TimestampType type, ZoneRules rules) {
+      this.millis = TimestampType.EPOCH_MILLIS == type;
+      if (rules.isFixedOffset()) {
+        this.rules = null;
+        this.offsetNanos = rules.getOffset(Instant.EPOCH).getTotalSeconds() * NANOS_PER_SECOND;
+      } else {
+        this.rules = rules;
+      }
+    }
+
+    /**
+     * Method is used to convert a local date and time to the value of the column. Local times that fall in a gap
+     * or an overlap of the zone use the offset before the transition, the same as
+     * {@link ZoneRules#getOffset(LocalDateTime)}.
+     * @param epochDay number of days since 1970-01-01.
+     * @param nanoOfDay nano of the day.
+     * @return milliseconds since the epoch when the type is {@link TimestampType#EPOCH_MILLIS}, otherwise
+     * nanoseconds since the epoch.
+     */
+    long convert(long epochDay, long nanoOfDay) {
+      final long local = epochDay * NANOS_PER_DAY + nanoOfDay;
+      if (null != this.rules) {
+        final long window = Math.floorDiv(local, NANOS_PER_WINDOW);
+        if (window != this.window) {
+          final LocalDateTime start = LocalDateTime.ofEpochSecond(
+              window * (NANOS_PER_WINDOW / NANOS_PER_SECOND),
+              0,
+              ZoneOffset.UTC
+          );
+          this.offsetNanos = this.rules.getOffset(start).getTotalSeconds() * NANOS_PER_SECOND;
+          this.window = window;
+        }
+      }
+      final long nanos = local - this.offsetNanos;
+      return this.millis ? Math.floorDiv(nanos, NANOS_PER_MILLI) : nanos;
+    }
+  }
+}
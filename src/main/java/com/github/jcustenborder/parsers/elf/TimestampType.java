@@ -0,0 +1,36 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+/**
+ * Determines how the timestamp column combined from the date and time fields is returned. See
+ * {@link ElfParserBuilder#timestamp(String, TimestampType, java.time.ZoneId)}.
+ */
+public enum TimestampType {
+  /**
+   * The timestamp is returned as an {@link java.time.Instant}. Use {@link #EPOCH_NANOS} to avoid creating an
+   * Instant for every line.
+   */
+  INSTANT,
+  /**
+   * The timestamp is returned as a Long holding milliseconds since 1970-01-01T00:00:00Z.
+   */
+  EPOCH_MILLIS,
+  /**
+   * The timestamp is returned as a Long holding nanoseconds since 1970-01-01T00:00:00Z.
+   */
+  EPOCH_NANOS
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Map;
+
+/**
+ * Reads the date and time fields of records. The position of the fields is looked up again when the fields of
+ * the records change. Used by {@link ElfIndex} and {@link Aggregator}.
+ */
+final class Timestamps {
+  static final long NO_TIMESTAMP = Long.MIN_VALUE;
+  private Map<String, Class<?>> fieldTypes;
+  private int date;
+  private int time;
+
+  /**
+   * First and last nanosecond covered by the record passed to {@link #range(LogRecord, long)}.
+   */
+  long start;
+  long end;
+
+  private void bind(LogRecord record) {
+    if (this.fieldTypes != record.fieldTypes()) {
+      this.fieldTypes = record.fieldTypes();
+      this.date = LocalDate.class.equals(this.fieldTypes.get(TimestampColumn.DATE_FIELD)) ?
+          record.fieldIndex(TimestampColumn.DATE_FIELD) : -1;
+      this.time = LocalTime.class.equals(this.fieldTypes.get(TimestampColumn.TIME_FIELD)) ?
+          record.fieldIndex(TimestampColumn.TIME_FIELD) : -1;
+    }
+  }
+
+  /**
+   * Method is used to read the date and time of a record. When the record does not have a date field the date of
+   * the #Date or #Start-Date directive is used. If the date is not known only the time is used.
+   * @param record record to read.
+   * @param directiveEpochDay date of the directives of the record as days since 1970-01-01.
+   *                          {@link ElfParserImpl#NO_DATE} if there is none.
+   * @return nanoseconds since 1970-01-01T00:00 or {@link #NO_TIMESTAMP} if the record has no date and time.
+   */
+  long of(LogRecord record, long directiveEpochDay) {
+    if (range(record, directiveEpochDay)) {
+      return this.start;
+    }
+    return this.time >= 0 && !record.isNull(this.time) ? record.getLong(this.time) : NO_TIMESTAMP;
+  }
+
+  /**
+   * Method is used to read the time covered by a record into {@link #start} and {@link #end}. When the record
+   * does not have a date field the date of the #Date or #Start-Date directive is used. A record with a date and
+   * no time covers the whole day.
+   * @param record record to read.
+   * @param directiveEpochDay date of the directives of the record as days since 1970-01-01.
+   *                          {@link ElfParserImpl#NO_DATE} if there is none.
+   * @return false if the date of the record is not known.
+   */
+  boolean range(LogRecord record, long directiveEpochDay) {
+    bind(record);
+    final long epochDay;
+    if (this.date < 0) {
+      epochDay = directiveEpochDay;
+    } else {
+      epochDay = record.isNull(this.date) ? ElfParserImpl.NO_DATE : record.getLong(this.date);
+    }
+    if (ElfParserImpl.NO_DATE == epochDay) {
+      return false;
+    }
+    this.start = epochDay * TimestampColumn.NANOS_PER_DAY;
+    if (this.time >= 0 && !record.isNull(this.time)) {
+      this.start += record.getLong(this.time);
+      this.end = this.start;
+    } else {
+      this.end = this.start + TimestampColumn.NANOS_PER_DAY - 1;
+    }
+    return true;
+  }
+}
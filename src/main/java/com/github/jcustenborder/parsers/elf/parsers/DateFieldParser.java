@@ -15,9 +15,19 @@
  */
 package com.github.jcustenborder.parsers.elf.parsers;
 
+import java.nio.charset.Charset;
 import java.time.LocalDate;
 
 public class DateFieldParser implements FieldParser {
+  /**
+   * Number of days from 0000-01-01 to 1970-01-01.
+   */
+  static final long DAYS_0000_TO_1970 = 719528L;
+  /**
+   * Returned by {@link #epochDay(int, int, int)} when the date is not valid.
+   */
+  static final long INVALID = Long.MIN_VALUE;
+
   DateFieldParser() {
   }
 
@@ -28,6 +38,136 @@ public class DateFieldParser implements FieldParser {
 
   @Override
   public Object parse(String input) {
-    return LocalDate.parse(input);
+    return LocalDate.ofEpochDay(parseEpochDay(input));
+  }
+
+  @Override
+  public Object parse(byte[] buffer, int offset, int length, Charset charset) {
+    return LocalDate.ofEpochDay(parseEpochDay(buffer, offset, length, charset));
+  }
+
+  @Override
+  public Object parse(CharSequence input, int offset, int length) {
+    return LocalDate.ofEpochDay(parseEpochDay(input, offset, length));
+  }
+
+  static int digit(byte b) {
+    final int result = b - '0';
+    return (result < 0 || result > 9) ? -1 : result;
+  }
+
+  static int digit(char c) {
+    final int result = c - '0';
+    return (result < 0 || result > 9) ? -1 : result;
+  }
+
+  static boolean isLeapYear(long year) {
+    return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+  }
+
+  static int lengthOfMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        return isLeapYear(year) ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  /**
+   * Method is used to convert a date to the number of days since 1970-01-01. This is the same calculation as
+   * LocalDate.toEpochDay() for years from 0 to 9999.
+   * @param year year.
+   * @param month month of the year.
+   * @param day day of the month.
+   * @return number of days since 1970-01-01. {@link #INVALID} if the month or day is out of range.
+   */
+  static long epochDay(int year, int month, int day) {
+    if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+      return INVALID;
+    }
+    long total = 365L * year;
+    total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+    total += (367 * month - 362) / 12;
+    total += day - 1;
+    if (month > 2) {
+      total--;
+      if (!isLeapYear(year)) {
+        total--;
+      }
+    }
+    return total - DAYS_0000_TO_1970;
+  }
+
+  /**
+   * Method is used to parse a date to the number of days since 1970-01-01 without creating a LocalDate.
+   * @param input value to parse.
+   * @return number of days since 1970-01-01.
+   */
+  public long parseEpochDay(String input) {
+    return parseEpochDay(input, 0, input.length());
+  }
+
+  /**
+   * Method is used to parse a date to the number of days since 1970-01-01 from a range of characters. Dates in the
+   * form yyyy-MM-dd are converted without the DateTimeFormatter. Everything else, including dates that are not
+   * valid, uses LocalDate.parse() so the result and exceptions are the same.
+   * @param input characters containing the value.
+   * @param offset offset of the first character of the value.
+   * @param length number of characters in the value.
+   * @return number of days since 1970-01-01.
+   */
+  public long parseEpochDay(CharSequence input, int offset, int length) {
+    if (length == 10 && input.charAt(offset + 4) == '-' && input.charAt(offset + 7) == '-') {
+      final int y1 = digit(input.charAt(offset));
+      final int y2 = digit(input.charAt(offset + 1));
+      final int y3 = digit(input.charAt(offset + 2));
+      final int y4 = digit(input.charAt(offset + 3));
+      final int m1 = digit(input.charAt(offset + 5));
+      final int m2 = digit(input.charAt(offset + 6));
+      final int d1 = digit(input.charAt(offset + 8));
+      final int d2 = digit(input.charAt(offset + 9));
+      if ((y1 | y2 | y3 | y4 | m1 | m2 | d1 | d2) >= 0) {
+        final long result = epochDay(y1 * 1000 + y2 * 100 + y3 * 10 + y4, m1 * 10 + m2, d1 * 10 + d2);
+        if (INVALID != result) {
+          return result;
+        }
+      }
+    }
+    return LocalDate.parse(input.subSequence(offset, offset + length)).toEpochDay();
+  }
+
+  /**
+   * Method is used to parse a date to the number of days since 1970-01-01 directly from a byte array. See
+   * {@link #parseEpochDay(CharSequence, int, int)}.
+   * @param buffer buffer containing the value.
+   * @param offset offset of the first byte of the value.
+   * @param length number of bytes in the value.
+   * @param charset charset used to decode the value if needed.
+   * @return number of days since 1970-01-01.
+   */
+  public long parseEpochDay(byte[] buffer, int offset, int length, Charset charset) {
+    if (length == 10 && buffer[offset + 4] == '-' && buffer[offset + 7] == '-') {
+      final int y1 = digit(buffer[offset]);
+      final int y2 = digit(buffer[offset + 1]);
+      final int y3 = digit(buffer[offset + 2]);
+      final int y4 = digit(buffer[offset + 3]);
+      final int m1 = digit(buffer[offset + 5]);
+      final int m2 = digit(buffer[offset + 6]);
+      final int d1 = digit(buffer[offset + 8]);
+      final int d2 = digit(buffer[offset + 9]);
+      if ((y1 | y2 | y3 | y4 | m1 | m2 | d1 | d2) >= 0) {
+        final long result = epochDay(y1 * 1000 + y2 * 100 + y3 * 10 + y4, m1 * 10 + m2, d1 * 10 + d2);
+        if (INVALID != result) {
+          return result;
+        }
+      }
+    }
+    return LocalDate.parse(new String(buffer, offset, length, charset)).toEpochDay();
   }
 }
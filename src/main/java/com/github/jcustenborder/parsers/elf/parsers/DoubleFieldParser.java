@@ -15,6 +15,8 @@
  */
 package com.github.jcustenborder.parsers.elf.parsers;
 
+import java.nio.charset.Charset;
+
 public class DoubleFieldParser implements FieldParser {
   DoubleFieldParser() {
   }
@@ -26,6 +28,108 @@ public class DoubleFieldParser implements FieldParser {
 
   @Override
   public Object parse(String input) {
-    return Double.parseDouble(input);
+    return parseDouble(input);
+  }
+
+  @Override
+  public Object parse(byte[] buffer, int offset, int length, Charset charset) {
+    return parseDouble(buffer, offset, length, charset);
+  }
+
+  @Override
+  public Object parse(CharSequence input, int offset, int length) {
+    return parseDouble(input, offset, length);
+  }
+
+  /**
+   * Method is used to parse a value without boxing it.
+   * @param input value to parse.
+   * @return parsed value.
+   */
+  public double parseDouble(String input) {
+    return parseDouble(input, 0, input.length());
+  }
+
+  /**
+   * Powers of ten that can be represented exactly as a double.
+   */
+  static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  /**
+   * Method is used to parse a value from a range of characters without boxing it. Values with at most 15
+   * significant digits and a power of ten that is exact are converted with a single division. This is correctly
+   * rounded and matches Double.parseDouble(). Everything else such as exponents, NaN or very long values uses
+   * Double.parseDouble().
+   * @param input characters containing the value.
+   * @param offset offset of the first character of the value.
+   * @param length number of characters in the value.
+   * @return parsed value.
+   */
+  public double parseDouble(CharSequence input, int offset, int length) {
+    final int end = offset + length;
+    final boolean negative = length > 1 && input.charAt(offset) == '-';
+    int index = negative ? offset + 1 : offset;
+    long mantissa = 0;
+    int digits = 0;
+    int decimalIndex = -1;
+    for (; index < end; index++) {
+      final char c = input.charAt(index);
+      if (c == '.' && decimalIndex < 0) {
+        decimalIndex = index;
+        continue;
+      }
+      final int digit = c - '0';
+      if (digit < 0 || digit > 9 || digits == 15) {
+        return Double.parseDouble(input.subSequence(offset, end).toString());
+      }
+      mantissa = mantissa * 10 + digit;
+      digits++;
+    }
+    final int scale = decimalIndex < 0 ? 0 : end - decimalIndex - 1;
+    if (digits == 0 || scale >= POWERS_OF_TEN.length) {
+      return Double.parseDouble(input.subSequence(offset, end).toString());
+    }
+    final double result = (double) mantissa / POWERS_OF_TEN[scale];
+    return negative ? -result : result;
+  }
+
+  /**
+   * Method is used to parse a value directly from a byte array without boxing it. See
+   * {@link #parseDouble(CharSequence, int, int)}.
+   * @param buffer buffer containing the value.
+   * @param offset offset of the first byte of the value.
+   * @param length number of bytes in the value.
+   * @param charset charset used to decode the value if needed.
+   * @return parsed value.
+   */
+  public double parseDouble(byte[] buffer, int offset, int length, Charset charset) {
+    final int end = offset + length;
+    final boolean negative = length > 1 && buffer[offset] == '-';
+    int index = negative ? offset + 1 : offset;
+    long mantissa = 0;
+    int digits = 0;
+    int decimalIndex = -1;
+    for (; index < end; index++) {
+      final byte b = buffer[index];
+      if (b == '.' && decimalIndex < 0) {
+        decimalIndex = index;
+        continue;
+      }
+      final int digit = b - '0';
+      if (digit < 0 || digit > 9 || digits == 15) {
+        return Double.parseDouble(new String(buffer, offset, length, charset));
+      }
+      mantissa = mantissa * 10 + digit;
+      digits++;
+    }
+    final int scale = decimalIndex < 0 ? 0 : end - decimalIndex - 1;
+    if (digits == 0 || scale >= POWERS_OF_TEN.length) {
+      return Double.parseDouble(new String(buffer, offset, length, charset));
+    }
+    final double result = (double) mantissa / POWERS_OF_TEN[scale];
+    return negative ? -result : result;
   }
 }
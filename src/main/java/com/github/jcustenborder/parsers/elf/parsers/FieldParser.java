@@ -15,8 +15,35 @@
  */
 package com.github.jcustenborder.parsers.elf.parsers;
 
+import java.nio.charset.Charset;
+
 public interface FieldParser {
   Class<?> fieldType();
 
   Object parse(String input);
+
+  /**
+   * Method is used to parse a value directly from a byte array. The default implementation decodes the bytes to a
+   * String and calls {@link #parse(String)}.
+   * @param buffer buffer containing the value.
+   * @param offset offset of the first byte of the value.
+   * @param length number of bytes in the value.
+   * @param charset charset used to decode the value if needed.
+   * @return parsed value.
+   */
+  default Object parse(byte[] buffer, int offset, int length, Charset charset) {
+    return parse(new String(buffer, offset, length, charset));
+  }
+
+  /**
+   * Method is used to parse a value from a range of characters. The default implementation copies the range to a
+   * String and calls {@link #parse(String)}.
+   * @param input characters containing the value.
+   * @param offset offset of the first character of the value.
+   * @param length number of characters in the value.
+   * @return parsed value.
+   */
+  default Object parse(CharSequence input, int offset, int length) {
+    return parse(input.subSequence(offset, offset + length).toString());
+  }
 }
@@ -15,6 +15,8 @@
  */
 package com.github.jcustenborder.parsers.elf.parsers;
 
+import java.nio.charset.Charset;
+
 public class IntegerFieldParser implements FieldParser {
   IntegerFieldParser() {
   }
@@ -26,6 +28,78 @@ public class IntegerFieldParser implements FieldParser {
 
   @Override
   public Object parse(String input) {
-    return Integer.parseInt(input);
+    return parseInt(input);
+  }
+
+  @Override
+  public Object parse(byte[] buffer, int offset, int length, Charset charset) {
+    return parseInt(buffer, offset, length, charset);
+  }
+
+  @Override
+  public Object parse(CharSequence input, int offset, int length) {
+    return parseInt(input, offset, length);
+  }
+
+  /**
+   * Method is used to parse a value without boxing it.
+   * @param input value to parse.
+   * @return parsed value.
+   */
+  public int parseInt(String input) {
+    return parseInt(input, 0, input.length());
+  }
+
+  /**
+   * Method is used to parse a value from a range of characters without boxing it. Values of up to 9 digits with
+   * an optional minus sign are converted directly. Everything else uses Integer.parseInt().
+   * @param input characters containing the value.
+   * @param offset offset of the first character of the value.
+   * @param length number of characters in the value.
+   * @return parsed value.
+   */
+  public int parseInt(CharSequence input, int offset, int length) {
+    final int end = offset + length;
+    final boolean negative = length > 1 && input.charAt(offset) == '-';
+    int index = negative ? offset + 1 : offset;
+    if (length == 0 || end - index > 9) {
+      return Integer.parseInt(input.subSequence(offset, end).toString());
+    }
+    int result = 0;
+    for (; index < end; index++) {
+      final int digit = input.charAt(index) - '0';
+      if (digit < 0 || digit > 9) {
+        return Integer.parseInt(input.subSequence(offset, end).toString());
+      }
+      result = result * 10 + digit;
+    }
+    return negative ? -result : result;
+  }
+
+  /**
+   * Method is used to parse a value directly from a byte array without boxing it. See
+   * {@link #parseInt(CharSequence, int, int)}.
+   * @param buffer buffer containing the value.
+   * @param offset offset of the first byte of the value.
+   * @param length number of bytes in the value.
+   * @param charset charset used to decode the value if needed.
+   * @return parsed value.
+   */
+  public int parseInt(byte[] buffer, int offset, int length, Charset charset) {
+    final int end = offset + length;
+    final boolean negative = length > 1 && buffer[offset] == '-';
+    int index = negative ? offset + 1 : offset;
+    if (length == 0 || end - index > 9) {
+      return Integer.parseInt(new String(buffer, offset, length, charset));
+    }
+    int result = 0;
+    for (; index < end; index++) {
+      final int digit = buffer[index] - '0';
+      if (digit < 0 || digit > 9) {
+        return Integer.parseInt(new String(buffer, offset, length, charset));
+      }
+      result = result * 10 + digit;
+    }
+    return negative ? -result : result;
   }
 }
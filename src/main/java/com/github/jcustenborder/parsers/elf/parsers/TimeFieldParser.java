@@ -15,9 +15,18 @@
  */
 package com.github.jcustenborder.parsers.elf.parsers;
 
+import java.nio.charset.Charset;
 import java.time.LocalTime;
 
 public class TimeFieldParser implements FieldParser {
+  static final long NANOS_PER_SECOND = 1000_000_000L;
+  static final long NANOS_PER_MINUTE = NANOS_PER_SECOND * 60L;
+  static final long NANOS_PER_HOUR = NANOS_PER_MINUTE * 60L;
+  /**
+   * Returned by {@link #nanoOfDay(int, int, int, int)} when the time is not valid.
+   */
+  static final long INVALID = -1L;
+
   TimeFieldParser() {
   }
 
@@ -28,6 +37,110 @@ public class TimeFieldParser implements FieldParser {
 
   @Override
   public Object parse(String input) {
-    return LocalTime.parse(input);
+    return LocalTime.ofNanoOfDay(parseNanoOfDay(input));
+  }
+
+  @Override
+  public Object parse(byte[] buffer, int offset, int length, Charset charset) {
+    return LocalTime.ofNanoOfDay(parseNanoOfDay(buffer, offset, length, charset));
+  }
+
+  @Override
+  public Object parse(CharSequence input, int offset, int length) {
+    return LocalTime.ofNanoOfDay(parseNanoOfDay(input, offset, length));
+  }
+
+  /**
+   * Method is used to convert a time to the nano of the day.
+   * @param hour hour of the day.
+   * @param minute minute of the hour.
+   * @param second second of the minute.
+   * @param nanos nano of the second.
+   * @return nano of the day. {@link #INVALID} if any value is out of range.
+   */
+  static long nanoOfDay(int hour, int minute, int second, int nanos) {
+    if (hour > 23 || minute > 59 || second > 59) {
+      return INVALID;
+    }
+    return hour * NANOS_PER_HOUR + minute * NANOS_PER_MINUTE + second * NANOS_PER_SECOND + nanos;
+  }
+
+  /**
+   * Method is used to parse a time to the nano of the day without creating a LocalTime.
+   * @param input value to parse.
+   * @return nano of the day.
+   */
+  public long parseNanoOfDay(String input) {
+    return parseNanoOfDay(input, 0, input.length());
+  }
+
+  /**
+   * Method is used to parse a time to the nano of the day from a range of characters. Times in the form HH:mm:ss
+   * with an optional fraction of up to 9 digits are converted without the DateTimeFormatter. Everything else,
+   * including times that are not valid, uses LocalTime.parse() so the result and exceptions are the same.
+   * @param input characters containing the value.
+   * @param offset offset of the first character of the value.
+   * @param length number of characters in the value.
+   * @return nano of the day.
+   */
+  public long parseNanoOfDay(CharSequence input, int offset, int length) {
+    if (length >= 8 && input.charAt(offset + 2) == ':' && input.charAt(offset + 5) == ':' &&
+        (length == 8 || (length > 9 && length <= 18 && input.charAt(offset + 8) == '.'))) {
+      final int h1 = DateFieldParser.digit(input.charAt(offset));
+      final int h2 = DateFieldParser.digit(input.charAt(offset + 1));
+      final int m1 = DateFieldParser.digit(input.charAt(offset + 3));
+      final int m2 = DateFieldParser.digit(input.charAt(offset + 4));
+      final int s1 = DateFieldParser.digit(input.charAt(offset + 6));
+      final int s2 = DateFieldParser.digit(input.charAt(offset + 7));
+      int nanos = 0;
+      int check = h1 | h2 | m1 | m2 | s1 | s2;
+      for (int i = 9; i < 18; i++) {
+        final int digit = i < length ? DateFieldParser.digit(input.charAt(offset + i)) : 0;
+        check |= digit;
+        nanos = nanos * 10 + digit;
+      }
+      if (check >= 0) {
+        final long result = nanoOfDay(h1 * 10 + h2, m1 * 10 + m2, s1 * 10 + s2, nanos);
+        if (INVALID != result) {
+          return result;
+        }
+      }
+    }
+    return LocalTime.parse(input.subSequence(offset, offset + length)).toNanoOfDay();
+  }
+
+  /**
+   * Method is used to parse a time to the nano of the day directly from a byte array. See
+   * {@link #parseNanoOfDay(CharSequence, int, int)}.
+   * @param buffer buffer containing the value.
+   * @param offset offset of the first byte of the value.
+   * @param length number of bytes in the value.
+   * @param charset charset used to decode the value if needed.
+   * @return nano of the day.
+   */
+  public long parseNanoOfDay(byte[] buffer, int offset, int length, Charset charset) {
+    if (length >= 8 && buffer[offset + 2] == ':' && buffer[offset + 5] == ':' &&
+        (length == 8 || (length > 9 && length <= 18 && buffer[offset + 8] == '.'))) {
+      final int h1 = DateFieldParser.digit(buffer[offset]);
+      final int h2 = DateFieldParser.digit(buffer[offset + 1]);
+      final int m1 = DateFieldParser.digit(buffer[offset + 3]);
+      final int m2 = DateFieldParser.digit(buffer[offset + 4]);
+      final int s1 = DateFieldParser.digit(buffer[offset + 6]);
+      final int s2 = DateFieldParser.digit(buffer[offset + 7]);
+      int nanos = 0;
+      int check = h1 | h2 | m1 | m2 | s1 | s2;
+      for (int i = 9; i < 18; i++) {
+        final int digit = i < length ? DateFieldParser.digit(buffer[offset + i]) : 0;
+        check |= digit;
+        nanos = nanos * 10 + digit;
+      }
+      if (check >= 0) {
+        final long result = nanoOfDay(h1 * 10 + h2, m1 * 10 + m2, s1 * 10 + s2, nanos);
+        if (INVALID != result) {
+          return result;
+        }
+      }
+    }
+    return LocalTime.parse(new String(buffer, offset, length, charset)).toNanoOfDay();
   }
 }
@@ -0,0 +1,257 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static com.github.jcustenborder.parsers.elf.MappedElfParserTest.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AggregatorTest {
+  static final LocalDateTime START = LocalDateTime.of(2018, 2, 2, 23, 58, 0);
+  static final String[] HOSTS = {"example.com", "example.org", "example.net"};
+  static final String[] ACTIONS = {"TCP_HIT", "TCP_MISS", "TCP_DENIED"};
+
+  static String input(int lines) {
+    StringBuilder builder = new StringBuilder();
+    builder.append("#Fields: date time c-ip cs-host s-action sc-status sc-bytes time-taken\n");
+    for (int i = 0; i < lines; i++) {
+      LocalDateTime dateTime = START.plusSeconds(i);
+      builder.append(dateTime.toLocalDate()).append(' ')
+          .append(dateTime.toLocalTime()).append(i % 60 == 0 ? ":00" : "").append(' ')
+          .append("10.0.").append(i % 50).append('.').append(i % 7).append(' ')
+          .append(i % 11 == 0 ? "-" : HOSTS[i % HOSTS.length]).append(' ')
+          .append(ACTIONS[i % ACTIONS.length]).append(' ')
+          .append(i % 5 == 0 ? 404 : 200).append(' ')
+          .append(i % 13 == 0 ? "-" : Integer.toString(i * 10)).append(' ')
+          .append(i % 1000).append(".5\n");
+    }
+    return builder.toString();
+  }
+
+  static Aggregator aggregate(AggregatorBuilder builder, String input) throws IOException {
+    Aggregator aggregator = builder.build();
+    try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(input))) {
+      aggregator.aggregate(parser);
+    }
+    return aggregator;
+  }
+
+  @Test
+  public void groupBy() throws IOException {
+    final int lines = 1000;
+    Aggregator aggregator = aggregate(
+        AggregatorBuilder.of().groupBy("cs-host").sum("sc-bytes").distinct("c-ip"),
+        input(lines)
+    );
+    Map<String, Long> counts = new HashMap<>();
+    Map<String, Double> sums = new HashMap<>();
+    Map<String, Set<String>> ips = new HashMap<>();
+    for (int i = 0; i < lines; i++) {
+      String host = i % 11 == 0 ? null : HOSTS[i % HOSTS.length];
+      counts.merge(host, 1L, Long::sum);
+      sums.merge(host, i % 13 == 0 ? 0D : i * 10D, Double::sum);
+      ips.computeIfAbsent(host, k -> new HashSet<>()).add("10.0." + (i % 50) + "." + (i % 7));
+    }
+    List<AggregateRow> rows = aggregator.results();
+    assertEquals(4, rows.size());
+    assertEquals(4, aggregator.groupCount());
+    for (AggregateRow row : rows) {
+      String host = (String) row.groups().get("cs-host");
+      assertFalse(row.window().isPresent());
+      assertEquals((long) counts.get(host), row.count());
+      assertEquals(sums.get(host), row.sums().get("sc-bytes"));
+      long expected = ips.get(host).size();
+      long actual = row.distinctCounts().get("c-ip");
+      assertTrue(Math.abs(actual - expected) <= expected * 0.05, String.format("%s vs %s", actual, expected));
+    }
+    assertEquals(null, rows.get(0).groups().get("cs-host"));
+  }
+
+  @Test
+  public void window() throws IOException {
+    Aggregator aggregator = aggregate(
+        AggregatorBuilder.of().groupBy("s-action", "sc-status").window(Duration.ofMinutes(1)),
+        input(240)
+    );
+    List<AggregateRow> rows = aggregator.results();
+    List<LocalDateTime> windows = new ArrayList<>();
+    long total = 0;
+    for (AggregateRow row : rows) {
+      LocalDateTime window = row.window().get();
+      if (windows.isEmpty() || !windows.get(windows.size() - 1).equals(window)) {
+        windows.add(window);
+      }
+      assertTrue(row.groups().get("s-action") instanceof String);
+      assertTrue(row.groups().get("sc-status") instanceof Long);
+      total += row.count();
+    }
+    assertEquals(240, total);
+    assertEquals(
+        Arrays.asList(START, START.plusMinutes(1), START.plusMinutes(2), START.plusMinutes(3)),
+        windows
+    );
+    long first = rows.stream()
+        .filter(r -> r.window().get().equals(START))
+        .filter(r -> "TCP_HIT".equals(r.groups().get("s-action")))
+        .filter(r -> Long.valueOf(404).equals(r.groups().get("sc-status")))
+        .mapToLong(AggregateRow::count)
+        .sum();
+    // Lines 0, 15, 30 and 45 are TCP_HIT with a status of 404.
+    assertEquals(4, first);
+  }
+
+  @Test
+  public void windowDirectiveDate() throws IOException {
+    Aggregator aggregator = aggregate(
+        AggregatorBuilder.of().window(Duration.ofMinutes(1)),
+        "#Date: 2018-02-02 00:00:00\n" +
+            "#Fields: time sc-status\n" +
+            "23:59:30 200\n" +
+            "23:59:45 200\n" +
+            "#Date: 2018-02-03 00:00:00\n" +
+            "00:00:10 200\n"
+    );
+    List<AggregateRow> rows = aggregator.results();
+    assertEquals(2, rows.size());
+    assertEquals(START.plusMinutes(1), rows.get(0).window().get());
+    assertEquals(2, rows.get(0).count());
+    assertEquals(START.plusMinutes(2), rows.get(1).window().get());
+    assertEquals(1, rows.get(1).count());
+  }
+
+  @Test
+  public void quantiles() throws IOException {
+    Aggregator aggregator = aggregate(
+        AggregatorBuilder.of().quantiles("time-taken", 0D, 0.5D, 0.99D, 1D),
+        input(1000)
+    );
+    AggregateRow row = aggregator.results().get(0);
+    Map<Double, Double> quantiles = row.quantiles().get("time-taken");
+    assertEquals(Double.valueOf(0.5D), quantiles.get(0D));
+    assertEquals(Double.valueOf(999.5D), quantiles.get(1D));
+    assertEquals(499.5D, quantiles.get(0.5D), 499.5D * QuantileSketch.RELATIVE_ACCURACY);
+    assertEquals(989.5D, quantiles.get(0.99D), 989.5D * QuantileSketch.RELATIVE_ACCURACY);
+  }
+
+  @Test
+  public void sketches() {
+    Random random = new Random(1234);
+    QuantileSketch sketch = new QuantileSketch();
+    double[] values = new double[10000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = random.nextGaussian() * 100D;
+      sketch.add(values[i]);
+    }
+    sketch.add(0D);
+    Arrays.sort(values);
+    assertEquals(values.length + 1, sketch.count());
+    for (double quantile : new double[]{0.01D, 0.25D, 0.75D, 0.99D}) {
+      double expected = values[(int) (quantile * values.length)];
+      assertEquals(expected, sketch.quantile(quantile), Math.abs(expected) * 0.03D + 1D);
+    }
+
+    HyperLogLog left = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+    HyperLogLog right = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+    HyperLogLog small = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+    for (int i = 0; i < 100000; i++) {
+      (i % 2 == 0 ? left : right).add(HyperLogLog.hash("10.0.0." + i));
+      if (i < 10) {
+        small.add(HyperLogLog.hash("10.0.0." + i));
+      }
+    }
+    assertEquals(10, small.estimate());
+    long half = left.estimate();
+    assertTrue(Math.abs(half - 50000) < 50000 * 0.05, Long.toString(half));
+    left.merge(right);
+    left.merge(small);
+    long all = left.estimate();
+    assertTrue(Math.abs(all - 100000) < 100000 * 0.05, Long.toString(all));
+    small.merge(right);
+    assertTrue(Math.abs(small.estimate() - 50005) < 50005 * 0.05);
+    assertThrows(IllegalArgumentException.class, () -> left.merge(new HyperLogLog(10)));
+  }
+
+  @Test
+  public void merge() throws IOException {
+    final String input = input(3000);
+    AggregatorBuilder builder = AggregatorBuilder.of()
+        .groupBy("cs-host", "sc-status")
+        .window(Duration.ofMinutes(5))
+        .sum("sc-bytes")
+        .distinct("c-ip")
+        .quantiles("time-taken", 0.5D, 0.9D);
+    Aggregator expected = aggregate(builder, input);
+
+    Aggregator merged = builder.build();
+    Aggregator partial = merged.newPartial();
+    try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(input))) {
+      LogRecord record;
+      int i = 0;
+      while (null != (record = parser.nextRecord())) {
+        (i++ % 3 == 0 ? merged : partial).add(record);
+      }
+    }
+    merged.merge(partial);
+    assertEquals(new HashSet<>(expected.results()), new HashSet<>(merged.results()));
+
+    File file = write(input);
+    try (ElfParser parser = ElfParserBuilder.of()
+        .charset(StandardCharsets.UTF_8)
+        .chunkSize(4096)
+        .buildMapped(file)) {
+      Aggregator parallel = parser.stream().parallel().collect(expected.collector());
+      assertEquals(new HashSet<>(expected.results()), new HashSet<>(parallel.results()));
+    }
+
+    assertThrows(IllegalArgumentException.class, () -> merged.merge(merged));
+    assertThrows(IllegalArgumentException.class, () -> merged.merge(AggregatorBuilder.of().build()));
+  }
+
+  @Test
+  public void validation() {
+    assertThrows(IllegalArgumentException.class, () -> AggregatorBuilder.of().window(Duration.ZERO));
+    assertThrows(IllegalArgumentException.class, () -> AggregatorBuilder.of().quantiles("time-taken"));
+    assertThrows(IllegalArgumentException.class, () -> AggregatorBuilder.of().quantiles("time-taken", 1.5D));
+    assertThrows(IllegalArgumentException.class, () -> AggregatorBuilder.of().distinctPrecision(3));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> AggregatorBuilder.of().groupBy("a", "b", "c", "d", "e", "f", "g", "h", "i")
+    );
+    assertThrows(
+        IllegalStateException.class,
+        () -> aggregate(AggregatorBuilder.of().sum("cs-host"), input(10))
+    );
+  }
+}
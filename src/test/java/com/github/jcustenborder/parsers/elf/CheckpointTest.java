@@ -0,0 +1,144 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CheckpointTest {
+  static final String INPUT = ElfParserImplTest.SCHEMA_SWITCH;
+
+  static List<LogEntry> expected() throws IOException {
+    try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(INPUT))) {
+      return MappedElfParserTest.readAll(parser);
+    }
+  }
+
+  @Test
+  public void resume() throws IOException {
+    final List<LogEntry> expected = expected();
+    final File file = MappedElfParserTest.write(INPUT);
+    final List<Integer> lineNumbers = new ArrayList<>();
+    try (ElfParser parser = ElfParserBuilder.of().byteMode(true).build(file)) {
+      LogRecord record;
+      while (null != (record = parser.nextRecord())) {
+        lineNumbers.add(record.lineNumber());
+      }
+    }
+    for (int read = 0; read <= expected.size(); read++) {
+      final Checkpoint checkpoint;
+      try (ElfParser parser = ElfParserBuilder.of().byteMode(true).build(file)) {
+        for (int i = 0; i < read; i++) {
+          parser.nextRecord();
+        }
+        checkpoint = parser.checkpoint();
+      }
+      final List<LogEntry> remaining = expected.subList(read, expected.size());
+      try (ElfParser parser = ElfParserBuilder.of().build(file, checkpoint)) {
+        List<LogEntry> actual = new ArrayList<>();
+        LogRecord record;
+        while (null != (record = parser.nextRecord())) {
+          assertEquals(lineNumbers.get(read + actual.size()), (Integer) record.lineNumber());
+          actual.add(record.toLogEntry());
+        }
+        assertEquals(remaining, actual);
+      }
+      try (ElfParser parser = ElfParserBuilder.of()
+          .chunkSize(16)
+          .directiveMode(DirectiveMode.RESYNC)
+          .buildMapped(file, checkpoint)) {
+        assertEquals(remaining, MappedElfParserTest.readAll(parser));
+      }
+    }
+  }
+
+  @Test
+  public void offsets() throws IOException {
+    final File file = MappedElfParserTest.write(INPUT);
+    try (ElfParser parser = ElfParserBuilder.of().byteMode(true).build(file)) {
+      LogRecord record;
+      while (null != (record = parser.nextRecord())) {
+        final int offset = (int) record.offset();
+        assertEquals('\n', INPUT.charAt(offset - 1));
+        assertEquals(record.lineNumber(), INPUT.substring(0, offset).split("\n", -1).length);
+      }
+    }
+    try (ElfParser parser = ElfParserBuilder.of().byteMode(true).build(file)) {
+      LogBatch batch = parser.newBatch(10);
+      assertEquals(2, parser.nextBatch(batch));
+      assertEquals(INPUT.indexOf("2018-02-02 22:19:11"), batch.offsets()[0]);
+      assertEquals(INPUT.indexOf("2018-02-02 22:19:12"), batch.offsets()[1]);
+      // The directives before the next row have been read, so the checkpoint has the new fields.
+      final Checkpoint checkpoint = parser.checkpoint();
+      assertEquals(INPUT.indexOf("2018-02-03 1234"), checkpoint.offset());
+      assertEquals(Arrays.asList("date", "sc-bytes", "cs-host"), checkpoint.fieldNames());
+      assertEquals("2018-02-03 00:00:00", checkpoint.directives().get("Date"));
+    }
+  }
+
+  @Test
+  public void invalid() throws IOException {
+    final File file = MappedElfParserTest.write(INPUT);
+    final Checkpoint checkpoint = ImmutableCheckpoint.builder()
+        .offset(INPUT.indexOf("22:19:12"))
+        .lineNumber(4)
+        .addFieldNames("date")
+        .build();
+    assertThrows(IllegalStateException.class, () -> ElfParserBuilder.of().build(file, checkpoint));
+    assertThrows(IllegalStateException.class, () -> ElfParserBuilder.of().buildMapped(file, checkpoint));
+    final Checkpoint past = ImmutableCheckpoint.copyOf(checkpoint).withOffset(INPUT.length() + 1);
+    assertThrows(IllegalStateException.class, () -> ElfParserBuilder.of().build(file, past));
+    try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(INPUT))) {
+      assertThrows(UnsupportedOperationException.class, parser::checkpoint);
+    }
+  }
+
+  @Test
+  public void follow() throws Exception {
+    final File file = MappedElfParserTest.write(FollowingElfParserTest.HEADER + "2018-02-02 22:19:11 200\n");
+    final Checkpoint checkpoint;
+    try (ElfParser parser = ElfParserBuilder.of().buildFollowing(file)) {
+      assertEquals(200L, parser.next().fieldData().get("sc-status"));
+      checkpoint = parser.checkpoint();
+    }
+    Files.write(
+        file.toPath(),
+        "2018-02-02 22:19:12 404\n".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND
+    );
+    try (ElfParser parser = ElfParserBuilder.of()
+        .pollInterval(1, TimeUnit.MILLISECONDS)
+        .buildFollowing(file, checkpoint)) {
+      assertEquals(checkpoint, parser.checkpoint());
+      final LogRecord record = parser.nextRecord();
+      assertEquals(404L, record.getLong(record.fieldIndex("sc-status")));
+      assertEquals(4, record.lineNumber());
+    }
+  }
+}
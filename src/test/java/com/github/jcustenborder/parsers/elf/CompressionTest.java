@@ -0,0 +1,199 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CompressionTest {
+  interface Compressor {
+    OutputStream wrap(OutputStream outputStream) throws IOException;
+  }
+
+  static String input(int lines) {
+    StringBuilder builder = new StringBuilder("#Software: Microsoft Internet Information Services 10.0\n" +
+        "#Fields: date time cs-method cs-uri-stem sc-status sc-bytes time-taken\n");
+    for (int i = 0; i < lines; i++) {
+      builder.append(String.format("2018-02-02 22:%02d:%02d GET /page/%s 200 %s 0.%s\n", (i / 60) % 60, i % 60, i,
+          i * 7, i % 10));
+    }
+    return builder.toString();
+  }
+
+  static byte[] compress(Compressor compressor, byte[] data, int offset, int length) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (OutputStream compressed = compressor.wrap(outputStream)) {
+      compressed.write(data, offset, length);
+    }
+    return outputStream.toByteArray();
+  }
+
+  /**
+   * Method is used to compress data as a gzip file with a member for every memberSize bytes.
+   */
+  static byte[] gzipMembers(byte[] data, int memberSize) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    for (int offset = 0; offset < data.length; offset += memberSize) {
+      outputStream.write(compress(GZIPOutputStream::new, data, offset, Math.min(memberSize, data.length - offset)));
+    }
+    return outputStream.toByteArray();
+  }
+
+  static File write(byte[] data) throws IOException {
+    File file = File.createTempFile("elf", ".log.gz");
+    file.deleteOnExit();
+    Files.write(file.toPath(), data);
+    return file;
+  }
+
+  static List<LogEntry> expected(String input) throws IOException {
+    try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(input))) {
+      return MappedElfParserTest.readAll(parser);
+    }
+  }
+
+  @Test
+  public void detect() {
+    assertEquals(Compression.GZIP, Compression.detect(new byte[]{0x1F, (byte) 0x8B, 8, 0}, 4));
+    assertEquals(Compression.BZIP2, Compression.detect("BZh9".getBytes(StandardCharsets.US_ASCII), 4));
+    assertEquals(
+        Compression.ZSTD,
+        Compression.detect(new byte[]{0x28, (byte) 0xB5, 0x2F, (byte) 0xFD}, 4)
+    );
+    assertEquals(Compression.NONE, Compression.detect("#Fie".getBytes(StandardCharsets.US_ASCII), 4));
+    assertEquals(Compression.NONE, Compression.detect(new byte[]{0x1F}, 1));
+  }
+
+  @Test
+  public void gzip() throws IOException {
+    final String input = input(2000);
+    final byte[] data = input.getBytes(StandardCharsets.UTF_8);
+    final List<LogEntry> expected = expected(input);
+    final byte[][] files = new byte[][]{
+        compress(GZIPOutputStream::new, data, 0, data.length),
+        gzipMembers(data, 1000)
+    };
+    for (byte[] compressed : files) {
+      File file = write(compressed);
+      try (ElfParser parser = ElfParserBuilder.of().build(file)) {
+        assertEquals(expected, MappedElfParserTest.readAll(parser));
+      }
+      try (ElfParser parser = ElfParserBuilder.of().byteMode(true).build(file.toPath())) {
+        assertEquals(expected, MappedElfParserTest.readAll(parser));
+      }
+      try (ElfParser parser = ElfParserBuilder.of().buildMapped(file)) {
+        assertEquals(expected, MappedElfParserTest.readAll(parser));
+      }
+    }
+  }
+
+  @Test
+  public void bzip2() throws IOException {
+    final String input = input(500);
+    final byte[] data = input.getBytes(StandardCharsets.UTF_8);
+    File file = write(compress(BZip2CompressorOutputStream::new, data, 0, data.length));
+    try (ElfParser parser = ElfParserBuilder.of().byteMode(true).build(file)) {
+      assertEquals(expected(input), MappedElfParserTest.readAll(parser));
+    }
+  }
+
+  static byte[] parallel(byte[] compressed, int segmentSize, long maxSegmentOutput) throws IOException {
+    final File file = write(compressed);
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      new ParallelGzip(channel, pool, segmentSize, maxSegmentOutput).decompress(outputStream);
+      return outputStream.toByteArray();
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void parallelGzip() throws IOException {
+    // Segments of a few hundred bytes split small inputs into many segments and members across segment boundaries.
+    final byte[] data = input(1000).getBytes(StandardCharsets.UTF_8);
+    for (int memberSize : new int[]{100, 1024, 8192, data.length}) {
+      final byte[] compressed = gzipMembers(data, memberSize);
+      for (int segmentSize : new int[]{64, 512, 4096}) {
+        assertArrayEquals(data, parallel(compressed, segmentSize, 1024 * 1024), "memberSize = " + memberSize);
+        // Segments that are too large are inflated by the calling thread.
+        assertArrayEquals(data, parallel(compressed, segmentSize, 5000), "memberSize = " + memberSize);
+      }
+    }
+  }
+
+  @Test
+  public void parallelGzipTrailingData() throws IOException {
+    final byte[] data = input(1000).getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    outputStream.write(gzipMembers(data, 1000));
+    outputStream.write(new byte[512]);
+    assertArrayEquals(data, parallel(outputStream.toByteArray(), 256, 1024 * 1024));
+  }
+
+  @Test
+  public void corrupt() throws IOException {
+    final byte[] data = input(1000).getBytes(StandardCharsets.UTF_8);
+    final byte[] compressed = gzipMembers(data, 1000);
+    compressed[compressed.length / 2] ^= 0x55;
+    assertThrows(IOException.class, () -> parallel(compressed, 256, 1024 * 1024));
+    File file = write(compressed);
+    assertThrows(IOException.class, () -> {
+      try (ElfParser parser = ElfParserBuilder.of().byteMode(true).build(file)) {
+        MappedElfParserTest.readAll(parser);
+      }
+    });
+  }
+
+  @Test
+  public void checkpoint() throws IOException {
+    final byte[] data = input(10).getBytes(StandardCharsets.UTF_8);
+    File file = write(compress(GZIPOutputStream::new, data, 0, data.length));
+    final Checkpoint checkpoint;
+    try (ElfParser parser = ElfParserBuilder.of().byteMode(true).build(file)) {
+      parser.next();
+      checkpoint = parser.checkpoint();
+    }
+    assertThrows(IllegalStateException.class, () -> ElfParserBuilder.of().build(file, checkpoint));
+  }
+
+  @Test
+  public void closeBeforeEnd() throws IOException {
+    final byte[] data = input(5000).getBytes(StandardCharsets.UTF_8);
+    File file = write(compress(GZIPOutputStream::new, data, 0, data.length));
+    try (ElfParser parser = ElfParserBuilder.of().byteMode(true).build(file)) {
+      assertEquals(200L, parser.next().fieldData().get("sc-status"));
+    }
+  }
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static com.github.jcustenborder.parsers.elf.MappedElfParserTest.readAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+public class ElfArchiveTest {
+  static final String INPUT = "#Software: test\n" +
+      "#Fields: date time sc-status time-taken cs-uri-stem\n" +
+      "2018-02-02 22:19:11 200 0.1 /a\n" +
+      "2018-02-02 22:19:12 404 - /b\n" +
+      "2018-02-03 22:19:13 200 0.3 /a\n" +
+      "2018-02-03 22:19:14 500 0.4 -\n" +
+      "2018-02-04 22:19:15 200 0.5 /c\n";
+
+  static File archive(String input, int blockSize, ElfParserBuilder builder) throws IOException {
+    File file = File.createTempFile("elf", ".elfa");
+    file.deleteOnExit();
+    try (ElfParser parser = builder.build(new StringReader(input));
+         ElfArchiveWriter writer = new ElfArchiveWriter(new FileOutputStream(file), blockSize)) {
+      writer.write(parser);
+    }
+    return file;
+  }
+
+  static List<Map<String, Object>> values(List<LogEntry> entries) {
+    List<Map<String, Object>> result = new ArrayList<>();
+    for (LogEntry entry : entries) {
+      Map<String, Object> values = new LinkedHashMap<>();
+      for (String fieldName : entry.fieldTypes().keySet()) {
+        values.put(fieldName, entry.fieldData().get(fieldName));
+      }
+      result.add(values);
+    }
+    return result;
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> roundTrip() {
+    ObjectMapper objectMapper = new ObjectMapper();
+    File inputRoot = new File("src/test/resources/com/github/jcustenborder/parsers/elf/");
+    return Arrays.stream(inputRoot.listFiles(f -> f.getName().endsWith(".json")))
+        .map(inputFile -> dynamicTest(inputFile.getName(), () -> {
+          ElfParserTestCase testCase = objectMapper.readValue(inputFile, ElfParserTestCase.class);
+          final List<LogEntry> expected;
+          final Map<String, String> directives;
+          try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(testCase.input))) {
+            expected = readAll(parser);
+            directives = parser.directives();
+          }
+          for (int blockSize : new int[]{1, 3, ElfArchiveWriter.DEFAULT_BLOCK_SIZE}) {
+            File file = archive(testCase.input, blockSize, ElfParserBuilder.of());
+            try (ElfParser parser = ElfParserBuilder.of().buildArchive(file)) {
+              assertEquals(expected.get(0).fieldTypes(), parser.fieldTypes());
+              assertEquals(directives, parser.directives());
+              assertEquals(values(expected), values(readAll(parser)));
+            }
+          }
+        }));
+  }
+
+  @Test
+  public void records() throws IOException {
+    File file = archive(INPUT, 2, ElfParserBuilder.of());
+    try (ElfParser parser = ElfParserBuilder.of().buildArchive(file)) {
+      LogRecord record = parser.nextRecord();
+      assertEquals(3, record.lineNumber());
+      assertEquals(LocalDate.of(2018, 2, 2).toEpochDay(), record.getLong(0));
+      assertEquals(200L, record.getLong(2));
+      assertEquals(0.1D, record.getDouble(3));
+      assertEquals("/a", record.getCharSequence(4).toString());
+      record = parser.nextRecord();
+      assertTrue(record.isNull(3));
+      assertThrows(IllegalStateException.class, () -> parser.nextRecord().getInt(2));
+    }
+  }
+
+  @Test
+  public void batches() throws IOException {
+    File file = archive(INPUT, 2, ElfParserBuilder.of());
+    try (ElfParser parser = ElfParserBuilder.of().project("sc-status", "cs-uri-stem").buildArchive(file)) {
+      LogBatch batch = parser.newBatch(16);
+      assertEquals(5, parser.nextBatch(batch));
+      assertEquals(2, batch.columnCount());
+      assertEquals(Arrays.asList(200L, 404L, 200L, 500L, 200L), Arrays.asList(
+          batch.getObject(0, 0), batch.getObject(0, 1), batch.getObject(0, 2), batch.getObject(0, 3),
+          batch.getObject(0, 4)
+      ));
+      assertNull(batch.getObject(1, 3));
+      assertEquals(0, parser.nextBatch(batch));
+    }
+  }
+
+  @Test
+  public void filters() throws IOException {
+    File file = archive(INPUT, 2, ElfParserBuilder.of());
+    final long day = LocalDate.of(2018, 2, 3).toEpochDay();
+    try (ElfParser parser = ElfParserBuilder.of()
+        .project("cs-uri-stem")
+        .filterRange("date", day, day)
+        .filterRaw("cs-uri-stem", v -> null != v)
+        .buildArchive(file)) {
+      List<LogEntry> entries = readAll(parser);
+      assertEquals(1, entries.size());
+      assertEquals("/a", entries.get(0).fieldData().get("cs-uri-stem"));
+      assertEquals(1, entries.get(0).fieldData().size());
+    }
+    try (ElfParser parser = ElfParserBuilder.of().filterRange("sc-status", 300, 600).buildArchive(file)) {
+      assertEquals(2, readAll(parser).size());
+    }
+    try (ElfParser parser = ElfParserBuilder.of().filterRange("sc-status", 0, 100).buildArchive(file)) {
+      assertEquals(0, readAll(parser).size());
+    }
+    assertThrows(
+        IllegalStateException.class,
+        () -> ElfParserBuilder.of().filterRange("cs-uri-stem", 0, 100).buildArchive(file)
+    );
+    assertThrows(IllegalStateException.class, () -> ElfParserBuilder.of().project("missing").buildArchive(file));
+  }
+
+  @Test
+  public void projectionSkipsColumns() throws IOException {
+    File file = archive(INPUT, ElfArchiveWriter.DEFAULT_BLOCK_SIZE, ElfParserBuilder.of());
+    byte[] bytes = Files.readAllBytes(file.toPath());
+    long footerLength = ByteBuffer.wrap(bytes, bytes.length - ArchiveFormat.TRAILER_SIZE, 8).getLong();
+    ArchiveFormat.Footer footer;
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(
+        bytes, (int) (bytes.length - ArchiveFormat.TRAILER_SIZE - footerLength), (int) footerLength))) {
+      footer = ArchiveFormat.Footer.read(input);
+    }
+    ArchiveFormat.Block block = footer.blocks.get(0);
+    try (RandomAccessFile corrupt = new RandomAccessFile(file, "rw")) {
+      corrupt.seek(block.position(4));
+      corrupt.write(new byte[block.lengths[4]]);
+    }
+    try (ElfParser parser = ElfParserBuilder.of().project("sc-status").buildArchive(file)) {
+      assertEquals(5, readAll(parser).size());
+    }
+    try (ElfParser parser = ElfParserBuilder.of().buildArchive(file)) {
+      assertThrows(IOException.class, () -> readAll(parser));
+    }
+  }
+
+  @Test
+  public void timestamp() throws IOException {
+    File file = archive(INPUT, 2, ElfParserBuilder.of().timestamp("ts", TimestampType.INSTANT).project("ts"));
+    try (ElfParser parser = ElfParserBuilder.of().buildArchive(file)) {
+      assertEquals(Instant.class, parser.fieldTypes().get("ts"));
+      assertEquals(Instant.parse("2018-02-02T22:19:11Z"), parser.next().fieldData().get("ts"));
+    }
+  }
+
+  @Test
+  public void schemaChange() throws IOException {
+    File file = File.createTempFile("elf", ".elfa");
+    file.deleteOnExit();
+    try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(MappedElfParserTest.SCHEMA_CHANGE));
+         ElfArchiveWriter writer = new ElfArchiveWriter(file)) {
+      assertThrows(IllegalStateException.class, () -> writer.write(parser));
+    }
+  }
+
+  @Test
+  public void notAnArchive() throws IOException {
+    File file = MappedElfParserTest.write(INPUT);
+    assertThrows(IOException.class, () -> ElfParserBuilder.of().buildArchive(file));
+  }
+
+  @Test
+  public void empty() throws IOException {
+    File file = File.createTempFile("elf", ".elfa");
+    file.deleteOnExit();
+    new ElfArchiveWriter(file).close();
+    try (ElfParser parser = ElfParserBuilder.of().buildArchive(file)) {
+      assertEquals(0, parser.fieldTypes().size());
+      assertNull(parser.next());
+    }
+  }
+}
@@ -0,0 +1,239 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.github.jcustenborder.parsers.elf.MappedElfParserTest.readAll;
+import static com.github.jcustenborder.parsers.elf.MappedElfParserTest.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ElfIndexTest {
+  static final LocalDateTime START = LocalDateTime.of(2018, 2, 2, 23, 0, 0);
+
+  static String input(int lines) {
+    StringBuilder builder = new StringBuilder();
+    builder.append("#Software: test\n");
+    builder.append("#Fields: date time c-ip sc-status\n");
+    for (int i = 0; i < lines; i++) {
+      if (i == lines / 2) {
+        builder.append("#Fields: date time c-ip sc-status cs-host\n");
+      }
+      LocalDateTime dateTime = START.plusMinutes(i);
+      builder.append(dateTime.toLocalDate()).append(' ')
+          .append(dateTime.toLocalTime()).append(":00 ")
+          .append("10.0.0.").append(i % 7).append(' ')
+          .append(i % 5 == 0 ? 404 : 200);
+      if (i >= lines / 2) {
+        builder.append(" host").append(i % 3);
+      }
+      builder.append('\n');
+    }
+    return builder.toString();
+  }
+
+  static LocalDateTime dateTime(LogEntry entry) {
+    return LocalDateTime.of(
+        (LocalDate) entry.fieldData().get("date"),
+        (LocalTime) entry.fieldData().get("time")
+    );
+  }
+
+  static List<LogEntry> scan(File file) throws IOException {
+    try (ElfParser parser = ElfParserBuilder.of().build(file)) {
+      return readAll(parser);
+    }
+  }
+
+  @Test
+  public void schemaSwitchBatch() throws IOException {
+    File file = write(input(200));
+    ElfIndex index = ElfParserBuilder.of().buildIndex(file, 16, "c-ip");
+    try (ElfParser parser = ElfParserBuilder.of().build(file, index, START, START.plusDays(1))) {
+      LogBatchTest.assertBatches(scan(file), parser);
+    }
+  }
+
+  @Test
+  public void timeRange() throws IOException {
+    File file = write(input(200));
+    ElfIndex index = ElfParserBuilder.of().buildIndex(file, 16, "c-ip");
+    assertEquals(13, index.blockCount());
+    assertEquals(16, index.interval());
+    assertTrue(ElfIndex.sidecar(file).exists());
+
+    LocalDateTime from = START.plusMinutes(37);
+    LocalDateTime to = START.plusMinutes(51);
+    List<LogEntry> expected = scan(file).stream()
+        .filter(e -> !dateTime(e).isBefore(from) && !dateTime(e).isAfter(to))
+        .collect(Collectors.toList());
+    assertEquals(15, expected.size());
+    try (ElfParser parser = ElfParserBuilder.of().build(file, index, from, to)) {
+      assertEquals(expected, readAll(parser));
+    }
+    int blocks = 0;
+    for (int block = 0; block < index.blockCount(); block++) {
+      if (index.overlaps(block, from, to)) {
+        blocks++;
+      }
+    }
+    assertEquals(2, blocks);
+  }
+
+  @Test
+  public void directiveDate() throws IOException {
+    StringBuilder builder = new StringBuilder();
+    builder.append("#Software: test\n");
+    builder.append("#Date: ").append(START.toLocalDate()).append(" 23:00:00\n");
+    builder.append("#Fields: time c-ip sc-status\n");
+    for (int i = 0; i < 200; i++) {
+      LocalDateTime dateTime = START.plusMinutes(i);
+      if (i > 0 && dateTime.toLocalTime().equals(LocalTime.MIDNIGHT)) {
+        builder.append("#Date: ").append(dateTime.toLocalDate()).append(" 00:00:00\n");
+      }
+      builder.append(dateTime.toLocalTime()).append(":00 10.0.0.").append(i % 7).append(" 200\n");
+    }
+    File file = write(builder.toString());
+    ElfIndex index = ElfParserBuilder.of().buildIndex(file, 16);
+
+    LocalDateTime from = START.plusMinutes(50);
+    LocalDateTime to = START.plusMinutes(70);
+    try (ElfParser parser = ElfParserBuilder.of().build(file, index, from, to)) {
+      assertEquals(scan(file).subList(50, 71), readAll(parser));
+    }
+    int blocks = 0;
+    for (int block = 0; block < index.blockCount(); block++) {
+      if (index.overlaps(block, from, to)) {
+        blocks++;
+      }
+    }
+    assertEquals(2, blocks);
+  }
+
+  @Test
+  public void dateOnly() throws IOException {
+    StringBuilder builder = new StringBuilder();
+    builder.append("#Software: test\n");
+    builder.append("#Fields: date c-ip sc-status\n");
+    for (int i = 0; i < 150; i++) {
+      builder.append(START.toLocalDate().plusDays(i / 50)).append(" 10.0.0.").append(i % 7).append(" 200\n");
+    }
+    File file = write(builder.toString());
+    ElfIndex index = ElfParserBuilder.of().buildIndex(file, 16);
+
+    LocalDateTime from = START.toLocalDate().plusDays(1).atTime(14, 0);
+    LocalDateTime to = from.plusMinutes(5);
+    try (ElfParser parser = ElfParserBuilder.of().build(file, index, from, to)) {
+      assertEquals(scan(file).subList(50, 100), readAll(parser));
+    }
+  }
+
+  @Test
+  public void bloom() throws IOException {
+    File file = write(input(200));
+    ElfIndex index = ElfParserBuilder.of().buildIndex(file, 16, "c-ip", "cs-host");
+    List<LogEntry> expected = scan(file).stream()
+        .filter(e -> "host1".equals(e.fieldData().get("cs-host")))
+        .collect(Collectors.toList());
+    assertFalse(expected.isEmpty());
+    try (ElfParser parser = ElfParserBuilder.of().build(file, index, "cs-host", "host1")) {
+      assertEquals(expected, readAll(parser));
+    }
+    assertFalse(index.mightContain(0, "cs-host", "host1"));
+    assertTrue(index.mightContain(12, "cs-host", "host1"));
+    int blocks = 0;
+    for (int block = 0; block < index.blockCount(); block++) {
+      if (index.mightContain(block, "c-ip", "10.0.0.99")) {
+        blocks++;
+      }
+    }
+    assertTrue(blocks <= 1, "bloom filters should reject a missing value");
+    assertThrows(IllegalArgumentException.class, () -> index.mightContain(0, "sc-status", "200"));
+    assertThrows(IllegalArgumentException.class, () -> ElfParserBuilder.of().build(file, index, "sc-status", "200"));
+  }
+
+  @Test
+  public void sidecar() throws IOException {
+    File file = write(input(100));
+    ElfIndex expected = ElfParserBuilder.of().buildIndex(file, 10, "c-ip");
+    ElfIndex actual = ElfIndex.read(ElfIndex.sidecar(file));
+    assertEquals(expected.interval(), actual.interval());
+    assertEquals(expected.blockCount(), actual.blockCount());
+    assertEquals(expected.bloomFields(), actual.bloomFields());
+    for (int block = 0; block <= expected.blockCount(); block++) {
+      assertEquals(expected.checkpoint(block), actual.checkpoint(block));
+    }
+    LocalDateTime from = START.plusMinutes(12);
+    LocalDateTime to = START.plusMinutes(88);
+    for (int block = 0; block < expected.blockCount(); block++) {
+      assertEquals(expected.overlaps(block, from, to), actual.overlaps(block, from, to));
+      assertEquals(expected.mightContain(block, "c-ip", "10.0.0.3"), actual.mightContain(block, "c-ip", "10.0.0.3"));
+    }
+    try (ElfParser e = ElfParserBuilder.of().build(file, expected, from, to);
+         ElfParser a = ElfParserBuilder.of().build(file, actual, from, to)) {
+      assertEquals(readAll(e), readAll(a));
+    }
+    assertThrows(IOException.class, () -> ElfIndex.read(file));
+  }
+
+  @Test
+  public void appended() throws IOException {
+    File file = write(input(50));
+    ElfIndex index = ElfParserBuilder.of().buildIndex(file, 8);
+    LocalDateTime late = START.plusMinutes(500);
+    Files.write(
+        file.toPath(),
+        String.format("%s %s:00 10.0.0.1 200 host0\n", late.toLocalDate(), late.toLocalTime())
+            .getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND
+    );
+    try (ElfParser parser = ElfParserBuilder.of().build(file, index, late, late)) {
+      List<LogEntry> entries = readAll(parser);
+      assertEquals(1, entries.size());
+      assertEquals(late, dateTime(entries.get(0)));
+    }
+  }
+
+  @Test
+  public void truncated() throws IOException {
+    File file = write(input(50));
+    ElfIndex index = ElfParserBuilder.of().buildIndex(file, 8);
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      randomAccessFile.setLength(file.length() / 2);
+    }
+    assertThrows(IllegalStateException.class, () -> ElfParserBuilder.of().build(file, index, START, START));
+  }
+
+  @Test
+  public void interval() {
+    assertThrows(IllegalArgumentException.class, () -> ElfParserBuilder.of().buildIndex(new File("missing"), 0));
+  }
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static com.github.jcustenborder.parsers.elf.MappedElfParserTest.readAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+public class ElfJsonWriterTest {
+  static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  static String json(ElfParser parser, boolean writeFieldTypes) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (ElfJsonWriter writer = new ElfJsonWriter(outputStream, writeFieldTypes)) {
+      writer.write(parser);
+    }
+    return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  static String time(LocalTime time) {
+    String result = time.toString();
+    return result.length() == 5 ? result + ":00" : result;
+  }
+
+  static Map<String, Object> values(JsonNode node) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      JsonNode value = field.getValue();
+      result.put(
+          field.getKey(),
+          value.isNull() ? null : value.isIntegralNumber() ? value.longValue() : value.isNumber() ?
+              value.doubleValue() : value.asText()
+      );
+    }
+    return result;
+  }
+
+  static Map<String, Object> expected(LogEntry entry) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    for (String fieldName : entry.fieldTypes().keySet()) {
+      Object value = entry.fieldData().get(fieldName);
+      if (value instanceof Integer) {
+        value = ((Integer) value).longValue();
+      } else if (value instanceof LocalDate) {
+        value = value.toString();
+      } else if (value instanceof LocalTime) {
+        value = time((LocalTime) value);
+      }
+      result.put(fieldName, value);
+    }
+    return result;
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> roundTrip() {
+    File inputRoot = new File("src/test/resources/com/github/jcustenborder/parsers/elf/");
+    return Arrays.stream(inputRoot.listFiles(f -> f.getName().endsWith(".json")))
+        .map(inputFile -> dynamicTest(inputFile.getName(), () -> {
+          ElfParserTestCase testCase = OBJECT_MAPPER.readValue(inputFile, ElfParserTestCase.class);
+          final List<LogEntry> entries;
+          try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(testCase.input))) {
+            entries = readAll(parser);
+          }
+          final String json;
+          try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(testCase.input))) {
+            json = json(parser, true);
+          }
+          List<Map<String, Object>> expected = new ArrayList<>();
+          Map<String, Class<?>> fieldTypes = null;
+          for (LogEntry entry : entries) {
+            if (!entry.fieldTypes().equals(fieldTypes)) {
+              fieldTypes = entry.fieldTypes();
+              Map<String, Object> types = new LinkedHashMap<>();
+              fieldTypes.forEach((k, v) -> types.put(k, v.getName()));
+              Map<String, Object> line = new LinkedHashMap<>();
+              line.put(ElfJsonWriter.FIELD_TYPES, types);
+              expected.add(line);
+            }
+            expected.add(expected(entry));
+          }
+          List<Map<String, Object>> actual = new ArrayList<>();
+          for (String line : json.split("\n")) {
+            if (line.isEmpty()) {
+              continue;
+            }
+            JsonNode node = OBJECT_MAPPER.readTree(line);
+            actual.add(
+                node.has(ElfJsonWriter.FIELD_TYPES) ?
+                    OBJECT_MAPPER.convertValue(node, Map.class) : values(node)
+            );
+          }
+          assertEquals(expected, actual);
+
+          File file = MappedElfParserTest.write(testCase.input);
+          try (ElfParser parser = ElfParserBuilder.of()
+              .byteMode(true)
+              .charset(StandardCharsets.UTF_8)
+              .build(file)) {
+            assertEquals(json, json(parser, true));
+          }
+        }));
+  }
+
+  @Test
+  public void fieldTypes() throws IOException {
+    String input = MappedElfParserTest.SCHEMA_CHANGE;
+    try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(input))) {
+      String[] lines = json(parser, true).split("\n");
+      assertEquals(5, lines.length);
+      assertEquals(
+          "{\"#fieldTypes\":{\"date\":\"java.time.LocalDate\",\"time\":\"java.time.LocalTime\"," +
+              "\"sc-status\":\"java.lang.Long\"}}",
+          lines[0]
+      );
+      assertEquals("{\"date\":\"2018-02-02\",\"time\":\"22:19:11\",\"sc-status\":200}", lines[1]);
+      assertTrue(lines[3].startsWith("{\"#fieldTypes\":{\"date\":"), lines[3]);
+      assertEquals("{\"date\":\"2018-02-03\",\"sc-bytes\":1234,\"cs-host\":\"example.com\"}", lines[4]);
+    }
+    try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(input))) {
+      assertEquals(3, json(parser, false).split("\n").length);
+    }
+  }
+
+  @Test
+  public void values() throws IOException {
+    String text = "a\"b\\c\n\r\t\u0001 é ☃ 😀";
+    LogEntry entry = ImmutableLogEntry.builder()
+        .putFieldTypes("text", String.class)
+        .putFieldTypes("nothing", String.class)
+        .putFieldTypes("one", Double.class)
+        .putFieldTypes("negativeZero", Double.class)
+        .putFieldTypes("large", Double.class)
+        .putFieldTypes("fraction", Double.class)
+        .putFieldTypes("nan", Double.class)
+        .putFieldTypes("min", Long.class)
+        .putFieldTypes("port", Integer.class)
+        .putFieldTypes("time", LocalTime.class)
+        .putFieldData("text", text)
+        .putFieldData("nothing", null)
+        .putFieldData("one", 1D)
+        .putFieldData("negativeZero", -0D)
+        .putFieldData("large", 12345678D)
+        .putFieldData("fraction", 0.1D)
+        .putFieldData("nan", Double.NaN)
+        .putFieldData("min", Long.MIN_VALUE)
+        .putFieldData("port", 8080)
+        .putFieldData("time", LocalTime.of(1, 2, 3, 4000))
+        .build();
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ElfJsonWriter writer = new ElfJsonWriter(outputStream, false);
+    writer.write(entry);
+    assertEquals(1, writer.rowCount());
+    writer.close();
+    assertThrows(IllegalStateException.class, () -> writer.write(entry));
+    String json = new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    assertEquals(
+        "{\"text\":\"a\\\"b\\\\c\\n\\r\\t\\u0001 é ☃ 😀\",\"nothing\":null,\"one\":1.0," +
+            "\"negativeZero\":-0.0,\"large\":1.2345678E7,\"fraction\":0.1,\"nan\":\"NaN\"," +
+            "\"min\":-9223372036854775808,\"port\":8080,\"time\":\"01:02:03.000004\"}\n",
+        json
+    );
+    JsonNode node = OBJECT_MAPPER.readTree(json);
+    assertEquals(text, node.get("text").asText());
+  }
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+public class ElfParserBuilderTest {
+
+  static LogEntry project(LogEntry entry, List<String> fieldNames) {
+    Map<String, Class<?>> fieldTypes = new LinkedHashMap<>();
+    Map<String, Object> fieldData = new LinkedHashMap<>();
+    for (Map.Entry<String, Class<?>> e : entry.fieldTypes().entrySet()) {
+      if (fieldNames.contains(e.getKey())) {
+        fieldTypes.put(e.getKey(), e.getValue());
+        if (entry.fieldData().containsKey(e.getKey())) {
+          fieldData.put(e.getKey(), entry.fieldData().get(e.getKey()));
+        }
+      }
+    }
+    return ImmutableLogEntry.builder()
+        .fieldTypes(fieldTypes)
+        .fieldData(fieldData)
+        .build();
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> projection() {
+    ObjectMapper objectMapper = new ObjectMapper();
+    File inputRoot = new File("src/test/resources/com/github/jcustenborder/parsers/elf/");
+    return Arrays.stream(inputRoot.listFiles(f -> f.getName().endsWith(".json")))
+        .map(inputFile -> dynamicTest(inputFile.getName(), () -> {
+          ElfParserTestCase testCase = objectMapper.readValue(inputFile, ElfParserTestCase.class);
+          final List<LogEntry> entries;
+          try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(testCase.input))) {
+            entries = MappedElfParserTest.readAll(parser);
+          }
+          final List<String> fieldNames = new ArrayList<>(entries.get(0).fieldTypes().keySet());
+          // Every other field, requested in reverse order.
+          final List<String> projected = new ArrayList<>();
+          final List<Integer> indexes = new ArrayList<>();
+          for (int i = fieldNames.size() - 1; i >= 0; i -= 2) {
+            projected.add(fieldNames.get(i));
+            indexes.add(i);
+          }
+          final List<LogEntry> expected = new ArrayList<>();
+          for (LogEntry entry : entries) {
+            expected.add(project(entry, projected));
+          }
+
+          try (ElfParser parser = ElfParserBuilder.of()
+              .project(projected.toArray(new String[0]))
+              .build(new StringReader(testCase.input))) {
+            assertEquals(expected.get(0).fieldTypes(), parser.fieldTypes());
+            assertEquals(expected, MappedElfParserTest.readAll(parser));
+          }
+          try (ElfParser parser = ElfParserBuilder.of()
+              .project(indexes.stream().mapToInt(Integer::intValue).toArray())
+              .byteMode(true)
+              .charset(StandardCharsets.UTF_8)
+              .build(new ByteArrayInputStream(testCase.input.getBytes(StandardCharsets.UTF_8)))) {
+            assertEquals(expected, MappedElfParserTest.readAll(parser));
+          }
+          File file = MappedElfParserTest.write(testCase.input);
+          try (ElfParser parser = ElfParserBuilder.of()
+              .project(projected.toArray(new String[0]))
+              .charset(StandardCharsets.UTF_8)
+              .chunkSize(100)
+              .directiveMode(DirectiveMode.RESYNC)
+              .buildMapped(file)) {
+            assertEquals(expected, MappedElfParserTest.readAll(parser));
+          }
+        }));
+  }
+
+  static final String INPUT = "#Fields: date time sc-status sc-bytes cs-host\n" +
+      "2018-02-02 22:19:11 200 not-a-number example.com\n";
+
+  @Test
+  public void projectionSkipsParsing() throws IOException {
+    try (ElfParser parser = ElfParserBuilder.of()
+        .project("cs-host", "sc-status")
+        .build(new StringReader(INPUT))) {
+      LogRecord record = parser.nextRecord();
+      assertEquals(2, record.fieldCount());
+      assertEquals("sc-status", record.fieldName(0));
+      assertEquals(200L, record.getLong(0));
+      assertEquals("example.com", record.getCharSequence(1).toString());
+    }
+  }
+
+  @Test
+  public void projectionStillCountsFields() throws IOException {
+    try (ElfParser parser = ElfParserBuilder.of()
+        .project(0)
+        .build(new StringReader(INPUT + "2018-02-02 22:19:11 200 1 example.com extra\n"))) {
+      parser.next();
+      assertThrows(IllegalStateException.class, parser::next);
+    }
+  }
+
+  @Test
+  public void projectionMustMatchHeader() {
+    IllegalStateException exception = assertThrows(IllegalStateException.class, () ->
+        ElfParserBuilder.of().project("cs-host", "cs-missing").build(new StringReader(INPUT))
+    );
+    assertEquals(
+        "Projected field(s) [cs-missing] are not defined in the header. " +
+            "Fields: [date, time, sc-status, sc-bytes, cs-host]",
+        exception.getMessage()
+    );
+    assertThrows(IllegalStateException.class, () ->
+        ElfParserBuilder.of().project(5).build(new StringReader(INPUT))
+    );
+  }
+
+  static final String FILTER_INPUT = "#Fields: date time time-taken sc-status s-action cs-host\n" +
+      "2018-02-02 22:19:11 0.5 200 TCP_HIT example.com\n" +
+      "2018-02-02 22:19:12 1.5 503 TCP_DENIED example.com\n" +
+      "2018-02-02 22:19:13 - 500 TCP_DENIED other.com\n" +
+      "2018-02-02 22:19:14 2.5 - TCP_DENIED example.com\n" +
+      "2018-02-02 22:19:15 bad 404 TCP_MISS example.com\n";
+
+  static List<Object> statuses(ElfParserBuilder builder) throws IOException {
+    List<Object> result = new ArrayList<>();
+    try (ElfParser parser = builder.build(new StringReader(FILTER_INPUT))) {
+      LogEntry entry;
+      while (null != (entry = parser.next())) {
+        result.add(entry.fieldData().get("sc-status"));
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void filter() throws IOException {
+    assertEquals(
+        Arrays.asList(503L),
+        statuses(ElfParserBuilder.of()
+            .filterRaw("s-action", "TCP_DENIED"::contentEquals)
+            .filterLong("sc-status", status -> status >= 500)
+            .filterRaw("cs-host", "example.com"::contentEquals))
+    );
+    // The filter rejects line 5 before the bad time-taken is parsed.
+    assertEquals(
+        Arrays.asList(200L, 503L, 500L, null),
+        statuses(ElfParserBuilder.of().filterRaw("s-action", s -> !"TCP_MISS".contentEquals(s)))
+    );
+    assertEquals(
+        Arrays.asList(503L),
+        statuses(ElfParserBuilder.of()
+            .filterRaw("s-action", s -> !"TCP_MISS".contentEquals(s))
+            .filterDouble("time-taken", t -> t > 1 && t < 2)
+            .project("sc-status"))
+    );
+    assertEquals(
+        Arrays.asList(200L, 503L, 500L, null),
+        statuses(ElfParserBuilder.of()
+            .filter("time", time -> ((LocalTime) time).isBefore(LocalTime.of(22, 19, 15))))
+    );
+    assertEquals(
+        Arrays.asList(500L),
+        statuses(ElfParserBuilder.of().filterRaw("time-taken", Objects::isNull))
+    );
+    IOException exception = assertThrows(
+        IOException.class,
+        () -> statuses(ElfParserBuilder.of().filterDouble("time-taken", t -> true))
+    );
+    assertEquals("Could not parse line 6 fieldIndex 2 input = 'bad'", exception.getMessage());
+  }
+
+  @Test
+  public void byteModeRequiresAsciiCompatibleCharset() throws IOException {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> ElfParserBuilder.of().charset(StandardCharsets.UTF_16).byteMode(true)
+    );
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> ElfParserBuilder.of().byteMode(true).charset(StandardCharsets.UTF_16LE)
+    );
+    final byte[] input = "#Fields: time\n22:19:11\n".getBytes(StandardCharsets.UTF_16);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> ElfParserBuilder.of().charset(StandardCharsets.UTF_16).pipelined(2).build(new ByteArrayInputStream(input))
+    );
+    final Charset[] charsets = {StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII};
+    for (Charset charset : charsets) {
+      try (ElfParser parser = ElfParserBuilder.of().charset(charset).byteMode(true)
+          .build(new ByteArrayInputStream("#Fields: time\n22:19:11\n".getBytes(charset)))) {
+        assertEquals(LocalTime.of(22, 19, 11), parser.next().fieldData().get("time"));
+      }
+    }
+  }
+
+  @Test
+  public void filterMustMatchHeader() {
+    assertThrows(IllegalStateException.class, () ->
+        statuses(ElfParserBuilder.of().filterRaw("cs-missing", s -> true))
+    );
+    assertThrows(IllegalStateException.class, () ->
+        statuses(ElfParserBuilder.of().filterLong("cs-host", s -> true))
+    );
+  }
+
+  @Test
+  public void dictionary() throws IOException {
+    for (boolean byteMode : new boolean[]{false, true}) {
+      List<LogEntry> entries;
+      try (ElfParser parser = ElfParserBuilder.of()
+          .project("date", "time", "sc-status", "s-action", "cs-host")
+          .dictionary("s-action", "cs-host", "sc-status")
+          .byteMode(byteMode)
+          .build(new ByteArrayInputStream(FILTER_INPUT.getBytes(StandardCharsets.UTF_8)))) {
+        entries = MappedElfParserTest.readAll(parser);
+      }
+      assertEquals(5, entries.size());
+      assertSame(entries.get(1).fieldData().get("s-action"), entries.get(2).fieldData().get("s-action"));
+      assertSame(entries.get(0).fieldData().get("cs-host"), entries.get(4).fieldData().get("cs-host"));
+      assertEquals("TCP_MISS", entries.get(4).fieldData().get("s-action"));
+    }
+  }
+}
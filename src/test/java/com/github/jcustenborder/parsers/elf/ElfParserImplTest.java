@@ -27,18 +27,23 @@ import org.junit.jupiter.api.TestFactory;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.DynamicTest.dynamicTest;
 
@@ -56,14 +61,16 @@ public class ElfParserImplTest {
     this.objectMapper.configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
   }
 
-  @TestFactory
-  public Stream<DynamicTest> parse() {
+  interface ParserFactory {
+    ElfParser create(ElfParserTestCase testCase) throws IOException;
+  }
+
+  Stream<DynamicTest> parse(ParserFactory parserFactory) {
     File inputRoot = new File("src/test/resources/com/github/jcustenborder/parsers/elf/");
     return Arrays.stream(inputRoot.listFiles(f -> f.getName().endsWith(".json")))
         .map(inputFile -> dynamicTest(inputFile.getName(), () -> {
           ElfParserTestCase testCase = objectMapper.readValue(inputFile, ElfParserTestCase.class);
-          try (ElfParser parser = ElfParserBuilder.of()
-              .build(new StringReader(testCase.input))) {
+          try (ElfParser parser = parserFactory.create(testCase)) {
 
             List<LogEntry> actual = new ArrayList<>();
             LogEntry entry;
@@ -82,6 +89,32 @@ public class ElfParserImplTest {
         }));
   }
 
+  @TestFactory
+  public Stream<DynamicTest> parse() {
+    return parse(testCase -> ElfParserBuilder.of()
+        .build(new StringReader(testCase.input)));
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> parseByteMode() {
+    return parse(testCase -> ElfParserBuilder.of()
+        .byteMode(true)
+        .charset(StandardCharsets.UTF_8)
+        .build(new ByteArrayInputStream(testCase.input.getBytes(StandardCharsets.UTF_8))));
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> parseByteModeSmallBuffer() {
+    return parse(testCase -> ElfParserBuilder.of()
+        .build(
+            new ByteLineSource(
+                new ByteArrayInputStream(testCase.input.getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8,
+                16
+            )
+        ));
+  }
+
   private LogEntry clean(List<LogEntry> expected, int i) {
     LogEntry dirtyEntry = expected.get(i);
 
@@ -156,4 +189,77 @@ public class ElfParserImplTest {
           }
         }));
   }
+
+  static final String SCHEMA_SWITCH = "#Software: Microsoft Internet Information Services 10.0\n" +
+      "#Date: 2018-02-02 00:00:00\n" +
+      "#Fields: date time sc-status\n" +
+      "2018-02-02 22:19:11 200\n" +
+      "2018-02-02 22:19:12 404\n" +
+      "#Software: Microsoft Internet Information Services 10.0\n" +
+      "#Date: 2018-02-03 00:00:00\n" +
+      "#Fields: date sc-bytes cs-host\n" +
+      "2018-02-03 1234 example.com\n" +
+      "#Fields: date time sc-status\n" +
+      "2018-02-04 01:00:00 503\n";
+
+  @TestFactory
+  public Stream<DynamicTest> schemaSwitch() {
+    Map<String, ParserFactory> factories = new LinkedHashMap<>();
+    factories.put("reader", t -> ElfParserBuilder.of().build(new StringReader(SCHEMA_SWITCH)));
+    factories.put("bytes", t -> ElfParserBuilder.of()
+        .byteMode(true)
+        .build(new ByteArrayInputStream(SCHEMA_SWITCH.getBytes(StandardCharsets.UTF_8))));
+    return factories.entrySet().stream().map(e -> dynamicTest(e.getKey(), () -> {
+      try (ElfParser parser = e.getValue().create(null)) {
+        assertEquals("2018-02-02 00:00:00", parser.directives().get("Date"));
+        final LogRecord first = parser.nextRecord();
+        final Map<String, Class<?>> fieldTypes = first.fieldTypes();
+        assertEquals(200L, first.getLong(first.fieldIndex("sc-status")));
+        assertEquals(404L, parser.next().fieldData().get("sc-status"));
+
+        final LogEntry switched = parser.next();
+        assertEquals(Arrays.asList("date", "sc-bytes", "cs-host"), new ArrayList<>(switched.fieldTypes().keySet()));
+        assertEquals(1234L, switched.fieldData().get("sc-bytes"));
+        assertEquals("example.com", switched.fieldData().get("cs-host"));
+        assertEquals(switched.fieldTypes(), parser.fieldTypes());
+        assertEquals("2018-02-03 00:00:00", parser.directives().get("Date"));
+
+        // Switching back to a header that has been seen reuses its schema.
+        final LogRecord back = parser.nextRecord();
+        assertSame(fieldTypes, back.fieldTypes());
+        assertEquals(503L, back.getLong(back.fieldIndex("sc-status")));
+        assertNull(parser.next());
+      }
+    }));
+  }
+
+  @Test
+  public void schemaSwitchBatch() throws IOException {
+    try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(SCHEMA_SWITCH))) {
+      LogBatch batch = parser.newBatch(10);
+      assertEquals(2, parser.nextBatch(batch));
+      assertEquals(404L, batch.getObject(batch.fieldIndex("sc-status"), 1));
+      assertEquals(1, parser.nextBatch(batch));
+      assertEquals("example.com", batch.getObject(batch.fieldIndex("cs-host"), 0));
+      assertEquals(1, parser.nextBatch(batch));
+      assertEquals(503L, batch.getObject(batch.fieldIndex("sc-status"), 0));
+      assertEquals(0, parser.nextBatch(batch));
+    }
+  }
+
+  @Test
+  public void schemaSwitchSpliterator() throws IOException {
+    final List<LogEntry> expected;
+    try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(SCHEMA_SWITCH))) {
+      expected = MappedElfParserTest.readAll(parser);
+    }
+    assertEquals(4, expected.size());
+    File file = MappedElfParserTest.write(SCHEMA_SWITCH);
+    try (ElfParser parser = ElfParserBuilder.of()
+        .byteMode(true)
+        .chunkSize(16)
+        .build(file)) {
+      assertEquals(expected, parser.stream().collect(Collectors.toList()));
+    }
+  }
 }
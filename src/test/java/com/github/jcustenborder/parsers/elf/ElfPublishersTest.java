@@ -0,0 +1,273 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ElfPublishersTest {
+  static final String INPUT = CompressionTest.input(100);
+
+  /**
+   * Parser that counts the entries read and whether it was closed.
+   */
+  static class CountingParser implements ElfParser {
+    final ElfParser parser;
+    final AtomicInteger reads = new AtomicInteger();
+    volatile boolean closed;
+    IOException failure;
+
+    CountingParser(ElfParser parser) {
+      this.parser = parser;
+    }
+
+    @Override
+    public Map<String, Class<?>> fieldTypes() {
+      return this.parser.fieldTypes();
+    }
+
+    @Override
+    public LogEntry next() throws IOException {
+      if (null != this.failure && this.reads.get() == 5) {
+        throw this.failure;
+      }
+      final LogEntry entry = this.parser.next();
+      if (null != entry) {
+        this.reads.incrementAndGet();
+      }
+      return entry;
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.closed = true;
+      this.parser.close();
+    }
+  }
+
+  static class TestSubscriber<T> implements Subscriber<T> {
+    final List<T> items = new ArrayList<>();
+    final CountDownLatch terminated = new CountDownLatch(1);
+    final long initialRequest;
+    final long requestPerItem;
+    Subscription subscription;
+    Throwable error;
+    int completions;
+
+    TestSubscriber(long initialRequest, long requestPerItem) {
+      this.initialRequest = initialRequest;
+      this.requestPerItem = requestPerItem;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      this.subscription = subscription;
+      if (this.initialRequest != 0) {
+        subscription.request(this.initialRequest);
+      }
+    }
+
+    @Override
+    public void onNext(T item) {
+      this.items.add(item);
+      if (this.requestPerItem > 0) {
+        this.subscription.request(this.requestPerItem);
+      }
+    }
+
+    @Override
+    public void onError(Throwable error) {
+      this.error = error;
+      this.terminated.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      this.completions++;
+      this.terminated.countDown();
+    }
+  }
+
+  static CountingParser parser() throws IOException {
+    return new CountingParser(ElfParserBuilder.of().build(new StringReader(INPUT)));
+  }
+
+  static List<LogEntry> expected() throws IOException {
+    return CompressionTest.expected(INPUT);
+  }
+
+  @Test
+  public void entries() throws IOException, InterruptedException {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      CountingParser parser = parser();
+      TestSubscriber<LogEntry> subscriber = new TestSubscriber<>(1, 1);
+      ElfPublishers.entries(parser, executor).subscribe(subscriber);
+      assertTrue(subscriber.terminated.await(30, TimeUnit.SECONDS));
+      assertNull(subscriber.error);
+      assertEquals(1, subscriber.completions);
+      assertEquals(expected(), subscriber.items);
+      assertTrue(parser.closed);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void demand() throws IOException {
+    CountingParser parser = parser();
+    TestSubscriber<LogEntry> subscriber = new TestSubscriber<>(3, 0);
+    ElfPublishers.entries(parser, Runnable::run).subscribe(subscriber);
+    assertEquals(3, subscriber.items.size());
+    assertEquals(3, parser.reads.get());
+
+    subscriber.subscription.request(10);
+    assertEquals(13, subscriber.items.size());
+    assertEquals(13, parser.reads.get());
+    assertEquals(expected().subList(0, 13), subscriber.items);
+
+    subscriber.subscription.cancel();
+    assertTrue(parser.closed);
+    subscriber.subscription.request(10);
+    assertEquals(13, parser.reads.get());
+    assertEquals(0, subscriber.completions);
+    assertNull(subscriber.error);
+  }
+
+  @Test
+  public void cancelWhileReading() throws IOException, InterruptedException {
+    final CountDownLatch reading = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicBoolean overlapped = new AtomicBoolean();
+    CountingParser parser = new CountingParser(ElfParserBuilder.of().build(new StringReader(INPUT))) {
+      volatile boolean inNext;
+
+      @Override
+      public LogEntry next() throws IOException {
+        this.inNext = true;
+        try {
+          reading.countDown();
+          release.await();
+          return super.next();
+        } catch (InterruptedException ex) {
+          throw new InterruptedIOException();
+        } finally {
+          this.inNext = false;
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+        if (this.inNext) {
+          overlapped.set(true);
+        }
+        super.close();
+      }
+    };
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      TestSubscriber<LogEntry> subscriber = new TestSubscriber<>(5, 0);
+      ElfPublishers.entries(parser, executor).subscribe(subscriber);
+      assertTrue(reading.await(30, TimeUnit.SECONDS));
+      subscriber.subscription.cancel();
+      assertFalse(parser.closed);
+      release.countDown();
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+    assertTrue(parser.closed);
+    assertFalse(overlapped.get());
+  }
+
+  @Test
+  public void unbounded() throws IOException {
+    CountingParser parser = parser();
+    TestSubscriber<LogEntry> subscriber = new TestSubscriber<>(Long.MAX_VALUE, Long.MAX_VALUE);
+    ElfPublishers.entries(parser, Runnable::run).subscribe(subscriber);
+    assertEquals(expected(), subscriber.items);
+    assertEquals(1, subscriber.completions);
+  }
+
+  @Test
+  public void error() throws IOException {
+    CountingParser parser = parser();
+    parser.failure = new IOException("Could not read");
+    TestSubscriber<LogEntry> subscriber = new TestSubscriber<>(Long.MAX_VALUE, 0);
+    ElfPublishers.entries(parser, Runnable::run).subscribe(subscriber);
+    assertEquals(5, subscriber.items.size());
+    assertTrue(subscriber.error == parser.failure);
+    assertEquals(0, subscriber.completions);
+    assertTrue(parser.closed);
+  }
+
+  @Test
+  public void invalidRequest() throws IOException {
+    CountingParser parser = parser();
+    TestSubscriber<LogEntry> subscriber = new TestSubscriber<>(0, 0);
+    ElfPublishers.entries(parser, Runnable::run).subscribe(subscriber);
+    subscriber.subscription.request(0);
+    assertEquals(IllegalArgumentException.class, subscriber.error.getClass());
+    assertEquals(0, parser.reads.get());
+    assertTrue(parser.closed);
+  }
+
+  @Test
+  public void subscribeOnce() throws IOException {
+    CountingParser parser = parser();
+    org.reactivestreams.Publisher<LogEntry> publisher = ElfPublishers.entries(parser, Runnable::run);
+    publisher.subscribe(new TestSubscriber<>(0, 0));
+    TestSubscriber<LogEntry> second = new TestSubscriber<>(1, 0);
+    publisher.subscribe(second);
+    assertEquals(IllegalStateException.class, second.error.getClass());
+    assertEquals(0, parser.reads.get());
+  }
+
+  @Test
+  public void batches() throws IOException {
+    CountingParser parser = parser();
+    TestSubscriber<LogBatch> subscriber = new TestSubscriber<>(1, 1);
+    ElfPublishers.batches(parser, 32, Runnable::run).subscribe(subscriber);
+    assertEquals(1, subscriber.completions);
+    assertEquals(4, subscriber.items.size());
+    int rows = 0;
+    for (LogBatch batch : subscriber.items) {
+      rows += batch.size();
+    }
+    assertEquals(100, rows);
+    assertEquals(32, subscriber.items.get(0).size());
+    assertTrue(parser.closed);
+  }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ErrorPolicyTest {
+  static final String LINE_1 = "#Fields: date time sc-status time-taken cs-uri-stem\n";
+  static final String LINE_2 = "2018-02-02 22:19:11 200 0.1 /a\n";
+  static final String LINE_3 = "2018-02-02 22:19:12 abc 0.2 /b\n";
+  static final String LINE_4 = "2018-02-02 22:19:13 200 0.3 /c extra\n";
+  static final String LINE_5 = "2018-02-02 22:19:14 404 0.4 /d\n";
+  static final String INPUT = LINE_1 + LINE_2 + LINE_3 + LINE_4 + LINE_5;
+
+  static ElfParser build(ElfParserBuilder builder, boolean byteMode) throws IOException {
+    if (byteMode) {
+      return builder.byteMode(true)
+          .charset(StandardCharsets.UTF_8)
+          .build(new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8)));
+    }
+    return builder.build(new StringReader(INPUT));
+  }
+
+  static List<Object> uris(List<LogEntry> entries) {
+    List<Object> result = new ArrayList<>();
+    for (LogEntry entry : entries) {
+      result.add(entry.fieldData().get("cs-uri-stem"));
+    }
+    return result;
+  }
+
+  static Map<ParseError.Type, Long> counts(long extraFields, long invalidFields, long filter) {
+    Map<ParseError.Type, Long> result = new EnumMap<>(ParseError.Type.class);
+    if (extraFields > 0) {
+      result.put(ParseError.Type.EXTRA_FIELDS, extraFields);
+    }
+    if (invalidFields > 0) {
+      result.put(ParseError.Type.INVALID_FIELD, invalidFields);
+    }
+    if (filter > 0) {
+      result.put(ParseError.Type.FILTER, filter);
+    }
+    return result;
+  }
+
+  @Test
+  public void fail() throws IOException {
+    try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(INPUT))) {
+      assertEquals("/a", parser.next().fieldData().get("cs-uri-stem"));
+      IOException exception = assertThrows(IOException.class, parser::next);
+      assertTrue(exception.getMessage().contains("line 3"), exception.getMessage());
+      assertEquals(counts(0, 1, 0), parser.errorCounts());
+      IllegalStateException extra = assertThrows(IllegalStateException.class, parser::next);
+      assertTrue(extra.getMessage().contains("Line 4"), extra.getMessage());
+    }
+  }
+
+  @Test
+  public void skip() throws IOException {
+    for (boolean byteMode : new boolean[]{false, true}) {
+      List<ParseError> errors = new ArrayList<>();
+      try (ElfParser parser = build(
+          ElfParserBuilder.of().errorPolicy(ErrorPolicy.SKIP).errorSink(errors::add),
+          byteMode
+      )) {
+        assertEquals(java.util.Arrays.asList("/a", "/d"), uris(MappedElfParserTest.readAll(parser)));
+        assertEquals(counts(1, 1, 0), parser.errorCounts());
+      }
+      assertEquals(2, errors.size());
+
+      ParseError invalid = errors.get(0);
+      assertEquals(ParseError.Type.INVALID_FIELD, invalid.type());
+      assertEquals(3, invalid.lineNumber());
+      assertEquals(LINE_3.trim(), invalid.line());
+      assertEquals(2, invalid.fieldIndex());
+      assertEquals("sc-status", invalid.fieldName().get());
+      assertEquals(NumberFormatException.class, invalid.cause().get().getClass());
+      assertEquals(byteMode ? LINE_1.length() + LINE_2.length() : -1L, invalid.offset());
+      assertTrue(invalid.message().contains("sc-status"), invalid.message());
+
+      ParseError extra = errors.get(1);
+      assertEquals(ParseError.Type.EXTRA_FIELDS, extra.type());
+      assertEquals(4, extra.lineNumber());
+      assertEquals(-1, extra.fieldIndex());
+      assertFalse(extra.fieldName().isPresent());
+      assertFalse(extra.cause().isPresent());
+      assertTrue(extra.message().startsWith("Line 4"), extra.message());
+    }
+  }
+
+  @Test
+  public void nullField() throws IOException {
+    for (boolean byteMode : new boolean[]{false, true}) {
+      try (ElfParser parser = build(ElfParserBuilder.of().errorPolicy(ErrorPolicy.NULL_FIELD), byteMode)) {
+        List<LogEntry> entries = MappedElfParserTest.readAll(parser);
+        assertEquals(java.util.Arrays.asList("/a", "/b", "/d"), uris(entries));
+        assertTrue(entries.get(1).fieldData().containsKey("sc-status"));
+        assertNull(entries.get(1).fieldData().get("sc-status"));
+        assertEquals(0.2D, entries.get(1).fieldData().get("time-taken"));
+        assertEquals(counts(1, 1, 0), parser.errorCounts());
+      }
+    }
+  }
+
+  @Test
+  public void filter() throws IOException {
+    try (ElfParser parser = build(
+        ElfParserBuilder.of().errorPolicy(ErrorPolicy.SKIP).filterLong("sc-status", v -> v == 200L),
+        true
+    )) {
+      assertEquals(Collections.singletonList("/a"), uris(MappedElfParserTest.readAll(parser)));
+      assertEquals(counts(1, 0, 1), parser.errorCounts());
+    }
+    try (ElfParser parser = build(
+        ElfParserBuilder.of().errorPolicy(ErrorPolicy.NULL_FIELD).filter("sc-status", v -> null == v),
+        true
+    )) {
+      List<LogEntry> entries = MappedElfParserTest.readAll(parser);
+      assertEquals(Collections.singletonList("/b"), uris(entries));
+      // The field is parsed again for the record once the filter has accepted the line.
+      assertEquals(counts(1, 1, 1), parser.errorCounts());
+    }
+  }
+
+  @Test
+  public void mapped() throws IOException {
+    StringBuilder input = new StringBuilder(INPUT);
+    for (int i = 0; i < 50; i++) {
+      input.append(LINE_2).append(LINE_3).append(LINE_4);
+    }
+    File file = MappedElfParserTest.write(input.toString());
+    List<ParseError> errors = Collections.synchronizedList(new ArrayList<>());
+    try (ElfParser parser = ElfParserBuilder.of()
+        .chunkSize(100)
+        .errorPolicy(ErrorPolicy.SKIP)
+        .errorSink(errors::add)
+        .buildMapped(file)) {
+      assertEquals(52, MappedElfParserTest.readAll(parser).size());
+      assertEquals(counts(51, 51, 0), parser.errorCounts());
+    }
+    assertEquals(102, errors.size());
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FollowingElfParserTest {
+  static final String HEADER = "#Software: Microsoft Internet Information Services 10.0\n" +
+      "#Fields: date time sc-status\n";
+
+  Path directory;
+  Path path;
+  ExecutorService executor;
+
+  @BeforeEach
+  public void before() throws IOException {
+    this.directory = Files.createTempDirectory("follow");
+    this.path = this.directory.resolve("access.log");
+    this.executor = Executors.newSingleThreadExecutor();
+  }
+
+  @AfterEach
+  public void after() throws IOException {
+    this.executor.shutdownNow();
+    File[] files = this.directory.toFile().listFiles();
+    if (null != files) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    Files.deleteIfExists(this.directory);
+  }
+
+  void append(String text) throws IOException {
+    Files.write(
+        this.path,
+        text.getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND
+    );
+  }
+
+  ElfParser parser() {
+    return ElfParserBuilder.of()
+        .charset(StandardCharsets.UTF_8)
+        .pollInterval(1, TimeUnit.MILLISECONDS)
+        .buildFollowing(this.path.toFile());
+  }
+
+  LogEntry next(ElfParser parser) throws Exception {
+    return this.executor.submit(parser::next).get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void append() throws Exception {
+    append(HEADER + "2018-02-02 22:19:11 200\n2018-02-02 22:19:12 4");
+    try (ElfParser parser = parser()) {
+      assertEquals(200L, next(parser).fieldData().get("sc-status"));
+      Future<LogEntry> future = this.executor.submit(parser::next);
+      // The last line is not complete.
+      assertThrows(TimeoutException.class, () -> future.get(100, TimeUnit.MILLISECONDS));
+      append("04\n");
+      assertEquals(404L, future.get(10, TimeUnit.SECONDS).fieldData().get("sc-status"));
+      append("2018-02-02 22:19:13 500\n");
+      assertEquals(500L, next(parser).fieldData().get("sc-status"));
+    }
+  }
+
+  @Test
+  public void waitForFile() throws Exception {
+    try (ElfParser parser = parser()) {
+      Future<LogEntry> future = this.executor.submit(parser::next);
+      assertThrows(TimeoutException.class, () -> future.get(50, TimeUnit.MILLISECONDS));
+      append(HEADER + "2018-02-02 22:19:11 200\n");
+      assertEquals(200L, future.get(10, TimeUnit.SECONDS).fieldData().get("sc-status"));
+      assertTrue(parser.fieldTypes().containsKey("sc-status"));
+    }
+  }
+
+  @Test
+  public void rotate() throws Exception {
+    append(HEADER + "2018-02-02 22:19:11 200\n");
+    try (ElfParser parser = parser()) {
+      assertEquals(200L, next(parser).fieldData().get("sc-status"));
+      append("2018-02-02 22:19:12 404\n");
+      Files.move(this.path, this.directory.resolve("access.log.1"));
+      append("#Fields: date time cs-host\n2018-02-03 00:00:01 example.com\n");
+      assertEquals(404L, next(parser).fieldData().get("sc-status"));
+      final LogEntry entry = next(parser);
+      assertEquals("example.com", entry.fieldData().get("cs-host"));
+      assertTrue(parser.fieldTypes().containsKey("cs-host"));
+    }
+  }
+
+  @Test
+  public void truncate() throws Exception {
+    append(HEADER + "2018-02-02 22:19:11 200\n2018-02-02 22:19:12 404\n");
+    try (ElfParser parser = parser()) {
+      assertEquals(200L, next(parser).fieldData().get("sc-status"));
+      assertEquals(404L, next(parser).fieldData().get("sc-status"));
+      Files.write(this.path, new byte[0], StandardOpenOption.TRUNCATE_EXISTING);
+      // Wait for the truncation to be seen before the file grows past the old position again.
+      Future<LogEntry> future = this.executor.submit(parser::next);
+      assertThrows(TimeoutException.class, () -> future.get(100, TimeUnit.MILLISECONDS));
+      append("#Fields: date time sc-status\n2018-02-03 00:00:01 503\n");
+      assertEquals(503L, future.get(10, TimeUnit.SECONDS).fieldData().get("sc-status"));
+    }
+  }
+
+  @Test
+  public void batch() throws Exception {
+    append(HEADER + "2018-02-02 22:19:11 200\n2018-02-02 22:19:12 404\n2018-02-02 22:19:13 5");
+    try (ElfParser parser = parser()) {
+      assertEquals(200L, next(parser).fieldData().get("sc-status"));
+      LogBatch batch = parser.newBatch(10);
+      assertEquals(1, (int) this.executor.submit(() -> parser.nextBatch(batch)).get(10, TimeUnit.SECONDS));
+      assertEquals(404L, batch.getObject(batch.fieldIndex("sc-status"), 0));
+    }
+  }
+
+  @Test
+  public void closeWhileWaiting() throws Exception {
+    append(HEADER + "2018-02-02 22:19:11 200\n");
+    ElfParser parser = parser();
+    assertEquals(200L, next(parser).fieldData().get("sc-status"));
+    Future<LogEntry> future = this.executor.submit(parser::next);
+    assertThrows(TimeoutException.class, () -> future.get(50, TimeUnit.MILLISECONDS));
+    parser.close();
+    assertNull(future.get(10, TimeUnit.SECONDS));
+  }
+}
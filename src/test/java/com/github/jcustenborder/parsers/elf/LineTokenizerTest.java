@@ -0,0 +1,73 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+public class LineTokenizerTest {
+  static final Pattern SPLITTER = Pattern.compile("[^\\s\"']+|\"([^\"]*)\"|'([^']*)'");
+
+  static List<String> expected(String line) {
+    List<String> result = new ArrayList<>();
+    Matcher matcher = SPLITTER.matcher(line);
+    while (matcher.find()) {
+      String input = matcher.group(0);
+      if (input.startsWith("\"") && input.endsWith("\"")) {
+        input = input.replaceAll("^\"|\"$", "");
+      }
+      result.add(input);
+    }
+    return result;
+  }
+
+  static List<String> actual(String line) {
+    LineTokenizer tokenizer = new LineTokenizer(2);
+    int count = tokenizer.tokenize(line);
+    List<String> result = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(line.substring(tokenizer.start(i), tokenizer.end(i)));
+    }
+    return result;
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> tokenize() {
+    return Stream.of(
+        "",
+        "   ",
+        "2018-02-02 22:19:11 70 196.168.1.1 - -",
+        "\"Non-Viewable/Infrastructure\" - 503",
+        "\"Mozilla/5.0 (Windows NT 10.0; Win64; x64)\" 196.168.1.1",
+        "\"\" \"-\" -",
+        "'single quoted' value",
+        "it's a test",
+        "unterminated \"quote here",
+        "abc\"def\"ghi",
+        "a\tb\u000Bc\fd\r",
+        "\"a'b\" 'c\"d'"
+    ).map(line -> dynamicTest("[" + line + "]", () -> assertEquals(expected(line), actual(line))));
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+public class LogBatchTest {
+
+  static void assertBatches(List<LogEntry> expected, ElfParser parser) throws IOException {
+    LogBatch batch = parser.newBatch(7);
+    int index = 0;
+    int rows;
+    while ((rows = parser.nextBatch(batch)) > 0) {
+      assertEquals(rows, batch.size());
+      for (int row = 0; row < rows; row++) {
+        LogEntry entry = expected.get(index++);
+        for (int column = 0; column < batch.columnCount(); column++) {
+          assertEquals(
+              entry.fieldData().get(batch.fieldName(column)),
+              batch.getObject(column, row),
+              String.format("row %s column %s", index, batch.fieldName(column))
+          );
+        }
+      }
+    }
+    assertEquals(expected.size(), index);
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> batches() {
+    ObjectMapper objectMapper = new ObjectMapper();
+    File inputRoot = new File("src/test/resources/com/github/jcustenborder/parsers/elf/");
+    return Arrays.stream(inputRoot.listFiles(f -> f.getName().endsWith(".json")))
+        .map(inputFile -> dynamicTest(inputFile.getName(), () -> {
+          ElfParserTestCase testCase = objectMapper.readValue(inputFile, ElfParserTestCase.class);
+          final List<LogEntry> expected;
+          try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(testCase.input))) {
+            expected = MappedElfParserTest.readAll(parser);
+          }
+          try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(testCase.input))) {
+            assertBatches(expected, parser);
+          }
+          try (ElfParser parser = ElfParserBuilder.of()
+              .byteMode(true)
+              .charset(StandardCharsets.UTF_8)
+              .build(new ByteArrayInputStream(testCase.input.getBytes(StandardCharsets.UTF_8)))) {
+            assertBatches(expected, parser);
+          }
+        }));
+  }
+
+  @Test
+  public void columns() throws IOException {
+    try (ElfParser parser = ElfParserBuilder.of()
+        .byteMode(true)
+        .charset(StandardCharsets.UTF_8)
+        .build(new ByteArrayInputStream(LogRecordTest.INPUT.getBytes(StandardCharsets.UTF_8)))) {
+      LogBatch batch = parser.newBatch(100);
+      assertEquals(2, parser.nextBatch(batch));
+      final int date = batch.fieldIndex("date");
+      final int timeTaken = batch.fieldIndex("time-taken");
+      final int bytes = batch.fieldIndex("sc-bytes");
+      final int host = batch.fieldIndex("cs-host");
+      final int query = batch.fieldIndex("cs-uri-query");
+      assertEquals(LocalDate.of(2018, 2, 3).toEpochDay(), batch.longs(date)[1]);
+      assertEquals(0.25D, batch.doubles(timeTaken)[0]);
+      assertTrue(batch.isNull(timeTaken, 1));
+      assertEquals(2L, batch.nulls(timeTaken)[0]);
+      assertEquals(1234L, batch.longs(bytes)[0]);
+      assertEquals(99L, batch.longs(bytes)[1]);
+      assertEquals(2, batch.dictionary(host).size());
+      assertEquals("exämple.com", batch.dictionary(host).get(batch.ids(host)[1]));
+      assertTrue(batch.isNull(query, 0));
+      assertTrue(batch.isNull(query, 1));
+      assertFalse(batch.isNull(bytes, 0));
+      assertThrows(IllegalStateException.class, () -> batch.doubles(bytes));
+      assertEquals(0, parser.nextBatch(batch));
+      assertEquals(0, batch.dictionary(host).size());
+    }
+  }
+
+  @Test
+  public void dictionary() {
+    StringDictionary dictionary = new StringDictionary();
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, dictionary.add(new StringBuilder("value").append(i)));
+    }
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, dictionary.add("value" + i));
+      assertEquals("value" + i, dictionary.get(i));
+    }
+    assertEquals(1000, dictionary.size());
+    dictionary.clear();
+    assertEquals(0, dictionary.size());
+    assertEquals(0, dictionary.add("value999"));
+  }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+public class LogRecordTest {
+  static final String INPUT = "#Fields: date time time-taken sc-bytes cs-host cs-uri-query\n" +
+      "2018-02-02 22:19:11.5 0.25 1234 example.com -\n" +
+      "2018-02-03 00:00:01 - 99 \"exämple.com\"\n";
+
+  static void assertRecord(LogEntry expected, LogRecord record) {
+    assertEquals(expected.fieldTypes(), record.fieldTypes());
+    assertEquals(expected, record.toLogEntry());
+    int index = 0;
+    for (Map.Entry<String, Class<?>> e : expected.fieldTypes().entrySet()) {
+      final Object value = expected.fieldData().get(e.getKey());
+      assertEquals(e.getKey(), record.fieldName(index));
+      assertEquals(index, record.fieldIndex(e.getKey()));
+      assertEquals(null == value, record.isNull(index));
+      assertEquals(value, record.getObject(index));
+      if (value instanceof String) {
+        assertEquals(value, record.getCharSequence(index).toString());
+      }
+      index++;
+    }
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> records() {
+    ObjectMapper objectMapper = new ObjectMapper();
+    File inputRoot = new File("src/test/resources/com/github/jcustenborder/parsers/elf/");
+    return Arrays.stream(inputRoot.listFiles(f -> f.getName().endsWith(".json")))
+        .map(inputFile -> dynamicTest(inputFile.getName(), () -> {
+          ElfParserTestCase testCase = objectMapper.readValue(inputFile, ElfParserTestCase.class);
+          final List<LogEntry> expected;
+          try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(testCase.input))) {
+            expected = MappedElfParserTest.readAll(parser);
+          }
+          try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(testCase.input))) {
+            for (LogEntry entry : expected) {
+              assertRecord(entry, parser.nextRecord());
+            }
+            assertNull(parser.nextRecord());
+          }
+          try (ElfParser parser = ElfParserBuilder.of()
+              .byteMode(true)
+              .charset(StandardCharsets.UTF_8)
+              .build(new ByteArrayInputStream(testCase.input.getBytes(StandardCharsets.UTF_8)))) {
+            for (LogEntry entry : expected) {
+              assertRecord(entry, parser.nextRecord());
+            }
+            assertNull(parser.nextRecord());
+          }
+        }));
+  }
+
+  void primitives(ElfParser parser) throws IOException {
+    LogRecord record = parser.nextRecord();
+    assertEquals(6, record.fieldCount());
+    assertEquals(LocalDate.of(2018, 2, 2).toEpochDay(), record.getLong(0));
+    assertEquals(LocalTime.of(22, 19, 11, 500_000_000).toNanoOfDay(), record.getLong(1));
+    assertEquals(0.25D, record.getDouble(2));
+    assertEquals(1234L, record.getLong(3));
+    assertEquals(1234D, record.getDouble(3));
+    assertEquals("example.com", record.getCharSequence(4).toString());
+    assertTrue(record.isNull(5));
+    assertNull(record.getCharSequence(5));
+    assertThrows(IllegalStateException.class, () -> record.getLong(4));
+    assertThrows(IllegalStateException.class, () -> record.getInt(3));
+    assertThrows(IllegalStateException.class, () -> record.getLong(5));
+    assertEquals(-1, record.fieldIndex("missing"));
+
+    LogRecord next = parser.nextRecord();
+    assertSame(record, next);
+    assertTrue(next.isNull(2));
+    assertFalse(next.isNull(3));
+    assertEquals(99L, next.getLong(3));
+    assertEquals("exämple.com", next.getCharSequence(4).toString());
+    // Missing from the end of the line.
+    assertTrue(next.isNull(5));
+    assertFalse(next.toLogEntry().fieldData().containsKey("cs-uri-query"));
+    assertNull(parser.nextRecord());
+  }
+
+  @Test
+  public void primitives() throws IOException {
+    try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(INPUT))) {
+      primitives(parser);
+    }
+  }
+
+  @Test
+  public void primitivesByteMode() throws IOException {
+    try (ElfParser parser = ElfParserBuilder.of()
+        .byteMode(true)
+        .charset(StandardCharsets.UTF_8)
+        .build(new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8)))) {
+      primitives(parser);
+    }
+  }
+
+  @Test
+  public void entryRecordFields() throws IOException {
+    final List<LogEntry> entries;
+    try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(MappedElfParserTest.SCHEMA_CHANGE))) {
+      entries = MappedElfParserTest.readAll(parser);
+    }
+    assertEquals(3, entries.size());
+    assertNotSame(entries.get(0).fieldTypes(), entries.get(1).fieldTypes());
+    LogEntryRecord first = new LogEntryRecord(entries.get(0), null);
+    LogEntryRecord second = new LogEntryRecord(entries.get(1), first);
+    LogEntryRecord third = new LogEntryRecord(entries.get(2), second);
+    assertSame(first.fieldTypes(), second.fieldTypes());
+    assertNotSame(second.fieldTypes(), third.fieldTypes());
+    assertRecord(entries.get(0), first);
+    assertRecord(entries.get(1), second);
+    assertRecord(entries.get(2), third);
+  }
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+public class MappedElfParserTest {
+
+  static File write(String input) throws IOException {
+    File file = File.createTempFile("elf", ".log");
+    file.deleteOnExit();
+    Files.write(file.toPath(), input.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  static List<LogEntry> readAll(ElfParser parser) throws IOException {
+    List<LogEntry> result = new ArrayList<>();
+    LogEntry entry;
+    while (null != (entry = parser.next())) {
+      result.add(entry);
+    }
+    return result;
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> parse() {
+    ObjectMapper objectMapper = new ObjectMapper();
+    File inputRoot = new File("src/test/resources/com/github/jcustenborder/parsers/elf/");
+    return Arrays.stream(inputRoot.listFiles(f -> f.getName().endsWith(".json")))
+        .map(inputFile -> dynamicTest(inputFile.getName(), () -> {
+          ElfParserTestCase testCase = objectMapper.readValue(inputFile, ElfParserTestCase.class);
+          final List<LogEntry> expected;
+          try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(testCase.input))) {
+            expected = readAll(parser);
+          }
+          File file = write(testCase.input);
+
+          for (int chunkSize : new int[]{1, 100, 4096}) {
+            try (ElfParser parser = ElfParserBuilder.of()
+                .charset(StandardCharsets.UTF_8)
+                .chunkSize(chunkSize)
+                .directiveMode(DirectiveMode.RESYNC)
+                .buildMapped(file)) {
+              assertEquals(expected, readAll(parser));
+            }
+            try (ElfParser parser = ElfParserBuilder.of()
+                .charset(StandardCharsets.UTF_8)
+                .chunkSize(chunkSize)
+                .directiveMode(DirectiveMode.RESYNC)
+                .ordered(false)
+                .buildMapped(file)) {
+              List<LogEntry> actual = readAll(parser);
+              Comparator<LogEntry> comparator = Comparator.comparing(Object::toString);
+              actual.sort(comparator);
+              List<LogEntry> sorted = new ArrayList<>(expected);
+              sorted.sort(comparator);
+              assertEquals(sorted, actual);
+            }
+          }
+        }));
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> stream() {
+    ObjectMapper objectMapper = new ObjectMapper();
+    File inputRoot = new File("src/test/resources/com/github/jcustenborder/parsers/elf/");
+    return Arrays.stream(inputRoot.listFiles(f -> f.getName().endsWith(".json")))
+        .map(inputFile -> dynamicTest(inputFile.getName(), () -> {
+          ElfParserTestCase testCase = objectMapper.readValue(inputFile, ElfParserTestCase.class);
+          final List<LogEntry> expected;
+          try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(testCase.input))) {
+            expected = readAll(parser);
+          }
+          try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(testCase.input))) {
+            assertEquals(expected, parser.stream().parallel().collect(Collectors.toList()));
+          }
+          File file = write(testCase.input);
+          try (ElfParser parser = ElfParserBuilder.of()
+              .charset(StandardCharsets.UTF_8)
+              .chunkSize(100)
+              .directiveMode(DirectiveMode.RESYNC)
+              .buildMapped(file)) {
+            Spliterator<LogEntry> spliterator = parser.spliterator();
+            assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED | Spliterator.NONNULL));
+            assertTrue(spliterator.estimateSize() > 0);
+            assertEquals(expected, StreamSupport.stream(spliterator, true).collect(Collectors.toList()));
+          }
+          try (ElfParser parser = ElfParserBuilder.of()
+              .byteMode(true)
+              .charset(StandardCharsets.UTF_8)
+              .chunkSize(100)
+              .build(file)) {
+            assertEquals(expected, parser.stream().parallel().collect(Collectors.toList()));
+          }
+        }));
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> records() {
+    ObjectMapper objectMapper = new ObjectMapper();
+    File inputRoot = new File("src/test/resources/com/github/jcustenborder/parsers/elf/");
+    return Arrays.stream(inputRoot.listFiles(f -> f.getName().endsWith(".json")))
+        .map(inputFile -> dynamicTest(inputFile.getName(), () -> {
+          ElfParserTestCase testCase = objectMapper.readValue(inputFile, ElfParserTestCase.class);
+          final List<LogEntry> expected;
+          try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(testCase.input))) {
+            expected = readAll(parser);
+          }
+          File file = write(testCase.input);
+
+          for (int chunkSize : new int[]{1, 100, 4096}) {
+            try (ElfParser parser = ElfParserBuilder.of()
+                .charset(StandardCharsets.UTF_8)
+                .chunkSize(chunkSize)
+                .directiveMode(DirectiveMode.RESYNC)
+                .buildMapped(file)) {
+              List<LogEntry> actual = new ArrayList<>();
+              LogRecord record;
+              while (null != (record = parser.nextRecord())) {
+                actual.add(record.toLogEntry());
+              }
+              assertEquals(expected, actual);
+            }
+            try (ElfParser parser = ElfParserBuilder.of()
+                .charset(StandardCharsets.UTF_8)
+                .chunkSize(chunkSize)
+                .directiveMode(DirectiveMode.RESYNC)
+                .buildMapped(file)) {
+              LogBatchTest.assertBatches(expected, parser);
+            }
+          }
+        }));
+  }
+
+  @Test
+  public void recordsAreReused() throws IOException {
+    File file = write(SCHEMA_CHANGE);
+    try (ElfParser parser = ElfParserBuilder.of()
+        .directiveMode(DirectiveMode.RESYNC)
+        .buildMapped(file)) {
+      LogRecord first = parser.nextRecord();
+      assertEquals(200L, first.getObject(first.fieldIndex("sc-status")));
+      assertSame(first, parser.nextRecord());
+      assertEquals(404L, first.getObject(first.fieldIndex("sc-status")));
+      LogRecord record = parser.nextRecord();
+      assertEquals(1234L, record.getObject(record.fieldIndex("sc-bytes")));
+      assertNull(parser.nextRecord());
+    }
+  }
+
+  @Test
+  public void directiveModeFailRecords() throws IOException {
+    File file = write(SCHEMA_CHANGE);
+    try (ElfParser parser = ElfParserBuilder.of().chunkSize(16).buildMapped(file)) {
+      IOException exception = assertThrows(IOException.class, () -> {
+        LogRecord record;
+        do {
+          record = parser.nextRecord();
+        } while (null != record);
+      });
+      assertEquals(IllegalStateException.class, exception.getCause().getClass());
+    }
+  }
+
+  static final String SCHEMA_CHANGE = "#Fields: date time sc-status\n" +
+      "2018-02-02 22:19:11 200\n" +
+      "2018-02-02 22:19:12 404\n" +
+      "#Date: 2018-02-03 00:00:00\n" +
+      "#Fields: date sc-bytes cs-host\n" +
+      "2018-02-03 1234 example.com\n";
+
+  @Test
+  public void directiveModeFail() throws IOException {
+    File file = write(SCHEMA_CHANGE);
+    try (ElfParser parser = ElfParserBuilder.of().chunkSize(16).buildMapped(file)) {
+      IOException exception = assertThrows(IOException.class, () -> readAll(parser));
+      assertEquals(IllegalStateException.class, exception.getCause().getClass());
+    }
+  }
+
+  @Test
+  public void directiveModeFailSkipsDirectives() throws IOException {
+    File file = write("#Fields: date time sc-status\n" +
+        "2018-02-02 22:19:11 200\n" +
+        "#Remark: rotated\n" +
+        "# comment\n" +
+        "2018-02-02 22:19:12 404\n" +
+        "#Date: 2018-02-03 00:00:00\n" +
+        "#Fields: date  time sc-status\n" +
+        "2018-02-03 00:00:01 500\n");
+    try (ElfParser parser = ElfParserBuilder.of().chunkSize(16).buildMapped(file)) {
+      List<LogEntry> entries = readAll(parser);
+      assertEquals(3, entries.size());
+      assertEquals(200L, entries.get(0).fieldData().get("sc-status"));
+      assertEquals(404L, entries.get(1).fieldData().get("sc-status"));
+      assertEquals(500L, entries.get(2).fieldData().get("sc-status"));
+    }
+  }
+
+  @Test
+  public void directiveModeResync() throws IOException {
+    File file = write(SCHEMA_CHANGE);
+    try (ElfParser parser = ElfParserBuilder.of()
+        .chunkSize(16)
+        .directiveMode(DirectiveMode.RESYNC)
+        .buildMapped(file)) {
+      List<LogEntry> entries = readAll(parser);
+      assertEquals(3, entries.size());
+      assertEquals(200L, entries.get(0).fieldData().get("sc-status"));
+      assertEquals(404L, entries.get(1).fieldData().get("sc-status"));
+      assertEquals(1234L, entries.get(2).fieldData().get("sc-bytes"));
+      assertEquals("example.com", entries.get(2).fieldData().get("cs-host"));
+      assertEquals(Long.class, entries.get(2).fieldTypes().get("sc-bytes"));
+    }
+  }
+}
@@ -0,0 +1,275 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MultiFileElfParserTest {
+  static final String HEADER = "#Fields: date time cs-uri-stem sc-status\n";
+
+  /**
+   * Method is used to create the input for a server that logs a request every step seconds starting at first.
+   */
+  static String input(String server, int first, int step, int lines) {
+    StringBuilder builder = new StringBuilder(HEADER);
+    for (int i = 0; i < lines; i++) {
+      final int second = first + i * step;
+      builder.append(String.format("2018-02-02 %02d:%02d:%02d /%s/%s 200\n", second / 3600, (second / 60) % 60,
+          second % 60, server, i));
+    }
+    return builder.toString();
+  }
+
+  static Path directory() throws IOException {
+    Path directory = Files.createTempDirectory("elf");
+    directory.toFile().deleteOnExit();
+    return directory;
+  }
+
+  static File write(Path directory, String name, String input) throws IOException {
+    File file = directory.resolve(name).toFile();
+    file.deleteOnExit();
+    Files.write(file.toPath(), input.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  static List<LogEntry> expected(String... inputs) throws IOException {
+    List<LogEntry> result = new ArrayList<>();
+    for (String input : inputs) {
+      try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(input))) {
+        result.addAll(MappedElfParserTest.readAll(parser));
+      }
+    }
+    return result;
+  }
+
+  static final Comparator<LogEntry> BY_TEXT = Comparator.comparing(Object::toString);
+
+  @Test
+  public void unordered() throws IOException {
+    Path directory = directory();
+    String[] inputs = {input("a", 0, 1, 1000), input("b", 0, 1, 10), input("c", 0, 1, 700)};
+    long bytes = 0;
+    for (int i = 0; i < inputs.length; i++) {
+      bytes += write(directory, String.format("u_ex%s.log", i), inputs[i]).length();
+    }
+    write(directory, "notes.txt", "not a log");
+
+    List<LogEntry> expected = expected(inputs);
+    expected.sort(BY_TEXT);
+    try (MultiFileElfParser parser = ElfParserBuilder.of()
+        .ordered(false)
+        .queueCapacity(1)
+        .buildAll(directory, "u_ex*.log")) {
+      assertEquals(3, parser.files().size());
+      List<LogEntry> actual = MappedElfParserTest.readAll(parser);
+      actual.sort(BY_TEXT);
+      assertEquals(expected, actual);
+      assertNull(parser.next());
+
+      IngestMetrics metrics = parser.ingestMetrics();
+      assertEquals(3, metrics.files());
+      assertEquals(3, metrics.filesCompleted());
+      assertEquals(1710L, metrics.entries());
+      assertEquals(bytes, metrics.bytes());
+      assertTrue(metrics.elapsedNanos() > 0);
+      assertTrue(metrics.entriesPerSecond() > 0);
+      assertEquals(metrics.elapsedNanos(), parser.ingestMetrics().elapsedNanos());
+    }
+  }
+
+  @Test
+  public void merged() throws IOException {
+    Path directory = directory();
+    String a = input("a", 0, 2, 1000);
+    String b = input("b", 1, 2, 1000);
+    String c = input("c", 500, 3, 100);
+    List<File> files = Arrays.asList(
+        write(directory, "a.log", a),
+        write(directory, "b.log", b),
+        write(directory, "c.log", c)
+    );
+    List<LogEntry> expected = expected(a, b, c);
+    expected.sort(Comparator.comparing(e -> (LocalTime) e.fieldData().get("time")));
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      try (MultiFileElfParser parser = ElfParserBuilder.of().executor(executor).buildAll(files)) {
+        List<LogEntry> actual = MappedElfParserTest.readAll(parser);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 1; i < actual.size(); i++) {
+          LocalTime previous = (LocalTime) actual.get(i - 1).fieldData().get("time");
+          LocalTime time = (LocalTime) actual.get(i).fieldData().get("time");
+          assertFalse(time.isBefore(previous), String.format("Entry %s is out of order.", i));
+        }
+        // Entries with the same date and time are returned in the order the files were passed.
+        List<LogEntry> sorted = new ArrayList<>(actual);
+        sorted.sort(Comparator.comparing(e -> (LocalTime) e.fieldData().get("time")));
+        assertEquals(sorted, actual);
+        assertEquals(expected, actual);
+        assertEquals(3, parser.ingestMetrics().filesCompleted());
+        assertEquals(2100L, parser.ingestMetrics().entries());
+      }
+      assertFalse(executor.isShutdown());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void mergedCompressed() throws IOException {
+    Path directory = directory();
+    String a = input("a", 0, 2, 2000);
+    String b = input("b", 1, 2, 2000);
+    File compressed = directory.resolve("a.log.gz").toFile();
+    compressed.deleteOnExit();
+    try (GZIPOutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(compressed.toPath()))) {
+      outputStream.write(a.getBytes(StandardCharsets.UTF_8));
+    }
+    write(directory, "b.log", b);
+
+    List<LogEntry> expected = expected(a, b);
+    expected.sort(Comparator.comparing(e -> (LocalTime) e.fieldData().get("time")));
+    try (MultiFileElfParser parser = ElfParserBuilder.of()
+        .byteMode(true)
+        .charset(StandardCharsets.UTF_8)
+        .buildAll(directory, "*.{log,gz}")) {
+      assertEquals(expected, MappedElfParserTest.readAll(parser));
+    }
+  }
+
+  @Test
+  public void timestamp() throws IOException {
+    List<LogEntry> entries = expected(
+        "#Fields: date time\n2018-02-02 00:00:01\n1970-01-01 00:00:00\n",
+        "#Fields: time\n00:00:02\n",
+        "#Fields: cs-uri-stem\n/\n"
+    );
+    assertEquals(17564L * 86400000000000L + 1000000000L, MultiFileElfParser.timestamp(entries.get(0)));
+    assertEquals(0L, MultiFileElfParser.timestamp(entries.get(1)));
+    assertEquals(2000000000L, MultiFileElfParser.timestamp(entries.get(2)));
+    assertEquals(MultiFileElfParser.NO_TIMESTAMP, MultiFileElfParser.timestamp(entries.get(3)));
+  }
+
+  @Test
+  public void schemaSwitchBatch() throws IOException {
+    final List<LogEntry> expected = expected(ElfParserImplTest.SCHEMA_SWITCH);
+    File file = write(directory(), "u_ex0.log", ElfParserImplTest.SCHEMA_SWITCH);
+    for (boolean ordered : new boolean[]{true, false}) {
+      try (MultiFileElfParser parser = ElfParserBuilder.of().ordered(ordered).buildAll(Arrays.asList(file))) {
+        LogBatchTest.assertBatches(expected, parser);
+      }
+    }
+  }
+
+  @Test
+  public void failure() throws IOException {
+    Path directory = directory();
+    File good = write(directory, "a.log", input("a", 0, 1, 10));
+    File bad = write(directory, "b.log", "no header\n");
+    for (boolean ordered : new boolean[]{true, false}) {
+      try (MultiFileElfParser parser = ElfParserBuilder.of().ordered(ordered).buildAll(Arrays.asList(good, bad))) {
+        IOException exception = assertThrows(IOException.class, () -> MappedElfParserTest.readAll(parser));
+        assertTrue(exception.getMessage().contains(bad.toString()), exception.getMessage());
+        assertEquals(IllegalStateException.class, exception.getCause().getClass());
+      }
+    }
+  }
+
+  @Test
+  public void failureCountsErrors() throws IOException {
+    Path directory = directory();
+    File good = write(directory, "a.log", input("a", 0, 1, 10));
+    File bad = write(directory, "b.log", "#Fields: date time sc-status\n" +
+        "2018-02-02 22:19:11 200\n" +
+        "2018-02-02 22:19:12 200 extra\n");
+    for (boolean ordered : new boolean[]{true, false}) {
+      try (MultiFileElfParser parser = ElfParserBuilder.of().ordered(ordered).buildAll(Arrays.asList(good, bad))) {
+        assertThrows(IOException.class, () -> MappedElfParserTest.readAll(parser));
+        assertEquals(Long.valueOf(1), parser.errorCounts().get(ParseError.Type.EXTRA_FIELDS));
+      }
+    }
+  }
+
+  @Test
+  public void close() throws IOException {
+    Path directory = directory();
+    List<File> files = Arrays.asList(
+        write(directory, "a.log", input("a", 0, 1, 5000)),
+        write(directory, "b.log", input("b", 0, 1, 5000))
+    );
+    for (boolean ordered : new boolean[]{true, false}) {
+      MultiFileElfParser parser = ElfParserBuilder.of().ordered(ordered).queueCapacity(256).buildAll(files);
+      assertNotNull(parser.next());
+      parser.close();
+      assertNull(parser.next());
+      assertEquals(1L, parser.ingestMetrics().entries());
+      assertTrue(parser.ingestMetrics().filesCompleted() < 2);
+    }
+  }
+
+  @Test
+  public void closeWhileFetching() throws Exception {
+    Path directory = directory();
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      files.add(write(directory, i + ".log", input(Integer.toString(i), i, 4, 600)));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      for (int attempt = 0; attempt < 5; attempt++) {
+        MultiFileElfParser parser = ElfParserBuilder.of().executor(executor).buildAll(files);
+        assertNotNull(parser.next());
+        parser.close();
+        assertNull(parser.next());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void empty() throws IOException {
+    try (MultiFileElfParser parser = ElfParserBuilder.of().buildAll(directory(), "*.log")) {
+      assertNull(parser.next());
+      assertEquals(0, parser.ingestMetrics().files());
+    }
+  }
+}
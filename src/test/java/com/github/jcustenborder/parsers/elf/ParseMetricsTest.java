@@ -0,0 +1,209 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParseMetricsTest {
+  static final String HEADER = "#Fields: date time sc-status time-taken cs-uri-stem\n";
+  static final String DATA = "2018-02-02 22:19:11 200 0.1 /a\n" +
+      "2018-02-02 22:19:12 - 0.2 /b\n" +
+      "#Date: 2018-02-02 22:19:13\n" +
+      "2018-02-02 22:19:13 abc - /c\n" +
+      "2018-02-02 22:19:14 404 0.4 /d\n" +
+      "2018-02-02 22:19:15 500 - -\n";
+  static final String INPUT = HEADER + DATA;
+
+  static ElfParserBuilder builder() {
+    return ElfParserBuilder.of()
+        .errorPolicy(ErrorPolicy.SKIP)
+        .filterRaw("cs-uri-stem", v -> null != v)
+        .latencySampleInterval(1);
+  }
+
+  static void assertMetrics(ParseMetrics metrics, long bytes) {
+    assertEquals(6L, metrics.lines());
+    assertEquals(1L, metrics.directiveLines());
+    assertEquals(1L, metrics.filteredLines());
+    assertEquals(bytes, metrics.bytes());
+    assertEquals(Collections.singletonMap(ParseError.Type.INVALID_FIELD, 1L), metrics.errors());
+
+    FieldMetrics status = metrics.fields().get("sc-status");
+    assertEquals("LongFieldParser", status.parser());
+    assertEquals(1L, status.nulls());
+    assertEquals(1L, status.failures());
+    // The failed parse is not timed.
+    assertEquals(2L, status.samples());
+
+    FieldMetrics timeTaken = metrics.fields().get("time-taken");
+    assertEquals(0L, timeTaken.nulls());
+    assertEquals(3L, timeTaken.samples());
+    assertEquals(3L, timeTaken.latencyHistogram().stream().mapToLong(Long::longValue).sum());
+    assertEquals(0L, metrics.fields().get("cs-uri-stem").samples());
+  }
+
+  @Test
+  public void disabled() throws IOException {
+    try (ElfParser parser = ElfParserBuilder.of().errorPolicy(ErrorPolicy.SKIP).build(new StringReader(INPUT))) {
+      MappedElfParserTest.readAll(parser);
+      assertNull(parser.metrics());
+    }
+  }
+
+  @Test
+  public void reader() throws IOException {
+    try (ElfParser parser = builder().metrics(true).build(new StringReader(INPUT))) {
+      assertEquals(3, MappedElfParserTest.readAll(parser).size());
+      assertMetrics(parser.metrics(), DATA.length());
+    }
+  }
+
+  @Test
+  public void bytes() throws IOException {
+    try (ElfParser parser = builder()
+        .metrics(true)
+        .byteMode(true)
+        .charset(StandardCharsets.UTF_8)
+        .build(new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8)))) {
+      assertEquals(3, MappedElfParserTest.readAll(parser).size());
+      assertMetrics(parser.metrics(), DATA.getBytes(StandardCharsets.UTF_8).length);
+    }
+  }
+
+  @Test
+  public void failures() throws IOException {
+    try (ElfParser parser = ElfParserBuilder.of()
+        .metrics(true)
+        .errorPolicy(ErrorPolicy.NULL_FIELD)
+        .build(new StringReader(INPUT))) {
+      assertEquals(5, MappedElfParserTest.readAll(parser).size());
+      ParseMetrics metrics = parser.metrics();
+      assertEquals(1L, metrics.fields().get("sc-status").failures());
+      assertEquals(Collections.singletonMap("LongFieldParser", 1L), metrics.failuresByParser());
+      assertEquals(Collections.singletonMap(ParseError.Type.INVALID_FIELD, 1L), metrics.errors());
+      assertEquals(2L, metrics.fields().get("time-taken").nulls());
+    }
+  }
+
+  @Test
+  public void listener() throws IOException {
+    List<ParseMetrics> reports = new ArrayList<>();
+    List<Boolean> closed = new ArrayList<>();
+    ElfParser parser = builder()
+        .metricsListener((metrics, last) -> {
+          reports.add(metrics);
+          closed.add(last);
+        }, 2)
+        .build(new StringReader(INPUT));
+    MappedElfParserTest.readAll(parser);
+    assertEquals(Arrays.asList(false, false, false), closed);
+    assertEquals(Arrays.asList(2L, 4L, 6L), Arrays.asList(
+        reports.get(0).lines(), reports.get(1).lines(), reports.get(2).lines()
+    ));
+    parser.close();
+    parser.close();
+    assertEquals(Arrays.asList(false, false, false, true), closed);
+    assertEquals(6L, reports.get(3).lines());
+  }
+
+  @Test
+  public void jmx() throws Exception {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName query = new ObjectName(MetricsCollector.JMX_DOMAIN + ":type=ElfParser,name=\"jmx test\",*");
+    ElfParser parser = builder().jmxName("jmx test").build(new StringReader(INPUT));
+    Set<ObjectName> names = server.queryNames(query, null);
+    assertEquals(1, names.size(), names.toString());
+    ObjectName name = names.iterator().next();
+    MappedElfParserTest.readAll(parser);
+    assertEquals(6L, server.getAttribute(name, "Lines"));
+    assertEquals(1L, server.getAttribute(name, "FilteredLines"));
+    assertTrue(server.getAttribute(name, "FieldNulls") instanceof javax.management.openmbean.TabularData);
+    parser.close();
+    assertFalse(server.isRegistered(name));
+  }
+
+  @Test
+  public void mapped() throws IOException {
+    StringBuilder input = new StringBuilder(HEADER);
+    for (int i = 0; i < 20; i++) {
+      input.append("2018-02-02 22:19:11 200 0.1 /a\n").append("2018-02-02 22:19:12 - - /b\n");
+    }
+    File file = MappedElfParserTest.write(input.toString());
+    try (ElfParser parser = ElfParserBuilder.of().metrics(true).chunkSize(64).buildMapped(file)) {
+      assertEquals(40, MappedElfParserTest.readAll(parser).size());
+      ParseMetrics metrics = parser.metrics();
+      assertEquals(40L, metrics.lines());
+      assertEquals(file.length() - HEADER.length(), metrics.bytes());
+      assertEquals(20L, metrics.fields().get("sc-status").nulls());
+    }
+  }
+
+  @Test
+  public void percentile() {
+    Long[] histogram = new Long[MetricsCollector.BUCKETS];
+    Arrays.fill(histogram, 0L);
+    histogram[4] = 90L;
+    histogram[10] = 10L;
+    FieldMetrics metrics = ImmutableFieldMetrics.builder()
+        .parser("LongFieldParser")
+        .nulls(0)
+        .failures(0)
+        .samples(100)
+        .latencyHistogram(Arrays.asList(histogram))
+        .build();
+    assertEquals(32L, metrics.latencyPercentileNanos(50));
+    assertEquals(32L, metrics.latencyPercentileNanos(90));
+    assertEquals(2048L, metrics.latencyPercentileNanos(99));
+    FieldMetrics empty = ImmutableFieldMetrics.builder()
+        .parser("x")
+        .nulls(0)
+        .failures(0)
+        .samples(0)
+        .build();
+    assertEquals(0L, empty.latencyPercentileNanos(50));
+  }
+
+  @Test
+  public void schemaSwitch() throws IOException {
+    String input = "#Fields: date sc-status\n2018-02-02 -\n#Fields: sc-status date\n- 2018-02-03\n- -\n";
+    try (ElfParser parser = ElfParserBuilder.of().metrics(true).build(new StringReader(input))) {
+      MappedElfParserTest.readAll(parser);
+      Map<String, FieldMetrics> fields = parser.metrics().fields();
+      assertEquals(3L, fields.get("sc-status").nulls());
+      assertEquals(1L, fields.get("date").nulls());
+    }
+  }
+}
@@ -0,0 +1,345 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+public class PipelinedElfParserTest {
+
+  /**
+   * Input stream that returns a few bytes from each read so lines and line breaks are split across blocks.
+   */
+  static class TrickleInputStream extends ByteArrayInputStream {
+    TrickleInputStream(byte[] data) {
+      super(data);
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) {
+      return super.read(b, off, Math.min(len, 3));
+    }
+
+    @Override
+    public synchronized int available() {
+      return 0;
+    }
+  }
+
+  static final int BLOCK_SIZE = 4096;
+  static final int BATCH_SIZE = 2048;
+
+  /**
+   * Method is used to create a parser with small blocks and batches, so a few thousand lines cross many of them.
+   */
+  static ElfParser pipelined(ElfParserBuilder builder, int workers, File file) throws IOException {
+    final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    return new PipelinedElfParser(builder, channel, workers, BLOCK_SIZE, BATCH_SIZE);
+  }
+
+  static ElfParser pipelined(ElfParserBuilder builder, int workers, byte[] data) throws IOException {
+    final ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(data));
+    return new PipelinedElfParser(builder, channel, workers, BLOCK_SIZE, BATCH_SIZE);
+  }
+
+  static List<LogEntry> expected(String input) throws IOException {
+    try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(input))) {
+      return MappedElfParserTest.readAll(parser);
+    }
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> parse() {
+    ObjectMapper objectMapper = new ObjectMapper();
+    File inputRoot = new File("src/test/resources/com/github/jcustenborder/parsers/elf/");
+    return Arrays.stream(inputRoot.listFiles(f -> f.getName().endsWith(".json")))
+        .map(inputFile -> dynamicTest(inputFile.getName(), () -> {
+          ElfParserTestCase testCase = objectMapper.readValue(inputFile, ElfParserTestCase.class);
+          final List<LogEntry> expected = expected(testCase.input);
+          final byte[] data = testCase.input.getBytes(StandardCharsets.UTF_8);
+          for (int workers : new int[]{1, 4}) {
+            ElfParserBuilder builder = ElfParserBuilder.of()
+                .charset(StandardCharsets.UTF_8)
+                .pipelined(workers);
+            try (ElfParser parser = builder.build(MappedElfParserTest.write(testCase.input))) {
+              assertEquals(expected, MappedElfParserTest.readAll(parser));
+            }
+            try (ElfParser parser = builder.build(new TrickleInputStream(data))) {
+              assertEquals(expected, MappedElfParserTest.readAll(parser));
+              assertNull(parser.next());
+            }
+          }
+        }));
+  }
+
+  @Test
+  public void lineBreaks() throws IOException {
+    final String input = "#Fields: date time sc-status\r\n" +
+        "2018-02-02 22:19:11 200\r\n" +
+        "2018-02-02 22:19:12 404\r" +
+        "2018-02-02 22:19:13 500\n" +
+        "\r\n" +
+        "2018-02-02 22:19:14 302";
+    final List<LogEntry> expected = expected(input);
+    try (ElfParser parser = ElfParserBuilder.of().pipelined(2).build(
+        new TrickleInputStream(input.getBytes(StandardCharsets.UTF_8)))) {
+      assertEquals(expected, MappedElfParserTest.readAll(parser));
+    }
+  }
+
+  @Test
+  public void schemaChange() throws IOException {
+    try (ElfParser parser = ElfParserBuilder.of()
+        .pipelined(2)
+        .build(new TrickleInputStream(MappedElfParserTest.SCHEMA_CHANGE.getBytes(StandardCharsets.UTF_8)))) {
+      assertEquals(Arrays.asList("date", "time", "sc-status"), new ArrayList<>(parser.fieldTypes().keySet()));
+      List<LogEntry> entries = MappedElfParserTest.readAll(parser);
+      assertEquals(3, entries.size());
+      assertEquals(200L, entries.get(0).fieldData().get("sc-status"));
+      assertEquals(404L, entries.get(1).fieldData().get("sc-status"));
+      assertEquals(1234L, entries.get(2).fieldData().get("sc-bytes"));
+      assertEquals("example.com", entries.get(2).fieldData().get("cs-host"));
+      assertEquals(Long.class, parser.fieldTypes().get("sc-bytes"));
+      assertEquals("2018-02-03 00:00:00", parser.directives().get("Date"));
+    }
+  }
+
+  @Test
+  public void schemaSwitchBatch() throws IOException {
+    final byte[] data = ElfParserImplTest.SCHEMA_SWITCH.getBytes(StandardCharsets.UTF_8);
+    try (ElfParser parser = ElfParserBuilder.of().pipelined(2).build(new ByteArrayInputStream(data))) {
+      LogBatchTest.assertBatches(expected(ElfParserImplTest.SCHEMA_SWITCH), parser);
+    }
+  }
+
+  @Test
+  public void large() throws IOException {
+    final String input = CompressionTest.input(3000);
+    final List<LogEntry> expected = expected(input);
+    final File file = MappedElfParserTest.write(input);
+    try (ElfParser parser = pipelined(ElfParserBuilder.of(), 4, file)) {
+      assertEquals(expected, MappedElfParserTest.readAll(parser));
+    }
+  }
+
+  @Test
+  public void gzip() throws IOException {
+    final String input = CompressionTest.input(3000);
+    final byte[] data = input.getBytes(StandardCharsets.UTF_8);
+    final File file = CompressionTest.write(CompressionTest.compress(GZIPOutputStream::new, data, 0, data.length));
+    try (ElfParser parser = ElfParserBuilder.of().pipelined(3).build(file)) {
+      assertEquals(expected(input), MappedElfParserTest.readAll(parser));
+    }
+  }
+
+  @Test
+  public void errors() throws IOException {
+    final String input = "#Fields: date time sc-status\n" +
+        "2018-02-02 22:19:11 200\n" +
+        "2018-02-02 22:19:12 abc\n" +
+        "2018-02-02 22:19:13 500\n";
+    try (ElfParser parser = ElfParserBuilder.of()
+        .errorPolicy(ErrorPolicy.SKIP)
+        .pipelined(2)
+        .build(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)))) {
+      assertEquals(2, MappedElfParserTest.readAll(parser).size());
+      assertEquals(Long.valueOf(1), parser.errorCounts().get(ParseError.Type.INVALID_FIELD));
+    }
+  }
+
+  @Test
+  public void failOnLine() throws IOException {
+    final String input = CompressionTest.input(3000).replace(" 200 14000 ", " 200 abc ");
+    final List<LogEntry> expected = new ArrayList<>();
+    final IOException expectedException;
+    try (ElfParser parser = ElfParserBuilder.of().build(new StringReader(input))) {
+      expectedException = assertThrows(IOException.class, () -> {
+        LogEntry entry;
+        while (null != (entry = parser.next())) {
+          expected.add(entry);
+        }
+      });
+    }
+    assertEquals(2000, expected.size());
+    final List<LogEntry> actual = new ArrayList<>();
+    try (ElfParser parser = pipelined(ElfParserBuilder.of(), 3, input.getBytes(StandardCharsets.UTF_8))) {
+      IOException exception = assertThrows(IOException.class, () -> {
+        LogEntry entry;
+        while (null != (entry = parser.next())) {
+          actual.add(entry);
+        }
+      });
+      assertEquals(expectedException.getMessage(), exception.getMessage());
+      assertNull(parser.next());
+    }
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void dictionary() throws IOException {
+    final File file = MappedElfParserTest.write(CompressionTest.input(3000));
+    try (ElfParser parser = pipelined(ElfParserBuilder.of().dictionary("cs-method"), 1, file)) {
+      final List<LogEntry> entries = MappedElfParserTest.readAll(parser);
+      assertEquals(3000, entries.size());
+      assertSame(entries.get(0).fieldData().get("cs-method"), entries.get(2999).fieldData().get("cs-method"));
+    }
+  }
+
+  @Test
+  public void noFields() {
+    final byte[] data = "#Software: test\n2018-02-02 22:19:11 200\n".getBytes(StandardCharsets.UTF_8);
+    IllegalStateException exception = assertThrows(
+        IllegalStateException.class,
+        () -> ElfParserBuilder.of().pipelined(2).build(new ByteArrayInputStream(data))
+    );
+    assertEquals("No Fields found after reading 2 line(s)", exception.getMessage());
+    assertThrows(
+        IllegalStateException.class,
+        () -> ElfParserBuilder.of().pipelined(2).build(new ByteArrayInputStream(new byte[0]))
+    );
+    assertThrows(IllegalArgumentException.class, () -> ElfParserBuilder.of().pipelined(0));
+  }
+
+  @Test
+  public void readError() throws IOException {
+    final byte[] data = CompressionTest.input(10).getBytes(StandardCharsets.UTF_8);
+    final InputStream inputStream = new ByteArrayInputStream(data) {
+      boolean first = true;
+
+      @Override
+      public synchronized int read(byte[] b, int off, int len) {
+        if (first) {
+          first = false;
+          return super.read(b, off, len);
+        }
+        throw new IllegalStateException("Disk on fire");
+      }
+
+      @Override
+      public synchronized int available() {
+        return 0;
+      }
+    };
+    try (ElfParser parser = ElfParserBuilder.of().pipelined(2).build(inputStream)) {
+      IOException exception = assertThrows(IOException.class, () -> MappedElfParserTest.readAll(parser));
+      assertEquals("Disk on fire", exception.getCause().getMessage());
+    }
+  }
+
+  @Test
+  public void close() throws IOException, InterruptedException {
+    final File file = MappedElfParserTest.write(CompressionTest.input(3000));
+    final ElfParser parser = pipelined(ElfParserBuilder.of(), 2, file);
+    assertTrue(null != parser.next());
+    parser.close();
+    assertNull(parser.next());
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().startsWith("elf-pipeline-")) {
+        thread.join(10000);
+        assertFalse(thread.isAlive(), thread.getName());
+      }
+    }
+  }
+
+  @Test
+  public void ringBuffer() throws InterruptedException {
+    assertThrows(IllegalArgumentException.class, () -> new RingBuffer<String>(0));
+    final RingBuffer<Integer> ring = new RingBuffer<>(3);
+    assertEquals(4, ring.capacity());
+    for (int i = 0; i < 4; i++) {
+      assertTrue(ring.offer(i));
+    }
+    assertFalse(ring.offer(4));
+    for (int i = 0; i < 4; i++) {
+      assertEquals(Integer.valueOf(i), ring.poll());
+    }
+    assertNull(ring.poll());
+
+    final int producers = 4;
+    final int count = 20000;
+    final Set<Integer> received = ConcurrentHashMap.newKeySet();
+    final AtomicBoolean done = new AtomicBoolean();
+    final List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      final int producer = p;
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < count; i++) {
+          int attempts = 0;
+          while (!ring.offer(producer * count + i)) {
+            attempts = RingBuffer.idle(attempts);
+          }
+        }
+      }));
+    }
+    final List<Thread> consumers = new ArrayList<>();
+    for (int c = 0; c < 2; c++) {
+      consumers.add(new Thread(() -> {
+        int attempts = 0;
+        while (true) {
+          final boolean last = done.get();
+          final Integer value = ring.poll();
+          if (null != value) {
+            assertTrue(received.add(value));
+            attempts = 0;
+          } else if (last) {
+            return;
+          } else {
+            attempts = RingBuffer.idle(attempts);
+          }
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    consumers.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    done.set(true);
+    for (Thread thread : consumers) {
+      thread.join();
+    }
+    assertEquals(producers * count, received.size());
+  }
+}
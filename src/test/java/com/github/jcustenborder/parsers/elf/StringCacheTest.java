@@ -0,0 +1,73 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StringCacheTest {
+
+  @Test
+  public void chars() {
+    StringCache cache = new StringCache(100);
+    final String line = "GET POST GET PUT GET";
+    final String get = cache.get(line, 0, 3);
+    assertEquals("GET", get);
+    assertEquals("POST", cache.get(line, 4, 8));
+    assertSame(get, cache.get(line, 9, 12));
+    assertSame(get, cache.get(line, 17, 20));
+    assertEquals("", cache.get(line, 0, 0));
+    assertEquals(3, cache.size());
+  }
+
+  @Test
+  public void bytes() {
+    StringCache cache = new StringCache(100);
+    final byte[] line = "TCP_HIT TCP_DENIED TCP_HIT ümlaut ümlaut".getBytes(StandardCharsets.UTF_8);
+    final String hit = cache.get(line, 0, 7, StandardCharsets.UTF_8);
+    assertEquals("TCP_HIT", hit);
+    assertEquals("TCP_DENIED", cache.get(line, 8, 18, StandardCharsets.UTF_8));
+    assertSame(hit, cache.get(line, 19, 26, StandardCharsets.UTF_8));
+    final String umlaut = cache.get(line, 27, 34, StandardCharsets.UTF_8);
+    assertEquals("ümlaut", umlaut);
+    assertSame(umlaut, cache.get(line, 35, 42, StandardCharsets.UTF_8));
+    // Chars and bytes share the same table.
+    assertSame(hit, cache.get("TCP_HIT", 0, 7));
+  }
+
+  @Test
+  public void disablesAboveMaxSize() {
+    StringCache cache = new StringCache(50);
+    for (int i = 0; i < 50; i++) {
+      final String value = "value" + i;
+      assertEquals(value, cache.get(value, 0, value.length()));
+      assertSame(cache.get(value, 0, value.length()), cache.get(value, 0, value.length()));
+    }
+    assertFalse(cache.isDisabled());
+    assertEquals("value50", cache.get("value50", 0, 7));
+    assertTrue(cache.isDisabled());
+    final String first = cache.get(" value0", 1, 7);
+    assertEquals("value0", first);
+    assertNotSame(first, cache.get(" value0", 1, 7));
+  }
+}
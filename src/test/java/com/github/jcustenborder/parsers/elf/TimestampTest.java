@@ -0,0 +1,215 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.jcustenborder.parsers.elf.MappedElfParserTest.readAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimestampTest {
+  static final String INPUT = "#Version: 1.0\n" +
+      "#Fields: date time sc-status cs-uri-stem\n" +
+      "2018-02-02 22:19:11 200 /a\n" +
+      "2018-02-02 22:19:12.5 404 /b\n" +
+      "2018-02-02 - 200 /c\n" +
+      "2018-02-03 00:00:00\n";
+
+  static ElfParser build(ElfParserBuilder builder, String input, boolean byteMode) throws IOException {
+    if (byteMode) {
+      return builder.byteMode(true)
+          .charset(StandardCharsets.UTF_8)
+          .build(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+    }
+    return builder.build(new StringReader(input));
+  }
+
+  @Test
+  public void instant() throws IOException {
+    for (boolean byteMode : new boolean[]{false, true}) {
+      try (ElfParser parser = build(
+          ElfParserBuilder.of().timestamp("timestamp", TimestampType.INSTANT), INPUT, byteMode)) {
+        assertEquals(
+            Arrays.asList("date", "time", "sc-status", "cs-uri-stem", "timestamp"),
+            Arrays.asList(parser.fieldTypes().keySet().toArray())
+        );
+        assertEquals(Instant.class, parser.fieldTypes().get("timestamp"));
+        List<LogEntry> entries = readAll(parser);
+        assertEquals(4, entries.size());
+        assertEquals(Instant.parse("2018-02-02T22:19:11Z"), entries.get(0).fieldData().get("timestamp"));
+        assertEquals(Instant.parse("2018-02-02T22:19:12.500Z"), entries.get(1).fieldData().get("timestamp"));
+        assertNull(entries.get(2).fieldData().get("timestamp"));
+        assertEquals(Instant.parse("2018-02-03T00:00:00Z"), entries.get(3).fieldData().get("timestamp"));
+        assertNull(entries.get(3).fieldData().get("sc-status"));
+      }
+    }
+  }
+
+  @Test
+  public void projected() throws IOException {
+    for (boolean byteMode : new boolean[]{false, true}) {
+      try (ElfParser parser = build(
+          ElfParserBuilder.of()
+              .timestamp("ts", TimestampType.EPOCH_MILLIS)
+              .project("ts", "cs-uri-stem"),
+          INPUT,
+          byteMode)) {
+        assertEquals(Arrays.asList("cs-uri-stem", "ts"), Arrays.asList(parser.fieldTypes().keySet().toArray()));
+        LogRecord record = parser.nextRecord();
+        assertEquals(2, record.fieldCount());
+        assertEquals(1, record.fieldIndex("ts"));
+        assertEquals(Instant.parse("2018-02-02T22:19:11Z").toEpochMilli(), record.getLong(1));
+        record = parser.nextRecord();
+        assertEquals(Instant.parse("2018-02-02T22:19:12.500Z").toEpochMilli(), record.getLong(1));
+        assertEquals("1517609952500", record.getCharSequence(1).toString());
+      }
+    }
+  }
+
+  @Test
+  public void epochNanos() throws IOException {
+    try (ElfParser parser = build(
+        ElfParserBuilder.of().timestamp("ts", TimestampType.EPOCH_NANOS).project("time", "ts"), INPUT, false)) {
+      LogRecord record = parser.nextRecord();
+      assertEquals(1517609951000000000L, record.getLong(1));
+      record = parser.nextRecord();
+      assertEquals(1517609952500000000L, record.getLong(1));
+    }
+  }
+
+  @Test
+  public void zone() throws IOException {
+    final ZoneId zone = ZoneId.of("America/Chicago");
+    final String input = "#Fields: date time\n" +
+        "2018-03-11 01:59:59\n" +
+        "2018-03-11 03:00:00\n" +
+        "2018-07-01 12:00:00\n" +
+        "2018-11-04 01:30:00\n" +
+        "2018-11-04 02:30:00\n";
+    try (ElfParser parser = build(
+        ElfParserBuilder.of().timestamp("ts", TimestampType.INSTANT, zone), input, true)) {
+      for (LogEntry entry : readAll(parser)) {
+        LocalDateTime local = LocalDateTime.of(
+            (LocalDate) entry.fieldData().get("date"),
+            (LocalTime) entry.fieldData().get("time")
+        );
+        assertEquals(local.atZone(zone).toInstant(), entry.fieldData().get("ts"), local.toString());
+      }
+    }
+    try (ElfParser parser = build(
+        ElfParserBuilder.of().timestamp("ts", TimestampType.INSTANT, ZoneOffset.ofHours(2)), input, false)) {
+      assertEquals(Instant.parse("2018-03-10T23:59:59Z"), parser.next().fieldData().get("ts"));
+    }
+  }
+
+  @Test
+  public void directiveDate() throws IOException {
+    final String input = "#Date: 2018-02-02 00:00:00\n" +
+        "#Fields: time sc-status\n" +
+        "22:19:11 200\n" +
+        "#Date: 2018-02-03 00:00:00\n" +
+        "01:00:00 404\n";
+    for (boolean byteMode : new boolean[]{false, true}) {
+      try (ElfParser parser = build(
+          ElfParserBuilder.of().timestamp("ts", TimestampType.INSTANT), input, byteMode)) {
+        assertEquals(Instant.parse("2018-02-02T22:19:11Z"), parser.next().fieldData().get("ts"));
+        assertEquals(Instant.parse("2018-02-03T01:00:00Z"), parser.next().fieldData().get("ts"));
+      }
+    }
+    try (ElfParser parser = build(
+        ElfParserBuilder.of().timestamp("ts", TimestampType.INSTANT),
+        "#Start-Date: 2018-02-02 00:00:00\n#Fields: time\n22:19:11\n",
+        false)) {
+      assertEquals(Instant.parse("2018-02-02T22:19:11Z"), parser.next().fieldData().get("ts"));
+    }
+    try (ElfParser parser = build(
+        ElfParserBuilder.of().timestamp("ts", TimestampType.INSTANT), "#Fields: time\n22:19:11\n", false)) {
+      assertNull(parser.next().fieldData().get("ts"));
+    }
+  }
+
+  @Test
+  public void invalid() throws IOException {
+    final String input = "#Fields: date time cs-uri-stem\n" +
+        "2018-02-02 22:19:11 /a\n" +
+        "2018-02-02 25:19:11 /b\n" +
+        "2018-02-02 22:19:13 /c\n";
+    try (ElfParser parser = build(
+        ElfParserBuilder.of().timestamp("ts", TimestampType.INSTANT).project("ts", "cs-uri-stem"), input, true)) {
+      assertEquals("/a", parser.next().fieldData().get("cs-uri-stem"));
+      assertThrows(IOException.class, parser::next);
+    }
+    try (ElfParser parser = build(
+        ElfParserBuilder.of()
+            .timestamp("ts", TimestampType.INSTANT)
+            .project("ts", "cs-uri-stem")
+            .errorPolicy(ErrorPolicy.SKIP),
+        input,
+        true)) {
+      List<LogEntry> entries = readAll(parser);
+      assertEquals(2, entries.size());
+      assertEquals("/c", entries.get(1).fieldData().get("cs-uri-stem"));
+      assertEquals(Long.valueOf(1), parser.errorCounts().get(ParseError.Type.INVALID_FIELD));
+    }
+    try (ElfParser parser = build(
+        ElfParserBuilder.of()
+            .timestamp("ts", TimestampType.INSTANT)
+            .project("ts", "cs-uri-stem")
+            .errorPolicy(ErrorPolicy.NULL_FIELD),
+        input,
+        false)) {
+      List<LogEntry> entries = readAll(parser);
+      assertEquals(3, entries.size());
+      assertEquals("/b", entries.get(1).fieldData().get("cs-uri-stem"));
+      assertNull(entries.get(1).fieldData().get("ts"));
+    }
+  }
+
+  @Test
+  public void batch() throws IOException {
+    try (ElfParser parser = build(
+        ElfParserBuilder.of().timestamp("ts", TimestampType.EPOCH_NANOS).project("ts"), INPUT, true)) {
+      LogBatch batch = parser.newBatch(16);
+      assertEquals(4, parser.nextBatch(batch));
+      assertEquals(1517609951000000000L, batch.longs(0)[0]);
+      assertTrue(batch.isNull(0, 2));
+    }
+  }
+
+  @Test
+  public void duplicate() {
+    assertThrows(
+        IllegalStateException.class,
+        () -> build(ElfParserBuilder.of().timestamp("date", TimestampType.INSTANT), INPUT, false)
+    );
+  }
+}
@@ -15,8 +15,47 @@
  */
 package com.github.jcustenborder.parsers.elf.parsers;
 
-public class DateFieldParserTest {
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.time.LocalDate;
+import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DateFieldParserTest {
 
+  @TestFactory
+  public Stream<DynamicTest> parse() {
+    return FieldParserAssertions.assertMatches(
+        FieldParsers.DATE,
+        LocalDate::parse,
+        "2018-02-02",
+        "1970-01-01",
+        "0000-01-01",
+        "9999-12-31",
+        "2016-02-29",
+        "2000-02-29",
+        "1900-02-29",
+        "2017-02-29",
+        "2017-04-31",
+        "2017-13-01",
+        "2017-00-10",
+        "2017-01-00",
+        "+12345-01-01",
+        "2017-1-01",
+        "2017/01/01",
+        "2017-01-0a",
+        ""
+    );
+  }
 
+  @Test
+  public void epochDay() {
+    DateFieldParser parser = (DateFieldParser) FieldParsers.DATE;
+    for (LocalDate date = LocalDate.of(1599, 12, 1); date.getYear() < 2401; date = date.plusDays(1)) {
+      assertEquals(date.toEpochDay(), parser.parseEpochDay(date.toString()));
+    }
+  }
 }
@@ -0,0 +1,62 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf.parsers;
+
+import org.junit.jupiter.api.DynamicTest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+/**
+ * Checks that every input method of a parser returns the same result, or throws the same exception, as the JDK
+ * method it replaces.
+ */
+class FieldParserAssertions {
+  interface Parse {
+    Object parse() throws Exception;
+  }
+
+  static Object result(Parse parse) {
+    try {
+      return parse.parse();
+    } catch (Exception ex) {
+      return ex.getClass();
+    }
+  }
+
+  static Stream<DynamicTest> assertMatches(
+      FieldParser parser,
+      Function<String, Object> reference,
+      String... inputs) {
+    return Arrays.stream(inputs).map(input -> dynamicTest(String.format("'%s'", input), () -> {
+      final Object expected = result(() -> reference.apply(input));
+      final String wrapped = "ab" + input + "cd";
+      final byte[] bytes = wrapped.getBytes(StandardCharsets.UTF_8);
+      assertEquals(expected, result(() -> parser.parse(input)), "parse(String)");
+      assertEquals(expected, result(() -> parser.parse(wrapped, 2, input.length())), "parse(CharSequence)");
+      assertEquals(
+          expected,
+          result(() -> parser.parse(bytes, 2, bytes.length - 4, StandardCharsets.UTF_8)),
+          "parse(byte[])"
+      );
+    }));
+  }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf.parsers;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.stream.Stream;
+
+public class NumberFieldParserTest {
+  static final String[] INTEGERS = {
+      "0",
+      "-0",
+      "007",
+      "1234",
+      "-1234",
+      "+1234",
+      "2147483647",
+      "2147483648",
+      "-2147483648",
+      "-2147483649",
+      "999999999999999999",
+      "9223372036854775807",
+      "9223372036854775808",
+      "-9223372036854775808",
+      "-",
+      "12a",
+      "1.5",
+      ""
+  };
+
+  @TestFactory
+  public Stream<DynamicTest> parseLong() {
+    return FieldParserAssertions.assertMatches(FieldParsers.LONG, Long::parseLong, INTEGERS);
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> parseInt() {
+    return FieldParserAssertions.assertMatches(FieldParsers.INT, Integer::parseInt, INTEGERS);
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> parseDouble() {
+    return FieldParserAssertions.assertMatches(
+        FieldParsers.DOUBLE,
+        Double::parseDouble,
+        "0",
+        "-0",
+        "0.25",
+        "-0.25",
+        "1.",
+        ".5",
+        "-.5",
+        "123456789012345",
+        "1234567890123456",
+        "0.1234567890123456789012",
+        "0.00000000000000000000001",
+        "1e10",
+        "1.5E-3",
+        "NaN",
+        "Infinity",
+        "1.2.3",
+        ".",
+        "-",
+        ""
+    );
+  }
+}
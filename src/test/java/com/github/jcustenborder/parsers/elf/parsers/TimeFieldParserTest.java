@@ -0,0 +1,49 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.parsers.elf.parsers;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.time.LocalTime;
+import java.util.stream.Stream;
+
+public class TimeFieldParserTest {
+
+  @TestFactory
+  public Stream<DynamicTest> parse() {
+    return FieldParserAssertions.assertMatches(
+        FieldParsers.TIME,
+        LocalTime::parse,
+        "00:00:00",
+        "22:19:11",
+        "23:59:59",
+        "22:19:11.5",
+        "22:19:11.123",
+        "22:19:11.123456789",
+        "22:19:11.1234567891",
+        "22:19:11.",
+        "22:19",
+        "24:00:00",
+        "23:60:00",
+        "23:59:60",
+        "2:19:11",
+        "22-19-11",
+        "22:19:1a",
+        ""
+    );
+  }
+}